@@ -1,43 +1,90 @@
 package com.example.inventoryapp;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.NavUtils;
 
 import android.annotation.SuppressLint;
-import android.app.LoaderManager;
 import android.content.ContentValues;
-import android.content.CursorLoader;
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
-import android.content.Loader;
-import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
 import android.text.TextUtils;
+import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.EditText;
+import android.widget.ImageView;
 import android.widget.Toast;
 
 import com.example.inventoryapp.data.InventoryContract;
+import com.example.inventoryapp.data.InventoryRepository;
+import com.example.inventoryapp.data.ItemPhotos;
+import com.example.inventoryapp.data.RowQuery;
 
-public class EditorActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<Cursor> {
+import java.io.IOException;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+public class EditorActivity extends AppCompatActivity {
+
+    private static final String LOG_TAG = EditorActivity.class.getSimpleName();
+
+    private static final String STATE_PHOTO = "photo";
+
+    // Copies picked photos into app storage, which can take a while for large camera images.
+    private static final Executor PHOTO_EXECUTOR = Executors.newSingleThreadExecutor();
 
     private EditText nameEditText;
     private EditText quantityEditText;
     private EditText priceEditText;
     private EditText supplierEditText;
     private EditText emailEditText;
+    private EditText skuEditText;
+    private ImageView photoImageView;
 
-    private Uri currentItemUri;
+    // Photo file name as shown, and whether the user picked it rather than it being loaded.
+    private String photo;
+
+    private boolean photoChanged;
 
-    private final int INVENTORY_LOADER = 1;
+    private ThumbnailLoader.Request photoRequest;
+
+    private Uri currentItemUri;
 
     private boolean itemHasChanged = false;
 
-    private static final int EXISTING_ITEM_LOADER = 0;
+    // Form values as loaded, and the version they were read at; null for a new item.
+    private ContentValues loadedValues;
+
+    private long loadedVersion;
+
+    private static final String[] ITEM_PROJECTION = {
+            InventoryContract.InventoryEntry._ID,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_SKU,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_VERSION,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO
+    };
+
+    private final ActivityResultLauncher<String> pickPhoto = registerForActivityResult(
+            new ActivityResultContracts.GetContent(), uri -> {
+                if (uri != null) {
+                    importPhoto(uri);
+                }
+            });
 
     @SuppressLint("ClickableViewAccessibility")
     private final View.OnTouchListener touchListener = (view, motionEvent) -> {
@@ -60,7 +107,6 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         }
         else{
             setTitle(getString(R.string.editor_activity_title_edit_item));
-            getLoaderManager().initLoader(EXISTING_ITEM_LOADER, null, this);
         }
 
         nameEditText = (EditText) findViewById(R.id.edit_product_name);
@@ -68,23 +114,41 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         priceEditText = (EditText) findViewById(R.id.edit_product_price);
         supplierEditText = (EditText) findViewById(R.id.edit_product_supname);
         emailEditText = (EditText) findViewById(R.id.edit_product_supmail);
+        skuEditText = (EditText) findViewById(R.id.edit_product_sku);
+        photoImageView = findViewById(R.id.edit_product_photo);
 
         nameEditText.setOnTouchListener(touchListener);
         quantityEditText.setOnTouchListener(touchListener);
         priceEditText.setOnTouchListener(touchListener);
         supplierEditText.setOnTouchListener(touchListener);
         emailEditText.setOnTouchListener(touchListener);
+        skuEditText.setOnTouchListener(touchListener);
+
+        findViewById(R.id.edit_product_photo_button).setOnClickListener(view -> pickPhoto.launch("image/*"));
+        if (savedInstanceState != null && savedInstanceState.containsKey(STATE_PHOTO)) {
+            photo = savedInstanceState.getString(STATE_PHOTO);
+            photoChanged = true;
+            itemHasChanged = true;
+            showPhoto();
+        }
+
+        if (currentItemUri != null) {
+            new RowQuery(getContentResolver(), currentItemUri, ITEM_PROJECTION).observe(this, this::bindItem);
+        }
     }
 
-    private void saveItem() {
+    /** Reads the form the way it is saved, so loaded and edited values compare equal when unchanged. */
+    private ContentValues readForm() {
         String nameString = nameEditText.getText().toString().trim();
         String quantityString = quantityEditText.getText().toString().trim();
         String priceString = priceEditText.getText().toString().trim();
         String supplierString = supplierEditText.getText().toString().trim();
         String emailString = emailEditText.getText().toString().trim();
+        String skuString = skuEditText.getText().toString().trim();
 
         if(currentItemUri == null && TextUtils.isEmpty(nameString) && TextUtils.isEmpty(quantityString) &&
-                TextUtils.isEmpty(priceString) && TextUtils.isEmpty(supplierString) && TextUtils.isEmpty(emailString)) {return;}
+                TextUtils.isEmpty(priceString) && TextUtils.isEmpty(supplierString) && TextUtils.isEmpty(emailString) && TextUtils.isEmpty(skuString)
+                && photo == null) {return null;}
 
         ContentValues values = new ContentValues();
         values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, nameString);
@@ -92,31 +156,103 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, Integer.parseInt(quantityString));
         values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, Double.parseDouble(priceString));
         values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL, emailString);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SKU, TextUtils.isEmpty(skuString) ? null : skuString);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO, photo);
+        return values;
+    }
 
-        if(currentItemUri == null) {
-            Uri newUri = getContentResolver().insert(InventoryContract.InventoryEntry.CONTENT_URI, values);
-
-            // Show a toast message depending on whether or not the insertion was successful.
-            if (newUri == null) {
-                // If the new content URI is null, then there was an error with insertion.
-                Toast.makeText(this, getString(R.string.editor_insert_item_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the insertion was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.editor_insert_item_successful),
-                        Toast.LENGTH_SHORT).show();
+    /** Copies the picked image into app storage; the item refers to the copy once saved. */
+    private void importPhoto(Uri source) {
+        Context appContext = getApplicationContext();
+        PHOTO_EXECUTOR.execute(() -> {
+            try {
+                String imported = ItemPhotos.importPhoto(appContext, source);
+                runOnUiThread(() -> {
+                    photo = imported;
+                    photoChanged = true;
+                    itemHasChanged = true;
+                    showPhoto();
+                });
+            } catch (IOException | SecurityException e) {
+                Log.w(LOG_TAG, "Failed to import photo " + source, e);
+                runOnUiThread(() -> Toast.makeText(appContext, appContext.getString(R.string.editor_photo_failed),
+                        Toast.LENGTH_SHORT).show());
             }
+        });
+    }
+
+    private void showPhoto() {
+        if (photoRequest != null) {
+            photoRequest.cancel();
         }
-        else {
-            int rowsAffected = getContentResolver().update(currentItemUri, values, null, null);
-            if (rowsAffected == 0) {
-                Toast.makeText(this, getString(R.string.editor_update_item_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                Toast.makeText(this, getString(R.string.editor_update_item_successful),
-                        Toast.LENGTH_SHORT).show();
+        photoImageView.setVisibility(photo == null ? View.GONE : View.VISIBLE);
+        photoRequest = ThumbnailLoader.getInstance(this).load(photo,
+                getResources().getDimensionPixelSize(R.dimen.editor_photo_size), photoImageView, R.drawable.photo_placeholder);
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (photoChanged) {
+            outState.putString(STATE_PHOTO, photo);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        if (photoRequest != null) {
+            photoRequest.cancel();
+        }
+        super.onDestroy();
+    }
+
+    private void saveItem() {
+        ContentValues values = readForm();
+        if (values == null) {
+            return;
+        }
+
+        // Only send what differs from the loaded item; the provider fills in the rest.
+        if (loadedValues != null) {
+            for (String column : loadedValues.keySet()) {
+                if (Objects.equals(loadedValues.get(column), values.get(column))) {
+                    values.remove(column);
+                }
+            }
+            if (values.size() == 0) {
+                return;
             }
         }
+
+        // The activity finishes right after saving, so results are reported with the application context.
+        Context appContext = getApplicationContext();
+        if(currentItemUri == null) {
+            InventoryRepository.getInstance(this).insert(values, (newUri, rowsAffected) -> {
+                // Show a toast message depending on whether or not the insertion was successful.
+                if (newUri == null) {
+                    // If the new content URI is null, then there was an error with insertion.
+                    Toast.makeText(appContext, appContext.getString(R.string.editor_insert_item_failed),
+                            Toast.LENGTH_SHORT).show();
+                } else {
+                    // Otherwise, the insertion was successful and we can display a toast.
+                    Toast.makeText(appContext, appContext.getString(R.string.editor_insert_item_successful),
+                            Toast.LENGTH_SHORT).show();
+                }
+            });
+        }
+        else {
+            // Applies only if nobody updated the item since it was loaded.
+            Uri versionedUri = InventoryContract.InventoryEntry.buildVersionedUri(currentItemUri, loadedVersion);
+            InventoryRepository.getInstance(this).update(versionedUri, values, (uri, rowsAffected) -> {
+                if (rowsAffected == 0) {
+                    Toast.makeText(appContext, appContext.getString(R.string.editor_update_item_conflict),
+                            Toast.LENGTH_SHORT).show();
+                } else {
+                    Toast.makeText(appContext, appContext.getString(R.string.editor_update_item_successful),
+                            Toast.LENGTH_SHORT).show();
+                }
+            });
+        }
     }
 
     @Override
@@ -187,15 +323,17 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
 
     private void deleteItem() {
         if (currentItemUri != null) {
-            int rowsDeleted = getContentResolver().delete(currentItemUri, null, null);
-            if (rowsDeleted == 0) {
-                Toast.makeText(this, getString(R.string.editor_delete_item_failed),
-                        Toast.LENGTH_SHORT).show();
-            } else {
-                // Otherwise, the delete was successful and we can display a toast.
-                Toast.makeText(this, getString(R.string.editor_delete_item_successful),
-                        Toast.LENGTH_SHORT).show();
-            }
+            Context appContext = getApplicationContext();
+            InventoryRepository.getInstance(this).delete(currentItemUri, (uri, rowsDeleted) -> {
+                if (rowsDeleted == 0) {
+                    Toast.makeText(appContext, appContext.getString(R.string.editor_delete_item_failed),
+                            Toast.LENGTH_SHORT).show();
+                } else {
+                    // Otherwise, the delete was successful and we can display a toast.
+                    Toast.makeText(appContext, appContext.getString(R.string.editor_delete_item_successful),
+                            Toast.LENGTH_SHORT).show();
+                }
+            });
         }
         finish();
     }
@@ -223,50 +361,28 @@ public class EditorActivity extends AppCompatActivity implements LoaderManager.L
         alertDialog.show();
     }
 
-    @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        String[] projection = {
-                InventoryContract.InventoryEntry._ID,
-                InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
-                InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY,
-                InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
-                InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER,
-                InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL
-        };
-        return new CursorLoader(this,   // Parent activity context
-                currentItemUri,         // Query the content URI for the current pet
-                projection,             // Columns to include in the resulting Cursor
-                null,                   // No selection clause
-                null,                   // No selection arguments
-                null);                  // Default sort order
-    }
-
     @SuppressLint("SetTextI18n")
-    @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
-        if (cursor.moveToFirst()) {
-            int nameColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME);
-            int priceColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE);
-            int quantityColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY);
-            int supplierColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER);
-            int emailColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL);
-
-            String name = cursor.getString(nameColumnIndex);
-            double price = cursor.getDouble(priceColumnIndex);
-            int quantity = cursor.getInt(quantityColumnIndex);
-            String supplier = cursor.getString(supplierColumnIndex);
-            String email = cursor.getString(emailColumnIndex);
-
-            nameEditText.setText(name);
-            priceEditText.setText(Double.toString(price));
-            quantityEditText.setText(Integer.toString(quantity));
-            supplierEditText.setText(supplier);
-            emailEditText.setText(email);
+    private void bindItem(@Nullable ContentValues item) {
+        // Keep the user's edits and the version they started from, so a concurrent update is
+        // reported as a conflict on save instead of being silently merged.
+        if (item == null || (itemHasChanged && loadedValues != null)) {
+            return;
         }
+        loadedVersion = item.getAsLong(InventoryContract.InventoryEntry.COLUMN_ITEM_VERSION);
+
+        nameEditText.setText(item.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME));
+        priceEditText.setText(Double.toString(item.getAsDouble(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE)));
+        quantityEditText.setText(Integer.toString(item.getAsInteger(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY)));
+        supplierEditText.setText(item.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER));
+        emailEditText.setText(item.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL));
+        skuEditText.setText(item.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_SKU));
+        String loadedPhoto = item.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO);
+        if (!photoChanged) {
+            photo = loadedPhoto;
+            showPhoto();
+        }
+        loadedValues = readForm();
+        // A photo picked before a rotation still counts as a change.
+        loadedValues.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO, loadedPhoto);
     }
-
-    @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-
-    }
-}
\ No newline at end of file
+}
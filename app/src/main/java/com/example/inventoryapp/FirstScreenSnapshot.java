@@ -0,0 +1,178 @@
+package com.example.inventoryapp;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import com.example.inventoryapp.data.InventoryContract;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Compact binary copy of the first screenful of list rows, rewritten whenever the list changes
+ * and read on cold start through a memory-mapped file, so the list can be drawn before the
+ * database is even open. The rows are only a placeholder until the loader delivers the live
+ * cursor.
+ *
+ * <p>Layout, big-endian: magic, version and row count as ints, then for each row the id (long),
+ * price (double), quantity (int), and the name as an int byte length followed by UTF-8 bytes.
+ */
+final class FirstScreenSnapshot {
+
+    static final int ROWS = 30;
+
+    static final String[] COLUMNS = {
+            InventoryContract.InventoryEntry._ID,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY
+    };
+
+    private static final String LOG_TAG = FirstScreenSnapshot.class.getSimpleName();
+
+    private static final String FILE_NAME = "first_screen.snapshot";
+
+    private static final int MAGIC = 0x494E5653;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_BYTES = 12;
+
+    private static final int FIXED_ROW_BYTES = 8 + 8 + 4 + 4;
+
+    // Shared by all activity instances so writes land in order.
+    private static final Executor WRITE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final File file;
+
+    private final Executor writeExecutor;
+
+    // Last bytes read or queued for writing; touched on the main thread only.
+    private byte[] current;
+
+    FirstScreenSnapshot(Context context) {
+        this(new File(context.getNoBackupFilesDir(), FILE_NAME), WRITE_EXECUTOR);
+    }
+
+    FirstScreenSnapshot(File file, Executor writeExecutor) {
+        this.file = file;
+        this.writeExecutor = writeExecutor;
+    }
+
+    /** Returns the saved rows with {@link #COLUMNS}, or null if there is no usable snapshot. */
+    @Nullable
+    Cursor read() {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            FileChannel channel = in.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            MatrixCursor cursor = decode(buffer);
+            if (cursor != null) {
+                current = new byte[buffer.rewind().remaining()];
+                buffer.get(current);
+            }
+            return cursor;
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            Log.w(LOG_TAG, "Ignoring unreadable snapshot " + file, e);
+            return null;
+        }
+    }
+
+    /**
+     * Encodes the first {@link #ROWS} rows of {@code cursor} on the calling thread, which must be
+     * the one that owns the cursor, and writes them in the background if they changed.
+     */
+    void update(Cursor cursor) {
+        byte[] encoded = encode(cursor);
+        if (Arrays.equals(encoded, current)) {
+            return;
+        }
+        current = encoded;
+        writeExecutor.execute(() -> write(encoded));
+    }
+
+    /** Writes to a temporary file and renames it, so a reader never sees a partial snapshot. */
+    private void write(byte[] encoded) {
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(encoded);
+            out.getFD().sync();
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Failed to write snapshot " + temp, e);
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            Log.w(LOG_TAG, "Failed to replace snapshot " + file);
+        }
+    }
+
+    static byte[] encode(Cursor cursor) {
+        int idColumnIndex = cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry._ID);
+        int nameColumnIndex = cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME);
+        int priceColumnIndex = cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE);
+        int quantityColumnIndex = cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY);
+
+        int rows = Math.min(ROWS, cursor.getCount());
+        byte[][] names = new byte[rows][];
+        int size = HEADER_BYTES;
+        for (int i = 0; i < rows && cursor.moveToPosition(i); i++) {
+            names[i] = cursor.getString(nameColumnIndex).getBytes(StandardCharsets.UTF_8);
+            size += FIXED_ROW_BYTES + names[i].length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(rows);
+        for (int i = 0; i < rows && cursor.moveToPosition(i); i++) {
+            buffer.putLong(cursor.getLong(idColumnIndex))
+                    .putDouble(cursor.getDouble(priceColumnIndex))
+                    .putInt(cursor.getInt(quantityColumnIndex))
+                    .putInt(names[i].length)
+                    .put(names[i]);
+        }
+        return buffer.array();
+    }
+
+    /** Returns null for a snapshot from another format version. */
+    @Nullable
+    static MatrixCursor decode(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        int rows = buffer.getInt();
+        if (rows < 0 || rows > ROWS) {
+            throw new IllegalArgumentException("Bad snapshot row count " + rows);
+        }
+        MatrixCursor cursor = new MatrixCursor(COLUMNS, rows);
+        byte[] name = new byte[64];
+        for (int i = 0; i < rows; i++) {
+            long id = buffer.getLong();
+            double price = buffer.getDouble();
+            int quantity = buffer.getInt();
+            int length = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) {
+                throw new BufferUnderflowException();
+            }
+            if (length > name.length) {
+                name = new byte[length];
+            }
+            buffer.get(name, 0, length);
+            cursor.addRow(new Object[] { id, new String(name, 0, length, StandardCharsets.UTF_8), price, quantity });
+        }
+        return cursor;
+    }
+}
@@ -1,45 +1,303 @@
 package com.example.inventoryapp;
 
 import android.annotation.SuppressLint;
-import android.content.Context;
 import android.database.Cursor;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.CursorAdapter;
+import android.widget.ImageView;
 import android.widget.TextView;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.RecyclerView;
+
 import com.example.inventoryapp.data.InventoryContract;
 
-public class InventoryCursorAdapter extends CursorAdapter {
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * RecyclerView adapter over an inventory cursor. Rows are keyed by {@code _ID}, and each new
+ * cursor is diffed against the previous one on a background thread so that a change to a single
+ * row only rebinds that row. A {@link SnapshotCursor} brings the values the diff needs with it,
+ * so submitting one does no per-row work on the main thread. Item photos are shown as thumbnails from {@link ThumbnailLoader};
+ * a row's pending thumbnail is cancelled as soon as the row is recycled or rebound, so a fast
+ * fling only decodes what stays on screen.
+ */
+public class InventoryCursorAdapter extends RecyclerView.Adapter<InventoryCursorAdapter.ViewHolder> {
+
+    public interface OnItemClickListener {
+        void onItemClick(long id);
+    }
+
+    /** A cursor delivered with its {@link RowSnapshot} already taken, off the main thread. */
+    interface SnapshotCursor extends Cursor {
+        RowSnapshot getRowSnapshot();
+    }
+
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final OnItemClickListener clickListener;
+
+    private Cursor cursor;
+
+    private RowSnapshot snapshot = RowSnapshot.EMPTY;
+
+    private int nameColumnIndex;
+
+    private int priceColumnIndex;
 
-    public InventoryCursorAdapter(Context context, Cursor cursor) {
-        super(context, cursor, 0);
+    private int quantityColumnIndex;
+
+    // -1 for cursors without photos, such as the first-screen placeholder.
+    private int photoColumnIndex;
+
+    private int generation;
+
+    public InventoryCursorAdapter(OnItemClickListener clickListener) {
+        this.clickListener = clickListener;
+        setHasStableIds(true);
     }
 
+    /**
+     * Replaces the displayed cursor once the diff against the current one has been computed.
+     * {@code onCommitted} runs on the main thread after the switch, at which point the previous
+     * cursor is no longer read. Submissions superseded before their diff completes are dropped.
+     */
+    public void submitCursor(@Nullable Cursor newCursor, @Nullable Runnable onCommitted) {
+        final int submitted = ++generation;
+        final RowSnapshot oldSnapshot = snapshot;
+        // Any other cursor is read here: it may share pages with the one being displayed.
+        final RowSnapshot newSnapshot = newCursor instanceof SnapshotCursor
+                ? ((SnapshotCursor) newCursor).getRowSnapshot() : RowSnapshot.of(newCursor);
+
+        DIFF_EXECUTOR.execute(() -> {
+            DiffUtil.DiffResult diff = DiffUtil.calculateDiff(new SnapshotDiff(oldSnapshot, newSnapshot), false);
+            mainHandler.post(() -> {
+                if (submitted != generation) {
+                    return;
+                }
+                swapCursor(newCursor, newSnapshot);
+                diff.dispatchUpdatesTo(this);
+                if (onCommitted != null) {
+                    onCommitted.run();
+                }
+            });
+        });
+    }
+
+    /**
+     * Shows {@code placeholder} immediately, without a diff, if nothing has been submitted yet.
+     * The first {@link #submitCursor} is diffed against it, so rows that did not change keep
+     * their views and the switch to live data does not flicker.
+     */
+    public void showPlaceholder(Cursor placeholder) {
+        if (generation != 0) {
+            return;
+        }
+        swapCursor(placeholder, RowSnapshot.of(placeholder));
+        notifyDataSetChanged();
+    }
+
+    private void swapCursor(Cursor newCursor, RowSnapshot newSnapshot) {
+        cursor = newCursor;
+        snapshot = newSnapshot;
+        if (newCursor != null) {
+            nameColumnIndex = newCursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME);
+            priceColumnIndex = newCursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE);
+            quantityColumnIndex = newCursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY);
+            photoColumnIndex = newCursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO);
+        }
+    }
+
+    @NonNull
     @Override
-    public View newView(Context context, Cursor cursor, ViewGroup viewGroup) {
-        return LayoutInflater.from(context).inflate(R.layout.list_item, viewGroup, false);
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.list_item, parent, false);
+        return new ViewHolder(view);
     }
 
     @SuppressLint("SetTextI18n")
     @Override
-    public void bindView(View view, Context context, Cursor cursor) {
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        if (!cursor.moveToPosition(position)) {
+            throw new IllegalStateException("Cannot move cursor to position " + position);
+        }
+
+        holder.nameTextView.setText(cursor.getString(nameColumnIndex));
+        holder.priceTextView.setText(Double.toString(cursor.getDouble(priceColumnIndex)));
+        holder.quantityTextView.setText(Integer.toString(cursor.getInt(quantityColumnIndex)));
+        holder.cancelThumbnail();
+        holder.thumbnailRequest = ThumbnailLoader.getInstance(holder.itemView.getContext()).load(
+                photoColumnIndex < 0 ? null : cursor.getString(photoColumnIndex), holder.thumbnailSize,
+                holder.photoImageView, R.drawable.photo_placeholder);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ViewHolder holder) {
+        holder.cancelThumbnail();
+        holder.photoImageView.setImageResource(R.drawable.photo_placeholder);
+    }
+
+    @Override
+    public int getItemCount() {
+        return snapshot.ids.length;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return snapshot.ids[position];
+    }
+
+    class ViewHolder extends RecyclerView.ViewHolder {
+
+        final TextView nameTextView;
+        final TextView priceTextView;
+        final TextView quantityTextView;
+        final ImageView photoImageView;
+        final int thumbnailSize;
+
+        ThumbnailLoader.Request thumbnailRequest;
+
+        ViewHolder(View view) {
+            super(view);
+            nameTextView = view.findViewById(R.id.list_item_name);
+            priceTextView = view.findViewById(R.id.list_item_price);
+            quantityTextView = view.findViewById(R.id.list_item_quantity);
+            photoImageView = view.findViewById(R.id.list_item_photo);
+            thumbnailSize = view.getResources().getDimensionPixelSize(R.dimen.list_item_thumbnail_size);
+            view.setOnClickListener(v -> {
+                if (getBindingAdapterPosition() != RecyclerView.NO_POSITION) {
+                    clickListener.onItemClick(getItemId());
+                }
+            });
+        }
+
+        void cancelThumbnail() {
+            if (thumbnailRequest != null) {
+                thumbnailRequest.cancel();
+                thumbnailRequest = null;
+            }
+        }
+    }
+
+    /** Row ids and the displayed values, enough for DiffUtil without touching the cursor. */
+    static final class RowSnapshot {
+
+        static final RowSnapshot EMPTY = new RowSnapshot(new long[0], new String[0], new double[0], new int[0], new String[0]);
+
+        final long[] ids;
+        private final String[] names;
+        private final double[] prices;
+        private final int[] quantities;
+        private final String[] photos;
+
+        private RowSnapshot(long[] ids, String[] names, double[] prices, int[] quantities, String[] photos) {
+            this.ids = ids;
+            this.names = names;
+            this.prices = prices;
+            this.quantities = quantities;
+            this.photos = photos;
+        }
+
+        static RowSnapshot of(@Nullable Cursor cursor) {
+            if (cursor == null || cursor.getCount() == 0) {
+                return EMPTY;
+            }
+            int idColumnIndex = cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry._ID);
+            int nameColumnIndex = cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME);
+            int priceColumnIndex = cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE);
+            int quantityColumnIndex = cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY);
+            int photoColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO);
+
+            int count = cursor.getCount();
+            long[] ids = new long[count];
+            String[] names = new String[count];
+            double[] prices = new double[count];
+            int[] quantities = new int[count];
+            String[] photos = new String[count];
+            for (int i = 0; cursor.moveToPosition(i); i++) {
+                ids[i] = cursor.getLong(idColumnIndex);
+                names[i] = cursor.getString(nameColumnIndex);
+                prices[i] = cursor.getDouble(priceColumnIndex);
+                quantities[i] = cursor.getInt(quantityColumnIndex);
+                photos[i] = photoColumnIndex < 0 ? null : cursor.getString(photoColumnIndex);
+            }
+            return new RowSnapshot(ids, names, prices, quantities, photos);
+        }
+
+        /** The rows of {@code parts} one after another, as in a merge of their cursors. */
+        static RowSnapshot concat(List<RowSnapshot> parts) {
+            if (parts.size() == 1) {
+                return parts.get(0);
+            }
+            int count = 0;
+            for (RowSnapshot part : parts) {
+                count += part.ids.length;
+            }
+            long[] ids = new long[count];
+            String[] names = new String[count];
+            double[] prices = new double[count];
+            int[] quantities = new int[count];
+            String[] photos = new String[count];
+            int offset = 0;
+            for (RowSnapshot part : parts) {
+                int length = part.ids.length;
+                System.arraycopy(part.ids, 0, ids, offset, length);
+                System.arraycopy(part.names, 0, names, offset, length);
+                System.arraycopy(part.prices, 0, prices, offset, length);
+                System.arraycopy(part.quantities, 0, quantities, offset, length);
+                System.arraycopy(part.photos, 0, photos, offset, length);
+                offset += length;
+            }
+            return count == 0 ? EMPTY : new RowSnapshot(ids, names, prices, quantities, photos);
+        }
+
+        /** Compares every displayed value, so a changed row is always rebound. */
+        boolean sameContents(int position, RowSnapshot other, int otherPosition) {
+            return quantities[position] == other.quantities[otherPosition]
+                    && Double.compare(prices[position], other.prices[otherPosition]) == 0
+                    && Objects.equals(names[position], other.names[otherPosition])
+                    && Objects.equals(photos[position], other.photos[otherPosition]);
+        }
+    }
+
+    private static final class SnapshotDiff extends DiffUtil.Callback {
+
+        private final RowSnapshot oldSnapshot;
+        private final RowSnapshot newSnapshot;
+
+        SnapshotDiff(RowSnapshot oldSnapshot, RowSnapshot newSnapshot) {
+            this.oldSnapshot = oldSnapshot;
+            this.newSnapshot = newSnapshot;
+        }
 
-        TextView nameTextView = view.findViewById(R.id.list_item_name);
-        TextView priceTextView = view.findViewById(R.id.list_item_price);
-        TextView quantityTextView = view.findViewById(R.id.list_item_quantity);
+        @Override
+        public int getOldListSize() {
+            return oldSnapshot.ids.length;
+        }
 
-        int nameColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME);
-        int priceColumnIndex = cursor.getColumnIndex(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE);
-        int quantityColumnIndex = cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY);
+        @Override
+        public int getNewListSize() {
+            return newSnapshot.ids.length;
+        }
 
-        String itemName = cursor.getString(nameColumnIndex);
-        double itemPrice = cursor.getDouble(priceColumnIndex);
-        int itemQuantity = cursor.getInt(quantityColumnIndex);
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldSnapshot.ids[oldItemPosition] == newSnapshot.ids[newItemPosition];
+        }
 
-        nameTextView.setText(itemName);
-        priceTextView.setText(Double.toString(itemPrice));
-        quantityTextView.setText(Integer.toString(itemQuantity));
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return oldSnapshot.sameContents(oldItemPosition, newSnapshot, newItemPosition);
+        }
     }
 }
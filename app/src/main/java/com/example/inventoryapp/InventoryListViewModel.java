@@ -0,0 +1,120 @@
+package com.example.inventoryapp;
+
+import android.app.Application;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.widget.Toast;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.inventoryapp.data.InventoryContract;
+import com.example.inventoryapp.data.InventoryCsv;
+import com.example.inventoryapp.data.RowQuery;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * Holds the main screen's queries across configuration changes, so a rotation re-attaches to
+ * the pages already loaded instead of querying again.
+ */
+public class InventoryListViewModel extends AndroidViewModel {
+
+    private static final String LOG_TAG = InventoryListViewModel.class.getSimpleName();
+
+    // One transfer at a time, even if the screen is left and opened again while one runs.
+    private static final Executor CSV_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private static final String[] LIST_PROJECTION = {
+            InventoryContract.InventoryEntry._ID,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO
+    };
+
+    private final RowQuery stats;
+
+    // Progress text of the running CSV transfer, null when none is running.
+    private final MutableLiveData<String> csvProgress = new MutableLiveData<>();
+
+    private InventoryPagingQuery items;
+
+    private Uri listUri;
+
+    public InventoryListViewModel(@NonNull Application application) {
+        super(application);
+        stats = new RowQuery(application.getContentResolver(), InventoryContract.StatsEntry.CONTENT_URI, null);
+    }
+
+    /** Returns the item list, switching it to {@code listUri} if it currently shows another one. */
+    InventoryPagingQuery items(Uri listUri) {
+        if (items == null) {
+            items = new InventoryPagingQuery(getApplication().getContentResolver(), listUri, LIST_PROJECTION);
+        } else if (!listUri.equals(this.listUri)) {
+            items.setListUri(listUri);
+        }
+        this.listUri = listUri;
+        return items;
+    }
+
+    RowQuery stats() {
+        return stats;
+    }
+
+    LiveData<String> csvProgress() {
+        return csvProgress;
+    }
+
+    /**
+     * Imports from or exports to {@code document} in the background, reporting progress through
+     * {@link #csvProgress} and the outcome in a toast. Only the application is held, so the
+     * transfer carries on, and finishes quietly, whatever happens to the screen that started it.
+     */
+    void transferCsv(Uri document, boolean isImport) {
+        Application application = getApplication();
+        InventoryCsv.ProgressListener listener = (rows, bytes, rowsPerSecond) ->
+                csvProgress.postValue(application.getString(R.string.csv_progress, rows, (long) rowsPerSecond));
+
+        CSV_EXECUTOR.execute(() -> {
+            String message;
+            try {
+                if (isImport) {
+                    try (InputStream in = application.getContentResolver().openInputStream(document)) {
+                        InventoryCsv.Result result = InventoryCsv.importFrom(application.getContentResolver(),
+                                Channels.newChannel(in), listener);
+                        message = application.getString(R.string.csv_import_finished, result.rows, result.rejectedRows);
+                    }
+                } else {
+                    try (OutputStream out = application.getContentResolver().openOutputStream(document)) {
+                        InventoryCsv.Result result = InventoryCsv.exportTo(application.getContentResolver(), out, listener);
+                        message = application.getString(R.string.csv_export_finished, result.rows);
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.e(LOG_TAG, "CSV transfer failed for " + document, e);
+                message = application.getString(R.string.csv_transfer_failed);
+            }
+
+            csvProgress.postValue(null);
+            String finished = message;
+            new Handler(Looper.getMainLooper()).post(() -> Toast.makeText(application, finished, Toast.LENGTH_LONG).show());
+        });
+    }
+
+    @Override
+    protected void onCleared() {
+        if (items != null) {
+            items.close();
+        }
+    }
+}
@@ -0,0 +1,283 @@
+package com.example.inventoryapp;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.database.MergeCursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.OperationCanceledException;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+
+import com.example.inventoryapp.data.InventoryContract;
+import com.example.inventoryapp.data.ObservableQuery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads an inventory list URI (see {@link InventoryContract.InventoryEntry#buildListUri}) one
+ * keyset page at a time. Each delivered value is a {@link MergeCursor} over every page fetched
+ * so far; the page cursors themselves are owned by this query, so observers must never close
+ * the delivered cursor, and {@link #close()} must be called once nobody observes it any more.
+ * Each page's {@link InventoryCursorAdapter.RowSnapshot} is taken on the query thread when the
+ * page is fetched and delivered with the cursor, so the projection must hold the columns the
+ * adapter shows.
+ *
+ * <p>When the data changes the query re-reads as many rows as were already on screen in a
+ * single query, so the list keeps its scroll position. The pages a reload replaced are released
+ * only once the consumer shows that reload's result, or a later one (see
+ * {@link #releaseStalePages}); until then the list may still be reading them.
+ */
+public class InventoryPagingQuery extends ObservableQuery<Cursor> {
+
+    public static final int PAGE_SIZE = 50;
+
+    private final String[] baseProjection;
+
+    private final List<Cursor> pages = new ArrayList<>();
+
+    // The snapshot of each page, in step with pages.
+    private final List<InventoryCursorAdapter.RowSnapshot> pageSnapshots = new ArrayList<>();
+
+    // Every result not yet shown, oldest first, with the pages it replaced.
+    private final List<Result> results = new ArrayList<>();
+
+    // Pages replaced by dropped results, handed on to the next result.
+    private final List<Cursor> carriedPages = new ArrayList<>();
+
+    // Guarded by pages, as is everything below that the query thread reads.
+    private Uri listUri;
+
+    private String[] projection;
+
+    private String[] keyColumns;
+
+    private int loadedRows;
+
+    private String[] lastKey;
+
+    private boolean endReached;
+
+    private boolean nextPageRequested;
+
+    public InventoryPagingQuery(ContentResolver resolver, Uri listUri, String[] projection) {
+        super(resolver, InventoryContract.InventoryEntry.CONTENT_URI);
+        this.baseProjection = projection;
+        setList(listUri);
+    }
+
+    InventoryPagingQuery(ContentResolver resolver, Uri listUri, String[] projection, Executor executor) {
+        super(resolver, InventoryContract.InventoryEntry.CONTENT_URI, executor);
+        this.baseProjection = projection;
+        setList(listUri);
+    }
+
+    /** Switches to another order or filter, starting again from the first page. */
+    @MainThread
+    public void setListUri(Uri listUri) {
+        setList(listUri);
+        requery();
+    }
+
+    private void setList(Uri listUri) {
+        String sort = listUri.getQueryParameter(InventoryContract.InventoryEntry.QUERY_PARAMETER_SORT);
+        synchronized (pages) {
+            this.listUri = listUri;
+            this.keyColumns = InventoryContract.InventoryEntry.sortKeyColumns(
+                    sort != null ? sort : InventoryContract.InventoryEntry.SORT_NAME);
+            this.projection = withKeyColumns(baseProjection, keyColumns);
+            loadedRows = 0;
+            lastKey = null;
+            endReached = false;
+            nextPageRequested = false;
+        }
+    }
+
+    /** The page key is read from each last row, so the key columns must be in the projection. */
+    private static String[] withKeyColumns(String[] projection, String[] keyColumns) {
+        List<String> columns = new ArrayList<>(Arrays.asList(projection));
+        for (String column : keyColumns) {
+            if (!columns.contains(column)) {
+                columns.add(column);
+            }
+        }
+        return columns.toArray(new String[0]);
+    }
+
+    /** Fetches the page after the last loaded row, unless a query is in flight or the end was reached. */
+    @MainThread
+    public void loadNextPage() {
+        synchronized (pages) {
+            if (isQuerying() || endReached || getValue() == null) {
+                return;
+            }
+            nextPageRequested = true;
+        }
+        requery();
+    }
+
+    @Override
+    protected Cursor query(ContentResolver resolver, CancellationSignal signal) {
+        boolean append;
+        int limit;
+        Uri pageUri;
+        String[] pageProjection;
+        String[] pageKeyColumns;
+        synchronized (pages) {
+            append = nextPageRequested && !pages.isEmpty();
+            nextPageRequested = false;
+            limit = append ? PAGE_SIZE : Math.max(PAGE_SIZE, loadedRows);
+            pageUri = InventoryContract.InventoryEntry.buildPageUri(listUri, append ? lastKey : null, limit);
+            pageProjection = projection;
+            pageKeyColumns = keyColumns;
+        }
+
+        Cursor page = resolver.query(pageUri, pageProjection, null, null, null, signal);
+        if (page == null) {
+            return null;
+        }
+        int count;
+        String[] pageLastKey = null;
+        InventoryCursorAdapter.RowSnapshot pageSnapshot;
+        try {
+            count = page.getCount();
+            if (page.moveToLast()) {
+                pageLastKey = new String[pageKeyColumns.length];
+                for (int i = 0; i < pageKeyColumns.length; i++) {
+                    int index = page.getColumnIndexOrThrow(pageKeyColumns[i]);
+                    // SQLite's own text form of a double can round, which would repeat or skip rows.
+                    pageLastKey[i] = page.getType(index) == Cursor.FIELD_TYPE_FLOAT
+                            ? String.valueOf(page.getDouble(index)) : page.getString(index);
+                }
+            }
+            pageSnapshot = InventoryCursorAdapter.RowSnapshot.of(page);
+        } catch (RuntimeException e) {
+            // Includes a cancel arriving while getCount() fills the window; the page is not ours to hand on yet.
+            page.close();
+            throw e;
+        }
+
+        synchronized (pages) {
+            // A newer query was started after this one read its page; let that one win.
+            if (signal.isCanceled()) {
+                page.close();
+                throw new OperationCanceledException();
+            }
+            List<Cursor> replaced = new ArrayList<>(carriedPages);
+            carriedPages.clear();
+            if (!append) {
+                replaced.addAll(pages);
+                pages.clear();
+                pageSnapshots.clear();
+                loadedRows = 0;
+            }
+            if (pageLastKey != null) {
+                lastKey = pageLastKey;
+            }
+            endReached = count < limit;
+            loadedRows += count;
+            pages.add(page);
+            pageSnapshots.add(pageSnapshot);
+
+            Cursor result = new PagedCursor(pages.toArray(new Cursor[0]),
+                    InventoryCursorAdapter.RowSnapshot.concat(pageSnapshots));
+            results.add(new Result(result, replaced));
+            return result;
+        }
+    }
+
+    @Override
+    protected void discard(Cursor result) {
+        synchronized (pages) {
+            int index = indexOf(result);
+            if (index < 0) {
+                return;
+            }
+            // Whatever was on screen before this result still is; free it with the next one shown.
+            Result dropped = results.remove(index);
+            if (index < results.size()) {
+                results.get(index).replaced.addAll(dropped.replaced);
+            } else {
+                carriedPages.addAll(dropped.replaced);
+            }
+        }
+    }
+
+    /**
+     * Closes the pages replaced by {@code shown} and by every result delivered before it; call
+     * once the consumer has switched to {@code shown}, so it no longer reads any of them.
+     */
+    @MainThread
+    public void releaseStalePages(@Nullable Cursor shown) {
+        synchronized (pages) {
+            int index = indexOf(shown);
+            for (int i = 0; i <= index; i++) {
+                closeAll(results.get(i).replaced);
+            }
+            results.subList(0, index + 1).clear();
+        }
+    }
+
+    /** Closes every page; the query must not be observed afterwards. */
+    @MainThread
+    public void close() {
+        synchronized (pages) {
+            for (Result result : results) {
+                closeAll(result.replaced);
+            }
+            results.clear();
+            closeAll(carriedPages);
+            closeAll(pages);
+            pageSnapshots.clear();
+            loadedRows = 0;
+            endReached = false;
+        }
+    }
+
+    private int indexOf(@Nullable Cursor result) {
+        for (int i = 0; i < results.size(); i++) {
+            if (results.get(i).cursor == result) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void closeAll(List<Cursor> cursors) {
+        for (Cursor cursor : cursors) {
+            cursor.close();
+        }
+        cursors.clear();
+    }
+
+    private static final class PagedCursor extends MergeCursor implements InventoryCursorAdapter.SnapshotCursor {
+
+        private final InventoryCursorAdapter.RowSnapshot snapshot;
+
+        PagedCursor(Cursor[] pages, InventoryCursorAdapter.RowSnapshot snapshot) {
+            super(pages);
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public InventoryCursorAdapter.RowSnapshot getRowSnapshot() {
+            return snapshot;
+        }
+    }
+
+    private static final class Result {
+
+        final Cursor cursor;
+
+        final List<Cursor> replaced;
+
+        Result(Cursor cursor, List<Cursor> replaced) {
+            this.cursor = cursor;
+            this.replaced = replaced;
+        }
+    }
+}
@@ -1,62 +1,149 @@
 package com.example.inventoryapp;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.lifecycle.ViewModelProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
-import android.app.LoaderManager;
 import android.content.ContentUris;
 import android.content.ContentValues;
-import android.content.CursorLoader;
+import android.content.Context;
 import android.content.Intent;
-import android.content.Loader;
 import android.database.Cursor;
 import android.net.Uri;
 import android.os.Bundle;
-import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.view.View;
-import android.widget.ListView;
+import android.widget.TextView;
 import android.widget.Toast;
 
+import com.example.inventoryapp.data.AnalyticsRefreshJobService;
 import com.example.inventoryapp.data.InventoryContract;
 import com.example.inventoryapp.data.InventoryDbHelper;
+import com.example.inventoryapp.data.InventoryPurgeJobService;
+import com.example.inventoryapp.data.InventoryRepository;
+import com.example.inventoryapp.data.InventorySyncJobService;
+import com.example.inventoryapp.data.MovementPruneJobService;
+import com.example.inventoryapp.data.StatsCheckJobService;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
+import com.google.android.material.snackbar.Snackbar;
 
-public class MainActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<Cursor> {
+public class MainActivity extends AppCompatActivity {
 
-    private static final int ITEM_LOADER = 0;
+    private static final String STATE_SORT = "sort";
+
+    private static final String STATE_IN_STOCK_ONLY = "in_stock_only";
+
+    private static final String STATE_PRICE_RANGE = "price_range";
 
     InventoryCursorAdapter cursorAdapter;
 
     private InventoryDbHelper dbHelper;
 
+    private View emptyView;
+
+    private TextView statsHeader;
+
+    private FirstScreenSnapshot firstScreen;
+
+    private InventoryListViewModel viewModel;
+
+    private InventoryPagingQuery itemsQuery;
+
+    private String sort = InventoryContract.InventoryEntry.SORT_NAME;
+
+    private boolean inStockOnly;
+
+    private int priceRangeId = R.id.price_any;
+
+    private final ActivityResultLauncher<String[]> importCsv = registerForActivityResult(
+            new ActivityResultContracts.OpenDocument(), uri -> {
+                if (uri != null) {
+                    viewModel.transferCsv(uri, true);
+                }
+            });
+
+    private final ActivityResultLauncher<String> exportCsv = registerForActivityResult(
+            new CreateCsvDocument(), uri -> {
+                if (uri != null) {
+                    viewModel.transferCsv(uri, false);
+                }
+            });
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
+        if (savedInstanceState != null) {
+            sort = savedInstanceState.getString(STATE_SORT, sort);
+            inStockOnly = savedInstanceState.getBoolean(STATE_IN_STOCK_ONLY);
+            priceRangeId = savedInstanceState.getInt(STATE_PRICE_RANGE, priceRangeId);
+        }
+
         FloatingActionButton fab =findViewById(R.id.fab);
         fab.setOnClickListener(view -> {
             Intent intent = new Intent(MainActivity.this, EditorActivity.class);
             startActivity(intent);
         });
 
-        ListView inventoryListView = findViewById(R.id.list);
+        emptyView = findViewById(R.id.empty_view);
+        statsHeader = findViewById(R.id.stats_header);
 
-        View emptyView = findViewById(R.id.empty_view);
-        inventoryListView.setEmptyView(emptyView);
-
-        cursorAdapter = new InventoryCursorAdapter(this, null);
-        inventoryListView.setAdapter(cursorAdapter);
-
-        inventoryListView.setOnItemClickListener(((adapterView, view, position, id) -> {
+        cursorAdapter = new InventoryCursorAdapter(id -> {
             Intent intent = new Intent(MainActivity.this, EditorActivity.class);
             Uri currentInventoryUri = ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, id);
             intent.setData(currentInventoryUri);
             startActivity(intent);
-        }));
+        });
+
+        RecyclerView inventoryListView = findViewById(R.id.list);
+        LinearLayoutManager layoutManager = new LinearLayoutManager(this);
+        inventoryListView.setLayoutManager(layoutManager);
+        inventoryListView.setAdapter(cursorAdapter);
 
-        getLoaderManager().initLoader(ITEM_LOADER, null, this);
+        inventoryListView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                int itemCount = cursorAdapter.getItemCount();
+                if (itemCount > 0 && layoutManager.findLastVisibleItemPosition() >= itemCount - InventoryPagingQuery.PAGE_SIZE / 2) {
+                    itemsQuery.loadNextPage();
+                }
+            }
+        });
+
+        viewModel = new ViewModelProvider(this).get(InventoryListViewModel.class);
+        itemsQuery = viewModel.items(buildListUri());
+
+        // On a cold start, draw the rows saved last time while the database opens.
+        firstScreen = new FirstScreenSnapshot(this);
+        if (itemsQuery.getValue() == null && isDefaultList()) {
+            Cursor placeholder = firstScreen.read();
+            if (placeholder != null) {
+                cursorAdapter.showPlaceholder(placeholder);
+            }
+        }
+
+        itemsQuery.observe(this, this::bindItems);
+        viewModel.stats().observe(this, this::bindStats);
+        viewModel.csvProgress().observe(this, progress -> {
+            if (getSupportActionBar() != null) {
+                getSupportActionBar().setSubtitle(progress);
+            }
+        });
+
+        if (savedInstanceState == null) {
+            InventorySyncJobService.schedule(this);
+            MovementPruneJobService.schedule(this);
+            InventoryPurgeJobService.schedule(this);
+            StatsCheckJobService.schedule(this);
+            AnalyticsRefreshJobService.schedule(this);
+        }
     }
 
     @Override
@@ -64,9 +151,56 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         super.onStart();
     }
 
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        outState.putString(STATE_SORT, sort);
+        outState.putBoolean(STATE_IN_STOCK_ONLY, inStockOnly);
+        outState.putInt(STATE_PRICE_RANGE, priceRangeId);
+    }
+
+    /** The snapshot only holds the unfiltered name order the list opens with. */
+    private boolean isDefaultList() {
+        return InventoryContract.InventoryEntry.SORT_NAME.equals(sort) && !inStockOnly && priceRangeId == R.id.price_any;
+    }
+
+    private Uri buildListUri() {
+        Double minPrice = null;
+        Double maxPrice = null;
+        switch (priceRangeId) {
+            case R.id.price_under_10:
+                maxPrice = 10.0;
+                break;
+            case R.id.price_10_to_50:
+                minPrice = 10.0;
+                maxPrice = 50.0;
+                break;
+            case R.id.price_over_50:
+                minPrice = 50.0;
+                break;
+        }
+        return InventoryContract.InventoryEntry.buildListUri(sort, inStockOnly, minPrice, maxPrice);
+    }
+
+    private void reloadList() {
+        invalidateOptionsMenu();
+        viewModel.items(buildListUri());
+    }
+
+    /** Items are only marked deleted, so the snackbar can bring them all back until they are purged. */
     private void deleteAllItems() {
-        int rowsDeleted = getContentResolver().delete(InventoryContract.InventoryEntry.CONTENT_URI, null, null);
-        Log.v("CatalogActivity", rowsDeleted + " rows deleted from pet database");
+        long since = System.currentTimeMillis();
+        InventoryRepository repository = InventoryRepository.getInstance(this);
+        repository.delete(InventoryContract.InventoryEntry.CONTENT_URI, (uri, rowsDeleted) -> {
+            if (rowsDeleted == 0 || isFinishing()) {
+                return;
+            }
+            Snackbar.make(findViewById(android.R.id.content), getString(R.string.delete_all_finished, rowsDeleted),
+                    Snackbar.LENGTH_LONG)
+                    .setAction(R.string.action_undo, view -> repository.undoDelete(since, (ignored, restored) ->
+                            Toast.makeText(this, getString(R.string.delete_all_restored, restored), Toast.LENGTH_SHORT).show()))
+                    .show();
+        });
     }
 
     private void insertItem() {
@@ -77,15 +211,15 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER, "Rafael Baimurzin");
         values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL, "baimurzinrafael02@gmail.com");
 
-        Uri newUri = getContentResolver().insert(InventoryContract.InventoryEntry.CONTENT_URI, values);
-
-        if(newUri == null) {
-            Toast.makeText(this, getString(R.string.editor_insert_item_failed),
-                    Toast.LENGTH_SHORT).show();
-        } else {
-            Toast.makeText(this, getString(R.string.editor_insert_item_successful),
-                    Toast.LENGTH_SHORT).show();
-        }
+        InventoryRepository.getInstance(this).insert(values, (newUri, rowsAffected) -> {
+            if(newUri == null) {
+                Toast.makeText(this, getString(R.string.editor_insert_item_failed),
+                        Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(this, getString(R.string.editor_insert_item_successful),
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     @Override
@@ -94,38 +228,106 @@ public class MainActivity extends AppCompatActivity implements LoaderManager.Loa
         return true;
     }
 
+    @Override
+    public boolean onPrepareOptionsMenu(Menu menu) {
+        int sortId;
+        switch (sort) {
+            case InventoryContract.InventoryEntry.SORT_PRICE:
+                sortId = R.id.sort_price;
+                break;
+            case InventoryContract.InventoryEntry.SORT_QUANTITY:
+                sortId = R.id.sort_quantity;
+                break;
+            case InventoryContract.InventoryEntry.SORT_SUPPLIER:
+                sortId = R.id.sort_supplier;
+                break;
+            default:
+                sortId = R.id.sort_name;
+        }
+        menu.findItem(sortId).setChecked(true);
+        menu.findItem(R.id.action_in_stock_only).setChecked(inStockOnly);
+        menu.findItem(priceRangeId).setChecked(true);
+        return super.onPrepareOptionsMenu(menu);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         switch (item.getItemId()) {
             case R.id.action_insert_dummy_data:
                 insertItem();
                 return true;
+            case R.id.action_import_csv:
+                importCsv.launch(new String[] {"text/*"});
+                return true;
+            case R.id.action_export_csv:
+                exportCsv.launch("inventory.csv");
+                return true;
             case R.id.action_delete_all_entries:
                 deleteAllItems();
                 return true;
+            case R.id.sort_name:
+                sort = InventoryContract.InventoryEntry.SORT_NAME;
+                reloadList();
+                return true;
+            case R.id.sort_price:
+                sort = InventoryContract.InventoryEntry.SORT_PRICE;
+                reloadList();
+                return true;
+            case R.id.sort_quantity:
+                sort = InventoryContract.InventoryEntry.SORT_QUANTITY;
+                reloadList();
+                return true;
+            case R.id.sort_supplier:
+                sort = InventoryContract.InventoryEntry.SORT_SUPPLIER;
+                reloadList();
+                return true;
+            case R.id.action_in_stock_only:
+                inStockOnly = !inStockOnly;
+                reloadList();
+                return true;
+            case R.id.price_any:
+            case R.id.price_under_10:
+            case R.id.price_10_to_50:
+            case R.id.price_over_50:
+                priceRangeId = item.getItemId();
+                reloadList();
+                return true;
         }
         return super.onOptionsItemSelected(item);
     }
 
-    @Override
-    public Loader<Cursor> onCreateLoader(int i, Bundle bundle) {
-        String[] projection = {
-                InventoryContract.InventoryEntry._ID,
-                InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
-                InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
-                InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY
-        };
-
-        return new CursorLoader(this, InventoryContract.InventoryEntry.CONTENT_URI, projection, null, null, null);
+    private void bindItems(Cursor cursor) {
+        cursorAdapter.submitCursor(cursor, () -> {
+            itemsQuery.releaseStalePages(cursor);
+            emptyView.setVisibility(cursorAdapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+            if (cursor != null && isDefaultList()) {
+                firstScreen.update(cursor);
+            }
+        });
     }
 
-    @Override
-    public void onLoadFinished(Loader<Cursor> loader, Cursor cursor) {
-        cursorAdapter.swapCursor(cursor);
+    private void bindStats(@Nullable ContentValues stats) {
+        if (stats == null) {
+            statsHeader.setVisibility(View.GONE);
+            return;
+        }
+        statsHeader.setVisibility(View.VISIBLE);
+        statsHeader.setText(getString(R.string.stats_header,
+                stats.getAsDouble(InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE),
+                stats.getAsInteger(InventoryContract.StatsEntry.COLUMN_ITEM_COUNT),
+                stats.getAsInteger(InventoryContract.StatsEntry.COLUMN_OUT_OF_STOCK_COUNT),
+                stats.getAsInteger(InventoryContract.StatsEntry.COLUMN_LOW_STOCK_COUNT)));
     }
 
-    @Override
-    public void onLoaderReset(Loader<Cursor> loader) {
-        cursorAdapter.swapCursor(null);
+    /** Creates a document typed as CSV, so the picker offers a matching app and name. */
+    private static final class CreateCsvDocument extends ActivityResultContracts.CreateDocument {
+
+        @NonNull
+        @Override
+        public Intent createIntent(@NonNull Context context, @NonNull String input) {
+            return super.createIntent(context, input)
+                    .addCategory(Intent.CATEGORY_OPENABLE)
+                    .setType("text/csv");
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,275 @@
+package com.example.inventoryapp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import androidx.annotation.Nullable;
+import androidx.exifinterface.media.ExifInterface;
+
+import com.example.inventoryapp.data.ItemPhotos;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Square, center-cropped thumbnails of item photos for list rows and the editor. Thumbnails
+ * are served from a memory LRU, then from a disk cache, and only then decoded from the photo
+ * file, always subsampled so a full-size image is never held in memory. Photo files never
+ * change once written, so cached thumbnails are keyed by photo name and size and never go stale.
+ *
+ * <p>Each {@link #load} returns a {@link Request}; cancel it when the view is recycled and the
+ * decode is skipped if it has not started, and its result is dropped if it has.
+ */
+public final class ThumbnailLoader {
+
+    /** A pending thumbnail for one view. Cancel it on the main thread. */
+    public static final class Request {
+
+        final String key;
+
+        final String photo;
+
+        final int size;
+
+        final ImageView target;
+
+        volatile boolean cancelled;
+
+        Future<?> future;
+
+        Request(String photo, int size, ImageView target) {
+            this.key = photo + "@" + size;
+            this.photo = photo;
+            this.size = size;
+            this.target = target;
+        }
+
+        public void cancel() {
+            cancelled = true;
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
+    }
+
+    private static final String LOG_TAG = ThumbnailLoader.class.getSimpleName();
+
+    private static final String DISK_CACHE_DIRECTORY = "thumbnails";
+
+    private static final long DISK_CACHE_BYTES = 20 * 1024 * 1024;
+
+    private static final int JPEG_QUALITY = 85;
+
+    private static volatile ThumbnailLoader instance;
+
+    private final Context appContext;
+
+    private final File diskCacheDirectory;
+
+    private final LruCache<String, Bitmap> memoryCache;
+
+    // Two decodes at a time keep up with a fling without starving the list's own work.
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    // Bytes in the disk cache, counted on first use; guarded by this.
+    private long diskCacheSize = -1;
+
+    public static ThumbnailLoader getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ThumbnailLoader.class) {
+                if (instance == null) {
+                    instance = new ThumbnailLoader(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ThumbnailLoader(Context appContext) {
+        this.appContext = appContext;
+        diskCacheDirectory = new File(appContext.getCacheDir(), DISK_CACHE_DIRECTORY);
+        // An eighth of the heap holds several screens of list-row thumbnails.
+        memoryCache = new LruCache<String, Bitmap>((int) (Runtime.getRuntime().maxMemory() / 8)) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Shows the {@code size} by {@code size} pixel thumbnail of {@code photo} in {@code target},
+     * or {@code placeholder} until it is ready, or for good if there is no photo. Returns null
+     * when there is nothing left to wait for.
+     */
+    @Nullable
+    public Request load(@Nullable String photo, int size, ImageView target, int placeholder) {
+        if (photo == null) {
+            target.setImageResource(placeholder);
+            return null;
+        }
+        Request request = new Request(photo, size, target);
+        Bitmap cached = memoryCache.get(request.key);
+        if (cached != null) {
+            target.setImageBitmap(cached);
+            return null;
+        }
+        target.setImageResource(placeholder);
+        request.future = executor.submit(() -> {
+            Bitmap bitmap = loadInBackground(request);
+            if (bitmap == null) {
+                return;
+            }
+            memoryCache.put(request.key, bitmap);
+            mainHandler.post(() -> {
+                if (!request.cancelled) {
+                    request.target.setImageBitmap(bitmap);
+                }
+            });
+        });
+        return request;
+    }
+
+    @Nullable
+    private Bitmap loadInBackground(Request request) {
+        if (request.cancelled) {
+            return null;
+        }
+        File cached = new File(diskCacheDirectory, request.key + ".jpg");
+        if (cached.isFile()) {
+            Bitmap bitmap = BitmapFactory.decodeFile(cached.getPath());
+            if (bitmap != null) {
+                // Recently used entries are the last to go when the cache is trimmed.
+                //noinspection ResultOfMethodCallIgnored
+                cached.setLastModified(System.currentTimeMillis());
+                return bitmap;
+            }
+        }
+        // Checked again: decoding the photo below is the expensive part.
+        if (request.cancelled) {
+            return null;
+        }
+        Bitmap bitmap = decodeThumbnail(ItemPhotos.file(appContext, request.photo), request.size);
+        if (bitmap != null) {
+            writeToDiskCache(cached, bitmap);
+        }
+        return bitmap;
+    }
+
+    /** Decodes {@code photo} subsampled to at least {@code size} on its short side, then crops and scales it. */
+    @Nullable
+    static Bitmap decodeThumbnail(File photo, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(photo.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            Log.w(LOG_TAG, "Cannot read photo " + photo);
+            return null;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize(Math.min(options.outWidth, options.outHeight), size);
+        Bitmap sampled = BitmapFactory.decodeFile(photo.getPath(), options);
+        if (sampled == null) {
+            return null;
+        }
+
+        int side = Math.min(sampled.getWidth(), sampled.getHeight());
+        Matrix matrix = new Matrix();
+        float scale = Math.min(1f, size / (float) side);
+        matrix.postScale(scale, scale);
+        matrix.postRotate(rotation(photo));
+        Bitmap thumbnail = Bitmap.createBitmap(sampled, (sampled.getWidth() - side) / 2,
+                (sampled.getHeight() - side) / 2, side, side, matrix, true);
+        if (thumbnail != sampled) {
+            sampled.recycle();
+        }
+        return thumbnail;
+    }
+
+    /** The largest power of two that still leaves at least {@code size} pixels on the short side. */
+    static int sampleSize(int shortSide, int size) {
+        int sampleSize = 1;
+        while (shortSide / (sampleSize * 2) >= size) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    // Camera apps often store the pixels sideways and record the turn in EXIF.
+    private static int rotation(File photo) {
+        try {
+            switch (new ExifInterface(photo.getPath()).getAttributeInt(
+                    ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL)) {
+                case ExifInterface.ORIENTATION_ROTATE_90:
+                    return 90;
+                case ExifInterface.ORIENTATION_ROTATE_180:
+                    return 180;
+                case ExifInterface.ORIENTATION_ROTATE_270:
+                    return 270;
+                default:
+                    return 0;
+            }
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /** Writes through a temporary file, then drops the least recently used entries past the budget. */
+    private synchronized void writeToDiskCache(File file, Bitmap bitmap) {
+        if (!diskCacheDirectory.isDirectory() && !diskCacheDirectory.mkdirs()) {
+            return;
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            bitmap.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        } catch (IOException e) {
+            Log.w(LOG_TAG, "Failed to cache thumbnail " + file, e);
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            return;
+        }
+
+        if (diskCacheSize < 0) {
+            diskCacheSize = 0;
+            File[] files = diskCacheDirectory.listFiles();
+            for (File cached : files != null ? files : new File[0]) {
+                diskCacheSize += cached.length();
+            }
+        } else {
+            diskCacheSize += file.length();
+        }
+        if (diskCacheSize <= DISK_CACHE_BYTES) {
+            return;
+        }
+        File[] files = diskCacheDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        // Trim to 90% so the next few writes do not each trigger another pass.
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File cached : files) {
+            if (diskCacheSize <= DISK_CACHE_BYTES * 9 / 10) {
+                break;
+            }
+            long length = cached.length();
+            if (cached.delete()) {
+                diskCacheSize -= length;
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.inventoryapp.data;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Brings {@link InventoryContract.AnalyticsEntry#CONTENT_URI} up to date a few times a day while
+ * the device is idle. A refresh ranks every item, so it is kept off app start; screens that
+ * need the latest results can ask for one with {@link InventoryRepository#refreshAnalytics}.
+ */
+public class AnalyticsRefreshJobService extends JobService {
+
+    private static final String LOG_TAG = AnalyticsRefreshJobService.class.getSimpleName();
+
+    private static final int JOB_ID = 1022;
+
+    private static final long REFRESH_INTERVAL_MS = TimeUnit.HOURS.toMillis(6);
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    /** Schedules the refresh unless it is already scheduled. */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                return;
+            }
+        }
+        scheduler.schedule(new JobInfo.Builder(JOB_ID, new ComponentName(context, AnalyticsRefreshJobService.class))
+                .setRequiresDeviceIdle(true)
+                .setPeriodic(REFRESH_INTERVAL_MS)
+                .build());
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        executor.execute(() -> {
+            try {
+                getContentResolver().call(InventoryContract.AnalyticsEntry.CONTENT_URI,
+                        InventoryContract.AnalyticsEntry.METHOD_REFRESH_ANALYTICS, null, null);
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Failed to refresh inventory analytics", e);
+            }
+            jobFinished(params, false);
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // A refresh cut short leaves the dirty items for the next run to pick up.
+        return false;
+    }
+
+    @Override
+    public void onDestroy() {
+        executor.shutdown();
+        super.onDestroy();
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Collects the URIs changed by {@link InventoryProvider} and delivers them in batches. URIs
+ * changed inside a provider transaction are held until it commits (and dropped if it rolls
+ * back); everything is then coalesced over a short window and sent in one notifyChange call.
+ * Derived URIs, such as aggregates over the whole table, are notified with every delivery.
+ */
+final class ChangeNotifier {
+
+    private static final long WINDOW_MS = 30;
+
+    // Past this many item URIs, one notification on the collection is cheaper for everyone.
+    private static final int MAX_SCOPED_URIS = 64;
+
+    private final ContentResolver resolver;
+
+    private final Uri collectionUri;
+
+    private final Uri[] derivedUris;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final ThreadLocal<Batch> batch = new ThreadLocal<>();
+
+    private final Set<Uri> pending = new LinkedHashSet<>();
+
+    private boolean flushScheduled;
+
+    private final Runnable flush = this::flush;
+
+    ChangeNotifier(ContentResolver resolver, Uri collectionUri, Uri... derivedUris) {
+        this.resolver = resolver;
+        this.collectionUri = collectionUri;
+        this.derivedUris = derivedUris;
+    }
+
+    /** Starts holding notifications on the calling thread. Calls may nest. */
+    void beginBatch() {
+        Batch current = batch.get();
+        if (current == null) {
+            batch.set(new Batch());
+        } else {
+            current.depth++;
+        }
+    }
+
+    /** Ends the innermost batch; the outermost one releases its URIs if {@code committed}. */
+    void endBatch(boolean committed) {
+        Batch current = batch.get();
+        if (current.depth > 0) {
+            current.depth--;
+            current.committed &= committed;
+            return;
+        }
+        batch.remove();
+        if (committed && current.committed) {
+            enqueue(current.uris);
+        }
+    }
+
+    void notifyChange(Uri uri) {
+        Batch current = batch.get();
+        if (current != null) {
+            current.uris.add(uri);
+        } else {
+            enqueue(Collections.singleton(uri));
+        }
+    }
+
+    private void enqueue(Collection<Uri> uris) {
+        if (uris.isEmpty()) {
+            return;
+        }
+        synchronized (pending) {
+            pending.addAll(uris);
+            if (!flushScheduled) {
+                flushScheduled = true;
+                handler.postDelayed(flush, WINDOW_MS);
+            }
+        }
+    }
+
+    private void flush() {
+        Collection<Uri> uris;
+        synchronized (pending) {
+            flushScheduled = false;
+            boolean collapse = pending.size() > MAX_SCOPED_URIS || pending.contains(collectionUri);
+            uris = collapse ? new ArrayList<>(Collections.singleton(collectionUri)) : new ArrayList<>(pending);
+            // Item URIs do not reach observers of other paths, so derived ones are added here;
+            // those under the collection are already covered when it is notified as a whole.
+            for (Uri derived : derivedUris) {
+                if (collapse ? !isUnderCollection(derived) : !pending.contains(derived)) {
+                    uris.add(derived);
+                }
+            }
+            pending.clear();
+        }
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.R) {
+            resolver.notifyChange(uris, null, 0);
+        } else {
+            for (Uri uri : uris) {
+                resolver.notifyChange(uri, null);
+            }
+        }
+    }
+
+    private boolean isUnderCollection(Uri uri) {
+        return uri.toString().startsWith(collectionUri.toString() + "/");
+    }
+
+    private static final class Batch {
+        final Set<Uri> uris = new LinkedHashSet<>();
+        int depth;
+        boolean committed = true;
+    }
+}
@@ -0,0 +1,411 @@
+package com.example.inventoryapp.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.SQLException;
+import android.net.Uri;
+import android.os.RemoteException;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Pushes local item changes from {@link InventoryContract.ChangeEntry} to an HTTP endpoint and
+ * pulls remote ones back, in gzip-compressed JSON batches. Each direction saves a checkpoint
+ * after every acknowledged batch, so an interrupted sync resumes with the first batch that did
+ * not make it.
+ *
+ * <p>Items are matched across devices by SKU, and the server wins conflicts. Pulled changes
+ * without a SKU are ignored; pulled writes are flagged with
+ * {@link InventoryContract#CALLER_IS_SYNC_ADAPTER} so they are never pushed back.
+ *
+ * <p>The endpoint is expected to serve:
+ * <ul>
+ * <li>{@code POST <endpoint>/changes} with {@code {"device": ..., "changes": [...]}}, answering 2xx
+ * once the batch is stored.</li>
+ * <li>{@code GET <endpoint>/changes?device=...&limit=N[&since=token]}, answering
+ * {@code {"changes": [...], "next": token, "more": bool}} with other devices' changes.</li>
+ * </ul>
+ * A change is {@code {"op": "insert"|"update"|"delete", "sku", "name", "quantity", "price",
+ * "supplier", "email"}}; pushed changes also carry their {@code seq} and local {@code item_id},
+ * so the server can drop a batch that is resent after its acknowledgement was lost.
+ *
+ * <p>{@link #sync} does network and disk I/O and must not run on the main thread.
+ */
+public final class DeltaSyncEngine {
+
+    public static final class Result {
+
+        public final int pushed;
+
+        public final int pulled;
+
+        Result(int pushed, int pulled) {
+            this.pushed = pushed;
+            this.pulled = pulled;
+        }
+    }
+
+    private static final String LOG_TAG = DeltaSyncEngine.class.getSimpleName();
+
+    static final String PREFERENCES_NAME = "inventory_sync";
+
+    private static final String KEY_ENDPOINT = "endpoint";
+
+    private static final String KEY_DEVICE_ID = "device_id";
+
+    static final String KEY_PUSHED_SEQ = "pushed_seq";
+
+    static final String KEY_PULL_TOKEN = "pull_token";
+
+    static final int BATCH_SIZE = 200;
+
+    private static final String PATH_CHANGES = "changes";
+
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+
+    private static final int READ_TIMEOUT_MS = 30_000;
+
+    private static final String[] OP_NAMES = { null, "insert", "update", "delete" };
+
+    private static final Object SYNC_LOCK = new Object();
+
+    private static final String[] ID_PROJECTION = { InventoryContract.InventoryEntry._ID };
+
+    // Column positions in the change feed.
+    private static final int SEQ = 0;
+    private static final int ITEM_ID = 1;
+    private static final int OP = 2;
+    private static final int SKU = 3;
+    private static final int SOURCE = 5;
+    private static final int NAME = 6;
+    private static final int QUANTITY = 7;
+    private static final int PRICE = 8;
+    private static final int SUPPLIER = 9;
+    private static final int EMAIL = 10;
+
+    private final ContentResolver resolver;
+
+    private final SharedPreferences preferences;
+
+    private final Uri endpoint;
+
+    public DeltaSyncEngine(Context context, String endpoint) {
+        this.resolver = context.getApplicationContext().getContentResolver();
+        this.preferences = preferences(context);
+        this.endpoint = Uri.parse(endpoint);
+    }
+
+    /** Sets the base URL that {@link InventorySyncJobService} syncs with; null turns sync off. */
+    public static void setEndpoint(Context context, @Nullable String endpoint) {
+        preferences(context).edit().putString(KEY_ENDPOINT, endpoint).apply();
+        InventorySyncJobService.schedule(context);
+    }
+
+    @Nullable
+    public static String getEndpoint(Context context) {
+        return preferences(context).getString(KEY_ENDPOINT, null);
+    }
+
+    private static SharedPreferences preferences(Context context) {
+        return context.getApplicationContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /** Pushes every unsent local change, then pulls until the server has nothing more. */
+    public Result sync() throws IOException {
+        return sync(() -> false);
+    }
+
+    /**
+     * Like {@link #sync()}, but returns after the batch in progress once {@code stopped} reports
+     * true; the next sync carries on from the checkpoints. Only one sync runs in the process at
+     * a time, since two would push the same batch twice or rewind the pull token.
+     */
+    Result sync(StopCheck stopped) throws IOException {
+        synchronized (SYNC_LOCK) {
+            try {
+                int pushed = push(stopped);
+                int pulled = stopped.stopRequested() ? 0 : pull(stopped);
+                return new Result(pushed, pulled);
+            } catch (JSONException e) {
+                throw new IOException("Malformed sync payload", e);
+            }
+        }
+    }
+
+    private int push(StopCheck stopped) throws IOException, JSONException {
+        int pushed = 0;
+        while (true) {
+            long since = preferences.getLong(KEY_PUSHED_SEQ, 0);
+            long lastSeq = since;
+            boolean more;
+            // Later changes to the same item and SKU supersede earlier ones in the batch.
+            Map<String, JSONObject> latest = new LinkedHashMap<>();
+            try (Cursor cursor = resolver.query(InventoryContract.ChangeEntry.buildChangesUri(since, BATCH_SIZE),
+                    null, null, null, null)) {
+                if (cursor == null) {
+                    return pushed;
+                }
+                more = cursor.getCount() == BATCH_SIZE;
+                while (cursor.moveToNext()) {
+                    lastSeq = cursor.getLong(SEQ);
+                    if (cursor.getInt(SOURCE) == InventoryContract.ChangeEntry.SOURCE_SYNC) {
+                        continue;
+                    }
+                    JSONObject change = toJson(cursor);
+                    String key = cursor.getLong(ITEM_ID) + "/" + cursor.getString(SKU);
+                    latest.remove(key);
+                    if (change != null) {
+                        latest.put(key, change);
+                    }
+                }
+            }
+            if (lastSeq == since) {
+                return pushed;
+            }
+
+            if (!latest.isEmpty()) {
+                JSONObject body = new JSONObject()
+                        .put("device", deviceId())
+                        .put("changes", new JSONArray(latest.values()));
+                post(changesUrl().build(), body);
+                pushed += latest.size();
+            }
+            preferences.edit().putLong(KEY_PUSHED_SEQ, lastSeq).commit();
+            resolver.delete(InventoryContract.ChangeEntry.CONTENT_URI,
+                    InventoryContract.ChangeEntry.COLUMN_SEQ + " <= ?", new String[] { String.valueOf(lastSeq) });
+            if (!more || stopped.stopRequested()) {
+                return pushed;
+            }
+        }
+    }
+
+    /**
+     * Returns the change at the cursor, or null for an insert or update of an item that has
+     * since been deleted; its delete comes later in the log.
+     */
+    @Nullable
+    private static JSONObject toJson(Cursor cursor) throws JSONException {
+        int op = cursor.getInt(OP);
+        JSONObject change = new JSONObject()
+                .put("seq", cursor.getLong(SEQ))
+                .put("op", OP_NAMES[op])
+                .put("item_id", cursor.getLong(ITEM_ID))
+                .put("sku", cursor.isNull(SKU) ? JSONObject.NULL : cursor.getString(SKU));
+        if (op == InventoryContract.ChangeEntry.OP_DELETE) {
+            return change;
+        }
+        if (cursor.isNull(NAME)) {
+            return null;
+        }
+        return change.put("name", cursor.getString(NAME))
+                .put("quantity", cursor.getInt(QUANTITY))
+                .put("price", cursor.getDouble(PRICE))
+                .put("supplier", cursor.getString(SUPPLIER))
+                .put("email", cursor.isNull(EMAIL) ? JSONObject.NULL : cursor.getString(EMAIL));
+    }
+
+    private int pull(StopCheck stopped) throws IOException, JSONException {
+        int pulled = 0;
+        while (true) {
+            Uri.Builder url = changesUrl()
+                    .appendQueryParameter("device", deviceId())
+                    .appendQueryParameter("limit", String.valueOf(BATCH_SIZE));
+            String token = preferences.getString(KEY_PULL_TOKEN, null);
+            if (token != null) {
+                url.appendQueryParameter("since", token);
+            }
+            JSONObject page = get(url.build());
+            JSONArray changes = page.getJSONArray("changes");
+            apply(changes);
+            preferences.edit().putString(KEY_PULL_TOKEN, page.getString("next")).commit();
+            pulled += changes.length();
+            if (!page.optBoolean("more") || changes.length() == 0 || stopped.stopRequested()) {
+                return pulled;
+            }
+        }
+    }
+
+    /**
+     * Applies one pulled page in a single transaction. If the page is rejected, its changes are
+     * retried one by one and the ones that still fail are skipped, so a bad change cannot stall
+     * sync forever.
+     */
+    private void apply(JSONArray changes) throws JSONException {
+        Map<String, JSONObject> bySku = new LinkedHashMap<>();
+        for (int i = 0; i < changes.length(); i++) {
+            JSONObject change = changes.getJSONObject(i);
+            String sku = optString(change, "sku");
+            if (sku != null) {
+                bySku.remove(sku);
+                bySku.put(sku, change);
+            }
+        }
+
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        for (Map.Entry<String, JSONObject> entry : bySku.entrySet()) {
+            ContentProviderOperation operation = toOperation(entry.getKey(), entry.getValue());
+            if (operation != null) {
+                operations.add(operation);
+            }
+        }
+        if (operations.isEmpty()) {
+            return;
+        }
+
+        try {
+            resolver.applyBatch(InventoryContract.CONTENT_AUTHORITY, operations);
+            return;
+        } catch (OperationApplicationException | RemoteException | IllegalArgumentException | SQLException e) {
+            Log.w(LOG_TAG, "Pulled batch failed, applying its changes one at a time", e);
+        }
+        for (ContentProviderOperation operation : operations) {
+            try {
+                resolver.applyBatch(InventoryContract.CONTENT_AUTHORITY, new ArrayList<>(Collections.singletonList(operation)));
+            } catch (OperationApplicationException | RemoteException | IllegalArgumentException | SQLException e) {
+                Log.w(LOG_TAG, "Skipping pulled change for " + operation.getUri(), e);
+            }
+        }
+    }
+
+    @Nullable
+    private ContentProviderOperation toOperation(String sku, JSONObject change) throws JSONException {
+        long id = findBySku(sku);
+        if ("delete".equals(change.getString("op"))) {
+            return id == -1 ? null : ContentProviderOperation.newDelete(asSyncAdapter(itemUri(id))).build();
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, optString(change, "name"));
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, change.getInt("quantity"));
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, change.getDouble("price"));
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER, optString(change, "supplier"));
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL, optString(change, "email"));
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SKU, sku);
+        if (id == -1) {
+            return ContentProviderOperation.newInsert(asSyncAdapter(InventoryContract.InventoryEntry.CONTENT_URI))
+                    .withValues(values).build();
+        }
+        return ContentProviderOperation.newUpdate(asSyncAdapter(itemUri(id))).withValues(values).build();
+    }
+
+    private long findBySku(String sku) {
+        try (Cursor cursor = resolver.query(InventoryContract.InventoryEntry.buildSkuUri(sku), ID_PROJECTION,
+                null, null, null)) {
+            return cursor != null && cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        }
+    }
+
+    private static Uri itemUri(long id) {
+        return ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, id);
+    }
+
+    private static Uri asSyncAdapter(Uri uri) {
+        return uri.buildUpon().appendQueryParameter(InventoryContract.CALLER_IS_SYNC_ADAPTER, "true").build();
+    }
+
+    /** JSON null and missing keys both read as null, unlike {@link JSONObject#optString}. */
+    @Nullable
+    private static String optString(JSONObject object, String name) throws JSONException {
+        return object.isNull(name) ? null : object.getString(name);
+    }
+
+    private String deviceId() {
+        String id = preferences.getString(KEY_DEVICE_ID, null);
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+            preferences.edit().putString(KEY_DEVICE_ID, id).commit();
+        }
+        return id;
+    }
+
+    private Uri.Builder changesUrl() {
+        return endpoint.buildUpon().appendPath(PATH_CHANGES);
+    }
+
+    private static void post(Uri url, JSONObject body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        byte[] payload = compressed.toByteArray();
+
+        HttpURLConnection connection = open(url);
+        try {
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+            connection.setRequestProperty("Content-Encoding", "gzip");
+            connection.setFixedLengthStreamingMode(payload.length);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(payload);
+            }
+            checkResponse(connection, url);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static JSONObject get(Uri url) throws IOException, JSONException {
+        HttpURLConnection connection = open(url);
+        try {
+            checkResponse(connection, url);
+            InputStream in = connection.getInputStream();
+            if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                in = new GZIPInputStream(in);
+            }
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream stream = in) {
+                byte[] buffer = new byte[8192];
+                int read;
+                while ((read = stream.read(buffer)) != -1) {
+                    body.write(buffer, 0, read);
+                }
+            }
+            return new JSONObject(new String(body.toByteArray(), StandardCharsets.UTF_8));
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static HttpURLConnection open(Uri url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url.toString()).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        // Asking explicitly turns off transparent decompression, so responses are unpacked in get().
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        return connection;
+    }
+
+    private static void checkResponse(HttpURLConnection connection, Uri url) throws IOException {
+        int code = connection.getResponseCode();
+        if (code / 100 != 2) {
+            throw new IOException("HTTP " + code + " from " + url);
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package com.example.inventoryapp.data;
+
+import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes the rows behind {@link InventoryContract.AnalyticsEntry}. The price, quantity and
+ * demand of every item are kept in primitive arrays between refreshes: a refresh reloads only
+ * the items listed in the dirty table, re-ranks all items in memory and writes just the rows
+ * whose results changed. The first refresh in a process seeds those arrays from the stored
+ * results, so a restart does not rewrite the table. All items are read again only after a
+ * failed refresh and when the demand window moves on to a new day, and even then only the
+ * rows whose results changed are written.
+ *
+ * <p>Ranking needs all values sorted, which is where the time goes for large inventories, so the
+ * per-item passes and the sort are split across a fork-join pool.
+ */
+final class InventoryAnalytics {
+
+    static final double CLASS_A_SHARE = 0.80;
+
+    static final double CLASS_B_SHARE = 0.95;
+
+    static final int DEMAND_DAYS = 28;
+
+    static final int COVER_DAYS = 14;
+
+    // Ranges up to this many items are processed by one task without splitting.
+    private static final int LEAF_SIZE = 8192;
+
+    private static final String SQL_SELECT_ITEMS = "SELECT " + InventoryContract.InventoryEntry._ID + ", "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", " + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY
+            + " FROM " + InventoryContract.InventoryEntry.TABLE_NAME + " WHERE " + InventoryContract.InventoryEntry.COLUMN_ITEM_DELETED_AT
+            + " IS NULL ORDER BY " + InventoryContract.InventoryEntry._ID;
+
+    // Walks the (item_id, period) primary key, so the rows come out in id order for merging.
+    private static final String SQL_SELECT_DEMAND = "SELECT " + InventoryContract.MovementEntry.COLUMN_ITEM_ID + ", sum("
+            + InventoryContract.MovementEntry.COLUMN_UNITS_OUT + ") FROM " + InventoryContract.MovementEntry.DAILY_TABLE_NAME
+            + " WHERE " + InventoryContract.MovementEntry.COLUMN_PERIOD + " >= ? GROUP BY "
+            + InventoryContract.MovementEntry.COLUMN_ITEM_ID + " ORDER BY " + InventoryContract.MovementEntry.COLUMN_ITEM_ID;
+
+    // Deleted and purged items come back with a null price.
+    private static final String SQL_SELECT_DIRTY = "SELECT d." + InventoryContract.AnalyticsEntry.COLUMN_ITEM_ID + ", i."
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", i." + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY
+            + ", (SELECT sum(" + InventoryContract.MovementEntry.COLUMN_UNITS_OUT + ") FROM "
+            + InventoryContract.MovementEntry.DAILY_TABLE_NAME + " m WHERE m." + InventoryContract.MovementEntry.COLUMN_ITEM_ID
+            + " = d." + InventoryContract.AnalyticsEntry.COLUMN_ITEM_ID + " AND m." + InventoryContract.MovementEntry.COLUMN_PERIOD
+            + " >= ?) FROM " + InventoryMigrations.ANALYTICS_DIRTY_TABLE_NAME + " d LEFT JOIN "
+            + InventoryContract.InventoryEntry.TABLE_NAME + " i ON i." + InventoryContract.InventoryEntry._ID + " = d."
+            + InventoryContract.AnalyticsEntry.COLUMN_ITEM_ID + " AND i." + InventoryContract.InventoryEntry.COLUMN_ITEM_DELETED_AT
+            + " IS NULL ORDER BY d." + InventoryContract.AnalyticsEntry.COLUMN_ITEM_ID;
+
+    private static final String SQL_CLEAR_DIRTY = "DELETE FROM " + InventoryMigrations.ANALYTICS_DIRTY_TABLE_NAME;
+
+    private static final String SQL_REPLACE_RESULT = "INSERT OR REPLACE INTO " + InventoryContract.AnalyticsEntry.TABLE_NAME + " ("
+            + InventoryContract.AnalyticsEntry.COLUMN_ITEM_ID + ", "
+            + InventoryContract.AnalyticsEntry.COLUMN_VALUE + ", "
+            + InventoryContract.AnalyticsEntry.COLUMN_ABC_CLASS + ", "
+            + InventoryContract.AnalyticsEntry.COLUMN_DAILY_DEMAND + ", "
+            + InventoryContract.AnalyticsEntry.COLUMN_REORDER_QUANTITY + ") VALUES (?, ?, ?, ?, ?)";
+
+    private static final String SQL_DELETE_RESULT = "DELETE FROM " + InventoryContract.AnalyticsEntry.TABLE_NAME
+            + " WHERE " + InventoryContract.AnalyticsEntry.COLUMN_ITEM_ID + " = ?";
+
+    // Items that are gone come back with a null price, so their rows are deleted on the next write.
+    private static final String SQL_SELECT_STORED = "SELECT a." + InventoryContract.AnalyticsEntry.COLUMN_ITEM_ID + ", i."
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", i." + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY
+            + ", a." + InventoryContract.AnalyticsEntry.COLUMN_DAILY_DEMAND + ", a." + InventoryContract.AnalyticsEntry.COLUMN_VALUE
+            + ", a." + InventoryContract.AnalyticsEntry.COLUMN_ABC_CLASS + ", a." + InventoryContract.AnalyticsEntry.COLUMN_REORDER_QUANTITY
+            + " FROM " + InventoryContract.AnalyticsEntry.TABLE_NAME + " a LEFT JOIN " + InventoryContract.InventoryEntry.TABLE_NAME
+            + " i ON i." + InventoryContract.InventoryEntry._ID + " = a." + InventoryContract.AnalyticsEntry.COLUMN_ITEM_ID
+            + " AND i." + InventoryContract.InventoryEntry.COLUMN_ITEM_DELETED_AT + " IS NULL ORDER BY a."
+            + InventoryContract.AnalyticsEntry.COLUMN_ITEM_ID;
+
+    // Day of the demand window the stored results were computed for; absent while they are not current.
+    private static final String KEY_DEMAND_DAY = "analytics_demand_day";
+
+    /** Outcome of one {@link #refresh}. */
+    static final class Result {
+
+        final int items;
+
+        final int written;
+
+        Result(int items, int written) {
+            this.items = items;
+            this.written = written;
+        }
+    }
+
+    private final ForkJoinPool pool;
+
+    private final SharedPreferences preferences;
+
+    // What the table holds as of the last refresh; null until one has succeeded in this process.
+    @Nullable
+    private Items items;
+
+    InventoryAnalytics(ForkJoinPool pool, SharedPreferences preferences) {
+        this.pool = pool;
+        this.preferences = preferences;
+    }
+
+    /**
+     * Brings the analytics table up to date as of {@code now}. Only reading the changed items
+     * and clearing the dirty table is a write transaction, and a short one; whole-table reads
+     * run outside any transaction and writing the results is a transaction of its own, so
+     * writers are not held up while items are read in bulk or ranked.
+     */
+    synchronized Result refresh(SQLiteDatabase database, long now) {
+        Items previous = items;
+        // Stays null if anything below fails, so the next refresh starts over from the table.
+        items = null;
+
+        long today = InventoryContract.MovementEntry.dayOf(now);
+        String[] since = { String.valueOf(today - DEMAND_DAYS + 1) };
+        boolean current = preferences.getLong(KEY_DEMAND_DAY, -1) == today;
+        // Cleared first: once the dirty table is, the stored results are only current after this refresh.
+        preferences.edit().remove(KEY_DEMAND_DAY).commit();
+        if (previous == null) {
+            previous = loadStored(database);
+        }
+
+        Items next = null;
+        database.beginTransaction();
+        try {
+            if (current) {
+                next = loadChanged(database, since, previous);
+            }
+            database.execSQL(SQL_CLEAR_DIRTY);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+        if (next == null) {
+            // Items changed from here on are marked dirty again, so the next refresh picks them up.
+            next = loadAll(database, since);
+        }
+
+        analyze(pool, next.size, next.prices, next.quantities, next.demand, next.values, next.classes, next.reorder);
+        int written = write(database, previous, next);
+
+        items = next;
+        preferences.edit().putLong(KEY_DEMAND_DAY, today).apply();
+        return new Result(next.size, written);
+    }
+
+    /** The inputs and results of the last refresh, as stored; items that are gone have a NaN price. */
+    private static Items loadStored(SQLiteDatabase database) {
+        try (Cursor cursor = database.rawQuery(SQL_SELECT_STORED, null)) {
+            Items items = new Items(cursor.getCount());
+            while (cursor.moveToNext()) {
+                items.add(cursor.getLong(0), cursor.isNull(1) ? Double.NaN : cursor.getDouble(1), cursor.getInt(2),
+                        cursor.getDouble(3));
+                int i = items.size - 1;
+                items.values[i] = cursor.getDouble(4);
+                items.classes[i] = (byte) cursor.getInt(5);
+                items.reorder[i] = cursor.getInt(6);
+            }
+            return items;
+        }
+    }
+
+    private static Items loadAll(SQLiteDatabase database, String[] since) {
+        Items items;
+        try (Cursor cursor = database.rawQuery(SQL_SELECT_ITEMS, null)) {
+            items = new Items(cursor.getCount());
+            while (cursor.moveToNext()) {
+                items.add(cursor.getLong(0), cursor.getDouble(1), cursor.getInt(2), 0);
+            }
+        }
+        try (Cursor cursor = database.rawQuery(SQL_SELECT_DEMAND, since)) {
+            int i = 0;
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                while (i < items.size && items.ids[i] < id) {
+                    i++;
+                }
+                if (i < items.size && items.ids[i] == id) {
+                    items.demand[i] = dailyDemand(cursor.getLong(1));
+                }
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Merges the reloaded dirty items into a copy of {@code previous}, both in id order, leaving
+     * out the items that are gone.
+     */
+    private static Items loadChanged(SQLiteDatabase database, String[] since, Items previous) {
+        try (Cursor cursor = database.rawQuery(SQL_SELECT_DIRTY, since)) {
+            Items items = new Items(previous.size + cursor.getCount());
+            int i = 0;
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                for (; i < previous.size && previous.ids[i] < id; i++) {
+                    items.carry(previous, i);
+                }
+                if (i < previous.size && previous.ids[i] == id) {
+                    i++;
+                }
+                if (!cursor.isNull(1)) {
+                    items.add(id, cursor.getDouble(1), cursor.getInt(2), dailyDemand(cursor.getLong(3)));
+                }
+            }
+            for (; i < previous.size; i++) {
+                items.carry(previous, i);
+            }
+            return items;
+        }
+    }
+
+    private static double dailyDemand(long unitsOut) {
+        return unitsOut / (double) DEMAND_DAYS;
+    }
+
+    /** Writes the rows of {@code next} that differ from {@code previous} and deletes the ones it dropped. */
+    private static int write(SQLiteDatabase database, Items previous, Items next) {
+        int written = 0;
+        database.beginTransaction();
+        SQLiteStatement replace = database.compileStatement(SQL_REPLACE_RESULT);
+        SQLiteStatement delete = database.compileStatement(SQL_DELETE_RESULT);
+        try {
+            int i = 0;
+            for (int n = 0; n < next.size; n++) {
+                long id = next.ids[n];
+                for (; i < previous.size && previous.ids[i] < id; i++, written++) {
+                    delete.bindLong(1, previous.ids[i]);
+                    delete.executeUpdateDelete();
+                }
+                boolean unchanged = false;
+                if (i < previous.size && previous.ids[i] == id) {
+                    unchanged = previous.sameResult(i++, next, n);
+                }
+                if (unchanged) {
+                    continue;
+                }
+                replace.bindLong(1, id);
+                replace.bindDouble(2, next.values[n]);
+                replace.bindLong(3, next.classes[n]);
+                replace.bindDouble(4, next.demand[n]);
+                replace.bindLong(5, next.reorder[n]);
+                replace.executeInsert();
+                written++;
+            }
+            for (; i < previous.size; i++, written++) {
+                delete.bindLong(1, previous.ids[i]);
+                delete.executeUpdateDelete();
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            replace.close();
+            delete.close();
+            database.endTransaction();
+        }
+        return written;
+    }
+
+    /**
+     * Fills {@code values}, {@code classes} and {@code reorder} for the first {@code size} items.
+     * Results do not depend on the pool's parallelism.
+     */
+    static void analyze(ForkJoinPool pool, int size, double[] prices, int[] quantities, double[] demand,
+                        double[] values, byte[] classes, int[] reorder) {
+        pool.invoke(new ForEach(0, size, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                values[i] = prices[i] * quantities[i];
+                reorder[i] = Math.max(0, (int) Math.ceil(demand[i] * COVER_DAYS) - quantities[i]);
+            }
+        }));
+
+        double[] sorted = Arrays.copyOf(values, size);
+        pool.invoke(new Sort(sorted, new double[size], 0, size, true));
+        double total = 0;
+        for (int i = size - 1; i >= 0; i--) {
+            total += sorted[i];
+        }
+        double cutA = cutOff(sorted, total, CLASS_A_SHARE);
+        double cutB = cutOff(sorted, total, CLASS_B_SHARE);
+
+        pool.invoke(new ForEach(0, size, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                classes[i] = (byte) (values[i] >= cutA ? InventoryContract.AnalyticsEntry.CLASS_A
+                        : values[i] >= cutB ? InventoryContract.AnalyticsEntry.CLASS_B
+                        : InventoryContract.AnalyticsEntry.CLASS_C);
+            }
+        }));
+    }
+
+    /**
+     * Value of the least valuable item among the top items that together hold {@code share} of
+     * {@code total}. Items worth at least that much make the cut, so equal values share a class.
+     */
+    private static double cutOff(double[] ascending, double total, double share) {
+        if (total <= 0) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double target = total * share;
+        double cumulative = 0;
+        for (int i = ascending.length - 1; i > 0; i--) {
+            cumulative += ascending[i];
+            if (cumulative >= target) {
+                return ascending[i];
+            }
+        }
+        return ascending[0];
+    }
+
+    /** Per-item inputs and results in ascending id order; entries from {@code size} on are unused. */
+    private static final class Items {
+
+        int size;
+
+        final long[] ids;
+
+        final double[] prices;
+
+        final int[] quantities;
+
+        final double[] demand;
+
+        final double[] values;
+
+        final byte[] classes;
+
+        final int[] reorder;
+
+        Items(int capacity) {
+            ids = new long[capacity];
+            prices = new double[capacity];
+            quantities = new int[capacity];
+            demand = new double[capacity];
+            values = new double[capacity];
+            classes = new byte[capacity];
+            reorder = new int[capacity];
+        }
+
+        void add(long id, double price, int quantity, double dailyDemand) {
+            ids[size] = id;
+            prices[size] = price;
+            quantities[size] = quantity;
+            demand[size] = dailyDemand;
+            size++;
+        }
+
+        /** Adds item {@code i} of {@code other} unless it is gone. */
+        void carry(Items other, int i) {
+            if (!Double.isNaN(other.prices[i])) {
+                add(other.ids[i], other.prices[i], other.quantities[i], other.demand[i]);
+            }
+        }
+
+        boolean sameResult(int i, Items other, int j) {
+            return values[i] == other.values[j] && classes[i] == other.classes[j]
+                    && demand[i] == other.demand[j] && reorder[i] == other.reorder[j];
+        }
+    }
+
+    interface RangeBody {
+        void apply(int from, int to);
+    }
+
+    private static final class ForEach extends RecursiveAction {
+
+        private final int lo;
+
+        private final int hi;
+
+        private final RangeBody body;
+
+        ForEach(int lo, int hi, RangeBody body) {
+            this.lo = lo;
+            this.hi = hi;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= LEAF_SIZE) {
+                body.apply(lo, hi);
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new ForEach(lo, mid, body), new ForEach(mid, hi, body));
+        }
+    }
+
+    /**
+     * Merge sort of {@code a[lo, hi)} that leaves the result in {@code a} if {@code intoA} and in
+     * {@code b} otherwise. Halves are sorted into the other array and merged back, so no level
+     * copies. (Arrays.parallelSort needs API 24.)
+     */
+    private static final class Sort extends RecursiveAction {
+
+        private final double[] a;
+
+        private final double[] b;
+
+        private final int lo;
+
+        private final int hi;
+
+        private final boolean intoA;
+
+        Sort(double[] a, double[] b, int lo, int hi, boolean intoA) {
+            this.a = a;
+            this.b = b;
+            this.lo = lo;
+            this.hi = hi;
+            this.intoA = intoA;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= LEAF_SIZE) {
+                Arrays.sort(a, lo, hi);
+                if (!intoA) {
+                    System.arraycopy(a, lo, b, lo, hi - lo);
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new Sort(a, b, lo, mid, !intoA), new Sort(a, b, mid, hi, !intoA));
+            if (intoA) {
+                new Merge(b, lo, mid, mid, hi, a, lo).compute();
+            } else {
+                new Merge(a, lo, mid, mid, hi, b, lo).compute();
+            }
+        }
+    }
+
+    /**
+     * Merges the sorted runs {@code src[lo1, hi1)} and {@code src[lo2, hi2)} into {@code dst}
+     * from {@code out}, splitting the longer run at its middle element so both halves merge in
+     * parallel.
+     */
+    private static final class Merge extends RecursiveAction {
+
+        private final double[] src;
+
+        private final int lo1;
+
+        private final int hi1;
+
+        private final int lo2;
+
+        private final int hi2;
+
+        private final double[] dst;
+
+        private final int out;
+
+        Merge(double[] src, int lo1, int hi1, int lo2, int hi2, double[] dst, int out) {
+            this.src = src;
+            this.lo1 = lo1;
+            this.hi1 = hi1;
+            this.lo2 = lo2;
+            this.hi2 = hi2;
+            this.dst = dst;
+            this.out = out;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi1 - lo1 < hi2 - lo2) {
+                new Merge(src, lo2, hi2, lo1, hi1, dst, out).compute();
+                return;
+            }
+            if ((hi1 - lo1) + (hi2 - lo2) <= LEAF_SIZE) {
+                int i = lo1;
+                int j = lo2;
+                int k = out;
+                while (i < hi1 && j < hi2) {
+                    dst[k++] = src[j] < src[i] ? src[j++] : src[i++];
+                }
+                System.arraycopy(src, i, dst, k, hi1 - i);
+                System.arraycopy(src, j, dst, k + hi1 - i, hi2 - j);
+                return;
+            }
+            int mid1 = (lo1 + hi1) >>> 1;
+            int mid2 = lowerBound(src, lo2, hi2, src[mid1]);
+            int midOut = out + (mid1 - lo1) + (mid2 - lo2);
+            dst[midOut] = src[mid1];
+            invokeAll(new Merge(src, lo1, mid1, lo2, mid2, dst, out),
+                    new Merge(src, mid1 + 1, hi1, mid2, hi2, dst, midOut + 1));
+        }
+
+        private static int lowerBound(double[] a, int lo, int hi, double key) {
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (a[mid] < key) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+    }
+}
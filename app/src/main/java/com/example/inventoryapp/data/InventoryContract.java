@@ -4,6 +4,8 @@ import android.content.ContentResolver;
 import android.net.Uri;
 import android.provider.BaseColumns;
 
+import androidx.annotation.Nullable;
+
 public class InventoryContract {
 
     public static final String CONTENT_AUTHORITY = "com.example.inventoryapp";
@@ -12,14 +14,59 @@ public class InventoryContract {
 
     public static final String PATH_INVENTORY = "inventory";
 
+    public static final String PATH_SEARCH = "search";
+
+    public static final String PATH_STATS = "stats";
+
+    public static final String PATH_SKU = "sku";
+
+    public static final String PATH_SUPPLIERS = "suppliers";
+
+    public static final String PATH_ITEMS = "items";
+
+    public static final String PATH_CHANGES = "changes";
+
+    public static final String PATH_MOVEMENTS = "movements";
+
+    public static final String PATH_DAILY = "daily";
+
+    public static final String PATH_WEEKLY = "weekly";
+
+    public static final String PATH_ANALYTICS = "analytics";
+
+    public static final String PATH_PACKED = "packed";
+
+    /**
+     * Query parameter marking a write as coming from sync. Such writes are still recorded in
+     * {@link ChangeEntry} but flagged {@link ChangeEntry#SOURCE_SYNC}, so they are not pushed back.
+     */
+    public static final String CALLER_IS_SYNC_ADAPTER = "caller_is_sync_adapter";
+
     private InventoryContract() {}
 
     public static final class InventoryEntry implements BaseColumns {
 
         public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_INVENTORY);
 
+        public static final Uri CONTENT_SEARCH_URI = Uri.withAppendedPath(CONTENT_URI, PATH_SEARCH);
+
+        /**
+         * Every live item in {@link PackedItems} format, for bulk readers such as export and sync.
+         * Open it with {@link ContentResolver#openFileDescriptor} in mode {@code "r"} and read it
+         * with {@link PackedItems.Reader}.
+         */
+        public static final Uri CONTENT_PACKED_URI = Uri.withAppendedPath(CONTENT_URI, PATH_PACKED);
+
         public static final String TABLE_NAME = "inventory";
 
+        public static final String SEARCH_TABLE_NAME = "inventory_fts";
+
+        /**
+         * Items joined with their supplier. Reads go through this view so the supplier and
+         * email columns keep their names even though they are stored in {@link SupplierEntry}.
+         */
+        public static final String VIEW_NAME = "inventory_view";
+
         public static final String _ID = BaseColumns._ID;
 
         public static final String COLUMN_ITEM_NAME = "name";
@@ -32,12 +79,514 @@ public class InventoryContract {
 
         public static final String COLUMN_ITEM_EMAIL = "email";
 
+        /** Row id in {@link SupplierEntry}, resolved by the provider from supplier and email. */
+        public static final String COLUMN_ITEM_SUPPLIER_ID = "supplier_id";
+
+        /** Barcode or stock-keeping unit; optional, but unique among items that have one. */
+        public static final String COLUMN_ITEM_SKU = "sku";
+
+        /** Starts at 0 and goes up by one with every update; read-only. See {@link #buildVersionedUri}. */
+        public static final String COLUMN_ITEM_VERSION = "version";
+
+        /**
+         * File name of the item's photo within {@link ItemPhotos#directory}, or null. Photo files
+         * are never rewritten: a new photo gets a new name, so thumbnails keyed by it stay valid.
+         */
+        public static final String COLUMN_ITEM_PHOTO = "photo";
+
+        /**
+         * When the item was deleted, in milliseconds since the epoch, or null while it is live.
+         * Only the table has it: deleted items are left out of every query until
+         * {@link #METHOD_UNDO_DELETE} brings them back or {@link #METHOD_PURGE_DELETED} removes them.
+         */
+        public static final String COLUMN_ITEM_DELETED_AT = "deleted_at";
+
+        public static final String QUERY_PARAMETER_LIMIT = "limit";
+
+        /** List order, one of the {@code SORT_} constants; each is served by its own index. */
+        public static final String QUERY_PARAMETER_SORT = "sort";
+
+        /** Repeated once per column of {@link #sortKeyColumns}, holding the last row already loaded. */
+        public static final String QUERY_PARAMETER_AFTER = "after";
+
+        /** {@code true} to leave out items with no units left. */
+        public static final String QUERY_PARAMETER_IN_STOCK = "in_stock";
+
+        public static final String QUERY_PARAMETER_MIN_PRICE = "min_price";
+
+        public static final String QUERY_PARAMETER_MAX_PRICE = "max_price";
+
+        public static final String QUERY_PARAMETER_EXPECTED_VERSION = "expected_version";
+
+        /** Repeated once per column of {@link #CONTENT_PACKED_URI} to read; all columns if absent. */
+        public static final String QUERY_PARAMETER_COLUMN = "column";
+
+        public static final String SORT_NAME = "name";
+
+        public static final String SORT_PRICE = "price";
+
+        public static final String SORT_QUANTITY = "quantity";
+
+        /** By supplier name, then name within each supplier. */
+        public static final String SORT_SUPPLIER = "supplier";
+
+        /**
+         * {@link android.content.ContentProvider#call} method that adds {@link #EXTRA_DELTA} to the
+         * quantity of item {@link #EXTRA_ITEM_ID} in one statement. The result holds the new
+         * {@link #EXTRA_QUANTITY}, or -1 if the item is missing or the stock would go negative.
+         */
+        public static final String METHOD_ADJUST_QUANTITY = "adjust_quantity";
+
+        /**
+         * Batched {@link #METHOD_ADJUST_QUANTITY} for a scan session: applies {@link #EXTRA_DELTAS}
+         * to {@link #EXTRA_ITEM_IDS} in one transaction and returns {@link #EXTRA_QUANTITIES},
+         * with -1 for each rejected adjustment.
+         */
+        public static final String METHOD_ADJUST_QUANTITIES = "adjust_quantities";
+
+        public static final String EXTRA_ITEM_ID = "item_id";
+
+        public static final String EXTRA_ITEM_IDS = "item_ids";
+
+        public static final String EXTRA_DELTA = "delta";
+
+        public static final String EXTRA_DELTAS = "deltas";
+
+        public static final String EXTRA_QUANTITY = "quantity";
+
+        public static final String EXTRA_QUANTITIES = "quantities";
+
+        /**
+         * {@link android.content.ContentProvider#call} method that restores every item deleted at
+         * or after {@link #EXTRA_SINCE} and not purged yet, and returns how many in
+         * {@link #EXTRA_RESTORED}. Items whose SKU has been taken in the meantime stay deleted.
+         */
+        public static final String METHOD_UNDO_DELETE = "undo_delete";
+
+        /**
+         * {@link android.content.ContentProvider#call} method that permanently removes at most
+         * {@link #EXTRA_LIMIT} of the items deleted before {@link #EXTRA_BEFORE} in one short
+         * transaction, and returns how many in {@link #EXTRA_PURGED}.
+         */
+        public static final String METHOD_PURGE_DELETED = "purge_deleted";
+
+        /** Milliseconds since the epoch. */
+        public static final String EXTRA_SINCE = "since";
+
+        public static final String EXTRA_RESTORED = "restored";
+
+        /** Milliseconds since the epoch. */
+        public static final String EXTRA_BEFORE = "before";
+
+        public static final String EXTRA_LIMIT = "limit";
+
+        public static final String EXTRA_PURGED = "purged";
+
         public static final String CONTENT_LIST_TYPE =
                 ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_INVENTORY;
 
         public static final String CONTENT_ITEM_TYPE =
                 ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_INVENTORY;
 
+        public static final String CONTENT_PACKED_TYPE =
+                "application/vnd." + CONTENT_AUTHORITY + "." + PATH_PACKED;
+
+        /**
+         * Returns a URI for all items in {@code sort} order, optionally only those in stock and
+         * within a price range. Pass null for an open end of the range.
+         */
+        public static Uri buildListUri(String sort, boolean inStockOnly, @Nullable Double minPrice,
+                                       @Nullable Double maxPrice) {
+            sortKeyColumns(sort);
+            Uri.Builder builder = CONTENT_URI.buildUpon().appendQueryParameter(QUERY_PARAMETER_SORT, sort);
+            if (inStockOnly) {
+                builder.appendQueryParameter(QUERY_PARAMETER_IN_STOCK, "true");
+            }
+            if (minPrice != null) {
+                builder.appendQueryParameter(QUERY_PARAMETER_MIN_PRICE, String.valueOf(minPrice));
+            }
+            if (maxPrice != null) {
+                builder.appendQueryParameter(QUERY_PARAMETER_MAX_PRICE, String.valueOf(maxPrice));
+            }
+            return builder.build();
+        }
+
+        /**
+         * Returns {@code listUri} limited to the next {@code limit} items after the row whose
+         * {@link #sortKeyColumns} values are {@code afterKey}. Pass a null key for the first page.
+         */
+        public static Uri buildPageUri(Uri listUri, @Nullable String[] afterKey, int limit) {
+            Uri.Builder builder = listUri.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_LIMIT, String.valueOf(limit));
+            if (afterKey != null) {
+                for (String value : afterKey) {
+                    builder.appendQueryParameter(QUERY_PARAMETER_AFTER, value);
+                }
+            }
+            return builder.build();
+        }
+
+        /**
+         * Returns the columns that order a list in {@code sort} order, ending with {@link #_ID} so
+         * every row has a distinct key. A page key holds one value for each.
+         */
+        public static String[] sortKeyColumns(String sort) {
+            switch (sort) {
+                case SORT_NAME:
+                    return new String[] { COLUMN_ITEM_NAME, _ID };
+                case SORT_PRICE:
+                    return new String[] { COLUMN_ITEM_PRICE, _ID };
+                case SORT_QUANTITY:
+                    return new String[] { COLUMN_ITEM_QUANTITY, _ID };
+                case SORT_SUPPLIER:
+                    return new String[] { COLUMN_ITEM_SUPPLIER, COLUMN_ITEM_SUPPLIER_ID, COLUMN_ITEM_NAME, _ID };
+                default:
+                    throw new IllegalArgumentException("Unknown sort " + sort);
+            }
+        }
+
+        /**
+         * Returns a URI matching items whose name, supplier or email contain words starting with
+         * each word of {@code query}, best name matches first.
+         */
+        public static Uri buildSearchUri(String query) {
+            return CONTENT_SEARCH_URI.buildUpon().appendPath(query).build();
+        }
+
+        /**
+         * Returns {@code itemUri} for an update that only applies while the item is still at
+         * {@code version}. If the update changes no rows, someone else updated or deleted the
+         * item since that version was read.
+         */
+        public static Uri buildVersionedUri(Uri itemUri, long version) {
+            return itemUri.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_EXPECTED_VERSION, String.valueOf(version))
+                    .build();
+        }
+
+        /** Returns a URI matching the one item with {@code sku}, or nothing for an unknown code. */
+        public static Uri buildSkuUri(String sku) {
+            return CONTENT_URI.buildUpon().appendPath(PATH_SKU).appendPath(sku).build();
+        }
+
+        /** Returns a {@link #CONTENT_PACKED_URI} reading only {@code columns}, in that order. */
+        public static Uri buildPackedUri(String... columns) {
+            Uri.Builder builder = CONTENT_PACKED_URI.buildUpon();
+            for (String column : columns) {
+                builder.appendQueryParameter(QUERY_PARAMETER_COLUMN, column);
+            }
+            return builder.build();
+        }
+
+    }
+
+    /**
+     * Distinct (name, email) suppliers referenced by items. Rows are created by the provider when
+     * an item is written with a supplier it has not seen before.
+     */
+    public static final class SupplierEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(BASE_CONTENT_URI, PATH_SUPPLIERS);
+
+        public static final String TABLE_NAME = "suppliers";
+
+        public static final String _ID = BaseColumns._ID;
+
+        public static final String COLUMN_SUPPLIER_NAME = "name";
+
+        /** Empty rather than null when the supplier has no email, so (name, email) can be unique. */
+        public static final String COLUMN_SUPPLIER_EMAIL = "email";
+
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_SUPPLIERS;
+
+        /** Returns a URI for the items of one supplier, ordered by name, with the item columns. */
+        public static Uri buildItemsUri(long supplierId) {
+            return CONTENT_URI.buildUpon().appendPath(String.valueOf(supplierId)).appendPath(PATH_ITEMS).build();
+        }
+
+    }
+
+    /**
+     * Append-only log of item changes, one row per insert, update and delete, written by
+     * triggers in the same transaction as the change. Sequence numbers only ever grow, so a
+     * reader that remembers the last one it saw can resume with {@link #buildChangesUri}.
+     * Rows carry the item's current state; deleted items have null item columns.
+     */
+    public static final class ChangeEntry {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(InventoryEntry.CONTENT_URI, PATH_CHANGES);
+
+        public static final String TABLE_NAME = "inventory_changes";
+
+        public static final String COLUMN_SEQ = "seq";
+
+        public static final String COLUMN_ITEM_ID = "item_id";
+
+        /** One of {@link #OP_INSERT}, {@link #OP_UPDATE} or {@link #OP_DELETE}. */
+        public static final String COLUMN_OP = "op";
+
+        /** SKU the change applies to; for deletes, the SKU the item had. */
+        public static final String COLUMN_SKU = "sku";
+
+        /** Milliseconds since the epoch. */
+        public static final String COLUMN_CHANGED_AT = "changed_at";
+
+        /** {@link #SOURCE_LOCAL} or {@link #SOURCE_SYNC}. */
+        public static final String COLUMN_SOURCE = "source";
+
+        public static final int OP_INSERT = 1;
+
+        public static final int OP_UPDATE = 2;
+
+        public static final int OP_DELETE = 3;
+
+        public static final int SOURCE_LOCAL = 0;
+
+        public static final int SOURCE_SYNC = 1;
+
+        public static final String QUERY_PARAMETER_SINCE = "since";
+
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_INVENTORY + "." + PATH_CHANGES;
+
+        /** Returns a URI for up to {@code limit} changes with a sequence number above {@code since}, oldest first. */
+        public static Uri buildChangesUri(long since, int limit) {
+            return CONTENT_URI.buildUpon()
+                    .appendQueryParameter(QUERY_PARAMETER_SINCE, String.valueOf(since))
+                    .appendQueryParameter(InventoryEntry.QUERY_PARAMETER_LIMIT, String.valueOf(limit))
+                    .build();
+        }
+
+    }
+
+    /**
+     * Append-only history of stock levels: one row for every item insert with stock and every
+     * quantity change, written by triggers in the same transaction as the change. Raw rows are
+     * pruned after a retention period with {@link #METHOD_PRUNE_MOVEMENTS}.
+     *
+     * <p>Daily and weekly totals per item ({@link #CONTENT_DAILY_URI}, {@link #CONTENT_WEEKLY_URI})
+     * are updated with every movement and never pruned, so reports read them instead of the raw
+     * history. Periods are UTC days and weeks starting on Monday, numbered from the epoch; see
+     * {@link #dayOf} and {@link #weekOf}. Movements, daily and weekly rows are read-only.
+     */
+    public static final class MovementEntry implements BaseColumns {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(InventoryEntry.CONTENT_URI, PATH_MOVEMENTS);
+
+        public static final Uri CONTENT_DAILY_URI = Uri.withAppendedPath(CONTENT_URI, PATH_DAILY);
+
+        public static final Uri CONTENT_WEEKLY_URI = Uri.withAppendedPath(CONTENT_URI, PATH_WEEKLY);
+
+        public static final String TABLE_NAME = "stock_movements";
+
+        public static final String DAILY_TABLE_NAME = "stock_daily";
+
+        public static final String WEEKLY_TABLE_NAME = "stock_weekly";
+
+        public static final String _ID = BaseColumns._ID;
+
+        public static final String COLUMN_ITEM_ID = "item_id";
+
+        /** Units added, or removed if negative. */
+        public static final String COLUMN_DELTA = "delta";
+
+        /** Quantity after the movement. */
+        public static final String COLUMN_QUANTITY = "quantity";
+
+        /** Milliseconds since the epoch. */
+        public static final String COLUMN_MOVED_AT = "moved_at";
+
+        /** Rollup period: {@link #dayOf} for daily rows, {@link #weekOf} for weekly rows. */
+        public static final String COLUMN_PERIOD = "period";
+
+        /** Rollup: sum of positive deltas in the period. */
+        public static final String COLUMN_UNITS_IN = "units_in";
+
+        /** Rollup: sum of negative deltas in the period, as a positive number. */
+        public static final String COLUMN_UNITS_OUT = "units_out";
+
+        /** Rollup: number of movements in the period. */
+        public static final String COLUMN_MOVEMENTS = "movements";
+
+        public static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+        /**
+         * {@link android.content.ContentProvider#call} method that deletes at most
+         * {@link #EXTRA_LIMIT} of the oldest movements before {@link #EXTRA_BEFORE} in one short
+         * transaction, and returns how many in {@link #EXTRA_DELETED}. Rollups are not affected.
+         */
+        public static final String METHOD_PRUNE_MOVEMENTS = "prune_movements";
+
+        /** Milliseconds since the epoch. */
+        public static final String EXTRA_BEFORE = "before";
+
+        public static final String EXTRA_LIMIT = "limit";
+
+        public static final String EXTRA_DELETED = "deleted";
+
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_INVENTORY + "." + PATH_MOVEMENTS;
+
+        public static final String CONTENT_ROLLUP_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_INVENTORY + "." + PATH_MOVEMENTS + ".rollup";
+
+        /** Daily period holding {@code millis}. */
+        public static long dayOf(long millis) {
+            return millis / DAY_MS;
+        }
+
+        /** Weekly period holding {@code millis}; the epoch fell on a Thursday, weeks start on Monday. */
+        public static long weekOf(long millis) {
+            return (dayOf(millis) + 3) / 7;
+        }
+
+        /** Start of weekly period {@code week}, in milliseconds since the epoch. */
+        public static long weekStart(long week) {
+            return (week * 7 - 3) * DAY_MS;
+        }
+
+    }
+
+    /**
+     * Per-item ABC classification and reorder suggestions, one row per item, read-only. Rows are
+     * written by {@link #METHOD_REFRESH_ANALYTICS}, which only reloads items whose price or
+     * quantity changed since the previous refresh, so reading them never recomputes anything.
+     *
+     * <p>Items are ranked by stock value (price times quantity): the most valuable items that
+     * together hold 80% of the total value are class A, the next 15% class B, and the rest class
+     * C. Daily demand is the average of units out over the last 28 days of
+     * {@link MovementEntry#CONTENT_DAILY_URI}, and the suggested reorder quantity tops the stock
+     * up to 14 days of that demand.
+     */
+    public static final class AnalyticsEntry {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(InventoryEntry.CONTENT_URI, PATH_ANALYTICS);
+
+        public static final String TABLE_NAME = "item_analytics";
+
+        public static final String COLUMN_ITEM_ID = "item_id";
+
+        /** Price times quantity. */
+        public static final String COLUMN_VALUE = "value";
+
+        /** {@link #CLASS_A}, {@link #CLASS_B} or {@link #CLASS_C}. */
+        public static final String COLUMN_ABC_CLASS = "abc_class";
+
+        public static final String COLUMN_DAILY_DEMAND = "daily_demand";
+
+        /** Units to order, 0 if the stock covers the demand. */
+        public static final String COLUMN_REORDER_QUANTITY = "reorder_quantity";
+
+        public static final int CLASS_A = 1;
+
+        public static final int CLASS_B = 2;
+
+        public static final int CLASS_C = 3;
+
+        /**
+         * {@link android.content.ContentProvider#call} method that brings the rows up to date.
+         * The result holds the number of {@link #EXTRA_ITEMS} analysed and of
+         * {@link #EXTRA_WRITTEN} rows that changed.
+         */
+        public static final String METHOD_REFRESH_ANALYTICS = "refresh_analytics";
+
+        public static final String EXTRA_ITEMS = "items";
+
+        public static final String EXTRA_WRITTEN = "written";
+
+        public static final String CONTENT_LIST_TYPE =
+                ContentResolver.CURSOR_DIR_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_INVENTORY + "." + PATH_ANALYTICS;
+
+    }
+
+    /**
+     * Provider timings for collection from field devices. {@link android.content.ContentProvider#call}
+     * with {@link #METHOD_METRICS} on {@link InventoryEntry#CONTENT_URI} returns a bundle with
+     * {@link #EXTRA_SERIES}, one nested bundle per operation and URI pattern such as
+     * {@code "query inventory/#"}, plus cache and SKU filter counters.
+     */
+    public static final class Metrics {
+
+        public static final String METHOD_METRICS = "metrics";
+
+        /** Optional boolean extra for the call: clear the counters after taking the snapshot. */
+        public static final String EXTRA_RESET = "reset";
+
+        public static final String EXTRA_SERIES = "series";
+
+        public static final String EXTRA_COUNT = "count";
+
+        public static final String EXTRA_ERRORS = "errors";
+
+        public static final String EXTRA_TOTAL_NANOS = "total_nanos";
+
+        public static final String EXTRA_MAX_NANOS = "max_nanos";
+
+        /** Rows returned by queries, or written by inserts, updates and deletes. */
+        public static final String EXTRA_ROWS = "rows";
+
+        /** Rows held by the first cursor window of each query, summed. */
+        public static final String EXTRA_WINDOW_ROWS = "window_rows";
+
+        /** Queries whose result did not fit in one cursor window. */
+        public static final String EXTRA_SPILLED_WINDOWS = "spilled_windows";
+
+        /** Call counts by latency; element {@code i} counts calls under 2<sup>i</sup> microseconds. */
+        public static final String EXTRA_HISTOGRAM = "histogram";
+
+        public static final String EXTRA_P50_MICROS = "p50_micros";
+
+        public static final String EXTRA_P90_MICROS = "p90_micros";
+
+        public static final String EXTRA_P99_MICROS = "p99_micros";
+
+        public static final String EXTRA_ITEM_CACHE_HITS = "item_cache_hits";
+
+        public static final String EXTRA_ITEM_CACHE_MISSES = "item_cache_misses";
+
+        public static final String EXTRA_ITEM_CACHE_EVICTIONS = "item_cache_evictions";
+
+        public static final String EXTRA_SKU_LOOKUPS = "sku_lookups";
+
+        public static final String EXTRA_SKU_REJECTIONS = "sku_rejections";
+
+    }
+
+    /**
+     * Single-row summary of the inventory table, kept current by triggers on every write so
+     * reading it never scans the table. Observers are notified whenever any item changes.
+     */
+    public static final class StatsEntry {
+
+        public static final Uri CONTENT_URI = Uri.withAppendedPath(InventoryEntry.CONTENT_URI, PATH_STATS);
+
+        public static final String TABLE_NAME = "inventory_stats";
+
+        /** Sum of price * quantity over all items. */
+        public static final String COLUMN_TOTAL_VALUE = "total_value";
+
+        public static final String COLUMN_ITEM_COUNT = "item_count";
+
+        public static final String COLUMN_OUT_OF_STOCK_COUNT = "out_of_stock_count";
+
+        /** Items with between 1 and {@link #LOW_STOCK_THRESHOLD} units left. */
+        public static final String COLUMN_LOW_STOCK_COUNT = "low_stock_count";
+
+        public static final int LOW_STOCK_THRESHOLD = 5;
+
+        /**
+         * {@link android.content.ContentProvider#call} method that recomputes the summary from
+         * the inventory table and rebuilds it if it has drifted. The result's
+         * {@link #EXTRA_REBUILT} tells whether a rebuild was needed.
+         */
+        public static final String METHOD_CHECK_STATS = "check_stats";
+
+        public static final String EXTRA_REBUILT = "rebuilt";
+
+        public static final String CONTENT_ITEM_TYPE =
+                ContentResolver.CURSOR_ITEM_BASE_TYPE + "/" + CONTENT_AUTHORITY + "/" + PATH_INVENTORY + "." + PATH_STATS;
+
     }
 
 }
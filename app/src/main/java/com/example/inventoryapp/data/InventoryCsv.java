@@ -0,0 +1,458 @@
+package com.example.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.CharArrayBuffer;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteConstraintException;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming CSV import and export of the inventory table. Both directions hold at most one
+ * buffer and one chunk of rows in memory, so they run in flat memory regardless of file size.
+ *
+ * <p>The format is RFC 4180: a header row naming the {@link #COLUMNS} (in any order, email
+ * and SKU optional), comma separators and double-quoted fields where needed.
+ */
+public final class InventoryCsv {
+
+    public interface ProgressListener {
+        /** Called on the importing/exporting thread after each chunk and once at the end. */
+        void onProgress(long rows, long bytes, double rowsPerSecond);
+    }
+
+    public static final class Result {
+
+        public final long rows;
+        public final long rejectedRows;
+        public final long elapsedMillis;
+
+        Result(long rows, long rejectedRows, long elapsedMillis) {
+            this.rows = rows;
+            this.rejectedRows = rejectedRows;
+            this.elapsedMillis = elapsedMillis;
+        }
+    }
+
+    static final String[] COLUMNS = {
+            InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_SKU
+    };
+
+    private static final String LOG_TAG = InventoryCsv.class.getSimpleName();
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Rows per bulkInsert transaction. */
+    private static final int CHUNK_SIZE = 1000;
+
+    private static final int EXPORT_PROGRESS_INTERVAL = 10000;
+
+    // Position of the email in COLUMNS.
+    private static final int EMAIL_COLUMN = 4;
+
+    private InventoryCsv() {}
+
+    /**
+     * Exports every item to {@code out}, reading straight from a cursor window at a time.
+     * The stream is flushed but not closed.
+     */
+    public static Result exportTo(ContentResolver resolver, OutputStream out, @Nullable ProgressListener listener)
+            throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        long rows = 0;
+        CountingOutputStream counter = new CountingOutputStream(out);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(counter, UTF_8), BUFFER_SIZE);
+
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            writer.write(COLUMNS[i]);
+        }
+        writer.write("\r\n");
+
+        try (Cursor cursor = resolver.query(InventoryContract.InventoryEntry.CONTENT_URI, COLUMNS, null, null,
+                InventoryContract.InventoryEntry._ID)) {
+            if (cursor == null) {
+                throw new IOException("Inventory query failed");
+            }
+            CharArrayBuffer text = new CharArrayBuffer(128);
+            while (cursor.moveToNext()) {
+                writeText(writer, cursor, 0, text);
+                writer.write(',');
+                writer.write(Integer.toString(cursor.getInt(1)));
+                writer.write(',');
+                writer.write(Double.toString(cursor.getDouble(2)));
+                writer.write(',');
+                writeText(writer, cursor, 3, text);
+                writer.write(',');
+                writeText(writer, cursor, EMAIL_COLUMN, text);
+                writer.write(',');
+                writeText(writer, cursor, 5, text);
+                writer.write("\r\n");
+
+                if (++rows % EXPORT_PROGRESS_INTERVAL == 0 && listener != null) {
+                    // Trails the rows by what the writers still buffer.
+                    listener.onProgress(rows, counter.bytes, rate(rows, start));
+                }
+            }
+        }
+        writer.flush();
+
+        if (listener != null) {
+            listener.onProgress(rows, counter.bytes, rate(rows, start));
+        }
+        return new Result(rows, 0, SystemClock.elapsedRealtime() - start);
+    }
+
+    private static void writeText(Writer writer, Cursor cursor, int column, CharArrayBuffer text) throws IOException {
+        if (cursor.isNull(column)) {
+            return;
+        }
+        cursor.copyStringToBuffer(column, text);
+        boolean quote = false;
+        for (int i = 0; i < text.sizeCopied && !quote; i++) {
+            char c = text.data[i];
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            writer.write(text.data, 0, text.sizeCopied);
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < text.sizeCopied; i++) {
+            char c = text.data[i];
+            if (c == '"') {
+                writer.write('"');
+            }
+            writer.write(c);
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Imports items from {@code channel}, committing every {@link #CHUNK_SIZE} valid rows in one
+     * transaction. Rows failing {@link InventoryProvider}'s insert validation are skipped and
+     * counted. The channel is not closed.
+     */
+    public static Result importFrom(ContentResolver resolver, ReadableByteChannel channel,
+                                    @Nullable ProgressListener listener) throws IOException {
+        Parser parser = new Parser(resolver, listener);
+        ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+        CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+        CharsetDecoder decoder = UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+        boolean endOfInput = false;
+        while (!endOfInput) {
+            int read = channel.read(bytes);
+            if (read < 0) {
+                endOfInput = true;
+            } else {
+                parser.bytes += read;
+            }
+            bytes.flip();
+            decoder.decode(bytes, chars, endOfInput);
+            if (endOfInput) {
+                decoder.flush(chars);
+            }
+            bytes.compact();
+
+            chars.flip();
+            while (chars.hasRemaining()) {
+                parser.accept(chars.get());
+            }
+            chars.clear();
+        }
+        return parser.finish();
+    }
+
+    private static double rate(long rows, long startMillis) {
+        long elapsed = Math.max(1, SystemClock.elapsedRealtime() - startMillis);
+        return rows * 1000.0 / elapsed;
+    }
+
+    /** Character-at-a-time RFC 4180 parser that reuses one builder per column across records. */
+    private static final class Parser {
+
+        private static final int FIELD_START = 0;
+        private static final int UNQUOTED = 1;
+        private static final int QUOTED = 2;
+        private static final int QUOTE_IN_QUOTED = 3;
+
+        private final ContentResolver resolver;
+        private final ProgressListener listener;
+        private final long start = SystemClock.elapsedRealtime();
+
+        private final List<StringBuilder> fields = new ArrayList<>();
+        private int fieldCount;
+        private int state = FIELD_START;
+        private boolean atStart = true;
+
+        // Position of each of COLUMNS in the file, -1 if absent; null until the header is read.
+        private int[] columnPositions;
+
+        private final ContentValues[] chunk = new ContentValues[CHUNK_SIZE];
+        private int chunkSize;
+
+        private long line = 1;
+        private long bytes;
+        private long rows;
+        private long rejectedRows;
+
+        Parser(ContentResolver resolver, @Nullable ProgressListener listener) {
+            this.resolver = resolver;
+            this.listener = listener;
+        }
+
+        void accept(char c) {
+            if (atStart) {
+                atStart = false;
+                if (c == '\uFEFF') {
+                    return;
+                }
+            }
+            switch (state) {
+                case QUOTED:
+                    if (c == '"') {
+                        state = QUOTE_IN_QUOTED;
+                    } else {
+                        field().append(c);
+                    }
+                    return;
+                case QUOTE_IN_QUOTED:
+                    if (c == '"') {
+                        field().append(c);
+                        state = QUOTED;
+                        return;
+                    }
+                    state = UNQUOTED;
+                    break;
+                case FIELD_START:
+                    if (c == '"') {
+                        state = QUOTED;
+                        return;
+                    }
+                    break;
+                default:
+                    break;
+            }
+
+            if (c == ',') {
+                endField();
+            } else if (c == '\n') {
+                endField();
+                endRecord();
+                line++;
+            } else if (c != '\r') {
+                field().append(c);
+                state = UNQUOTED;
+            }
+        }
+
+        Result finish() {
+            if (state != FIELD_START || fieldCount > 0) {
+                endField();
+                endRecord();
+            }
+            flushChunk();
+            if (columnPositions == null) {
+                Log.w(LOG_TAG, "CSV import found no header row");
+            }
+            return new Result(rows, rejectedRows, SystemClock.elapsedRealtime() - start);
+        }
+
+        private StringBuilder field() {
+            if (fieldCount == fields.size()) {
+                fields.add(new StringBuilder());
+            }
+            return fields.get(fieldCount);
+        }
+
+        private void endField() {
+            field();
+            fieldCount++;
+            state = FIELD_START;
+        }
+
+        private void endRecord() {
+            boolean blank = fieldCount == 1 && fields.get(0).length() == 0;
+            if (!blank) {
+                if (columnPositions == null) {
+                    readHeader();
+                } else {
+                    readItem();
+                }
+            }
+            for (int i = 0; i < fieldCount; i++) {
+                fields.get(i).setLength(0);
+            }
+            fieldCount = 0;
+        }
+
+        private void readHeader() {
+            columnPositions = new int[COLUMNS.length];
+            for (int column = 0; column < COLUMNS.length; column++) {
+                columnPositions[column] = -1;
+                for (int i = 0; i < fieldCount; i++) {
+                    if (fields.get(i).toString().trim().equalsIgnoreCase(COLUMNS[column])) {
+                        columnPositions[column] = i;
+                    }
+                }
+            }
+        }
+
+        private void readItem() {
+            ContentValues values = new ContentValues(COLUMNS.length);
+            values.put(COLUMNS[0], text(0));
+            long quantity = parseInteger(0 <= columnPositions[1] && columnPositions[1] < fieldCount
+                    ? fields.get(columnPositions[1]) : null);
+            if (quantity >= 0 && quantity <= Integer.MAX_VALUE) {
+                values.put(COLUMNS[1], (int) quantity);
+            }
+            String price = text(2);
+            if (price != null) {
+                try {
+                    values.put(COLUMNS[2], Double.parseDouble(price));
+                } catch (NumberFormatException ignored) {
+                    // Left out, so validation rejects the row.
+                }
+            }
+            values.put(COLUMNS[3], text(3));
+            values.put(COLUMNS[EMAIL_COLUMN], text(EMAIL_COLUMN));
+            values.put(COLUMNS[5], text(5));
+
+            try {
+                InventoryProvider.validateItem(values);
+            } catch (IllegalArgumentException e) {
+                if (rejectedRows++ < 10) {
+                    Log.w(LOG_TAG, "Skipping CSV line " + line + ": " + e.getMessage());
+                }
+                return;
+            }
+
+            chunk[chunkSize++] = values;
+            if (chunkSize == CHUNK_SIZE) {
+                flushChunk();
+            }
+        }
+
+        @Nullable
+        private String text(int column) {
+            int position = columnPositions[column];
+            if (position < 0 || position >= fieldCount) {
+                return null;
+            }
+            StringBuilder field = fields.get(position);
+            int begin = 0;
+            int end = field.length();
+            while (begin < end && field.charAt(begin) == ' ') {
+                begin++;
+            }
+            while (end > begin && field.charAt(end - 1) == ' ') {
+                end--;
+            }
+            // A supplier without an email is stored with an empty one, which export writes as an
+            // empty field; keep it empty so the row names that same supplier. Elsewhere empty means missing.
+            return begin == end && column != EMAIL_COLUMN ? null : field.substring(begin, end);
+        }
+
+        /** Parses a non-negative integer without materialising a String; -1 if invalid. */
+        private static long parseInteger(@Nullable StringBuilder field) {
+            if (field == null) {
+                return -1;
+            }
+            long value = 0;
+            int digits = 0;
+            for (int i = 0; i < field.length(); i++) {
+                char c = field.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    if (++digits > 10) {
+                        return -1;
+                    }
+                    value = value * 10 + (c - '0');
+                } else if (c != ' ') {
+                    return -1;
+                }
+            }
+            return digits == 0 ? -1 : value;
+        }
+
+        private void flushChunk() {
+            if (chunkSize == 0) {
+                return;
+            }
+            ContentValues[] values = chunk;
+            if (chunkSize < CHUNK_SIZE) {
+                values = new ContentValues[chunkSize];
+                System.arraycopy(chunk, 0, values, 0, chunkSize);
+            }
+            try {
+                rows += resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, values);
+            } catch (SQLiteConstraintException e) {
+                // A duplicate SKU aborts the whole chunk; retry row by row to keep the others.
+                for (ContentValues value : values) {
+                    if (resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, value) != null) {
+                        rows++;
+                    } else if (rejectedRows++ < 10) {
+                        Log.w(LOG_TAG, "Skipping CSV item with duplicate SKU "
+                                + value.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_SKU));
+                    }
+                }
+            }
+            chunkSize = 0;
+
+            if (listener != null) {
+                listener.onProgress(rows, bytes, rate(rows, start));
+            }
+        }
+    }
+
+    /** Counts the encoded bytes written, for export progress. */
+    private static final class CountingOutputStream extends FilterOutputStream {
+
+        long bytes;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            bytes += length;
+        }
+    }
+}
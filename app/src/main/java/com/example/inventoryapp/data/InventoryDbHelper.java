@@ -1,6 +1,7 @@
 package com.example.inventoryapp.data;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
 import com.example.inventoryapp.data.InventoryContract.InventoryEntry;
@@ -9,14 +10,27 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
 
     private static final String DATABASE_NAME = "inventory.db";
 
-    private static final int DATABASE_VERSION = 1;
+    static final int DATABASE_VERSION = 13;
+
+    private static final int CACHE_SIZE_KIB = 8 * 1024;
+
+    private static final long MMAP_SIZE_BYTES = 64L * 1024 * 1024;
 
     public InventoryDbHelper(Context context) {
         super(context, DATABASE_NAME, null, DATABASE_VERSION);
     }
 
+    /**
+     * Creates the version 1 schema and replays every migration on top of it, so fresh installs
+     * and upgraded databases always end up with the same schema.
+     */
     @Override
     public void onCreate(SQLiteDatabase db) {
+        createVersion1Schema(db);
+        InventoryMigrations.migrate(db, 1, DATABASE_VERSION);
+    }
+
+    static void createVersion1Schema(SQLiteDatabase db) {
         String SQL_CREATE_INVENTORY_TABLE ="CREATE TABLE " + InventoryEntry.TABLE_NAME + " ("
                 + InventoryEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
                 + InventoryEntry.COLUMN_ITEM_NAME + " TEXT NOT NULL, "
@@ -29,7 +43,29 @@ public class InventoryDbHelper extends SQLiteOpenHelper {
     }
 
     @Override
-    public void onUpgrade(SQLiteDatabase sqLiteDatabase, int i, int i1) {
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        // Lets the purge hand freed pages back a few at a time. A new database only takes this
+        // before WAL is on; an existing one switches at its next VACUUM, which the purge runs once.
+        setPragma(db, "auto_vacuum = INCREMENTAL");
+        db.enableWriteAheadLogging();
+        db.setForeignKeyConstraintsEnabled(true);
+        // WAL with synchronous=NORMAL only syncs at checkpoints and cannot corrupt the database on
+        // power loss; the last commits may roll back, which is acceptable for local edits.
+        setPragma(db, "synchronous = NORMAL");
+        setPragma(db, "cache_size = -" + CACHE_SIZE_KIB);
+        setPragma(db, "mmap_size = " + MMAP_SIZE_BYTES);
+    }
+
+    static void setPragma(SQLiteDatabase db, String pragma) {
+        // Some pragmas return their new value, which execSQL() rejects.
+        try (Cursor cursor = db.rawQuery("PRAGMA " + pragma, null)) {
+            cursor.moveToFirst();
+        }
+    }
 
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        InventoryMigrations.migrate(db, oldVersion, newVersion);
     }
 }
@@ -0,0 +1,717 @@
+package com.example.inventoryapp.data;
+
+import android.database.sqlite.SQLiteDatabase;
+
+import com.example.inventoryapp.data.InventoryContract.AnalyticsEntry;
+import com.example.inventoryapp.data.InventoryContract.ChangeEntry;
+import com.example.inventoryapp.data.InventoryContract.InventoryEntry;
+import com.example.inventoryapp.data.InventoryContract.MovementEntry;
+import com.example.inventoryapp.data.InventoryContract.StatsEntry;
+import com.example.inventoryapp.data.InventoryContract.SupplierEntry;
+
+/**
+ * Ordered schema migrations. {@link InventoryDbHelper} replays them from version 1 on fresh
+ * installs and from the installed version on upgrade. To change the schema, append a step and
+ * bump {@link InventoryDbHelper#DATABASE_VERSION}; never edit a step that has shipped.
+ */
+final class InventoryMigrations {
+
+    abstract static class Migration {
+
+        final int startVersion;
+
+        Migration(int startVersion) {
+            this.startVersion = startVersion;
+        }
+
+        abstract void migrate(SQLiteDatabase db);
+    }
+
+    // Backs keyset paging: ORDER BY name, _id walks this index since _id is the implicit rowid suffix.
+    private static final String SQL_CREATE_NAME_INDEX = "CREATE INDEX IF NOT EXISTS inventory_name_idx ON "
+            + InventoryEntry.TABLE_NAME + " (" + InventoryEntry.COLUMN_ITEM_NAME + ");";
+
+    // FTS4 rather than FTS5: the platform SQLite is not built with FTS5. The prefix indexes keep
+    // search-as-you-type queries off the full term list.
+    private static final String SQL_CREATE_SEARCH_TABLE = "CREATE VIRTUAL TABLE " + InventoryEntry.SEARCH_TABLE_NAME
+            + " USING fts4(" + InventoryEntry.COLUMN_ITEM_NAME + ", "
+            + InventoryEntry.COLUMN_ITEM_SUPPLIER + ", "
+            + InventoryEntry.COLUMN_ITEM_EMAIL + ", tokenize=unicode61, prefix=\"2,3\");";
+
+    private static final String SQL_FILL_SEARCH_TABLE = "INSERT INTO " + InventoryEntry.SEARCH_TABLE_NAME
+            + " (docid, " + InventoryEntry.COLUMN_ITEM_NAME + ", " + InventoryEntry.COLUMN_ITEM_SUPPLIER + ", " + InventoryEntry.COLUMN_ITEM_EMAIL + ")"
+            + " SELECT " + InventoryEntry._ID + ", " + InventoryEntry.COLUMN_ITEM_NAME + ", " + InventoryEntry.COLUMN_ITEM_SUPPLIER + ", " + InventoryEntry.COLUMN_ITEM_EMAIL
+            + " FROM " + InventoryEntry.TABLE_NAME + ";";
+
+    private static final String SQL_CREATE_SEARCH_INSERT_TRIGGER = "CREATE TRIGGER inventory_fts_ai AFTER INSERT ON "
+            + InventoryEntry.TABLE_NAME + " BEGIN INSERT INTO " + InventoryEntry.SEARCH_TABLE_NAME
+            + " (docid, " + InventoryEntry.COLUMN_ITEM_NAME + ", " + InventoryEntry.COLUMN_ITEM_SUPPLIER + ", " + InventoryEntry.COLUMN_ITEM_EMAIL + ")"
+            + " VALUES (new." + InventoryEntry._ID + ", new." + InventoryEntry.COLUMN_ITEM_NAME + ", new."
+            + InventoryEntry.COLUMN_ITEM_SUPPLIER + ", new." + InventoryEntry.COLUMN_ITEM_EMAIL + "); END;";
+
+    // Limited to the indexed columns so stock and price updates never touch the FTS table.
+    private static final String SQL_CREATE_SEARCH_UPDATE_TRIGGER = "CREATE TRIGGER inventory_fts_au AFTER UPDATE OF "
+            + InventoryEntry.COLUMN_ITEM_NAME + ", " + InventoryEntry.COLUMN_ITEM_SUPPLIER + ", " + InventoryEntry.COLUMN_ITEM_EMAIL
+            + " ON " + InventoryEntry.TABLE_NAME + " BEGIN UPDATE " + InventoryEntry.SEARCH_TABLE_NAME
+            + " SET " + InventoryEntry.COLUMN_ITEM_NAME + " = new." + InventoryEntry.COLUMN_ITEM_NAME + ", "
+            + InventoryEntry.COLUMN_ITEM_SUPPLIER + " = new." + InventoryEntry.COLUMN_ITEM_SUPPLIER + ", "
+            + InventoryEntry.COLUMN_ITEM_EMAIL + " = new." + InventoryEntry.COLUMN_ITEM_EMAIL
+            + " WHERE docid = new." + InventoryEntry._ID + "; END;";
+
+    private static final String SQL_SEARCH_DELETE_OLD = "DELETE FROM " + InventoryEntry.SEARCH_TABLE_NAME
+            + " WHERE docid = old." + InventoryEntry._ID + ";";
+
+    private static final String SQL_CREATE_SEARCH_DELETE_TRIGGER = "CREATE TRIGGER inventory_fts_ad AFTER DELETE ON "
+            + InventoryEntry.TABLE_NAME + " BEGIN " + SQL_SEARCH_DELETE_OLD + " END;";
+
+    private static final String SQL_CREATE_STATS_TABLE = "CREATE TABLE " + StatsEntry.TABLE_NAME + " ("
+            + "_id INTEGER PRIMARY KEY CHECK (_id = 1), "
+            + StatsEntry.COLUMN_TOTAL_VALUE + " REAL NOT NULL, "
+            + StatsEntry.COLUMN_ITEM_COUNT + " INTEGER NOT NULL, "
+            + StatsEntry.COLUMN_OUT_OF_STOCK_COUNT + " INTEGER NOT NULL, "
+            + StatsEntry.COLUMN_LOW_STOCK_COUNT + " INTEGER NOT NULL);";
+
+    private static final String SQL_FILL_STATS_TABLE = "INSERT INTO " + StatsEntry.TABLE_NAME + " (_id, "
+            + StatsEntry.COLUMN_TOTAL_VALUE + ", " + StatsEntry.COLUMN_ITEM_COUNT + ", "
+            + StatsEntry.COLUMN_OUT_OF_STOCK_COUNT + ", " + StatsEntry.COLUMN_LOW_STOCK_COUNT + ")"
+            + " SELECT 1, coalesce(sum(" + InventoryEntry.COLUMN_ITEM_PRICE + " * " + InventoryEntry.COLUMN_ITEM_QUANTITY + "), 0), count(*), "
+            + "coalesce(sum(" + InventoryEntry.COLUMN_ITEM_QUANTITY + " = 0), 0), "
+            + "coalesce(sum(" + InventoryEntry.COLUMN_ITEM_QUANTITY + " BETWEEN 1 AND " + StatsEntry.LOW_STOCK_THRESHOLD + "), 0)"
+            + " FROM " + InventoryEntry.TABLE_NAME + ";";
+
+    private static final String SQL_STATS_ADD_NEW = "UPDATE " + StatsEntry.TABLE_NAME + " SET "
+            + StatsEntry.COLUMN_TOTAL_VALUE + " = " + StatsEntry.COLUMN_TOTAL_VALUE + " + new.price * new.quantity, "
+            + StatsEntry.COLUMN_ITEM_COUNT + " = " + StatsEntry.COLUMN_ITEM_COUNT + " + 1, "
+            + StatsEntry.COLUMN_OUT_OF_STOCK_COUNT + " = " + StatsEntry.COLUMN_OUT_OF_STOCK_COUNT + " + (new.quantity = 0), "
+            + StatsEntry.COLUMN_LOW_STOCK_COUNT + " = " + StatsEntry.COLUMN_LOW_STOCK_COUNT
+            + " + (new.quantity BETWEEN 1 AND " + StatsEntry.LOW_STOCK_THRESHOLD + ") WHERE _id = 1;";
+
+    private static final String SQL_CREATE_STATS_INSERT_TRIGGER = "CREATE TRIGGER inventory_stats_ai AFTER INSERT ON "
+            + InventoryEntry.TABLE_NAME + " BEGIN " + SQL_STATS_ADD_NEW + " END;";
+
+    // Limited to the aggregated columns so renames never touch the summary row.
+    private static final String SQL_CREATE_STATS_UPDATE_TRIGGER = "CREATE TRIGGER inventory_stats_au AFTER UPDATE OF "
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + ", " + InventoryEntry.COLUMN_ITEM_PRICE + " ON " + InventoryEntry.TABLE_NAME
+            + " BEGIN UPDATE " + StatsEntry.TABLE_NAME + " SET "
+            + StatsEntry.COLUMN_TOTAL_VALUE + " = " + StatsEntry.COLUMN_TOTAL_VALUE + " + new.price * new.quantity - old.price * old.quantity, "
+            + StatsEntry.COLUMN_OUT_OF_STOCK_COUNT + " = " + StatsEntry.COLUMN_OUT_OF_STOCK_COUNT + " + (new.quantity = 0) - (old.quantity = 0), "
+            + StatsEntry.COLUMN_LOW_STOCK_COUNT + " = " + StatsEntry.COLUMN_LOW_STOCK_COUNT
+            + " + (new.quantity BETWEEN 1 AND " + StatsEntry.LOW_STOCK_THRESHOLD + ")"
+            + " - (old.quantity BETWEEN 1 AND " + StatsEntry.LOW_STOCK_THRESHOLD + ") WHERE _id = 1; END;";
+
+    private static final String SQL_STATS_REMOVE_OLD = "UPDATE " + StatsEntry.TABLE_NAME + " SET "
+            + StatsEntry.COLUMN_TOTAL_VALUE + " = " + StatsEntry.COLUMN_TOTAL_VALUE + " - old.price * old.quantity, "
+            + StatsEntry.COLUMN_ITEM_COUNT + " = " + StatsEntry.COLUMN_ITEM_COUNT + " - 1, "
+            + StatsEntry.COLUMN_OUT_OF_STOCK_COUNT + " = " + StatsEntry.COLUMN_OUT_OF_STOCK_COUNT + " - (old.quantity = 0), "
+            + StatsEntry.COLUMN_LOW_STOCK_COUNT + " = " + StatsEntry.COLUMN_LOW_STOCK_COUNT
+            + " - (old.quantity BETWEEN 1 AND " + StatsEntry.LOW_STOCK_THRESHOLD + ") WHERE _id = 1;";
+
+    private static final String SQL_CREATE_STATS_DELETE_TRIGGER = "CREATE TRIGGER inventory_stats_ad AFTER DELETE ON "
+            + InventoryEntry.TABLE_NAME + " BEGIN " + SQL_STATS_REMOVE_OLD + " END;";
+
+    private static final String SQL_ADD_SKU_COLUMN = "ALTER TABLE " + InventoryEntry.TABLE_NAME
+            + " ADD COLUMN " + InventoryEntry.COLUMN_ITEM_SKU + " TEXT;";
+
+    // Unique but nullable: SQLite lets any number of rows have no SKU.
+    private static final String SQL_CREATE_SKU_INDEX = "CREATE UNIQUE INDEX inventory_sku_idx ON "
+            + InventoryEntry.TABLE_NAME + " (" + InventoryEntry.COLUMN_ITEM_SKU + ");";
+
+    private static final String SQL_CREATE_SUPPLIERS_TABLE = "CREATE TABLE " + SupplierEntry.TABLE_NAME + " ("
+            + SupplierEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + SupplierEntry.COLUMN_SUPPLIER_NAME + " TEXT NOT NULL, "
+            + SupplierEntry.COLUMN_SUPPLIER_EMAIL + " TEXT NOT NULL DEFAULT '', "
+            + "UNIQUE (" + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_EMAIL + "));";
+
+    private static final String SQL_FILL_SUPPLIERS_TABLE = "INSERT INTO " + SupplierEntry.TABLE_NAME + " ("
+            + SupplierEntry.COLUMN_SUPPLIER_NAME + ", " + SupplierEntry.COLUMN_SUPPLIER_EMAIL + ")"
+            + " SELECT DISTINCT trim(supplier), ifnull(trim(email), '') FROM " + InventoryEntry.TABLE_NAME + " ORDER BY 1, 2;";
+
+    // SQLite cannot drop columns, so supplier and email go away by rebuilding the table.
+    private static final String SQL_CREATE_NORMALIZED_TABLE = "CREATE TABLE inventory_new ("
+            + InventoryEntry._ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + InventoryEntry.COLUMN_ITEM_NAME + " TEXT NOT NULL, "
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + " INTEGER NOT NULL, "
+            + InventoryEntry.COLUMN_ITEM_PRICE + " DOUBLE NOT NULL, "
+            + InventoryEntry.COLUMN_ITEM_SUPPLIER_ID + " INTEGER NOT NULL REFERENCES " + SupplierEntry.TABLE_NAME + " (" + SupplierEntry._ID + "), "
+            + InventoryEntry.COLUMN_ITEM_SKU + " TEXT);";
+
+    private static final String SQL_FILL_NORMALIZED_TABLE = "INSERT INTO inventory_new ("
+            + InventoryEntry._ID + ", " + InventoryEntry.COLUMN_ITEM_NAME + ", " + InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+            + InventoryEntry.COLUMN_ITEM_PRICE + ", " + InventoryEntry.COLUMN_ITEM_SUPPLIER_ID + ", " + InventoryEntry.COLUMN_ITEM_SKU + ")"
+            + " SELECT i._id, i.name, i.quantity, i.price, s._id, i.sku FROM " + InventoryEntry.TABLE_NAME + " i"
+            + " JOIN " + SupplierEntry.TABLE_NAME + " s ON s.name = trim(i.supplier) AND s.email = ifnull(trim(i.email), '');";
+
+    // Carry the AUTOINCREMENT high-water mark over, so ids of deleted items are never reused.
+    private static final String SQL_CLEAR_NORMALIZED_SEQUENCE = "DELETE FROM sqlite_sequence WHERE name = 'inventory_new';";
+
+    private static final String SQL_COPY_SEQUENCE = "INSERT INTO sqlite_sequence (name, seq)"
+            + " SELECT 'inventory_new', seq FROM sqlite_sequence WHERE name = '" + InventoryEntry.TABLE_NAME + "';";
+
+    private static final String SQL_DROP_INVENTORY_TABLE = "DROP TABLE " + InventoryEntry.TABLE_NAME + ";";
+
+    private static final String SQL_RENAME_NORMALIZED_TABLE = "ALTER TABLE inventory_new RENAME TO " + InventoryEntry.TABLE_NAME + ";";
+
+    // Serves suppliers/#/items in name order, and the foreign key check when a supplier is deleted.
+    private static final String SQL_CREATE_SUPPLIER_INDEX = "CREATE INDEX inventory_supplier_idx ON "
+            + InventoryEntry.TABLE_NAME + " (" + InventoryEntry.COLUMN_ITEM_SUPPLIER_ID + ", " + InventoryEntry.COLUMN_ITEM_NAME + ");";
+
+    private static final String SQL_CREATE_INVENTORY_VIEW = "CREATE VIEW " + InventoryEntry.VIEW_NAME + " AS SELECT "
+            + "i." + InventoryEntry._ID + " AS " + InventoryEntry._ID + ", "
+            + "i." + InventoryEntry.COLUMN_ITEM_NAME + " AS " + InventoryEntry.COLUMN_ITEM_NAME + ", "
+            + "i." + InventoryEntry.COLUMN_ITEM_QUANTITY + " AS " + InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+            + "i." + InventoryEntry.COLUMN_ITEM_PRICE + " AS " + InventoryEntry.COLUMN_ITEM_PRICE + ", "
+            + "s." + SupplierEntry.COLUMN_SUPPLIER_NAME + " AS " + InventoryEntry.COLUMN_ITEM_SUPPLIER + ", "
+            + "nullif(s." + SupplierEntry.COLUMN_SUPPLIER_EMAIL + ", '') AS " + InventoryEntry.COLUMN_ITEM_EMAIL + ", "
+            + "i." + InventoryEntry.COLUMN_ITEM_SKU + " AS " + InventoryEntry.COLUMN_ITEM_SKU + ", "
+            + "i." + InventoryEntry.COLUMN_ITEM_SUPPLIER_ID + " AS " + InventoryEntry.COLUMN_ITEM_SUPPLIER_ID
+            + " FROM " + InventoryEntry.TABLE_NAME + " i JOIN " + SupplierEntry.TABLE_NAME + " s ON s." + SupplierEntry._ID
+            + " = i." + InventoryEntry.COLUMN_ITEM_SUPPLIER_ID + ";";
+
+    private static final String SQL_SELECT_SUPPLIER_NAME = "(SELECT " + SupplierEntry.COLUMN_SUPPLIER_NAME + " FROM "
+            + SupplierEntry.TABLE_NAME + " WHERE " + SupplierEntry._ID + " = new." + InventoryEntry.COLUMN_ITEM_SUPPLIER_ID + ")";
+
+    private static final String SQL_SELECT_SUPPLIER_EMAIL = "(SELECT " + SupplierEntry.COLUMN_SUPPLIER_EMAIL + " FROM "
+            + SupplierEntry.TABLE_NAME + " WHERE " + SupplierEntry._ID + " = new." + InventoryEntry.COLUMN_ITEM_SUPPLIER_ID + ")";
+
+    private static final String SQL_SEARCH_INSERT_NEW = "INSERT INTO " + InventoryEntry.SEARCH_TABLE_NAME
+            + " (docid, " + InventoryEntry.COLUMN_ITEM_NAME + ", " + InventoryEntry.COLUMN_ITEM_SUPPLIER + ", " + InventoryEntry.COLUMN_ITEM_EMAIL + ")"
+            + " VALUES (new." + InventoryEntry._ID + ", new." + InventoryEntry.COLUMN_ITEM_NAME + ", "
+            + SQL_SELECT_SUPPLIER_NAME + ", " + SQL_SELECT_SUPPLIER_EMAIL + ");";
+
+    private static final String SQL_CREATE_NORMALIZED_SEARCH_INSERT_TRIGGER = "CREATE TRIGGER inventory_fts_ai AFTER INSERT ON "
+            + InventoryEntry.TABLE_NAME + " BEGIN " + SQL_SEARCH_INSERT_NEW + " END;";
+
+    private static final String SQL_CREATE_NORMALIZED_SEARCH_UPDATE_TRIGGER = "CREATE TRIGGER inventory_fts_au AFTER UPDATE OF "
+            + InventoryEntry.COLUMN_ITEM_NAME + ", " + InventoryEntry.COLUMN_ITEM_SUPPLIER_ID
+            + " ON " + InventoryEntry.TABLE_NAME + " BEGIN UPDATE " + InventoryEntry.SEARCH_TABLE_NAME
+            + " SET " + InventoryEntry.COLUMN_ITEM_NAME + " = new." + InventoryEntry.COLUMN_ITEM_NAME + ", "
+            + InventoryEntry.COLUMN_ITEM_SUPPLIER + " = " + SQL_SELECT_SUPPLIER_NAME + ", "
+            + InventoryEntry.COLUMN_ITEM_EMAIL + " = " + SQL_SELECT_SUPPLIER_EMAIL
+            + " WHERE docid = new." + InventoryEntry._ID + "; END;";
+
+    private static final String SQL_CREATE_SUPPLIER_SEARCH_UPDATE_TRIGGER = "CREATE TRIGGER suppliers_fts_au AFTER UPDATE ON "
+            + SupplierEntry.TABLE_NAME + " BEGIN UPDATE " + InventoryEntry.SEARCH_TABLE_NAME
+            + " SET " + InventoryEntry.COLUMN_ITEM_SUPPLIER + " = new." + SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+            + InventoryEntry.COLUMN_ITEM_EMAIL + " = new." + SupplierEntry.COLUMN_SUPPLIER_EMAIL
+            + " WHERE docid IN (SELECT " + InventoryEntry._ID + " FROM " + InventoryEntry.TABLE_NAME
+            + " WHERE " + InventoryEntry.COLUMN_ITEM_SUPPLIER_ID + " = new." + SupplierEntry._ID + "); END;";
+
+    // One row whose flag the provider raises inside a sync write's transaction, so the change
+    // triggers can tell sync writes from local ones without any other connection seeing it.
+    static final String SYNC_STATE_TABLE_NAME = "inventory_sync_state";
+
+    static final String COLUMN_APPLYING_SYNC = "applying_sync";
+
+    private static final String SQL_CREATE_CHANGES_TABLE = "CREATE TABLE " + ChangeEntry.TABLE_NAME + " ("
+            + ChangeEntry.COLUMN_SEQ + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + ChangeEntry.COLUMN_ITEM_ID + " INTEGER NOT NULL, "
+            + ChangeEntry.COLUMN_OP + " INTEGER NOT NULL, "
+            + ChangeEntry.COLUMN_SKU + " TEXT, "
+            + ChangeEntry.COLUMN_CHANGED_AT + " INTEGER NOT NULL, "
+            + ChangeEntry.COLUMN_SOURCE + " INTEGER NOT NULL);";
+
+    private static final String SQL_CREATE_SYNC_STATE_TABLE = "CREATE TABLE " + SYNC_STATE_TABLE_NAME
+            + " (" + COLUMN_APPLYING_SYNC + " INTEGER NOT NULL);";
+
+    private static final String SQL_FILL_SYNC_STATE_TABLE = "INSERT INTO " + SYNC_STATE_TABLE_NAME
+            + " VALUES (" + ChangeEntry.SOURCE_LOCAL + ");";
+
+    private static final String SQL_CHANGE_COLUMNS = " (" + ChangeEntry.COLUMN_ITEM_ID + ", " + ChangeEntry.COLUMN_OP + ", "
+            + ChangeEntry.COLUMN_SKU + ", " + ChangeEntry.COLUMN_CHANGED_AT + ", " + ChangeEntry.COLUMN_SOURCE + ")";
+
+    // SQLite 3.8 has no unixepoch(), so milliseconds are derived from the Julian day.
+    private static final String SQL_NOW_MILLIS = "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER)";
+
+    private static final String SQL_CHANGE_STAMP = SQL_NOW_MILLIS + ", (SELECT "
+            + COLUMN_APPLYING_SYNC + " FROM " + SYNC_STATE_TABLE_NAME + ")";
+
+    private static final String SQL_CHANGES_INSERT_NEW = "INSERT INTO " + ChangeEntry.TABLE_NAME + SQL_CHANGE_COLUMNS
+            + " VALUES (new." + InventoryEntry._ID + ", " + ChangeEntry.OP_INSERT + ", new." + InventoryEntry.COLUMN_ITEM_SKU
+            + ", " + SQL_CHANGE_STAMP + ");";
+
+    private static final String SQL_CREATE_CHANGES_INSERT_TRIGGER = "CREATE TRIGGER inventory_changes_ai AFTER INSERT ON "
+            + InventoryEntry.TABLE_NAME + " BEGIN " + SQL_CHANGES_INSERT_NEW + " END;";
+
+    // A changed SKU is logged as a delete of the old one first, so a replica keyed by SKU drops it.
+    private static final String SQL_CREATE_CHANGES_UPDATE_TRIGGER = "CREATE TRIGGER inventory_changes_au AFTER UPDATE ON "
+            + InventoryEntry.TABLE_NAME + " BEGIN INSERT INTO " + ChangeEntry.TABLE_NAME + SQL_CHANGE_COLUMNS
+            + " SELECT old." + InventoryEntry._ID + ", " + ChangeEntry.OP_DELETE + ", old." + InventoryEntry.COLUMN_ITEM_SKU
+            + ", " + SQL_CHANGE_STAMP + " WHERE old." + InventoryEntry.COLUMN_ITEM_SKU + " IS NOT NULL AND old."
+            + InventoryEntry.COLUMN_ITEM_SKU + " IS NOT new." + InventoryEntry.COLUMN_ITEM_SKU + ";"
+            + " INSERT INTO " + ChangeEntry.TABLE_NAME + SQL_CHANGE_COLUMNS
+            + " VALUES (new." + InventoryEntry._ID + ", " + ChangeEntry.OP_UPDATE + ", new." + InventoryEntry.COLUMN_ITEM_SKU
+            + ", " + SQL_CHANGE_STAMP + "); END;";
+
+    private static final String SQL_CHANGES_DELETE_OLD = "INSERT INTO " + ChangeEntry.TABLE_NAME + SQL_CHANGE_COLUMNS
+            + " VALUES (old." + InventoryEntry._ID + ", " + ChangeEntry.OP_DELETE + ", old." + InventoryEntry.COLUMN_ITEM_SKU
+            + ", " + SQL_CHANGE_STAMP + ");";
+
+    private static final String SQL_CREATE_CHANGES_DELETE_TRIGGER = "CREATE TRIGGER inventory_changes_ad AFTER DELETE ON "
+            + InventoryEntry.TABLE_NAME + " BEGIN " + SQL_CHANGES_DELETE_OLD + " END;";
+
+    // List indexes lead with the sort key and _id, so each sort order and its keyset paging is an
+    // index walk, and carry the remaining list columns so the walk never touches the table.
+    private static final String SQL_CREATE_NAME_LIST_INDEX = "CREATE INDEX inventory_name_list_idx ON "
+            + InventoryEntry.TABLE_NAME + " (" + InventoryEntry.COLUMN_ITEM_NAME + ", " + InventoryEntry._ID + ", "
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + ", " + InventoryEntry.COLUMN_ITEM_PRICE + ", "
+            + InventoryEntry.COLUMN_ITEM_SUPPLIER_ID + ");";
+
+    private static final String SQL_CREATE_PRICE_LIST_INDEX = "CREATE INDEX inventory_price_list_idx ON "
+            + InventoryEntry.TABLE_NAME + " (" + InventoryEntry.COLUMN_ITEM_PRICE + ", " + InventoryEntry._ID + ", "
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + ", " + InventoryEntry.COLUMN_ITEM_NAME + ", "
+            + InventoryEntry.COLUMN_ITEM_SUPPLIER_ID + ");";
+
+    private static final String SQL_CREATE_QUANTITY_LIST_INDEX = "CREATE INDEX inventory_quantity_list_idx ON "
+            + InventoryEntry.TABLE_NAME + " (" + InventoryEntry.COLUMN_ITEM_QUANTITY + ", " + InventoryEntry._ID + ", "
+            + InventoryEntry.COLUMN_ITEM_PRICE + ", " + InventoryEntry.COLUMN_ITEM_NAME + ", "
+            + InventoryEntry.COLUMN_ITEM_SUPPLIER_ID + ");";
+
+    // Supplier order walks suppliers by (name, _id) and each supplier's items by (name, _id) here.
+    // Also serves suppliers/#/items and the foreign key check, replacing inventory_supplier_idx.
+    private static final String SQL_CREATE_SUPPLIER_LIST_INDEX = "CREATE INDEX inventory_supplier_list_idx ON "
+            + InventoryEntry.TABLE_NAME + " (" + InventoryEntry.COLUMN_ITEM_SUPPLIER_ID + ", "
+            + InventoryEntry.COLUMN_ITEM_NAME + ", " + InventoryEntry._ID + ", "
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + ", " + InventoryEntry.COLUMN_ITEM_PRICE + ");";
+
+    private static final String SQL_CREATE_SUPPLIER_NAME_INDEX = "CREATE INDEX suppliers_name_idx ON "
+            + SupplierEntry.TABLE_NAME + " (" + SupplierEntry.COLUMN_SUPPLIER_NAME + ");";
+
+    private static final String SQL_DROP_NAME_INDEX = "DROP INDEX inventory_name_idx;";
+
+    private static final String SQL_DROP_SUPPLIER_INDEX = "DROP INDEX inventory_supplier_idx;";
+
+    private static final String SQL_DROP_INVENTORY_VIEW = "DROP VIEW " + InventoryEntry.VIEW_NAME + ";";
+
+    // As SQL_CREATE_INVENTORY_VIEW, but supplier_id comes from the supplier row, which is what
+    // lets supplier order be read off the supplier name index without a sort.
+    private static final String SORTABLE_VIEW_COLUMNS = "i." + InventoryEntry._ID + " AS " + InventoryEntry._ID + ", "
+            + "i." + InventoryEntry.COLUMN_ITEM_NAME + " AS " + InventoryEntry.COLUMN_ITEM_NAME + ", "
+            + "i." + InventoryEntry.COLUMN_ITEM_QUANTITY + " AS " + InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+            + "i." + InventoryEntry.COLUMN_ITEM_PRICE + " AS " + InventoryEntry.COLUMN_ITEM_PRICE + ", "
+            + "s." + SupplierEntry.COLUMN_SUPPLIER_NAME + " AS " + InventoryEntry.COLUMN_ITEM_SUPPLIER + ", "
+            + "nullif(s." + SupplierEntry.COLUMN_SUPPLIER_EMAIL + ", '') AS " + InventoryEntry.COLUMN_ITEM_EMAIL + ", "
+            + "i." + InventoryEntry.COLUMN_ITEM_SKU + " AS " + InventoryEntry.COLUMN_ITEM_SKU + ", "
+            + "s." + SupplierEntry._ID + " AS " + InventoryEntry.COLUMN_ITEM_SUPPLIER_ID;
+
+    private static final String VIEW_FROM = " FROM " + InventoryEntry.TABLE_NAME + " i JOIN " + SupplierEntry.TABLE_NAME
+            + " s ON s." + SupplierEntry._ID + " = i." + InventoryEntry.COLUMN_ITEM_SUPPLIER_ID;
+
+    private static final String VIEW_JOIN = VIEW_FROM + ";";
+
+    private static final String SQL_CREATE_SORTABLE_INVENTORY_VIEW = "CREATE VIEW " + InventoryEntry.VIEW_NAME
+            + " AS SELECT " + SORTABLE_VIEW_COLUMNS + VIEW_JOIN;
+
+    // Starts at 0 and is bumped by the provider on every update, never by triggers, so a
+    // version bump does not show up as a second change.
+    private static final String SQL_ADD_VERSION_COLUMN = "ALTER TABLE " + InventoryEntry.TABLE_NAME + " ADD COLUMN "
+            + InventoryEntry.COLUMN_ITEM_VERSION + " INTEGER NOT NULL DEFAULT 0;";
+
+    private static final String VERSIONED_VIEW_COLUMNS = SORTABLE_VIEW_COLUMNS + ", i." + InventoryEntry.COLUMN_ITEM_VERSION
+            + " AS " + InventoryEntry.COLUMN_ITEM_VERSION;
+
+    private static final String SQL_CREATE_VERSIONED_INVENTORY_VIEW = "CREATE VIEW " + InventoryEntry.VIEW_NAME
+            + " AS SELECT " + VERSIONED_VIEW_COLUMNS + VIEW_JOIN;
+
+    private static final String SQL_CREATE_MOVEMENTS_TABLE = "CREATE TABLE " + MovementEntry.TABLE_NAME + " ("
+            + MovementEntry._ID + " INTEGER PRIMARY KEY, "
+            + MovementEntry.COLUMN_ITEM_ID + " INTEGER NOT NULL, "
+            + MovementEntry.COLUMN_DELTA + " INTEGER NOT NULL, "
+            + MovementEntry.COLUMN_QUANTITY + " INTEGER NOT NULL, "
+            + MovementEntry.COLUMN_MOVED_AT + " INTEGER NOT NULL);";
+
+    private static final String SQL_CREATE_MOVEMENTS_ITEM_INDEX = "CREATE INDEX stock_movements_item_idx ON "
+            + MovementEntry.TABLE_NAME + " (" + MovementEntry.COLUMN_ITEM_ID + ", " + MovementEntry.COLUMN_MOVED_AT + ");";
+
+    // Pruning deletes from the old end of this index.
+    private static final String SQL_CREATE_MOVEMENTS_TIME_INDEX = "CREATE INDEX stock_movements_time_idx ON "
+            + MovementEntry.TABLE_NAME + " (" + MovementEntry.COLUMN_MOVED_AT + ");";
+
+    private static final String SQL_CREATE_DAILY_TABLE = createRollupTable(MovementEntry.DAILY_TABLE_NAME);
+
+    private static final String SQL_CREATE_DAILY_PERIOD_INDEX = createRollupPeriodIndex(MovementEntry.DAILY_TABLE_NAME);
+
+    private static final String SQL_CREATE_WEEKLY_TABLE = createRollupTable(MovementEntry.WEEKLY_TABLE_NAME);
+
+    private static final String SQL_CREATE_WEEKLY_PERIOD_INDEX = createRollupPeriodIndex(MovementEntry.WEEKLY_TABLE_NAME);
+
+    private static final String SQL_MOVEMENT_COLUMNS = " (" + MovementEntry.COLUMN_ITEM_ID + ", " + MovementEntry.COLUMN_DELTA
+            + ", " + MovementEntry.COLUMN_QUANTITY + ", " + MovementEntry.COLUMN_MOVED_AT + ")";
+
+    // Initial stock counts as units in. Deleting an item is not a movement; its history stays.
+    private static final String SQL_CREATE_MOVEMENTS_INSERT_TRIGGER = "CREATE TRIGGER stock_movements_ai AFTER INSERT ON "
+            + InventoryEntry.TABLE_NAME + " WHEN new." + InventoryEntry.COLUMN_ITEM_QUANTITY + " <> 0 BEGIN INSERT INTO "
+            + MovementEntry.TABLE_NAME + SQL_MOVEMENT_COLUMNS + " VALUES (new." + InventoryEntry._ID + ", new."
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + ", new." + InventoryEntry.COLUMN_ITEM_QUANTITY + ", " + SQL_NOW_MILLIS + "); END;";
+
+    private static final String SQL_CREATE_MOVEMENTS_UPDATE_TRIGGER = "CREATE TRIGGER stock_movements_au AFTER UPDATE OF "
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + " ON " + InventoryEntry.TABLE_NAME + " WHEN new."
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + " <> old." + InventoryEntry.COLUMN_ITEM_QUANTITY + " BEGIN INSERT INTO "
+            + MovementEntry.TABLE_NAME + SQL_MOVEMENT_COLUMNS + " VALUES (new." + InventoryEntry._ID + ", new."
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + " - old." + InventoryEntry.COLUMN_ITEM_QUANTITY + ", new."
+            + InventoryEntry.COLUMN_ITEM_QUANTITY + ", " + SQL_NOW_MILLIS + "); END;";
+
+    // Keep in step with MovementEntry.dayOf and weekOf.
+    private static final String SQL_MOVEMENT_DAY = "new." + MovementEntry.COLUMN_MOVED_AT + " / " + MovementEntry.DAY_MS;
+
+    private static final String SQL_MOVEMENT_WEEK = "(" + SQL_MOVEMENT_DAY + " + 3) / 7";
+
+    // SQLite 3.8 has no upsert: make sure the period row exists, then add to it.
+    private static final String SQL_CREATE_ROLLUP_TRIGGER = "CREATE TRIGGER stock_rollups_ai AFTER INSERT ON "
+            + MovementEntry.TABLE_NAME + " BEGIN "
+            + addToRollup(MovementEntry.DAILY_TABLE_NAME, SQL_MOVEMENT_DAY)
+            + addToRollup(MovementEntry.WEEKLY_TABLE_NAME, SQL_MOVEMENT_WEEK)
+            + " END;";
+
+    private static String createRollupTable(String table) {
+        return "CREATE TABLE " + table + " ("
+                + MovementEntry.COLUMN_ITEM_ID + " INTEGER NOT NULL, "
+                + MovementEntry.COLUMN_PERIOD + " INTEGER NOT NULL, "
+                + MovementEntry.COLUMN_UNITS_IN + " INTEGER NOT NULL DEFAULT 0, "
+                + MovementEntry.COLUMN_UNITS_OUT + " INTEGER NOT NULL DEFAULT 0, "
+                + MovementEntry.COLUMN_MOVEMENTS + " INTEGER NOT NULL DEFAULT 0, "
+                + "PRIMARY KEY (" + MovementEntry.COLUMN_ITEM_ID + ", " + MovementEntry.COLUMN_PERIOD + "));";
+    }
+
+    // Reports across items read a period range in (period, item_id) order off this index.
+    private static String createRollupPeriodIndex(String table) {
+        return "CREATE INDEX " + table + "_period_idx ON " + table + " ("
+                + MovementEntry.COLUMN_PERIOD + ", " + MovementEntry.COLUMN_ITEM_ID + ");";
+    }
+
+    private static String addToRollup(String table, String period) {
+        return "INSERT OR IGNORE INTO " + table + " (" + MovementEntry.COLUMN_ITEM_ID + ", " + MovementEntry.COLUMN_PERIOD
+                + ") VALUES (new." + MovementEntry.COLUMN_ITEM_ID + ", " + period + "); "
+                + "UPDATE " + table + " SET "
+                + MovementEntry.COLUMN_UNITS_IN + " = " + MovementEntry.COLUMN_UNITS_IN + " + max(new." + MovementEntry.COLUMN_DELTA + ", 0), "
+                + MovementEntry.COLUMN_UNITS_OUT + " = " + MovementEntry.COLUMN_UNITS_OUT + " + max(-new." + MovementEntry.COLUMN_DELTA + ", 0), "
+                + MovementEntry.COLUMN_MOVEMENTS + " = " + MovementEntry.COLUMN_MOVEMENTS + " + 1"
+                + " WHERE " + MovementEntry.COLUMN_ITEM_ID + " = new." + MovementEntry.COLUMN_ITEM_ID
+                + " AND " + MovementEntry.COLUMN_PERIOD + " = " + period + ";";
+    }
+
+    // Items whose price or quantity changed since the analytics last read them. Unlike the change
+    // log, which sync trims, an id stays here until InventoryAnalytics has picked it up.
+    static final String ANALYTICS_DIRTY_TABLE_NAME = "analytics_dirty";
+
+    private static final String SQL_CREATE_ANALYTICS_TABLE = "CREATE TABLE " + AnalyticsEntry.TABLE_NAME + " ("
+            + AnalyticsEntry.COLUMN_ITEM_ID + " INTEGER PRIMARY KEY, "
+            + AnalyticsEntry.COLUMN_VALUE + " REAL NOT NULL, "
+            + AnalyticsEntry.COLUMN_ABC_CLASS + " INTEGER NOT NULL, "
+            + AnalyticsEntry.COLUMN_DAILY_DEMAND + " REAL NOT NULL, "
+            + AnalyticsEntry.COLUMN_REORDER_QUANTITY + " INTEGER NOT NULL);";
+
+    // Reports list the most valuable items first, which is also A, B, C order.
+    private static final String SQL_CREATE_ANALYTICS_VALUE_INDEX = "CREATE INDEX item_analytics_value_idx ON "
+            + AnalyticsEntry.TABLE_NAME + " (" + AnalyticsEntry.COLUMN_VALUE + ");";
+
+    private static final String SQL_CREATE_ANALYTICS_DIRTY_TABLE = "CREATE TABLE " + ANALYTICS_DIRTY_TABLE_NAME
+            + " (" + AnalyticsEntry.COLUMN_ITEM_ID + " INTEGER PRIMARY KEY);";
+
+    private static final String SQL_CREATE_ANALYTICS_INSERT_TRIGGER = "CREATE TRIGGER analytics_dirty_ai AFTER INSERT ON "
+            + InventoryEntry.TABLE_NAME + " BEGIN " + markAnalyticsDirty("new") + " END;";
+
+    private static final String SQL_CREATE_ANALYTICS_UPDATE_TRIGGER = "CREATE TRIGGER analytics_dirty_au AFTER UPDATE OF "
+            + InventoryEntry.COLUMN_ITEM_PRICE + ", " + InventoryEntry.COLUMN_ITEM_QUANTITY + " ON " + InventoryEntry.TABLE_NAME
+            + " BEGIN " + markAnalyticsDirty("new") + " END;";
+
+    private static final String SQL_CREATE_ANALYTICS_DELETE_TRIGGER = "CREATE TRIGGER analytics_dirty_ad AFTER DELETE ON "
+            + InventoryEntry.TABLE_NAME + " BEGIN " + markAnalyticsDirty("old") + " END;";
+
+    private static String markAnalyticsDirty(String row) {
+        return "INSERT OR IGNORE INTO " + ANALYTICS_DIRTY_TABLE_NAME + " VALUES (" + row + "." + InventoryEntry._ID + ");";
+    }
+
+    private static final String LIVE_ROW = InventoryEntry.COLUMN_ITEM_DELETED_AT + " IS NULL";
+
+    private static final String SQL_ADD_DELETED_AT_COLUMN = "ALTER TABLE " + InventoryEntry.TABLE_NAME
+            + " ADD COLUMN " + InventoryEntry.COLUMN_ITEM_DELETED_AT + " INTEGER;";
+
+    // Deleted rows stay in the table until purged, so every index reads lists and lookups from
+    // only covers live rows. A deleted item's SKU is free for a new item straight away.
+    private static final String SQL_DROP_NAME_LIST_INDEX = "DROP INDEX inventory_name_list_idx;";
+
+    private static final String SQL_DROP_PRICE_LIST_INDEX = "DROP INDEX inventory_price_list_idx;";
+
+    private static final String SQL_DROP_QUANTITY_LIST_INDEX = "DROP INDEX inventory_quantity_list_idx;";
+
+    private static final String SQL_DROP_SUPPLIER_LIST_INDEX = "DROP INDEX inventory_supplier_list_idx;";
+
+    private static final String SQL_DROP_SKU_INDEX = "DROP INDEX inventory_sku_idx;";
+
+    private static final String SQL_CREATE_LIVE_NAME_LIST_INDEX = partial(SQL_CREATE_NAME_LIST_INDEX, LIVE_ROW);
+
+    private static final String SQL_CREATE_LIVE_PRICE_LIST_INDEX = partial(SQL_CREATE_PRICE_LIST_INDEX, LIVE_ROW);
+
+    private static final String SQL_CREATE_LIVE_QUANTITY_LIST_INDEX = partial(SQL_CREATE_QUANTITY_LIST_INDEX, LIVE_ROW);
+
+    // Suppliers are never deleted, so the foreign key check no longer needs every row indexed.
+    private static final String SQL_CREATE_LIVE_SUPPLIER_LIST_INDEX = partial(SQL_CREATE_SUPPLIER_LIST_INDEX, LIVE_ROW);
+
+    private static final String SQL_CREATE_LIVE_SKU_INDEX = partial(SQL_CREATE_SKU_INDEX, LIVE_ROW);
+
+    // Holds only the tombstones, oldest first, for undo and the purge.
+    private static final String SQL_CREATE_DELETED_INDEX = "CREATE INDEX inventory_deleted_idx ON "
+            + InventoryEntry.TABLE_NAME + " (" + InventoryEntry.COLUMN_ITEM_DELETED_AT + ") WHERE "
+            + InventoryEntry.COLUMN_ITEM_DELETED_AT + " IS NOT NULL;";
+
+    private static final String SQL_CREATE_LIVE_INVENTORY_VIEW = "CREATE VIEW " + InventoryEntry.VIEW_NAME
+            + " AS SELECT " + VERSIONED_VIEW_COLUMNS + VIEW_FROM + " WHERE i." + LIVE_ROW + ";";
+
+    private static final String SQL_DROP_STATS_UPDATE_TRIGGER = "DROP TRIGGER inventory_stats_au;";
+
+    private static final String SQL_DROP_STATS_DELETE_TRIGGER = "DROP TRIGGER inventory_stats_ad;";
+
+    private static final String SQL_DROP_CHANGES_UPDATE_TRIGGER = "DROP TRIGGER inventory_changes_au;";
+
+    private static final String SQL_DROP_CHANGES_DELETE_TRIGGER = "DROP TRIGGER inventory_changes_ad;";
+
+    private static final String SQL_DROP_ANALYTICS_UPDATE_TRIGGER = "DROP TRIGGER analytics_dirty_au;";
+
+    private static final String SQL_DROP_ANALYTICS_DELETE_TRIGGER = "DROP TRIGGER analytics_dirty_ad;";
+
+    // Deleted rows have already left the summary, search and change log; purging them is silent.
+    private static final String SQL_CREATE_LIVE_STATS_UPDATE_TRIGGER = onlyWhen(SQL_CREATE_STATS_UPDATE_TRIGGER,
+            "old." + LIVE_ROW + " AND new." + LIVE_ROW);
+
+    private static final String SQL_CREATE_LIVE_STATS_DELETE_TRIGGER = onlyWhen(SQL_CREATE_STATS_DELETE_TRIGGER,
+            "old." + LIVE_ROW);
+
+    private static final String SQL_CREATE_LIVE_CHANGES_UPDATE_TRIGGER = onlyWhen(SQL_CREATE_CHANGES_UPDATE_TRIGGER,
+            "old." + LIVE_ROW + " AND new." + LIVE_ROW);
+
+    private static final String SQL_CREATE_LIVE_CHANGES_DELETE_TRIGGER = onlyWhen(SQL_CREATE_CHANGES_DELETE_TRIGGER,
+            "old." + LIVE_ROW);
+
+    private static final String SQL_CREATE_LIVE_ANALYTICS_UPDATE_TRIGGER = "CREATE TRIGGER analytics_dirty_au AFTER UPDATE OF "
+            + InventoryEntry.COLUMN_ITEM_PRICE + ", " + InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+            + InventoryEntry.COLUMN_ITEM_DELETED_AT + " ON " + InventoryEntry.TABLE_NAME
+            + " BEGIN " + markAnalyticsDirty("new") + " END;";
+
+    private static final String SQL_CREATE_LIVE_ANALYTICS_DELETE_TRIGGER = onlyWhen(SQL_CREATE_ANALYTICS_DELETE_TRIGGER,
+            "old." + LIVE_ROW);
+
+    // Deleting and restoring an item count as a delete and an insert everywhere outside the table.
+    private static final String SQL_CREATE_TOMBSTONE_TRIGGER = "CREATE TRIGGER inventory_deleted_au AFTER UPDATE OF "
+            + InventoryEntry.COLUMN_ITEM_DELETED_AT + " ON " + InventoryEntry.TABLE_NAME
+            + " WHEN old." + LIVE_ROW + " AND new." + InventoryEntry.COLUMN_ITEM_DELETED_AT + " IS NOT NULL BEGIN "
+            + SQL_STATS_REMOVE_OLD + " " + SQL_SEARCH_DELETE_OLD + " " + SQL_CHANGES_DELETE_OLD + " END;";
+
+    private static final String SQL_CREATE_RESTORE_TRIGGER = "CREATE TRIGGER inventory_restored_au AFTER UPDATE OF "
+            + InventoryEntry.COLUMN_ITEM_DELETED_AT + " ON " + InventoryEntry.TABLE_NAME
+            + " WHEN old." + InventoryEntry.COLUMN_ITEM_DELETED_AT + " IS NOT NULL AND new." + LIVE_ROW + " BEGIN "
+            + SQL_STATS_ADD_NEW + " " + SQL_SEARCH_INSERT_NEW + " " + SQL_CHANGES_INSERT_NEW + " END;";
+
+    private static final String SQL_ADD_PHOTO_COLUMN = "ALTER TABLE " + InventoryEntry.TABLE_NAME
+            + " ADD COLUMN " + InventoryEntry.COLUMN_ITEM_PHOTO + " TEXT;";
+
+    private static final String SQL_CREATE_PHOTO_INVENTORY_VIEW = "CREATE VIEW " + InventoryEntry.VIEW_NAME
+            + " AS SELECT " + VERSIONED_VIEW_COLUMNS + ", i." + InventoryEntry.COLUMN_ITEM_PHOTO + " AS "
+            + InventoryEntry.COLUMN_ITEM_PHOTO + VIEW_FROM + " WHERE i." + LIVE_ROW + ";";
+
+    private static String partial(String createIndex, String condition) {
+        return createIndex.substring(0, createIndex.length() - 1) + " WHERE " + condition + ";";
+    }
+
+    private static String onlyWhen(String createTrigger, String condition) {
+        int begin = createTrigger.indexOf(" BEGIN ");
+        return createTrigger.substring(0, begin) + " WHEN " + condition + createTrigger.substring(begin);
+    }
+
+    static final Migration MIGRATION_1_2 = new Migration(1) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL(SQL_CREATE_NAME_INDEX);
+        }
+    };
+
+    static final Migration MIGRATION_2_3 = new Migration(2) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL(SQL_CREATE_SEARCH_TABLE);
+            db.execSQL(SQL_FILL_SEARCH_TABLE);
+            db.execSQL(SQL_CREATE_SEARCH_INSERT_TRIGGER);
+            db.execSQL(SQL_CREATE_SEARCH_UPDATE_TRIGGER);
+            db.execSQL(SQL_CREATE_SEARCH_DELETE_TRIGGER);
+        }
+    };
+
+    static final Migration MIGRATION_3_4 = new Migration(3) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL(SQL_CREATE_STATS_TABLE);
+            db.execSQL(SQL_FILL_STATS_TABLE);
+            db.execSQL(SQL_CREATE_STATS_INSERT_TRIGGER);
+            db.execSQL(SQL_CREATE_STATS_UPDATE_TRIGGER);
+            db.execSQL(SQL_CREATE_STATS_DELETE_TRIGGER);
+        }
+    };
+
+    static final Migration MIGRATION_4_5 = new Migration(4) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL(SQL_ADD_SKU_COLUMN);
+            db.execSQL(SQL_CREATE_SKU_INDEX);
+        }
+    };
+
+    /**
+     * Moves supplier and email into a deduplicated suppliers table referenced by supplier_id.
+     * Dropping the old table takes its indexes and triggers with it, so they are recreated here;
+     * the search triggers now look the supplier up instead of reading it from the row.
+     */
+    static final Migration MIGRATION_5_6 = new Migration(5) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL(SQL_CREATE_SUPPLIERS_TABLE);
+            db.execSQL(SQL_FILL_SUPPLIERS_TABLE);
+            db.execSQL(SQL_CREATE_NORMALIZED_TABLE);
+            db.execSQL(SQL_FILL_NORMALIZED_TABLE);
+            db.execSQL(SQL_CLEAR_NORMALIZED_SEQUENCE);
+            db.execSQL(SQL_COPY_SEQUENCE);
+            db.execSQL(SQL_DROP_INVENTORY_TABLE);
+            db.execSQL(SQL_RENAME_NORMALIZED_TABLE);
+
+            db.execSQL(SQL_CREATE_NAME_INDEX);
+            db.execSQL(SQL_CREATE_SKU_INDEX);
+            db.execSQL(SQL_CREATE_SUPPLIER_INDEX);
+            db.execSQL(SQL_CREATE_INVENTORY_VIEW);
+
+            db.execSQL(SQL_CREATE_NORMALIZED_SEARCH_INSERT_TRIGGER);
+            db.execSQL(SQL_CREATE_NORMALIZED_SEARCH_UPDATE_TRIGGER);
+            db.execSQL(SQL_CREATE_SEARCH_DELETE_TRIGGER);
+            db.execSQL(SQL_CREATE_SUPPLIER_SEARCH_UPDATE_TRIGGER);
+            db.execSQL(SQL_CREATE_STATS_INSERT_TRIGGER);
+            db.execSQL(SQL_CREATE_STATS_UPDATE_TRIGGER);
+            db.execSQL(SQL_CREATE_STATS_DELETE_TRIGGER);
+        }
+    };
+
+    static final Migration MIGRATION_6_7 = new Migration(6) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL(SQL_CREATE_CHANGES_TABLE);
+            db.execSQL(SQL_CREATE_SYNC_STATE_TABLE);
+            db.execSQL(SQL_FILL_SYNC_STATE_TABLE);
+            db.execSQL(SQL_CREATE_CHANGES_INSERT_TRIGGER);
+            db.execSQL(SQL_CREATE_CHANGES_UPDATE_TRIGGER);
+            db.execSQL(SQL_CREATE_CHANGES_DELETE_TRIGGER);
+        }
+    };
+
+    static final Migration MIGRATION_7_8 = new Migration(7) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL(SQL_DROP_NAME_INDEX);
+            db.execSQL(SQL_DROP_SUPPLIER_INDEX);
+            db.execSQL(SQL_CREATE_NAME_LIST_INDEX);
+            db.execSQL(SQL_CREATE_PRICE_LIST_INDEX);
+            db.execSQL(SQL_CREATE_QUANTITY_LIST_INDEX);
+            db.execSQL(SQL_CREATE_SUPPLIER_LIST_INDEX);
+            db.execSQL(SQL_CREATE_SUPPLIER_NAME_INDEX);
+            db.execSQL(SQL_DROP_INVENTORY_VIEW);
+            db.execSQL(SQL_CREATE_SORTABLE_INVENTORY_VIEW);
+        }
+    };
+
+    static final Migration MIGRATION_8_9 = new Migration(8) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL(SQL_ADD_VERSION_COLUMN);
+            db.execSQL(SQL_DROP_INVENTORY_VIEW);
+            db.execSQL(SQL_CREATE_VERSIONED_INVENTORY_VIEW);
+        }
+    };
+
+    static final Migration MIGRATION_9_10 = new Migration(9) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL(SQL_CREATE_MOVEMENTS_TABLE);
+            db.execSQL(SQL_CREATE_MOVEMENTS_ITEM_INDEX);
+            db.execSQL(SQL_CREATE_MOVEMENTS_TIME_INDEX);
+            db.execSQL(SQL_CREATE_DAILY_TABLE);
+            db.execSQL(SQL_CREATE_DAILY_PERIOD_INDEX);
+            db.execSQL(SQL_CREATE_WEEKLY_TABLE);
+            db.execSQL(SQL_CREATE_WEEKLY_PERIOD_INDEX);
+            db.execSQL(SQL_CREATE_MOVEMENTS_INSERT_TRIGGER);
+            db.execSQL(SQL_CREATE_MOVEMENTS_UPDATE_TRIGGER);
+            db.execSQL(SQL_CREATE_ROLLUP_TRIGGER);
+        }
+    };
+
+    static final Migration MIGRATION_10_11 = new Migration(10) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL(SQL_CREATE_ANALYTICS_TABLE);
+            db.execSQL(SQL_CREATE_ANALYTICS_VALUE_INDEX);
+            db.execSQL(SQL_CREATE_ANALYTICS_DIRTY_TABLE);
+            db.execSQL(SQL_CREATE_ANALYTICS_INSERT_TRIGGER);
+            db.execSQL(SQL_CREATE_ANALYTICS_UPDATE_TRIGGER);
+            db.execSQL(SQL_CREATE_ANALYTICS_DELETE_TRIGGER);
+        }
+    };
+
+    /**
+     * Turns deletes into tombstones: a deleted_at column that the view, the indexes and the
+     * triggers all treat as gone, so a bulk delete is one indexed UPDATE and can be undone.
+     */
+    static final Migration MIGRATION_11_12 = new Migration(11) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL(SQL_ADD_DELETED_AT_COLUMN);
+            db.execSQL(SQL_DROP_NAME_LIST_INDEX);
+            db.execSQL(SQL_DROP_PRICE_LIST_INDEX);
+            db.execSQL(SQL_DROP_QUANTITY_LIST_INDEX);
+            db.execSQL(SQL_DROP_SUPPLIER_LIST_INDEX);
+            db.execSQL(SQL_DROP_SKU_INDEX);
+            db.execSQL(SQL_CREATE_LIVE_NAME_LIST_INDEX);
+            db.execSQL(SQL_CREATE_LIVE_PRICE_LIST_INDEX);
+            db.execSQL(SQL_CREATE_LIVE_QUANTITY_LIST_INDEX);
+            db.execSQL(SQL_CREATE_LIVE_SUPPLIER_LIST_INDEX);
+            db.execSQL(SQL_CREATE_LIVE_SKU_INDEX);
+            db.execSQL(SQL_CREATE_DELETED_INDEX);
+            db.execSQL(SQL_DROP_INVENTORY_VIEW);
+            db.execSQL(SQL_CREATE_LIVE_INVENTORY_VIEW);
+
+            db.execSQL(SQL_DROP_STATS_UPDATE_TRIGGER);
+            db.execSQL(SQL_DROP_STATS_DELETE_TRIGGER);
+            db.execSQL(SQL_DROP_CHANGES_UPDATE_TRIGGER);
+            db.execSQL(SQL_DROP_CHANGES_DELETE_TRIGGER);
+            db.execSQL(SQL_DROP_ANALYTICS_UPDATE_TRIGGER);
+            db.execSQL(SQL_DROP_ANALYTICS_DELETE_TRIGGER);
+            db.execSQL(SQL_CREATE_LIVE_STATS_UPDATE_TRIGGER);
+            db.execSQL(SQL_CREATE_LIVE_STATS_DELETE_TRIGGER);
+            db.execSQL(SQL_CREATE_LIVE_CHANGES_UPDATE_TRIGGER);
+            db.execSQL(SQL_CREATE_LIVE_CHANGES_DELETE_TRIGGER);
+            db.execSQL(SQL_CREATE_LIVE_ANALYTICS_UPDATE_TRIGGER);
+            db.execSQL(SQL_CREATE_LIVE_ANALYTICS_DELETE_TRIGGER);
+            db.execSQL(SQL_CREATE_TOMBSTONE_TRIGGER);
+            db.execSQL(SQL_CREATE_RESTORE_TRIGGER);
+        }
+    };
+
+    static final Migration MIGRATION_12_13 = new Migration(12) {
+        @Override
+        void migrate(SQLiteDatabase db) {
+            db.execSQL(SQL_ADD_PHOTO_COLUMN);
+            db.execSQL(SQL_DROP_INVENTORY_VIEW);
+            db.execSQL(SQL_CREATE_PHOTO_INVENTORY_VIEW);
+        }
+    };
+
+    private static final Migration[] MIGRATIONS = {
+            MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5, MIGRATION_5_6, MIGRATION_6_7, MIGRATION_7_8,
+            MIGRATION_8_9, MIGRATION_9_10, MIGRATION_10_11, MIGRATION_11_12, MIGRATION_12_13
+    };
+
+    private InventoryMigrations() {}
+
+    /** Runs every step from {@code fromVersion} to {@code toVersion} inside the caller's transaction. */
+    static void migrate(SQLiteDatabase db, int fromVersion, int toVersion) {
+        for (int version = fromVersion; version < toVersion; version++) {
+            if (version > MIGRATIONS.length || MIGRATIONS[version - 1].startVersion != version) {
+                throw new IllegalStateException("No migration from database version " + version);
+            }
+            MIGRATIONS[version - 1].migrate(db);
+        }
+    }
+}
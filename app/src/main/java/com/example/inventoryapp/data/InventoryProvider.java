@@ -1,41 +1,286 @@
 package com.example.inventoryapp.data;
 
 import android.content.ContentProvider;
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
 import android.content.ContentUris;
 import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.content.SharedPreferences;
 import android.content.UriMatcher;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
+import android.database.SQLException;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 import android.net.Uri;
+import android.os.Bundle;
+import android.os.CancellationSignal;
+import android.os.ParcelFileDescriptor;
+import android.text.TextUtils;
 import android.util.Log;
+import android.util.SparseArray;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 public class InventoryProvider extends ContentProvider {
 
     private static final int ITEMS = 100;
 
     private static final int ITEM_ID = 101;
 
+    private static final int SEARCH = 102;
+
+    private static final int STATS = 103;
+
+    private static final int SKU = 104;
+
+    private static final int SUPPLIERS = 105;
+
+    private static final int SUPPLIER_ITEMS = 106;
+
+    private static final int CHANGES = 107;
+
+    private static final int MOVEMENTS = 108;
+
+    private static final int MOVEMENTS_DAILY = 109;
+
+    private static final int MOVEMENTS_WEEKLY = 110;
+
+    private static final int ANALYTICS = 111;
+
+    private static final int PACKED = 112;
+
+    private static final int ITEM_CACHE_SIZE = 256;
+
     private static final UriMatcher uriMatcher = new UriMatcher(UriMatcher.NO_MATCH);
 
+    // Path pattern of each match code, naming its metrics series.
+    private static final SparseArray<String> patterns = new SparseArray<>();
+
     private static final String LOG_TAG = InventoryProvider.class.getSimpleName();
 
     static {
 
-        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY, ITEMS);
+        addUri(InventoryContract.PATH_INVENTORY, ITEMS);
+
+        addUri(InventoryContract.PATH_INVENTORY + "/#", ITEM_ID);
+
+        addUri(InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_SEARCH + "/*", SEARCH);
+
+        addUri(InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_STATS, STATS);
+
+        addUri(InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_SKU + "/*", SKU);
+
+        addUri(InventoryContract.PATH_SUPPLIERS, SUPPLIERS);
+
+        addUri(InventoryContract.PATH_SUPPLIERS + "/#/" + InventoryContract.PATH_ITEMS, SUPPLIER_ITEMS);
+
+        addUri(InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_CHANGES, CHANGES);
 
-        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, InventoryContract.PATH_INVENTORY + "/#", ITEM_ID);
+        addUri(InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_MOVEMENTS, MOVEMENTS);
 
+        addUri(InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_MOVEMENTS + "/" + InventoryContract.PATH_DAILY,
+                MOVEMENTS_DAILY);
+
+        addUri(InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_MOVEMENTS + "/" + InventoryContract.PATH_WEEKLY,
+                MOVEMENTS_WEEKLY);
+
+        addUri(InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_ANALYTICS, ANALYTICS);
+
+        addUri(InventoryContract.PATH_INVENTORY + "/" + InventoryContract.PATH_PACKED, PACKED);
+
+    }
+
+    private static void addUri(String path, int match) {
+        uriMatcher.addURI(InventoryContract.CONTENT_AUTHORITY, path, match);
+        patterns.put(match, path);
     }
 
+    private static final String SQL_INSERT_ITEM = "INSERT INTO " + InventoryContract.InventoryEntry.TABLE_NAME + " ("
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ", "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER_ID + ", "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_SKU + ", "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO + ") VALUES (?, ?, ?, ?, ?, ?)";
+
+    // Lets callers keep filtering writes on the supplier and email columns, which only the view has.
+    private static final String VIEW_SELECTION_PREFIX = InventoryContract.InventoryEntry._ID + " IN (SELECT "
+            + InventoryContract.InventoryEntry._ID + " FROM " + InventoryContract.InventoryEntry.VIEW_NAME + " WHERE ";
+
+    private static final String SQL_SELECT_SUPPLIER_OF_ITEM = "SELECT " + InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER + ", "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL + " FROM " + InventoryContract.InventoryEntry.VIEW_NAME
+            + " WHERE " + InventoryContract.InventoryEntry._ID + " = ?";
+
+    private static final String SEARCH_DEFAULT_LIMIT = "50";
+
+    // Every match is ranked; capping the candidates would drop better matches that happen to have higher ids.
+    private static final String SEARCH_SELECTION = InventoryContract.InventoryEntry._ID + " IN (SELECT docid FROM "
+            + InventoryContract.InventoryEntry.SEARCH_TABLE_NAME + " WHERE "
+            + InventoryContract.InventoryEntry.SEARCH_TABLE_NAME + " MATCH ?)";
+
+    // Names starting with the query first, then names containing it, then supplier/email matches.
+    private static final String SEARCH_SORT_ORDER = "CASE WHEN " + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME
+            + " LIKE ? ESCAPE '\\' THEN 0 WHEN " + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME
+            + " LIKE ? ESCAPE '\\' THEN 1 ELSE 2 END, " + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME;
+
+    // Deleted rows stay in the table until purged; everything but undo and the purge skips them.
+    private static final String LIVE_SELECTION = InventoryContract.InventoryEntry.COLUMN_ITEM_DELETED_AT + " IS NULL";
+
+    private static final String SQL_ADJUST_QUANTITY = "UPDATE " + InventoryContract.InventoryEntry.TABLE_NAME
+            + " SET " + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " = "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " + ?1, "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_VERSION + " = " + InventoryContract.InventoryEntry.COLUMN_ITEM_VERSION
+            + " + 1 WHERE "
+            + InventoryContract.InventoryEntry._ID + " = ?2 AND "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " + ?1 >= 0 AND " + LIVE_SELECTION;
+
+    private static final String SQL_SELECT_QUANTITY = "SELECT " + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY
+            + " FROM " + InventoryContract.InventoryEntry.TABLE_NAME + " WHERE " + InventoryContract.InventoryEntry._ID + " = ?";
+
+    private static final String SQL_COMPUTE_STATS = "SELECT coalesce(sum("
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + " * " + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + "), 0), count(*), "
+            + "coalesce(sum(" + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " = 0), 0), "
+            + "coalesce(sum(" + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " BETWEEN 1 AND "
+            + InventoryContract.StatsEntry.LOW_STOCK_THRESHOLD + "), 0) FROM " + InventoryContract.InventoryEntry.TABLE_NAME
+            + " WHERE " + LIVE_SELECTION;
+
+    private static final String SQL_REBUILD_STATS = "INSERT OR REPLACE INTO " + InventoryContract.StatsEntry.TABLE_NAME + " (_id, "
+            + InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE + ", "
+            + InventoryContract.StatsEntry.COLUMN_ITEM_COUNT + ", "
+            + InventoryContract.StatsEntry.COLUMN_OUT_OF_STOCK_COUNT + ", "
+            + InventoryContract.StatsEntry.COLUMN_LOW_STOCK_COUNT + ") SELECT 1, * FROM (" + SQL_COMPUTE_STATS + ")";
+
+    private static final String[] STATS_COLUMNS = {
+            InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE,
+            InventoryContract.StatsEntry.COLUMN_ITEM_COUNT,
+            InventoryContract.StatsEntry.COLUMN_OUT_OF_STOCK_COUNT,
+            InventoryContract.StatsEntry.COLUMN_LOW_STOCK_COUNT
+    };
+
+    private static final String CHANGES_DEFAULT_LIMIT = "500";
+
+    private static final String SQL_ROLLUP_ORDER = InventoryContract.MovementEntry.COLUMN_PERIOD + ", "
+            + InventoryContract.MovementEntry.COLUMN_ITEM_ID;
+
+    // Walks item_analytics_value_idx backwards: most valuable first, so A, then B, then C.
+    private static final String SQL_ANALYTICS_ORDER = InventoryContract.AnalyticsEntry.COLUMN_VALUE + " DESC";
+
+    // Deletes from the old end of stock_movements_time_idx, so a batch costs the same however long the history is.
+    private static final String SQL_PRUNE_MOVEMENTS = "DELETE FROM " + InventoryContract.MovementEntry.TABLE_NAME
+            + " WHERE " + InventoryContract.MovementEntry._ID + " IN (SELECT " + InventoryContract.MovementEntry._ID
+            + " FROM " + InventoryContract.MovementEntry.TABLE_NAME + " WHERE " + InventoryContract.MovementEntry.COLUMN_MOVED_AT
+            + " < ? ORDER BY " + InventoryContract.MovementEntry.COLUMN_MOVED_AT + " LIMIT ?)";
+
+    // Spelled out so SQLite 3.8 sees that inventory_deleted_idx, which holds only these rows, applies.
+    private static final String DELETED_SELECTION = InventoryContract.InventoryEntry.COLUMN_ITEM_DELETED_AT + " IS NOT NULL";
+
+    private static final String SQL_SELECT_DELETED_SKUS = "SELECT " + InventoryContract.InventoryEntry.COLUMN_ITEM_SKU
+            + " FROM " + InventoryContract.InventoryEntry.TABLE_NAME + " WHERE "
+            + DELETED_SELECTION + " AND " + InventoryContract.InventoryEntry.COLUMN_ITEM_DELETED_AT + " >= ? AND "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_SKU + " IS NOT NULL";
+
+    // OR IGNORE leaves an item deleted if a live one has taken its SKU since.
+    private static final String SQL_UNDO_DELETE = "UPDATE OR IGNORE " + InventoryContract.InventoryEntry.TABLE_NAME
+            + " SET " + InventoryContract.InventoryEntry.COLUMN_ITEM_DELETED_AT + " = NULL WHERE "
+            + DELETED_SELECTION + " AND " + InventoryContract.InventoryEntry.COLUMN_ITEM_DELETED_AT + " >= ?";
+
+    // Like SQL_PRUNE_MOVEMENTS, takes the oldest tombstones off the end of inventory_deleted_idx.
+    private static final String SQL_PURGE_DELETED = "DELETE FROM " + InventoryContract.InventoryEntry.TABLE_NAME
+            + " WHERE " + InventoryContract.InventoryEntry._ID + " IN (SELECT " + InventoryContract.InventoryEntry._ID
+            + " FROM " + InventoryContract.InventoryEntry.TABLE_NAME + " WHERE " + DELETED_SELECTION + " AND "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_DELETED_AT + " < ? ORDER BY "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_DELETED_AT + " LIMIT ?)";
+
+    // Deleted items keep their photo until purged, so undo brings it back with them.
+    private static final String SQL_SELECT_PHOTOS = "SELECT " + InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO
+            + " FROM " + InventoryContract.InventoryEntry.TABLE_NAME + " WHERE "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO + " IS NOT NULL";
+
+    // PRAGMA auto_vacuum value of a database that gives pages back on incremental_vacuum.
+    private static final long AUTO_VACUUM_INCREMENTAL = 2;
+
+    // Pages handed back to the file system after each purge batch, 1 MiB at the default page size.
+    private static final int PURGE_VACUUM_PAGES = 256;
+
+    private static final int MAX_PACKED_WRITERS = 2;
+
+    private static final String PREFERENCES_NAME = "inventory_provider";
+
+    private static final String KEY_VACUUM_CONVERTED = "vacuum_converted";
+
+    // Joins the tables rather than the view: SQLite cannot flatten a join view on the right of a LEFT JOIN.
+    private static final String SQL_SELECT_CHANGES = "SELECT c." + InventoryContract.ChangeEntry.COLUMN_SEQ + ", c."
+            + InventoryContract.ChangeEntry.COLUMN_ITEM_ID + ", c." + InventoryContract.ChangeEntry.COLUMN_OP + ", c."
+            + InventoryContract.ChangeEntry.COLUMN_SKU + ", c." + InventoryContract.ChangeEntry.COLUMN_CHANGED_AT + ", c."
+            + InventoryContract.ChangeEntry.COLUMN_SOURCE + ", i." + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + ", i."
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + ", i." + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + ", s."
+            + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME + " AS " + InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER
+            + ", nullif(s." + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_EMAIL + ", '') AS " + InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL
+            + " FROM " + InventoryContract.ChangeEntry.TABLE_NAME + " c LEFT JOIN " + InventoryContract.InventoryEntry.TABLE_NAME
+            + " i ON i." + InventoryContract.InventoryEntry._ID + " = c." + InventoryContract.ChangeEntry.COLUMN_ITEM_ID
+            + " AND i." + LIVE_SELECTION + " LEFT JOIN " + InventoryContract.SupplierEntry.TABLE_NAME + " s ON s." + InventoryContract.SupplierEntry._ID
+            + " = i." + InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER_ID
+            + " WHERE c." + InventoryContract.ChangeEntry.COLUMN_SEQ + " > ? ORDER BY c." + InventoryContract.ChangeEntry.COLUMN_SEQ + " LIMIT ?";
+
+    private static final String SQL_SET_APPLYING_SYNC = "UPDATE " + InventoryMigrations.SYNC_STATE_TABLE_NAME
+            + " SET " + InventoryMigrations.COLUMN_APPLYING_SYNC + " = ?";
+
+    // The triggers add and subtract doubles, so the running total may drift by rounding error.
+    private static final double STATS_VALUE_TOLERANCE = 0.005;
+
     private InventoryDbHelper dbHelper;
 
+    private ChangeNotifier changeNotifier;
+
+    private final ItemCache itemCache = new ItemCache(ITEM_CACHE_SIZE);
+
+    private final SkuFilter skuFilter = new SkuFilter();
+
+    private final ProviderMetrics metrics = new ProviderMetrics(patterns);
+
+    private InventoryAnalytics analytics;
+
+    // Writes packed streams. Each reads the whole table, so a few at a time is plenty; later
+    // opens wait their turn, and their readers block until the stream starts.
+    private final ExecutorService packedWriters = createPackedWriters();
+
+    // Set when a photo may have lost its last item; starts set for photos picked in an edit never saved.
+    private volatile boolean photoSweepPending = true;
+
+    private static ExecutorService createPackedWriters() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_PACKED_WRITERS, MAX_PACKED_WRITERS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> new Thread(runnable, "PackedItems writer"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
 
     @Override
     public boolean onCreate() {
         dbHelper = new InventoryDbHelper(getContext());
+        analytics = new InventoryAnalytics(new ForkJoinPool(Runtime.getRuntime().availableProcessors()),
+                getContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE));
+        changeNotifier = new ChangeNotifier(getContext().getContentResolver(), InventoryContract.InventoryEntry.CONTENT_URI,
+                InventoryContract.StatsEntry.CONTENT_URI, InventoryContract.SupplierEntry.CONTENT_URI,
+                InventoryContract.ChangeEntry.CONTENT_URI, InventoryContract.MovementEntry.CONTENT_URI);
         return true;
     }
 
@@ -43,6 +288,41 @@ public class InventoryProvider extends ContentProvider {
     @Override
     public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
                         @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        return query(uri, projection, selection, selectionArgs, sortOrder, null);
+    }
+
+    /** Passes {@code cancellationSignal} down to SQLite, so a cancelled query stops filling its window. */
+    @Nullable
+    @Override
+    public Cursor query(@NonNull Uri uri, @Nullable String[] projection, @Nullable String selection,
+                        @Nullable String[] selectionArgs, @Nullable String sortOrder,
+                        @Nullable CancellationSignal cancellationSignal) {
+        ProviderMetrics.Series series = metrics.series(ProviderMetrics.QUERY, uriMatcher.match(uri));
+        long start = ProviderMetrics.begin(series);
+        Cursor cursor = null;
+        int rows = 0;
+        boolean failed = true;
+        try {
+            cursor = performQuery(uri, projection, selection, selectionArgs, sortOrder, cancellationSignal);
+            // Fills the first window here, so the time covers SQLite's work and not just preparing the statement.
+            rows = cursor.getCount();
+            ProviderMetrics.recordWindow(series, cursor, rows);
+            failed = false;
+            return cursor;
+        } catch (RuntimeException e) {
+            // Includes a query cancelled or failing while getCount() runs it; nobody else can close the cursor.
+            if (cursor != null) {
+                cursor.close();
+            }
+            throw e;
+        } finally {
+            ProviderMetrics.end(series, start, rows, failed);
+        }
+    }
+
+    private Cursor performQuery(Uri uri, @Nullable String[] projection, @Nullable String selection,
+                                @Nullable String[] selectionArgs, @Nullable String sortOrder,
+                                @Nullable CancellationSignal cancellationSignal) {
 
         SQLiteDatabase database = dbHelper.getReadableDatabase();
 
@@ -51,24 +331,289 @@ public class InventoryProvider extends ContentProvider {
         int match = uriMatcher.match(uri);
         switch (match) {
             case ITEMS: {
-                cursor = database.query(InventoryContract.InventoryEntry.TABLE_NAME, projection, selection, selectionArgs, null, null, sortOrder);
+                ListQuery list = buildListQuery(uri, projection, selection, selectionArgs, sortOrder);
+                cursor = database.rawQuery(list.sql, list.args, cancellationSignal);
                 break;
             }
             case ITEM_ID: {
+                long id = ContentUris.parseId(uri);
+                if (ItemCache.covers(projection)) {
+                    cursor = ItemCache.toCursor(queryCachedItem(database, id), projection);
+                    break;
+                }
                 selection = InventoryContract.InventoryEntry._ID + "=?";
-                selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri))};
-                cursor = database.query(InventoryContract.InventoryEntry.TABLE_NAME, projection, selection, selectionArgs, null, null, sortOrder);
+                selectionArgs = new String[] { String.valueOf(id)};
+                cursor = database.query(false, InventoryContract.InventoryEntry.VIEW_NAME, projection, selection, selectionArgs,
+                        null, null, sortOrder, null, cancellationSignal);
+                break;
+            }
+            case SEARCH: {
+                cursor = searchItems(database, uri, projection, cancellationSignal);
+                break;
+            }
+            case SKU: {
+                String sku = uri.getLastPathSegment();
+                if (!skuFilter.mightContain(dbHelper, sku)) {
+                    cursor = new MatrixCursor(projection != null ? projection : ItemCache.COLUMNS, 0);
+                    break;
+                }
+                cursor = database.query(InventoryContract.InventoryEntry.VIEW_NAME, projection,
+                        InventoryContract.InventoryEntry.COLUMN_ITEM_SKU + "=?", new String[] { sku }, null, null, null, "1");
+                break;
+            }
+            case SUPPLIERS: {
+                cursor = database.query(false, InventoryContract.SupplierEntry.TABLE_NAME, projection, selection, selectionArgs,
+                        null, null, sortOrder != null ? sortOrder : InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME,
+                        null, cancellationSignal);
+                break;
+            }
+            case SUPPLIER_ITEMS: {
+                // Walks inventory_supplier_list_idx (supplier_id, name), so no sort step is needed.
+                selection = DatabaseUtils.concatenateWhere(selection, InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER_ID + "=?");
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs, new String[] { uri.getPathSegments().get(1) });
+                cursor = database.query(false, InventoryContract.InventoryEntry.VIEW_NAME, projection, selection, selectionArgs,
+                        null, null, sortOrder != null ? sortOrder : InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
+                        null, cancellationSignal);
+                break;
+            }
+            case STATS: {
+                cursor = database.query(InventoryContract.StatsEntry.TABLE_NAME, projection != null ? projection : STATS_COLUMNS,
+                        null, null, null, null, null);
+                break;
+            }
+            case CHANGES: {
+                // The feed has fixed columns; projection, selection and sort order do not apply.
+                String since = uri.getQueryParameter(InventoryContract.ChangeEntry.QUERY_PARAMETER_SINCE) != null
+                        ? String.valueOf(parseLongParameter(uri, InventoryContract.ChangeEntry.QUERY_PARAMETER_SINCE)) : "0";
+                String limit = uri.getQueryParameter(InventoryContract.InventoryEntry.QUERY_PARAMETER_LIMIT) != null
+                        ? String.valueOf(parseLongParameter(uri, InventoryContract.InventoryEntry.QUERY_PARAMETER_LIMIT))
+                        : CHANGES_DEFAULT_LIMIT;
+                cursor = database.rawQuery(SQL_SELECT_CHANGES, new String[] { since, limit }, cancellationSignal);
+                break;
+            }
+            case MOVEMENTS: {
+                cursor = database.query(false, InventoryContract.MovementEntry.TABLE_NAME, projection, selection, selectionArgs,
+                        null, null, sortOrder != null ? sortOrder : InventoryContract.MovementEntry._ID,
+                        limitParameter(uri), cancellationSignal);
+                break;
+            }
+            case MOVEMENTS_DAILY:
+            case MOVEMENTS_WEEKLY: {
+                // The default order walks the (period, item_id) index, so a period range reads without sorting.
+                String table = match == MOVEMENTS_DAILY ? InventoryContract.MovementEntry.DAILY_TABLE_NAME
+                        : InventoryContract.MovementEntry.WEEKLY_TABLE_NAME;
+                cursor = database.query(false, table, projection, selection, selectionArgs, null, null,
+                        sortOrder != null ? sortOrder : SQL_ROLLUP_ORDER, limitParameter(uri), cancellationSignal);
+                break;
+            }
+            case ANALYTICS: {
+                cursor = database.query(false, InventoryContract.AnalyticsEntry.TABLE_NAME, projection, selection, selectionArgs,
+                        null, null, sortOrder != null ? sortOrder : SQL_ANALYTICS_ORDER, limitParameter(uri), cancellationSignal);
                 break;
             }
             default:
                 throw new IllegalArgumentException("Cannot query unknown URI " + uri);
         }
 
-        cursor.setNotificationUri(getContext().getContentResolver(), uri);
+        // Search and SKU results can change with any item, so they observe the whole collection.
+        cursor.setNotificationUri(getContext().getContentResolver(),
+                match == SEARCH || match == SKU ? InventoryContract.InventoryEntry.CONTENT_URI
+                        : match == CHANGES ? InventoryContract.ChangeEntry.CONTENT_URI : uri);
 
         return cursor;
     }
 
+    /** SQL and arguments for one item list query. */
+    static final class ListQuery {
+
+        final String sql;
+
+        final String[] args;
+
+        ListQuery(String sql, String[] args) {
+            this.sql = sql;
+            this.args = args;
+        }
+    }
+
+    /**
+     * Builds the item list query for the order and filters given by the URI's query parameters.
+     * Every sort reads one covering index in order and pages by seeking past the last key, so
+     * neither sorting nor skipping earlier pages costs more as the table grows.
+     */
+    static ListQuery buildListQuery(Uri uri, @Nullable String[] projection, @Nullable String selection,
+                                    @Nullable String[] selectionArgs, @Nullable String sortOrder) {
+        String limit = null;
+        if (uri.getQueryParameter(InventoryContract.InventoryEntry.QUERY_PARAMETER_LIMIT) != null) {
+            limit = String.valueOf(parseLongParameter(uri, InventoryContract.InventoryEntry.QUERY_PARAMETER_LIMIT));
+        }
+        String sort = uri.getQueryParameter(InventoryContract.InventoryEntry.QUERY_PARAMETER_SORT);
+        List<String> afterKey = uri.getQueryParameters(InventoryContract.InventoryEntry.QUERY_PARAMETER_AFTER);
+        if (sort == null && (limit != null || !afterKey.isEmpty())) {
+            sort = InventoryContract.InventoryEntry.SORT_NAME;
+        }
+
+        if (sort != null) {
+            String[] keyColumns = InventoryContract.InventoryEntry.sortKeyColumns(sort);
+            sortOrder = TextUtils.join(", ", keyColumns);
+            if (!afterKey.isEmpty()) {
+                if (afterKey.size() != keyColumns.length) {
+                    throw new IllegalArgumentException("Expected " + keyColumns.length + " "
+                            + InventoryContract.InventoryEntry.QUERY_PARAMETER_AFTER + " values in " + uri);
+                }
+                selection = DatabaseUtils.concatenateWhere(selection, buildKeysetSelection(keyColumns));
+                selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs, buildKeysetArgs(afterKey));
+            } else if (InventoryContract.InventoryEntry.SORT_SUPPLIER.equals(sort)) {
+                // Every name is >= '', but the range keeps SQLite starting from suppliers_name_idx, as
+                // later pages do, instead of scanning live items and sorting them.
+                selection = DatabaseUtils.concatenateWhere(selection,
+                        InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER + " >= ''");
+            }
+        }
+
+        if (Boolean.parseBoolean(uri.getQueryParameter(InventoryContract.InventoryEntry.QUERY_PARAMETER_IN_STOCK))) {
+            selection = DatabaseUtils.concatenateWhere(selection,
+                    filterColumn(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, InventoryContract.InventoryEntry.SORT_QUANTITY, sort)
+                            + " > 0");
+        }
+        String[][] priceBounds = {
+                { InventoryContract.InventoryEntry.QUERY_PARAMETER_MIN_PRICE, " >= " },
+                { InventoryContract.InventoryEntry.QUERY_PARAMETER_MAX_PRICE, " <= " }
+        };
+        boolean sortedByPrice = InventoryContract.InventoryEntry.SORT_PRICE.equals(sort);
+        for (String[] bound : priceBounds) {
+            if (uri.getQueryParameter(bound[0]) == null) {
+                continue;
+            }
+            selection = DatabaseUtils.concatenateWhere(selection,
+                    filterColumn(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, InventoryContract.InventoryEntry.SORT_PRICE, sort)
+                            + bound[1] + (sortedByPrice ? "?" : "CAST(? AS REAL)"));
+            selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs,
+                    new String[] { String.valueOf(parseDoubleParameter(uri, bound[0])) });
+        }
+
+        return new ListQuery(SQLiteQueryBuilder.buildQueryString(false, InventoryContract.InventoryEntry.VIEW_NAME,
+                projection, selection, null, null, sortOrder, limit), selectionArgs);
+    }
+
+    /**
+     * Filters on a column other than the sort key get a unary plus, which keeps SQLite from
+     * choosing that column's index and then sorting; the sort index covers the column anyway.
+     * The plus also drops the column's affinity, hence the CAST on string arguments.
+     */
+    private static String filterColumn(String column, String columnSort, @Nullable String sort) {
+        return columnSort.equals(sort) ? column : "+" + column;
+    }
+
+    /** Rows strictly after the key, as nested ranges SQLite 3.8 can still turn into an index seek. */
+    private static String buildKeysetSelection(String[] keyColumns) {
+        StringBuilder selection = new StringBuilder();
+        StringBuilder closing = new StringBuilder();
+        int last = keyColumns.length - 1;
+        for (int i = 0; i < last; i++) {
+            if (i > 0) {
+                selection.append('(');
+                closing.append(')');
+            }
+            selection.append(keyColumns[i]).append(" >= ? AND (").append(keyColumns[i]).append(" > ? OR ");
+            closing.append(')');
+        }
+        return selection.append(keyColumns[last]).append(" > ?").append(closing).toString();
+    }
+
+    private static String[] buildKeysetArgs(List<String> afterKey) {
+        int last = afterKey.size() - 1;
+        String[] args = new String[2 * last + 1];
+        for (int i = 0; i < last; i++) {
+            args[2 * i] = afterKey.get(i);
+            args[2 * i + 1] = afterKey.get(i);
+        }
+        args[2 * last] = afterKey.get(last);
+        return args;
+    }
+
+    @Nullable
+    private ItemCache.Item queryCachedItem(SQLiteDatabase database, long id) {
+        ItemCache.Item item = itemCache.get(id);
+        if (item != null) {
+            return item;
+        }
+
+        long generation = itemCache.generation();
+        try (Cursor row = database.query(InventoryContract.InventoryEntry.VIEW_NAME, ItemCache.COLUMNS,
+                InventoryContract.InventoryEntry._ID + "=?", new String[] { String.valueOf(id) }, null, null, null)) {
+            if (!row.moveToFirst()) {
+                return null;
+            }
+            item = ItemCache.Item.from(row);
+        }
+        itemCache.put(item, generation);
+        return item;
+    }
+
+    private Cursor searchItems(SQLiteDatabase database, Uri uri, String[] projection,
+                               @Nullable CancellationSignal cancellationSignal) {
+        String query = uri.getLastPathSegment().trim();
+        String match = buildMatchExpression(query);
+        if (match == null) {
+            return database.query(InventoryContract.InventoryEntry.VIEW_NAME, projection, "0", null, null, null, null);
+        }
+
+        String limit = SEARCH_DEFAULT_LIMIT;
+        if (uri.getQueryParameter(InventoryContract.InventoryEntry.QUERY_PARAMETER_LIMIT) != null) {
+            limit = String.valueOf(parseLongParameter(uri, InventoryContract.InventoryEntry.QUERY_PARAMETER_LIMIT));
+        }
+
+        String like = query.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+        String sql = SQLiteQueryBuilder.buildQueryString(false, InventoryContract.InventoryEntry.VIEW_NAME, projection,
+                SEARCH_SELECTION, null, null, SEARCH_SORT_ORDER, limit);
+        return database.rawQuery(sql, new String[] { match, like + "%", "%" + like + "%" }, cancellationSignal);
+    }
+
+    /** Turns free text into an FTS prefix query: every word must match the start of some token. */
+    private static String buildMatchExpression(String query) {
+        StringBuilder match = new StringBuilder();
+        int i = 0;
+        while (i < query.length()) {
+            while (i < query.length() && !Character.isLetterOrDigit(query.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < query.length() && Character.isLetterOrDigit(query.charAt(i))) {
+                i++;
+            }
+            if (i > start) {
+                if (match.length() > 0) {
+                    match.append(' ');
+                }
+                match.append('"').append(query, start, i).append("*\"");
+            }
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+    @Nullable
+    private static String limitParameter(Uri uri) {
+        return uri.getQueryParameter(InventoryContract.InventoryEntry.QUERY_PARAMETER_LIMIT) != null
+                ? String.valueOf(parseLongParameter(uri, InventoryContract.InventoryEntry.QUERY_PARAMETER_LIMIT)) : null;
+    }
+
+    private static long parseLongParameter(Uri uri, String name) {
+        try {
+            return Long.parseLong(uri.getQueryParameter(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " in " + uri);
+        }
+    }
+
+    private static double parseDoubleParameter(Uri uri, String name) {
+        try {
+            return Double.parseDouble(uri.getQueryParameter(name));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid " + name + " in " + uri);
+        }
+    }
+
     @Nullable
     @Override
     public String getType(@NonNull Uri uri) {
@@ -78,14 +623,88 @@ public class InventoryProvider extends ContentProvider {
                 return InventoryContract.InventoryEntry.CONTENT_LIST_TYPE;
             case ITEM_ID:
                 return InventoryContract.InventoryEntry.CONTENT_ITEM_TYPE;
+            case SEARCH:
+                return InventoryContract.InventoryEntry.CONTENT_LIST_TYPE;
+            case SKU:
+                return InventoryContract.InventoryEntry.CONTENT_ITEM_TYPE;
+            case SUPPLIERS:
+                return InventoryContract.SupplierEntry.CONTENT_LIST_TYPE;
+            case SUPPLIER_ITEMS:
+                return InventoryContract.InventoryEntry.CONTENT_LIST_TYPE;
+            case STATS:
+                return InventoryContract.StatsEntry.CONTENT_ITEM_TYPE;
+            case CHANGES:
+                return InventoryContract.ChangeEntry.CONTENT_LIST_TYPE;
+            case MOVEMENTS:
+                return InventoryContract.MovementEntry.CONTENT_LIST_TYPE;
+            case MOVEMENTS_DAILY:
+            case MOVEMENTS_WEEKLY:
+                return InventoryContract.MovementEntry.CONTENT_ROLLUP_LIST_TYPE;
+            case ANALYTICS:
+                return InventoryContract.AnalyticsEntry.CONTENT_LIST_TYPE;
+            case PACKED:
+                return InventoryContract.InventoryEntry.CONTENT_PACKED_TYPE;
             default:
                 throw new IllegalStateException("Unknown URI " + uri + " with match " + match);
         }
     }
 
+    /**
+     * Streams {@link InventoryContract.InventoryEntry#CONTENT_PACKED_URI} through a pipe, written
+     * on a background thread while the caller reads. The writer stops early if the reader closes
+     * its end; the reader sees a stream without an end marker if the writer fails.
+     */
+    @Nullable
+    @Override
+    public ParcelFileDescriptor openFile(@NonNull Uri uri, @NonNull String mode) throws FileNotFoundException {
+        if (uriMatcher.match(uri) != PACKED) {
+            throw new FileNotFoundException("No file at " + uri);
+        }
+        if (!"r".equals(mode)) {
+            throw new FileNotFoundException("Packed items are read-only, cannot open in mode " + mode);
+        }
+        String[] columns = PackedItems.checkColumns(
+                uri.getQueryParameters(InventoryContract.InventoryEntry.QUERY_PARAMETER_COLUMN));
+        ProviderMetrics.Series series = metrics.series(ProviderMetrics.OPEN_FILE, uriMatcher.match(uri));
+        ParcelFileDescriptor[] pipe;
+        try {
+            pipe = ParcelFileDescriptor.createPipe();
+        } catch (IOException e) {
+            throw new FileNotFoundException("Cannot open pipe for " + uri + ": " + e.getMessage());
+        }
+        ParcelFileDescriptor writeEnd = pipe[1];
+        packedWriters.execute(() -> {
+            long start = ProviderMetrics.begin(series);
+            int rows = 0;
+            boolean failed = true;
+            try (OutputStream out = new ParcelFileDescriptor.AutoCloseOutputStream(writeEnd)) {
+                rows = PackedItems.write(dbHelper.getReadableDatabase(), columns, out);
+                failed = false;
+            } catch (IOException | SQLException e) {
+                Log.w(LOG_TAG, "Packed read of " + uri + " stopped", e);
+            } finally {
+                ProviderMetrics.end(series, start, rows, failed);
+            }
+        });
+        return pipe[0];
+    }
+
     @Nullable
     @Override
     public Uri insert(@NonNull Uri uri, @Nullable ContentValues contentValues) {
+        ProviderMetrics.Series series = metrics.series(ProviderMetrics.INSERT, uriMatcher.match(uri));
+        long start = ProviderMetrics.begin(series);
+        Uri itemUri = null;
+        try {
+            itemUri = performInsert(uri, contentValues);
+            return itemUri;
+        } finally {
+            ProviderMetrics.end(series, start, itemUri != null ? 1 : 0, itemUri == null);
+        }
+    }
+
+    @Nullable
+    private Uri performInsert(Uri uri, @Nullable ContentValues contentValues) {
         final int match =uriMatcher.match(uri);
         if (match == ITEMS) {
             return insertItem(uri, contentValues);
@@ -95,6 +714,40 @@ public class InventoryProvider extends ContentProvider {
 
     private Uri insertItem(Uri uri, ContentValues values) {
 
+        validateItem(values);
+
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+
+        long id;
+        database.beginTransaction();
+        try (SupplierResolver suppliers = new SupplierResolver(database)) {
+            beginSyncWrite(database, uri);
+            id = database.insert(InventoryContract.InventoryEntry.TABLE_NAME, null, suppliers.toRow(values));
+            endSyncWrite(database, uri);
+            if (id != -1) {
+                database.setTransactionSuccessful();
+            }
+        } finally {
+            database.endTransaction();
+        }
+
+        if(id == -1) {
+            Log.e(LOG_TAG, "Failed to insert row for " + uri);
+            return null;
+        }
+
+        String sku = values.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_SKU);
+        if (sku != null) {
+            skuFilter.add(sku);
+        }
+
+        Uri itemUri = ContentUris.withAppendedId(uri, id);
+        changeNotifier.notifyChange(itemUri);
+
+        return itemUri;
+    }
+
+    static void validateItem(ContentValues values) {
         if(values.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME) == null) {
             throw new IllegalArgumentException("Item requires a name");
         }
@@ -113,22 +766,159 @@ public class InventoryProvider extends ContentProvider {
             throw new IllegalArgumentException("Item requires a supplier name");
         }
 
+        validateSku(values);
+        validatePhoto(values);
+    }
+
+    private static void validateSku(ContentValues values) {
+        String sku = values.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_SKU);
+        if (sku != null && sku.trim().isEmpty()) {
+            throw new IllegalArgumentException("Item SKU must not be blank");
+        }
+    }
+
+    private static void validatePhoto(ContentValues values) {
+        if (!ItemPhotos.isValidName(values.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO))) {
+            throw new IllegalArgumentException("Item photo must be a file name from ItemPhotos.importPhoto");
+        }
+    }
+
+    @Override
+    public int bulkInsert(@NonNull Uri uri, @NonNull ContentValues[] values) {
+        ProviderMetrics.Series series = metrics.series(ProviderMetrics.BULK_INSERT, uriMatcher.match(uri));
+        long start = ProviderMetrics.begin(series);
+        int rowsInserted = 0;
+        boolean failed = true;
+        try {
+            rowsInserted = performBulkInsert(uri, values);
+            failed = false;
+            return rowsInserted;
+        } finally {
+            ProviderMetrics.end(series, start, rowsInserted, failed);
+        }
+    }
+
+    private int performBulkInsert(Uri uri, ContentValues[] values) {
+        final int match = uriMatcher.match(uri);
+        if (match != ITEMS) {
+            throw new IllegalArgumentException("Insertion is not supported for " + uri);
+        }
+
+        for (ContentValues value : values) {
+            validateItem(value);
+        }
+
         SQLiteDatabase database = dbHelper.getWritableDatabase();
+        int rowsInserted = 0;
 
-        long id = database.insert(InventoryContract.InventoryEntry.TABLE_NAME, null, values);
+        database.beginTransaction();
+        SQLiteStatement statement = database.compileStatement(SQL_INSERT_ITEM);
+        SupplierResolver suppliers = new SupplierResolver(database);
+        try {
+            beginSyncWrite(database, uri);
+            for (ContentValues value : values) {
+                statement.bindString(1, value.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME));
+                statement.bindLong(2, value.getAsInteger(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY));
+                statement.bindDouble(3, value.getAsDouble(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE));
+                statement.bindLong(4, suppliers.resolve(
+                        value.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER),
+                        value.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL)));
+                String sku = value.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_SKU);
+                if (sku == null) {
+                    statement.bindNull(5);
+                } else {
+                    statement.bindString(5, sku);
+                    // Added before commit: a rollback only leaves a false positive behind.
+                    skuFilter.add(sku);
+                }
+                String photo = value.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO);
+                if (photo == null) {
+                    statement.bindNull(6);
+                } else {
+                    statement.bindString(6, photo);
+                }
 
-        if(id == -1) {
-            Log.e(LOG_TAG, "Failed to insert row for " + uri);
-            return null;
+                if (statement.executeInsert() != -1) {
+                    rowsInserted++;
+                }
+                statement.clearBindings();
+            }
+            endSyncWrite(database, uri);
+            database.setTransactionSuccessful();
+        } finally {
+            statement.close();
+            suppliers.close();
+            database.endTransaction();
+        }
+
+        if (rowsInserted != 0) {
+            changeNotifier.notifyChange(uri);
+        }
+        return rowsInserted;
+    }
+
+    @NonNull
+    @Override
+    public ContentProviderResult[] applyBatch(@NonNull ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        // Each operation is also recorded under its own series.
+        ProviderMetrics.Series series = metrics.series("applyBatch", InventoryContract.CONTENT_AUTHORITY);
+        long start = ProviderMetrics.begin(series);
+        boolean failed = true;
+        try {
+            ContentProviderResult[] results = performApplyBatch(operations);
+            failed = false;
+            return results;
+        } finally {
+            ProviderMetrics.end(series, start, operations.size(), failed);
         }
+    }
+
+    private ContentProviderResult[] performApplyBatch(ArrayList<ContentProviderOperation> operations)
+            throws OperationApplicationException {
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        ContentProviderResult[] results;
 
-        getContext().getContentResolver().notifyChange(uri, null);
+        boolean committed = false;
+        changeNotifier.beginBatch();
+        database.beginTransaction();
+        try {
+            results = super.applyBatch(operations);
+            database.setTransactionSuccessful();
+            committed = true;
+        } finally {
+            database.endTransaction();
+            // Readers may have re-cached rows between the per-operation invalidations and commit.
+            itemCache.invalidateAll();
+            changeNotifier.endBatch(committed);
+        }
+        return results;
+    }
 
-        return ContentUris.withAppendedId(uri, id);
+    private void invalidateCachedItems(Uri uri) {
+        if (uriMatcher.match(uri) == ITEM_ID) {
+            itemCache.invalidate(ContentUris.parseId(uri));
+        } else {
+            itemCache.invalidateAll();
+        }
     }
 
     @Override
     public int delete(@NonNull Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
+        ProviderMetrics.Series series = metrics.series(ProviderMetrics.DELETE, uriMatcher.match(uri));
+        long start = ProviderMetrics.begin(series);
+        int rowsDeleted = 0;
+        boolean failed = true;
+        try {
+            rowsDeleted = performDelete(uri, selection, selectionArgs);
+            failed = false;
+            return rowsDeleted;
+        } finally {
+            ProviderMetrics.end(series, start, rowsDeleted, failed);
+        }
+    }
+
+    private int performDelete(Uri uri, @Nullable String selection, @Nullable String[] selectionArgs) {
         SQLiteDatabase database = dbHelper.getWritableDatabase();
 
         int rowsDeleted;
@@ -136,31 +926,64 @@ public class InventoryProvider extends ContentProvider {
         final int match = uriMatcher.match(uri);
         switch (match) {
             case ITEMS: {
-                rowsDeleted = database.delete(InventoryContract.InventoryEntry.TABLE_NAME, selection, selectionArgs);
+                selection = viewSelection(selection);
                 break;
             }
             case ITEM_ID: {
                 selection = InventoryContract.InventoryEntry._ID + "=?";
                 selectionArgs = new String[] { String.valueOf(ContentUris.parseId(uri)) };
-                rowsDeleted = database.delete(InventoryContract.InventoryEntry.TABLE_NAME, selection, selectionArgs);
                 break;
             }
+            case CHANGES: {
+                // Sync prunes entries it has pushed; nobody observes the log being trimmed.
+                return database.delete(InventoryContract.ChangeEntry.TABLE_NAME, selection, selectionArgs);
+            }
             default:
                 throw new IllegalArgumentException("Deletion is not supported for " + uri);
         }
 
+        // Only marks the rows, so deleting everything costs one indexed UPDATE and can be undone;
+        // InventoryPurgeJobService removes them later.
+        ContentValues tombstone = new ContentValues();
+        tombstone.put(InventoryContract.InventoryEntry.COLUMN_ITEM_DELETED_AT, System.currentTimeMillis());
+        database.beginTransaction();
+        try {
+            beginSyncWrite(database, uri);
+            rowsDeleted = database.update(InventoryContract.InventoryEntry.TABLE_NAME, tombstone,
+                    DatabaseUtils.concatenateWhere(LIVE_SELECTION, selection), selectionArgs);
+            endSyncWrite(database, uri);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+
         if(rowsDeleted != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            invalidateCachedItems(uri);
+            changeNotifier.notifyChange(uri);
         }
         return rowsDeleted;
     }
 
     @Override
     public int update(@NonNull Uri uri, @Nullable ContentValues contentValues, @Nullable String selection, @Nullable String[] selectionArgs) {
+        ProviderMetrics.Series series = metrics.series(ProviderMetrics.UPDATE, uriMatcher.match(uri));
+        long start = ProviderMetrics.begin(series);
+        int rowsUpdated = 0;
+        boolean failed = true;
+        try {
+            rowsUpdated = performUpdate(uri, contentValues, selection, selectionArgs);
+            failed = false;
+            return rowsUpdated;
+        } finally {
+            ProviderMetrics.end(series, start, rowsUpdated, failed);
+        }
+    }
+
+    private int performUpdate(Uri uri, @Nullable ContentValues contentValues, @Nullable String selection, @Nullable String[] selectionArgs) {
         final int match = uriMatcher.match(uri);
         switch (match) {
             case ITEMS: {
-                return updateItem(uri, contentValues, selection, selectionArgs);
+                return updateItem(uri, contentValues, viewSelection(selection), selectionArgs);
             }
             case ITEM_ID: {
                 selection = InventoryContract.InventoryEntry._ID + "=?";
@@ -199,19 +1022,434 @@ public class InventoryProvider extends ContentProvider {
             }
         }
 
+        validateSku(values);
+        validatePhoto(values);
+        if (values.containsKey(InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO)) {
+            // The photo being replaced is left for the next purge.
+            photoSweepPending = true;
+        }
+
+        if (values.containsKey(InventoryContract.InventoryEntry.COLUMN_ITEM_VERSION)) {
+            throw new IllegalArgumentException("Item version is maintained by the provider");
+        }
+
         if(values.size() == 0) {
             return 0;
         }
 
+        selection = DatabaseUtils.concatenateWhere(LIVE_SELECTION, selection);
+        if (uri.getQueryParameter(InventoryContract.InventoryEntry.QUERY_PARAMETER_EXPECTED_VERSION) != null) {
+            selection = DatabaseUtils.concatenateWhere(selection, InventoryContract.InventoryEntry.COLUMN_ITEM_VERSION + " = ?");
+            selectionArgs = DatabaseUtils.appendSelectionArgs(selectionArgs, new String[] {
+                    String.valueOf(parseLongParameter(uri, InventoryContract.InventoryEntry.QUERY_PARAMETER_EXPECTED_VERSION)) });
+        }
+
         SQLiteDatabase database = dbHelper.getWritableDatabase();
 
-        int rowsUpdated = database.update(InventoryContract.InventoryEntry.TABLE_NAME, values, selection, selectionArgs);
+        int rowsUpdated;
+        database.beginTransaction();
+        try (SupplierResolver suppliers = new SupplierResolver(database)) {
+            ContentValues row = values;
+            if (values.containsKey(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER)
+                    || values.containsKey(InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL)) {
+                ContentValues supplier = withCurrentSupplier(database, uri, values);
+                if (supplier == null) {
+                    return 0;
+                }
+                row = suppliers.toRow(supplier);
+            }
+            beginSyncWrite(database, uri);
+            rowsUpdated = updateRows(database, row, selection, selectionArgs);
+            endSyncWrite(database, uri);
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
 
         if(rowsUpdated != 0) {
-            getContext().getContentResolver().notifyChange(uri, null);
+            String sku = values.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_SKU);
+            if (sku != null) {
+                skuFilter.add(sku);
+            }
+            invalidateCachedItems(uri);
+            changeNotifier.notifyChange(uri);
         }
 
         return rowsUpdated;
     }
 
+    /**
+     * {@link SQLiteDatabase#update} that also bumps the version of every row it changes, in the
+     * same statement, so a versioned update checks and advances the version without a read.
+     */
+    private static int updateRows(SQLiteDatabase database, ContentValues row, @Nullable String selection,
+                                  @Nullable String[] selectionArgs) {
+        StringBuilder sql = new StringBuilder("UPDATE ").append(InventoryContract.InventoryEntry.TABLE_NAME).append(" SET ");
+        Object[] bindArgs = new Object[row.size() + (selectionArgs != null ? selectionArgs.length : 0)];
+        int i = 0;
+        for (String column : row.keySet()) {
+            sql.append(column).append(" = ?, ");
+            bindArgs[i++] = row.get(column);
+        }
+        sql.append(InventoryContract.InventoryEntry.COLUMN_ITEM_VERSION).append(" = ")
+                .append(InventoryContract.InventoryEntry.COLUMN_ITEM_VERSION).append(" + 1");
+        if (!TextUtils.isEmpty(selection)) {
+            sql.append(" WHERE ").append(selection);
+        }
+        if (selectionArgs != null) {
+            System.arraycopy(selectionArgs, 0, bindArgs, i, selectionArgs.length);
+        }
+
+        try (SQLiteStatement statement = database.compileStatement(sql.toString())) {
+            for (int index = 0; index < bindArgs.length; index++) {
+                DatabaseUtils.bindObjectToProgram(statement, index + 1, bindArgs[index]);
+            }
+            return statement.executeUpdateDelete();
+        }
+    }
+
+    /**
+     * Fills in whichever of supplier and email the update leaves out from the item's current
+     * supplier, since the two together identify the supplier row. Returns null if the item does
+     * not exist.
+     */
+    @Nullable
+    private ContentValues withCurrentSupplier(SQLiteDatabase database, Uri uri, ContentValues values) {
+        if (values.containsKey(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER)
+                && values.containsKey(InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL)) {
+            return values;
+        }
+        if (uriMatcher.match(uri) != ITEM_ID) {
+            throw new IllegalArgumentException("Changing the supplier of several items requires both supplier and email");
+        }
+        try (Cursor current = database.rawQuery(SQL_SELECT_SUPPLIER_OF_ITEM,
+                new String[] { String.valueOf(ContentUris.parseId(uri)) })) {
+            if (!current.moveToFirst()) {
+                return null;
+            }
+            ContentValues merged = new ContentValues(values);
+            if (!values.containsKey(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER)) {
+                merged.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER, current.getString(0));
+            } else {
+                merged.put(InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL, current.getString(1));
+            }
+            return merged;
+        }
+    }
+
+    /**
+     * Marks the change-log rows written until {@link #endSyncWrite} as coming from sync. The
+     * flag lives in the write transaction, so no other connection ever sees it raised.
+     */
+    private static void beginSyncWrite(SQLiteDatabase database, Uri uri) {
+        if (uri.getBooleanQueryParameter(InventoryContract.CALLER_IS_SYNC_ADAPTER, false)) {
+            database.execSQL(SQL_SET_APPLYING_SYNC, new Object[] { InventoryContract.ChangeEntry.SOURCE_SYNC });
+        }
+    }
+
+    private static void endSyncWrite(SQLiteDatabase database, Uri uri) {
+        if (uri.getBooleanQueryParameter(InventoryContract.CALLER_IS_SYNC_ADAPTER, false)) {
+            database.execSQL(SQL_SET_APPLYING_SYNC, new Object[] { InventoryContract.ChangeEntry.SOURCE_LOCAL });
+        }
+    }
+
+    @Nullable
+    private static String viewSelection(@Nullable String selection) {
+        return selection == null ? null : VIEW_SELECTION_PREFIX + selection + ")";
+    }
+
+    @Nullable
+    @Override
+    public Bundle call(@NonNull String method, @Nullable String arg, @Nullable Bundle extras) {
+        ProviderMetrics.Series series = metrics.series("call", method);
+        long start = ProviderMetrics.begin(series);
+        boolean failed = true;
+        try {
+            Bundle result = performCall(method, arg, extras);
+            failed = false;
+            return result;
+        } finally {
+            ProviderMetrics.end(series, start, 0, failed);
+        }
+    }
+
+    @Nullable
+    private Bundle performCall(String method, @Nullable String arg, @Nullable Bundle extras) {
+        switch (method) {
+            case InventoryContract.InventoryEntry.METHOD_ADJUST_QUANTITY: {
+                long[] quantities = adjustQuantities(
+                        new long[] { requireExtras(method, extras).getLong(InventoryContract.InventoryEntry.EXTRA_ITEM_ID) },
+                        new int[] { extras.getInt(InventoryContract.InventoryEntry.EXTRA_DELTA) });
+                Bundle result = new Bundle();
+                result.putLong(InventoryContract.InventoryEntry.EXTRA_QUANTITY, quantities[0]);
+                return result;
+            }
+            case InventoryContract.InventoryEntry.METHOD_ADJUST_QUANTITIES: {
+                long[] ids = requireExtras(method, extras).getLongArray(InventoryContract.InventoryEntry.EXTRA_ITEM_IDS);
+                int[] deltas = extras.getIntArray(InventoryContract.InventoryEntry.EXTRA_DELTAS);
+                if (ids == null || deltas == null || ids.length != deltas.length) {
+                    throw new IllegalArgumentException(method + " requires matching item id and delta arrays");
+                }
+                Bundle result = new Bundle();
+                result.putLongArray(InventoryContract.InventoryEntry.EXTRA_QUANTITIES, adjustQuantities(ids, deltas));
+                return result;
+            }
+            case InventoryContract.InventoryEntry.METHOD_UNDO_DELETE: {
+                long since = requireExtras(method, extras).getLong(InventoryContract.InventoryEntry.EXTRA_SINCE);
+                Bundle result = new Bundle();
+                result.putInt(InventoryContract.InventoryEntry.EXTRA_RESTORED, undoDelete(since));
+                return result;
+            }
+            case InventoryContract.InventoryEntry.METHOD_PURGE_DELETED: {
+                long before = requireExtras(method, extras).getLong(InventoryContract.InventoryEntry.EXTRA_BEFORE);
+                int limit = extras.getInt(InventoryContract.InventoryEntry.EXTRA_LIMIT);
+                if (limit <= 0) {
+                    throw new IllegalArgumentException(method + " requires a positive limit");
+                }
+                Bundle result = new Bundle();
+                result.putInt(InventoryContract.InventoryEntry.EXTRA_PURGED, purgeDeleted(before, limit));
+                return result;
+            }
+            case InventoryContract.StatsEntry.METHOD_CHECK_STATS: {
+                Bundle result = new Bundle();
+                result.putBoolean(InventoryContract.StatsEntry.EXTRA_REBUILT, checkStats());
+                return result;
+            }
+            case InventoryContract.MovementEntry.METHOD_PRUNE_MOVEMENTS: {
+                long before = requireExtras(method, extras).getLong(InventoryContract.MovementEntry.EXTRA_BEFORE);
+                int limit = extras.getInt(InventoryContract.MovementEntry.EXTRA_LIMIT);
+                if (limit <= 0) {
+                    throw new IllegalArgumentException(method + " requires a positive limit");
+                }
+                Bundle result = new Bundle();
+                result.putInt(InventoryContract.MovementEntry.EXTRA_DELETED, pruneMovements(before, limit));
+                return result;
+            }
+            case InventoryContract.AnalyticsEntry.METHOD_REFRESH_ANALYTICS: {
+                InventoryAnalytics.Result refreshed = analytics.refresh(dbHelper.getWritableDatabase(), System.currentTimeMillis());
+                if (refreshed.written > 0) {
+                    changeNotifier.notifyChange(InventoryContract.AnalyticsEntry.CONTENT_URI);
+                }
+                Bundle result = new Bundle();
+                result.putInt(InventoryContract.AnalyticsEntry.EXTRA_ITEMS, refreshed.items);
+                result.putInt(InventoryContract.AnalyticsEntry.EXTRA_WRITTEN, refreshed.written);
+                return result;
+            }
+            case InventoryContract.Metrics.METHOD_METRICS: {
+                return metricsSnapshot(extras != null && extras.getBoolean(InventoryContract.Metrics.EXTRA_RESET));
+            }
+            default:
+                return super.call(method, arg, extras);
+        }
+    }
+
+    private Bundle metricsSnapshot(boolean reset) {
+        Bundle result = new Bundle();
+        result.putBundle(InventoryContract.Metrics.EXTRA_SERIES, metrics.snapshot(reset));
+        result.putLong(InventoryContract.Metrics.EXTRA_ITEM_CACHE_HITS, itemCache.hitCount());
+        result.putLong(InventoryContract.Metrics.EXTRA_ITEM_CACHE_MISSES, itemCache.missCount());
+        result.putLong(InventoryContract.Metrics.EXTRA_ITEM_CACHE_EVICTIONS, itemCache.evictionCount());
+        result.putLong(InventoryContract.Metrics.EXTRA_SKU_LOOKUPS, skuFilter.lookupCount());
+        result.putLong(InventoryContract.Metrics.EXTRA_SKU_REJECTIONS, skuFilter.rejectionCount());
+        return result;
+    }
+
+    private static Bundle requireExtras(String method, @Nullable Bundle extras) {
+        if (extras == null) {
+            throw new IllegalArgumentException(method + " requires extras");
+        }
+        return extras;
+    }
+
+    /**
+     * Applies each delta with a single conditional UPDATE, so concurrent scanners never lose
+     * stock changes and the quantity can never go negative. Returns the new quantities, -1 where
+     * an adjustment was rejected.
+     */
+    private long[] adjustQuantities(long[] ids, int[] deltas) {
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        long[] quantities = new long[ids.length];
+        boolean committed = false;
+
+        changeNotifier.beginBatch();
+        database.beginTransaction();
+        SQLiteStatement adjust = database.compileStatement(SQL_ADJUST_QUANTITY);
+        SQLiteStatement select = database.compileStatement(SQL_SELECT_QUANTITY);
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                adjust.bindLong(1, deltas[i]);
+                adjust.bindLong(2, ids[i]);
+                if (adjust.executeUpdateDelete() == 1) {
+                    select.bindLong(1, ids[i]);
+                    quantities[i] = select.simpleQueryForLong();
+                    changeNotifier.notifyChange(ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, ids[i]));
+                } else {
+                    quantities[i] = -1;
+                }
+            }
+            database.setTransactionSuccessful();
+            committed = true;
+        } finally {
+            adjust.close();
+            select.close();
+            database.endTransaction();
+            for (long id : ids) {
+                itemCache.invalidate(id);
+            }
+            changeNotifier.endBatch(committed);
+        }
+        return quantities;
+    }
+
+    /**
+     * Deletes up to {@code limit} of the oldest movements before {@code before} in one
+     * transaction, so a large backlog is pruned in short steps that never hold up other writers.
+     */
+    private int pruneMovements(long before, int limit) {
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        int deleted;
+
+        database.beginTransaction();
+        SQLiteStatement prune = database.compileStatement(SQL_PRUNE_MOVEMENTS);
+        try {
+            prune.bindLong(1, before);
+            prune.bindLong(2, limit);
+            deleted = prune.executeUpdateDelete();
+            database.setTransactionSuccessful();
+        } finally {
+            prune.close();
+            database.endTransaction();
+        }
+
+        if (deleted > 0) {
+            changeNotifier.notifyChange(InventoryContract.MovementEntry.CONTENT_URI);
+        }
+        return deleted;
+    }
+
+    /**
+     * Restores the items deleted at or after {@code since} in one UPDATE. The triggers put them
+     * back into the summary, the search index and the change log as if they were inserted.
+     */
+    private int undoDelete(long since) {
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        int restored;
+
+        database.beginTransaction();
+        SQLiteStatement undo = database.compileStatement(SQL_UNDO_DELETE);
+        try {
+            try (Cursor skus = database.rawQuery(SQL_SELECT_DELETED_SKUS, new String[] { String.valueOf(since) })) {
+                while (skus.moveToNext()) {
+                    // The filter may have been built while these were deleted.
+                    skuFilter.add(skus.getString(0));
+                }
+            }
+            undo.bindLong(1, since);
+            restored = undo.executeUpdateDelete();
+            database.setTransactionSuccessful();
+        } finally {
+            undo.close();
+            database.endTransaction();
+        }
+
+        if (restored > 0) {
+            changeNotifier.notifyChange(InventoryContract.InventoryEntry.CONTENT_URI);
+        }
+        return restored;
+    }
+
+    /**
+     * Permanently removes up to {@code limit} of the oldest items deleted before {@code before}
+     * in one transaction, then gives a bounded number of free pages back to the file system.
+     * Nothing observes the purge: the rows already left every query when they were deleted.
+     */
+    private int purgeDeleted(long before, int limit) {
+        SQLiteDatabase database = dbHelper.getWritableDatabase();
+        int purged;
+
+        database.beginTransaction();
+        SQLiteStatement purge = database.compileStatement(SQL_PURGE_DELETED);
+        try {
+            purge.bindLong(1, before);
+            purge.bindLong(2, limit);
+            purged = purge.executeUpdateDelete();
+            database.setTransactionSuccessful();
+        } finally {
+            purge.close();
+            database.endTransaction();
+        }
+
+        if (purged > 0) {
+            photoSweepPending = true;
+        }
+        // Lists the photo directory once the backlog is gone, and only if a photo may have been freed.
+        if (purged < limit && photoSweepPending) {
+            photoSweepPending = false;
+            deleteUnusedPhotos(database);
+        }
+        if (DatabaseUtils.longForQuery(database, "PRAGMA auto_vacuum", null) == AUTO_VACUUM_INCREMENTAL) {
+            InventoryDbHelper.setPragma(database, "incremental_vacuum(" + PURGE_VACUUM_PAGES + ")");
+        } else if (purged < limit) {
+            convertToIncrementalVacuum(database);
+        }
+        return purged;
+    }
+
+    /**
+     * Databases created before version 12 only switch to incremental auto-vacuum on a full VACUUM.
+     * That rewrites the whole file under an exclusive lock, so it is tried once, after the backlog
+     * is gone, and never again even if the switch did not take.
+     */
+    private void convertToIncrementalVacuum(SQLiteDatabase database) {
+        SharedPreferences preferences = getContext().getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+        if (preferences.getBoolean(KEY_VACUUM_CONVERTED, false)) {
+            return;
+        }
+        preferences.edit().putBoolean(KEY_VACUUM_CONVERTED, true).apply();
+        database.execSQL("VACUUM");
+        if (DatabaseUtils.longForQuery(database, "PRAGMA auto_vacuum", null) != AUTO_VACUUM_INCREMENTAL) {
+            Log.w(LOG_TAG, "VACUUM did not switch the database to incremental auto-vacuum");
+        }
+    }
+
+    /** Deletes photo files left behind by purged items, replaced photos and abandoned edits. */
+    private void deleteUnusedPhotos(SQLiteDatabase database) {
+        Set<String> used = new HashSet<>();
+        try (Cursor cursor = database.rawQuery(SQL_SELECT_PHOTOS, null)) {
+            while (cursor.moveToNext()) {
+                used.add(cursor.getString(0));
+            }
+        }
+        int deleted = ItemPhotos.deleteUnused(ItemPhotos.directory(getContext()), used,
+                System.currentTimeMillis() - ItemPhotos.UNUSED_GRACE_MS);
+        if (deleted > 0) {
+            Log.i(LOG_TAG, "Deleted " + deleted + " unused photos");
+        }
+    }
+
+    /**
+     * Recomputes the summary with one scan of the inventory table and rewrites it if the
+     * trigger-maintained row disagrees. Returns whether a rebuild was needed. The scan runs
+     * outside any transaction, so writers carry on meanwhile; the write lock is only taken for
+     * a rebuild, which a write landing between the two reads can also cause, harmlessly.
+     */
+    private boolean checkStats() {
+        SQLiteDatabase database = dbHelper.getReadableDatabase();
+        boolean rebuilt;
+        try (Cursor stored = database.query(InventoryContract.StatsEntry.TABLE_NAME, STATS_COLUMNS, null, null, null, null, null);
+             Cursor actual = database.rawQuery(SQL_COMPUTE_STATS, null)) {
+            actual.moveToFirst();
+            rebuilt = !stored.moveToFirst()
+                    || Math.abs(stored.getDouble(0) - actual.getDouble(0)) > STATS_VALUE_TOLERANCE
+                    || stored.getLong(1) != actual.getLong(1)
+                    || stored.getLong(2) != actual.getLong(2)
+                    || stored.getLong(3) != actual.getLong(3);
+        }
+        if (rebuilt) {
+            dbHelper.getWritableDatabase().execSQL(SQL_REBUILD_STATS);
+            Log.w(LOG_TAG, "Inventory stats were out of date and have been rebuilt");
+            changeNotifier.notifyChange(InventoryContract.StatsEntry.CONTENT_URI);
+        }
+        return rebuilt;
+    }
 }
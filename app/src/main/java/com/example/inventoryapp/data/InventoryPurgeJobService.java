@@ -0,0 +1,96 @@
+package com.example.inventoryapp.data;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Permanently removes deleted items once they are older than {@link #UNDO_WINDOW_MS}, while the
+ * device is idle. Like {@link MovementPruneJobService}, each batch is its own short transaction
+ * and the job can stop between batches; whatever is left waits for the next run.
+ */
+public class InventoryPurgeJobService extends JobService {
+
+    private static final String LOG_TAG = InventoryPurgeJobService.class.getSimpleName();
+
+    private static final int JOB_ID = 1023;
+
+    private static final long PURGE_INTERVAL_MS = TimeUnit.HOURS.toMillis(6);
+
+    /** How long a deleted item can still be restored with {@link InventoryRepository#undoDelete}. */
+    public static final long UNDO_WINDOW_MS = TimeUnit.MINUTES.toMillis(5);
+
+    static final int BATCH_SIZE = 500;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private volatile boolean stopped;
+
+    /** Schedules the purge unless it is already scheduled. */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                return;
+            }
+        }
+        scheduler.schedule(new JobInfo.Builder(JOB_ID, new ComponentName(context, InventoryPurgeJobService.class))
+                .setRequiresDeviceIdle(true)
+                .setPeriodic(PURGE_INTERVAL_MS)
+                .build());
+    }
+
+    /**
+     * Purges items deleted before {@code before} in batches until none are left or
+     * {@code stopped} reports true. Returns the number purged.
+     */
+    static int purge(ContentResolver resolver, long before, StopCheck stopped) {
+        Bundle extras = new Bundle();
+        extras.putLong(InventoryContract.InventoryEntry.EXTRA_BEFORE, before);
+        extras.putInt(InventoryContract.InventoryEntry.EXTRA_LIMIT, BATCH_SIZE);
+        int total = 0;
+        int purged;
+        do {
+            Bundle result = resolver.call(InventoryContract.InventoryEntry.CONTENT_URI,
+                    InventoryContract.InventoryEntry.METHOD_PURGE_DELETED, null, extras);
+            purged = result.getInt(InventoryContract.InventoryEntry.EXTRA_PURGED);
+            total += purged;
+        } while (purged == BATCH_SIZE && !stopped.stopRequested());
+        return total;
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        stopped = false;
+        long before = System.currentTimeMillis() - UNDO_WINDOW_MS;
+        executor.execute(() -> {
+            int purged = purge(getContentResolver(), before, () -> stopped);
+            Log.i(LOG_TAG, "Purged " + purged + " deleted items");
+            jobFinished(params, false);
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Finished batches are committed; the next run carries on from there.
+        stopped = true;
+        return false;
+    }
+
+    @Override
+    public void onDestroy() {
+        executor.shutdown();
+        super.onDestroy();
+    }
+}
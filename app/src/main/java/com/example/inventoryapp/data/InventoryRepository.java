@@ -0,0 +1,365 @@
+package com.example.inventoryapp.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentProviderResult;
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.OperationApplicationException;
+import android.database.SQLException;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queues writes to {@link InventoryProvider} and applies them on a single background thread.
+ * Writes that arrive within a short window are committed together in one
+ * {@link ContentResolver#applyBatch} transaction, and repeated updates to the same item are
+ * merged into one. Results are delivered on the main thread.
+ */
+public final class InventoryRepository {
+
+    public interface Callback {
+        /**
+         * Called on the main thread. {@code uri} is the new item for inserts and null otherwise;
+         * {@code rowsAffected} is 0 when the write failed.
+         */
+        void onComplete(@Nullable Uri uri, int rowsAffected);
+    }
+
+    public interface QuantityCallback {
+        /** Called on the main thread with the new quantities, -1 for each rejected adjustment. */
+        void onComplete(long[] quantities);
+    }
+
+    private static final String LOG_TAG = InventoryRepository.class.getSimpleName();
+
+    private static final long COALESCE_WINDOW_MS = 50;
+
+    private static InventoryRepository instance;
+
+    private final ContentResolver resolver;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final Object lock = new Object();
+
+    private List<PendingWrite> queue = new ArrayList<>();
+
+    // Updates still open for merging, by item URI.
+    private final Map<Uri, PendingWrite> openUpdates = new HashMap<>();
+
+    private boolean flushScheduled;
+
+    private final WriteStats stats = new WriteStats();
+
+    // Tests build their own instance, so no state carries over from another test.
+    InventoryRepository(Context context) {
+        resolver = context.getApplicationContext().getContentResolver();
+    }
+
+    public static synchronized InventoryRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new InventoryRepository(context);
+        }
+        return instance;
+    }
+
+    public void insert(ContentValues values, @Nullable Callback callback) {
+        enqueue(new PendingWrite(PendingWrite.INSERT, InventoryContract.InventoryEntry.CONTENT_URI, values), callback);
+    }
+
+    public void update(Uri uri, ContentValues values, @Nullable Callback callback) {
+        synchronized (lock) {
+            PendingWrite pending = openUpdates.get(uri);
+            if (pending != null) {
+                pending.values.putAll(values);
+                pending.addCallback(callback);
+                stats.coalesced++;
+                return;
+            }
+        }
+        enqueue(new PendingWrite(PendingWrite.UPDATE, uri, new ContentValues(values)), callback);
+    }
+
+    public void delete(Uri uri, @Nullable Callback callback) {
+        enqueue(new PendingWrite(PendingWrite.DELETE, uri, null), callback);
+    }
+
+    /** Atomically adds {@code delta} to the item's stock; see {@link InventoryContract.InventoryEntry#METHOD_ADJUST_QUANTITY}. */
+    public void adjustQuantity(long id, int delta, @Nullable QuantityCallback callback) {
+        adjustQuantities(new long[] { id }, new int[] { delta }, callback);
+    }
+
+    /** Applies a scan session's adjustments in one transaction, after any writes already queued. */
+    public void adjustQuantities(long[] ids, int[] deltas, @Nullable QuantityCallback callback) {
+        executor.execute(() -> {
+            flush();
+            Bundle extras = new Bundle();
+            extras.putLongArray(InventoryContract.InventoryEntry.EXTRA_ITEM_IDS, ids);
+            extras.putIntArray(InventoryContract.InventoryEntry.EXTRA_DELTAS, deltas);
+            long[] quantities;
+            try {
+                Bundle result = resolver.call(InventoryContract.InventoryEntry.CONTENT_URI,
+                        InventoryContract.InventoryEntry.METHOD_ADJUST_QUANTITIES, null, extras);
+                quantities = result.getLongArray(InventoryContract.InventoryEntry.EXTRA_QUANTITIES);
+            } catch (IllegalArgumentException | SQLException e) {
+                Log.e(LOG_TAG, "Failed to adjust " + ids.length + " quantities", e);
+                quantities = new long[ids.length];
+                Arrays.fill(quantities, -1);
+            }
+            if (callback != null) {
+                final long[] delivered = quantities;
+                mainHandler.post(() -> callback.onComplete(delivered));
+            }
+        });
+    }
+
+    /**
+     * Brings {@link InventoryContract.AnalyticsEntry#CONTENT_URI} up to date after any queued
+     * writes. Only items changed since the last refresh are reloaded.
+     */
+    public void refreshAnalytics() {
+        executor.execute(() -> {
+            flush();
+            try {
+                resolver.call(InventoryContract.AnalyticsEntry.CONTENT_URI,
+                        InventoryContract.AnalyticsEntry.METHOD_REFRESH_ANALYTICS, null, null);
+            } catch (SQLException e) {
+                Log.e(LOG_TAG, "Failed to refresh inventory analytics", e);
+            }
+        });
+    }
+
+    /**
+     * Restores the items deleted at or after {@code since}, once any queued writes are applied;
+     * see {@link InventoryContract.InventoryEntry#METHOD_UNDO_DELETE}. {@code since} should be
+     * read from {@link System#currentTimeMillis} just before the delete was queued.
+     */
+    public void undoDelete(long since, @Nullable Callback callback) {
+        executor.execute(() -> {
+            flush();
+            Bundle extras = new Bundle();
+            extras.putLong(InventoryContract.InventoryEntry.EXTRA_SINCE, since);
+            int restored = 0;
+            try {
+                Bundle result = resolver.call(InventoryContract.InventoryEntry.CONTENT_URI,
+                        InventoryContract.InventoryEntry.METHOD_UNDO_DELETE, null, extras);
+                restored = result.getInt(InventoryContract.InventoryEntry.EXTRA_RESTORED);
+            } catch (SQLException e) {
+                Log.e(LOG_TAG, "Failed to undo delete", e);
+            }
+            if (callback != null) {
+                final int delivered = restored;
+                mainHandler.post(() -> callback.onComplete(null, delivered));
+            }
+        });
+    }
+
+    public WriteStats.Snapshot getStats() {
+        synchronized (lock) {
+            return stats.snapshot(queue.size());
+        }
+    }
+
+    private void enqueue(PendingWrite write, @Nullable Callback callback) {
+        write.addCallback(callback);
+        synchronized (lock) {
+            if (write.type == PendingWrite.UPDATE) {
+                openUpdates.put(write.uri, write);
+            } else if (write.type == PendingWrite.DELETE) {
+                // Later updates must not be merged into a write that runs before this delete.
+                if (InventoryContract.InventoryEntry.CONTENT_URI.equals(write.uri)) {
+                    openUpdates.clear();
+                } else {
+                    openUpdates.remove(write.uri);
+                }
+            }
+            queue.add(write);
+            stats.recordDepth(queue.size());
+            if (!flushScheduled) {
+                flushScheduled = true;
+                executor.schedule(this::flush, COALESCE_WINDOW_MS, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void flush() {
+        List<PendingWrite> writes;
+        synchronized (lock) {
+            writes = queue;
+            queue = new ArrayList<>();
+            openUpdates.clear();
+            flushScheduled = false;
+        }
+        if (writes.isEmpty()) {
+            return;
+        }
+
+        long start = SystemClock.elapsedRealtimeNanos();
+        ContentProviderResult[] results = apply(writes);
+        if (results == null) {
+            // One invalid write aborts the whole transaction; apply the rest individually.
+            results = new ContentProviderResult[writes.size()];
+            for (int i = 0; i < writes.size(); i++) {
+                ContentProviderResult[] single = apply(writes.subList(i, i + 1));
+                results[i] = single == null ? null : single[0];
+            }
+        }
+        long latency = SystemClock.elapsedRealtimeNanos() - start;
+
+        synchronized (lock) {
+            stats.recordCommit(writes.size(), latency);
+        }
+        if (Log.isLoggable(LOG_TAG, Log.DEBUG)) {
+            Log.d(LOG_TAG, "Committed " + writes.size() + " writes in " + latency / 1000 + " us");
+        }
+
+        for (int i = 0; i < writes.size(); i++) {
+            writes.get(i).deliver(mainHandler, results[i]);
+        }
+    }
+
+    @Nullable
+    private ContentProviderResult[] apply(List<PendingWrite> writes) {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>(writes.size());
+        for (PendingWrite write : writes) {
+            operations.add(write.toOperation());
+        }
+        try {
+            return resolver.applyBatch(InventoryContract.CONTENT_AUTHORITY, operations);
+        } catch (OperationApplicationException | RemoteException | IllegalArgumentException | SQLException e) {
+            Log.e(LOG_TAG, "Failed to apply " + operations.size() + " writes", e);
+            return null;
+        }
+    }
+
+    private static final class PendingWrite {
+
+        static final int INSERT = 0;
+        static final int UPDATE = 1;
+        static final int DELETE = 2;
+
+        final int type;
+        final Uri uri;
+        final ContentValues values;
+        final List<Callback> callbacks = new ArrayList<>(1);
+
+        PendingWrite(int type, Uri uri, ContentValues values) {
+            this.type = type;
+            this.uri = uri;
+            this.values = values;
+        }
+
+        void addCallback(@Nullable Callback callback) {
+            if (callback != null) {
+                callbacks.add(callback);
+            }
+        }
+
+        ContentProviderOperation toOperation() {
+            switch (type) {
+                case INSERT:
+                    return ContentProviderOperation.newInsert(uri).withValues(values).build();
+                case UPDATE:
+                    return ContentProviderOperation.newUpdate(uri).withValues(values).build();
+                default:
+                    return ContentProviderOperation.newDelete(uri).build();
+            }
+        }
+
+        void deliver(Handler handler, @Nullable ContentProviderResult result) {
+            if (callbacks.isEmpty()) {
+                return;
+            }
+            final Uri resultUri = result == null ? null : result.uri;
+            final int rowsAffected;
+            if (result == null) {
+                rowsAffected = 0;
+            } else if (result.count != null) {
+                rowsAffected = result.count;
+            } else {
+                rowsAffected = result.uri != null ? 1 : 0;
+            }
+            handler.post(() -> {
+                for (Callback callback : callbacks) {
+                    callback.onComplete(resultUri, rowsAffected);
+                }
+            });
+        }
+    }
+
+    /** Queue depth and commit latency counters; guarded by the repository lock. */
+    public static final class WriteStats {
+
+        int maxDepth;
+        long commits;
+        long writes;
+        long coalesced;
+        long totalLatencyNanos;
+        long maxLatencyNanos;
+
+        void recordDepth(int depth) {
+            maxDepth = Math.max(maxDepth, depth);
+        }
+
+        void recordCommit(int writeCount, long latencyNanos) {
+            commits++;
+            writes += writeCount;
+            totalLatencyNanos += latencyNanos;
+            maxLatencyNanos = Math.max(maxLatencyNanos, latencyNanos);
+        }
+
+        Snapshot snapshot(int depth) {
+            return new Snapshot(depth, maxDepth, commits, writes, coalesced,
+                    commits == 0 ? 0 : totalLatencyNanos / commits, maxLatencyNanos);
+        }
+
+        public static final class Snapshot {
+
+            public final int queueDepth;
+            public final int maxQueueDepth;
+            public final long commits;
+            public final long writes;
+            public final long coalescedWrites;
+            public final long averageCommitLatencyNanos;
+            public final long maxCommitLatencyNanos;
+
+            Snapshot(int queueDepth, int maxQueueDepth, long commits, long writes, long coalescedWrites,
+                     long averageCommitLatencyNanos, long maxCommitLatencyNanos) {
+                this.queueDepth = queueDepth;
+                this.maxQueueDepth = maxQueueDepth;
+                this.commits = commits;
+                this.writes = writes;
+                this.coalescedWrites = coalescedWrites;
+                this.averageCommitLatencyNanos = averageCommitLatencyNanos;
+                this.maxCommitLatencyNanos = maxCommitLatencyNanos;
+            }
+
+            @Override
+            public String toString() {
+                return "depth=" + queueDepth + " maxDepth=" + maxQueueDepth + " commits=" + commits
+                        + " writes=" + writes + " coalesced=" + coalescedWrites
+                        + " avgCommitUs=" + averageCommitLatencyNanos / 1000
+                        + " maxCommitUs=" + maxCommitLatencyNanos / 1000;
+            }
+        }
+    }
+}
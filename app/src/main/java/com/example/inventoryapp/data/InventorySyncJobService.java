@@ -0,0 +1,90 @@
+package com.example.inventoryapp.data;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs {@link DeltaSyncEngine} periodically while the device is online. A failed sync is
+ * rescheduled with the scheduler's backoff and resumes from the engine's checkpoints.
+ */
+public class InventorySyncJobService extends JobService {
+
+    private static final String LOG_TAG = InventorySyncJobService.class.getSimpleName();
+
+    private static final int JOB_ID = 1015;
+
+    private static final long SYNC_INTERVAL_MS = TimeUnit.HOURS.toMillis(1);
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    // Stop flag of the latest run; each run gets its own, so restarting cannot clear a stop.
+    private volatile AtomicBoolean stopped = new AtomicBoolean();
+
+    /**
+     * Schedules the periodic sync if an endpoint is configured and cancels it otherwise. An
+     * existing schedule is left alone so its interval is not restarted.
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (DeltaSyncEngine.getEndpoint(context) == null) {
+            scheduler.cancel(JOB_ID);
+            return;
+        }
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                return;
+            }
+        }
+        scheduler.schedule(new JobInfo.Builder(JOB_ID, new ComponentName(context, InventorySyncJobService.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setPeriodic(SYNC_INTERVAL_MS)
+                .build());
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        String endpoint = DeltaSyncEngine.getEndpoint(this);
+        if (endpoint == null) {
+            return false;
+        }
+        AtomicBoolean stop = new AtomicBoolean();
+        stopped = stop;
+        executor.execute(() -> {
+            boolean retry = false;
+            try {
+                DeltaSyncEngine.Result result = new DeltaSyncEngine(this, endpoint).sync(stop::get);
+                Log.i(LOG_TAG, "Synced: pushed " + result.pushed + ", pulled " + result.pulled);
+            } catch (IOException e) {
+                Log.w(LOG_TAG, "Sync failed, will retry", e);
+                retry = true;
+            }
+            jobFinished(params, retry);
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Whatever was acknowledged is checkpointed; the rest is picked up by the next run.
+        stopped.set(true);
+        return true;
+    }
+
+    @Override
+    public void onDestroy() {
+        stopped.set(true);
+        executor.shutdown();
+        super.onDestroy();
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.inventoryapp.data;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Bounded LRU cache of decoded inventory rows for single-item queries, keyed by {@code _ID}.
+ *
+ * <p>Entries live in an open hash table keyed by primitive {@code long} ids and are chained into
+ * an access-ordered list, so lookups never box. Column values are boxed once when a row is
+ * decoded. A hit for {@link #COLUMNS} is handed to {@link MatrixCursor#addRow(Object[])} as is;
+ * any other projection copies the references it needs into one row array.
+ *
+ * <p>Invalidation is driven by {@link InventoryProvider}'s write paths. A reader records
+ * {@link #generation()} before it queries SQLite and passes it to {@link #put}; the row is then
+ * dropped if any invalidation happened in between, so a slow read can never cache a stale row.
+ */
+final class ItemCache {
+
+    static final String[] COLUMNS = {
+            InventoryContract.InventoryEntry._ID,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_SKU,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER_ID,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_VERSION,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO
+    };
+
+    static final class Item {
+
+        final long id;
+
+        // Boxed values in COLUMNS order.
+        final Object[] values;
+
+        Item before;
+        Item after;
+        Item next;
+
+        private Item(long id, Object[] values) {
+            this.id = id;
+            this.values = values;
+        }
+
+        /** Decodes the current row of a cursor queried with {@link #COLUMNS}. */
+        static Item from(Cursor cursor) {
+            Object[] values = new Object[COLUMNS.length];
+            for (int i = 0; i < COLUMNS.length; i++) {
+                switch (cursor.getType(i)) {
+                    case Cursor.FIELD_TYPE_NULL:
+                        break;
+                    case Cursor.FIELD_TYPE_INTEGER:
+                        values[i] = cursor.getLong(i);
+                        break;
+                    case Cursor.FIELD_TYPE_FLOAT:
+                        values[i] = cursor.getDouble(i);
+                        break;
+                    case Cursor.FIELD_TYPE_BLOB:
+                        values[i] = cursor.getBlob(i);
+                        break;
+                    default:
+                        values[i] = cursor.getString(i);
+                        break;
+                }
+            }
+            return new Item(cursor.getLong(0), values);
+        }
+    }
+
+    private final int maxSize;
+
+    private final Item[] table;
+
+    // Sentinel of the access-ordered list: head.after is the eldest entry.
+    private final Item head = new Item(0, null);
+
+    private int size;
+
+    private long generation;
+
+    private long hits;
+
+    private long misses;
+
+    private long evictions;
+
+    ItemCache(int maxSize) {
+        this.maxSize = maxSize;
+        int capacity = Integer.highestOneBit(Math.max(maxSize, 8) * 2 - 1) << 1;
+        table = new Item[capacity];
+        head.before = head;
+        head.after = head;
+    }
+
+    /** True if every requested column can be served from a cached row. */
+    static boolean covers(@Nullable String[] projection) {
+        if (projection == null) {
+            return true;
+        }
+        for (String column : projection) {
+            if (columnIndex(column) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    synchronized long generation() {
+        return generation;
+    }
+
+    @Nullable
+    synchronized Item get(long id) {
+        for (Item item = table[indexFor(id)]; item != null; item = item.next) {
+            if (item.id == id) {
+                hits++;
+                unlink(item);
+                linkLast(item);
+                return item;
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    synchronized void put(Item item, long readGeneration) {
+        if (readGeneration != generation) {
+            return;
+        }
+        remove(item.id);
+        int index = indexFor(item.id);
+        item.next = table[index];
+        table[index] = item;
+        linkLast(item);
+        if (++size > maxSize) {
+            remove(head.after.id);
+            evictions++;
+        }
+    }
+
+    synchronized void invalidate(long id) {
+        generation++;
+        remove(id);
+    }
+
+    synchronized void invalidateAll() {
+        generation++;
+        for (int i = 0; i < table.length; i++) {
+            table[i] = null;
+        }
+        head.before = head;
+        head.after = head;
+        size = 0;
+    }
+
+    synchronized long hitCount() {
+        return hits;
+    }
+
+    synchronized long missCount() {
+        return misses;
+    }
+
+    synchronized long evictionCount() {
+        return evictions;
+    }
+
+    /** Builds a cursor over {@code item}, or an empty one if the item does not exist. */
+    static Cursor toCursor(@Nullable Item item, @Nullable String[] projection) {
+        String[] columns = projection == null ? COLUMNS : projection;
+        MatrixCursor cursor = new MatrixCursor(columns, 1);
+        if (item == null) {
+            return cursor;
+        }
+        if (columns == COLUMNS || Arrays.equals(columns, COLUMNS)) {
+            cursor.addRow(item.values);
+        } else {
+            Object[] row = new Object[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                row[i] = item.values[columnIndex(columns[i])];
+            }
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+
+    private static int columnIndex(String column) {
+        for (int i = 0; i < COLUMNS.length; i++) {
+            if (COLUMNS[i].equals(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int indexFor(long id) {
+        long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (table.length - 1);
+    }
+
+    private void remove(long id) {
+        int index = indexFor(id);
+        Item previous = null;
+        for (Item item = table[index]; item != null; previous = item, item = item.next) {
+            if (item.id == id) {
+                if (previous == null) {
+                    table[index] = item.next;
+                } else {
+                    previous.next = item.next;
+                }
+                item.next = null;
+                unlink(item);
+                size--;
+                return;
+            }
+        }
+    }
+
+    private void unlink(Item item) {
+        item.before.after = item.after;
+        item.after.before = item.before;
+    }
+
+    private void linkLast(Item item) {
+        item.before = head.before;
+        item.after = head;
+        head.before.after = item;
+        head.before = item;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.inventoryapp.data;
+
+import android.content.Context;
+import android.net.Uri;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full-size item photos, one file per photo in the app's private files directory, referenced
+ * from {@link InventoryContract.InventoryEntry#COLUMN_ITEM_PHOTO} by file name. Files are
+ * written once under a fresh name and never changed, so anything derived from a photo can be
+ * cached by its name for good. Files no item refers to any more are removed by the purge.
+ */
+public final class ItemPhotos {
+
+    private static final String DIRECTORY = "photos";
+
+    private static final String SUFFIX = ".jpg";
+
+    // An imported photo the editor has not saved yet is not referenced by any item either.
+    static final long UNUSED_GRACE_MS = TimeUnit.DAYS.toMillis(1);
+
+    private ItemPhotos() {}
+
+    public static File directory(Context context) {
+        return new File(context.getFilesDir(), DIRECTORY);
+    }
+
+    public static File file(Context context, String photo) {
+        return new File(directory(context), photo);
+    }
+
+    /**
+     * Copies the image at {@code source} into a new photo file and returns its name. Blocks on
+     * I/O, so call it off the main thread.
+     */
+    public static String importPhoto(Context context, Uri source) throws IOException {
+        File directory = directory(context);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        String photo = UUID.randomUUID() + SUFFIX;
+        File file = new File(directory, photo);
+        try (InputStream in = context.getContentResolver().openInputStream(source);
+             FileOutputStream out = new FileOutputStream(file)) {
+            if (in == null) {
+                throw new FileNotFoundException("Cannot open " + source);
+            }
+            byte[] buffer = new byte[64 * 1024];
+            for (int read; (read = in.read(buffer)) != -1; ) {
+                out.write(buffer, 0, read);
+            }
+            out.getFD().sync();
+        } catch (IOException e) {
+            // Left for the purge if this fails too.
+            //noinspection ResultOfMethodCallIgnored
+            file.delete();
+            throw e;
+        }
+        return photo;
+    }
+
+    /** Only bare names of files in {@link #directory}; anything else could point at other app files. */
+    static boolean isValidName(@Nullable String photo) {
+        return photo == null || (photo.endsWith(SUFFIX) && photo.indexOf('/') < 0 && !photo.startsWith("."));
+    }
+
+    /**
+     * Deletes photo files last modified before {@code before} that are not in {@code used}.
+     * Returns the number deleted.
+     */
+    static int deleteUnused(File directory, Set<String> used, long before) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        int deleted = 0;
+        for (File file : files) {
+            if (!used.contains(file.getName()) && file.lastModified() < before && file.delete()) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.inventoryapp.data;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.ContentResolver;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deletes stock movements older than {@link #RETENTION_MS} once a day while the device is
+ * charging and idle. Each batch is its own short transaction, so the job can stop between
+ * batches and the rest is left for the next run. The daily and weekly rollups are kept.
+ */
+public class MovementPruneJobService extends JobService {
+
+    private static final String LOG_TAG = MovementPruneJobService.class.getSimpleName();
+
+    private static final int JOB_ID = 1021;
+
+    private static final long PRUNE_INTERVAL_MS = TimeUnit.DAYS.toMillis(1);
+
+    static final long RETENTION_MS = TimeUnit.DAYS.toMillis(90);
+
+    static final int BATCH_SIZE = 500;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private volatile boolean stopped;
+
+    /** Schedules the daily prune unless it is already scheduled. */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                return;
+            }
+        }
+        scheduler.schedule(new JobInfo.Builder(JOB_ID, new ComponentName(context, MovementPruneJobService.class))
+                .setRequiresCharging(true)
+                .setRequiresDeviceIdle(true)
+                .setPeriodic(PRUNE_INTERVAL_MS)
+                .build());
+    }
+
+    /**
+     * Prunes movements before {@code before} in batches until none are left or {@code stopped}
+     * reports true. Returns the number deleted.
+     */
+    static int prune(ContentResolver resolver, long before, StopCheck stopped) {
+        Bundle extras = new Bundle();
+        extras.putLong(InventoryContract.MovementEntry.EXTRA_BEFORE, before);
+        extras.putInt(InventoryContract.MovementEntry.EXTRA_LIMIT, BATCH_SIZE);
+        int total = 0;
+        int deleted;
+        do {
+            Bundle result = resolver.call(InventoryContract.MovementEntry.CONTENT_URI,
+                    InventoryContract.MovementEntry.METHOD_PRUNE_MOVEMENTS, null, extras);
+            deleted = result.getInt(InventoryContract.MovementEntry.EXTRA_DELETED);
+            total += deleted;
+        } while (deleted == BATCH_SIZE && !stopped.stopRequested());
+        return total;
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        stopped = false;
+        long before = System.currentTimeMillis() - RETENTION_MS;
+        executor.execute(() -> {
+            int deleted = prune(getContentResolver(), before, () -> stopped);
+            Log.i(LOG_TAG, "Pruned " + deleted + " stock movements");
+            jobFinished(params, false);
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // Finished batches are committed; the next run carries on from there.
+        stopped = true;
+        return false;
+    }
+
+    @Override
+    public void onDestroy() {
+        executor.shutdown();
+        super.onDestroy();
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.CancellationSignal;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.OperationCanceledException;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.lifecycle.LiveData;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Provider query exposed as {@link LiveData}, re-run whenever {@link #observedUri} or anything
+ * below it changes, for as long as the data has an active observer.
+ *
+ * <p>Change notifications are debounced: a burst re-runs the query once, {@link #DEBOUNCE_MS}
+ * after the last notification, and a steady stream still refreshes every
+ * {@link #MAX_DEBOUNCE_MS}. Starting a query cancels the one still in flight through its
+ * {@link CancellationSignal}, which the provider passes down to SQLite, and a result that
+ * lost to a newer query is handed to {@link #discard} instead of being delivered.
+ *
+ * <p>Queries run on a small shared pool, so however many screens observe data, at most
+ * {@link #MAX_THREADS} queries run against the database at a time.
+ */
+public abstract class ObservableQuery<T> extends LiveData<T> {
+
+    static final long DEBOUNCE_MS = 100;
+
+    static final long MAX_DEBOUNCE_MS = 500;
+
+    static final int MAX_THREADS = 2;
+
+    private static final String LOG_TAG = ObservableQuery.class.getSimpleName();
+
+    private static final Executor QUERY_EXECUTOR = createExecutor();
+
+    private final ContentResolver resolver;
+
+    private final Uri observedUri;
+
+    private final Executor executor;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private final ContentObserver observer = new ContentObserver(mainHandler) {
+        @Override
+        public void onChange(boolean selfChange) {
+            onContentChanged();
+        }
+    };
+
+    private final Runnable requery = this::requery;
+
+    @Nullable
+    private CancellationSignal inFlight;
+
+    private int generation;
+
+    // Set when the data may have changed since the last query started.
+    private boolean stale = true;
+
+    // Uptime of the first notification not yet followed by a query, or -1.
+    private long firstChangeAt = -1;
+
+    protected ObservableQuery(ContentResolver resolver, Uri observedUri) {
+        this(resolver, observedUri, QUERY_EXECUTOR);
+    }
+
+    protected ObservableQuery(ContentResolver resolver, Uri observedUri, Executor executor) {
+        this.resolver = resolver;
+        this.observedUri = observedUri;
+        this.executor = executor;
+    }
+
+    /**
+     * Runs the query. Pass {@code signal} to {@link ContentResolver#query}; a cancelled query
+     * may throw {@link OperationCanceledException}.
+     */
+    @WorkerThread
+    protected abstract T query(ContentResolver resolver, CancellationSignal signal);
+
+    /** Releases a result that was superseded before it could be delivered. */
+    @MainThread
+    protected void discard(T result) {
+    }
+
+    @Override
+    protected void onActive() {
+        resolver.registerContentObserver(observedUri, true, observer);
+        if (stale) {
+            requery();
+        }
+    }
+
+    @Override
+    protected void onInactive() {
+        resolver.unregisterContentObserver(observer);
+        mainHandler.removeCallbacks(requery);
+        firstChangeAt = -1;
+        if (inFlight != null) {
+            inFlight.cancel();
+            inFlight = null;
+            stale = true;
+        }
+    }
+
+    /** True while a query has started and its result has not been delivered. */
+    @MainThread
+    protected boolean isQuerying() {
+        return inFlight != null;
+    }
+
+    private void onContentChanged() {
+        stale = true;
+        long now = SystemClock.uptimeMillis();
+        if (firstChangeAt < 0) {
+            firstChangeAt = now;
+        }
+        mainHandler.removeCallbacks(requery);
+        mainHandler.postAtTime(requery, Math.min(now + DEBOUNCE_MS, firstChangeAt + MAX_DEBOUNCE_MS));
+    }
+
+    /** Starts the query now, cancelling the one in flight. */
+    @MainThread
+    protected void requery() {
+        mainHandler.removeCallbacks(requery);
+        firstChangeAt = -1;
+        if (!hasActiveObservers()) {
+            // Runs when an observer comes back.
+            stale = true;
+            return;
+        }
+        stale = false;
+        if (inFlight != null) {
+            inFlight.cancel();
+        }
+        CancellationSignal signal = new CancellationSignal();
+        inFlight = signal;
+        int token = ++generation;
+
+        executor.execute(() -> {
+            if (signal.isCanceled()) {
+                return;
+            }
+            T result;
+            try {
+                result = query(resolver, signal);
+            } catch (OperationCanceledException e) {
+                return;
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Query for " + observedUri + " failed", e);
+                mainHandler.post(() -> {
+                    if (token == generation) {
+                        inFlight = null;
+                    }
+                });
+                return;
+            }
+            mainHandler.post(() -> deliver(token, signal, result));
+        });
+    }
+
+    private void deliver(int token, CancellationSignal signal, T result) {
+        if (token != generation || signal.isCanceled()) {
+            discard(result);
+            return;
+        }
+        inFlight = null;
+        setValue(result);
+    }
+
+    private static Executor createExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_THREADS, MAX_THREADS, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "ObservableQuery #" + count.incrementAndGet());
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
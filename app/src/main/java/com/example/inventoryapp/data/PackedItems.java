@@ -0,0 +1,307 @@
+package com.example.inventoryapp.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.ParcelFileDescriptor;
+import android.text.TextUtils;
+
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Columnar stream behind {@link InventoryContract.InventoryEntry#CONTENT_PACKED_URI}, for
+ * reading the whole inventory without a {@link android.database.CursorWindow} per 2 MB of rows.
+ * <p>
+ * A header names the columns and their types. Each chunk then holds up to {@link #CHUNK_ROWS}
+ * items column by column: a long or double array per numeric column, and per text column a
+ * table of the distinct strings in the chunk followed by one index into it per row, -1 for
+ * null. A chunk of zero rows ends the stream, so a reader can tell a finished stream from a
+ * broken one. All numbers are big-endian.
+ */
+public final class PackedItems {
+
+    public static final byte TYPE_LONG = 1;
+
+    public static final byte TYPE_DOUBLE = 2;
+
+    public static final byte TYPE_STRING = 3;
+
+    // "INVP"
+    private static final int MAGIC = 0x494e5650;
+
+    private static final int VERSION = 1;
+
+    // Small enough that one chunk's rows fit in a single CursorWindow.
+    static final int CHUNK_ROWS = 4096;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final Map<String, Byte> COLUMN_TYPES = new HashMap<>();
+
+    static {
+        COLUMN_TYPES.put(InventoryContract.InventoryEntry._ID, TYPE_LONG);
+        COLUMN_TYPES.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, TYPE_STRING);
+        COLUMN_TYPES.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, TYPE_LONG);
+        COLUMN_TYPES.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, TYPE_DOUBLE);
+        COLUMN_TYPES.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER, TYPE_STRING);
+        COLUMN_TYPES.put(InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL, TYPE_STRING);
+        COLUMN_TYPES.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SKU, TYPE_STRING);
+        COLUMN_TYPES.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER_ID, TYPE_LONG);
+        COLUMN_TYPES.put(InventoryContract.InventoryEntry.COLUMN_ITEM_VERSION, TYPE_LONG);
+        COLUMN_TYPES.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO, TYPE_STRING);
+    }
+
+    private PackedItems() {}
+
+    /** Checks that every column can be packed; all of them, in a fixed order, if none are given. */
+    static String[] checkColumns(List<String> columns) {
+        if (columns.isEmpty()) {
+            return ItemCache.COLUMNS.clone();
+        }
+        for (String column : columns) {
+            if (!COLUMN_TYPES.containsKey(column)) {
+                throw new IllegalArgumentException("Cannot pack column " + column);
+            }
+        }
+        return columns.toArray(new String[0]);
+    }
+
+    /**
+     * Writes every live item to {@code out}, reading {@link #CHUNK_ROWS} at a time by seeking past
+     * the last id. Each chunk is consistent on its own; writes between chunks show up in later
+     * ones, as they would in a cursor's later windows. Returns the number of items written.
+     */
+    static int write(SQLiteDatabase database, String[] columns, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        byte[] types = new byte[columns.length];
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(columns.length);
+        for (int i = 0; i < columns.length; i++) {
+            types[i] = COLUMN_TYPES.get(columns[i]);
+            data.writeUTF(columns[i]);
+            data.writeByte(types[i]);
+        }
+
+        // _id goes last, after the requested columns, for the next chunk's seek.
+        String sql = "SELECT " + TextUtils.join(", ", columns) + ", " + InventoryContract.InventoryEntry._ID
+                + " FROM " + InventoryContract.InventoryEntry.VIEW_NAME + " WHERE " + InventoryContract.InventoryEntry._ID
+                + " > ? ORDER BY " + InventoryContract.InventoryEntry._ID + " LIMIT " + CHUNK_ROWS;
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_ROWS * 8);
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> table = new ArrayList<>();
+        long lastId = 0;
+        int total = 0;
+        int rows;
+        do {
+            try (Cursor cursor = database.rawQuery(sql, new String[] { String.valueOf(lastId) })) {
+                rows = cursor.getCount();
+                data.writeInt(rows);
+                for (int column = 0; column < columns.length && rows > 0; column++) {
+                    buffer.clear();
+                    for (cursor.moveToPosition(-1); cursor.moveToNext(); ) {
+                        if (types[column] == TYPE_LONG) {
+                            buffer.putLong(cursor.getLong(column));
+                        } else if (types[column] == TYPE_DOUBLE) {
+                            buffer.putDouble(cursor.getDouble(column));
+                        } else {
+                            buffer.putInt(indexOf(cursor.getString(column), indexes, table));
+                        }
+                    }
+                    if (types[column] == TYPE_STRING) {
+                        writeTable(data, table);
+                        indexes.clear();
+                        table.clear();
+                    }
+                    data.write(buffer.array(), 0, buffer.position());
+                }
+                if (cursor.moveToLast()) {
+                    lastId = cursor.getLong(columns.length);
+                }
+            }
+            total += rows;
+        } while (rows > 0);
+        data.flush();
+        return total;
+    }
+
+    private static int indexOf(@Nullable String value, Map<String, Integer> indexes, List<String> table) {
+        if (value == null) {
+            return -1;
+        }
+        Integer index = indexes.get(value);
+        if (index == null) {
+            index = table.size();
+            indexes.put(value, index);
+            table.add(value);
+        }
+        return index;
+    }
+
+    private static void writeTable(DataOutputStream data, List<String> table) throws IOException {
+        data.writeInt(table.size());
+        for (String value : table) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            data.writeInt(bytes.length);
+            data.write(bytes);
+        }
+    }
+
+    /** Reads a packed stream chunk by chunk. */
+    public static final class Reader implements Closeable {
+
+        private final DataInputStream in;
+
+        private final String[] columns;
+
+        private final byte[] types;
+
+        private byte[] bytes = new byte[CHUNK_ROWS * 8];
+
+        private boolean finished;
+
+        /** Takes ownership of {@code descriptor}, as opened on {@link InventoryContract.InventoryEntry#CONTENT_PACKED_URI}. */
+        public Reader(ParcelFileDescriptor descriptor) throws IOException {
+            this(new ParcelFileDescriptor.AutoCloseInputStream(descriptor));
+        }
+
+        Reader(InputStream in) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE));
+            if (this.in.readInt() != MAGIC || this.in.readInt() != VERSION) {
+                throw new IOException("Not a packed item stream of version " + VERSION);
+            }
+            int count = this.in.readInt();
+            columns = new String[count];
+            types = new byte[count];
+            for (int i = 0; i < count; i++) {
+                columns[i] = this.in.readUTF();
+                types[i] = this.in.readByte();
+            }
+        }
+
+        public String[] getColumns() {
+            return columns.clone();
+        }
+
+        /** Position of {@code column} in each chunk, or -1 if it was not requested. */
+        public int getColumnIndex(String column) {
+            return Arrays.asList(columns).indexOf(column);
+        }
+
+        /**
+         * Returns the next chunk, or null once the end marker has been read. A stream that stops
+         * before the marker, because the provider failed or was killed, throws an exception.
+         */
+        @Nullable
+        public Chunk next() throws IOException {
+            if (finished) {
+                return null;
+            }
+            int rows = in.readInt();
+            if (rows == 0) {
+                finished = true;
+                return null;
+            }
+            Object[] values = new Object[columns.length];
+            for (int column = 0; column < columns.length; column++) {
+                if (types[column] == TYPE_LONG) {
+                    long[] longs = new long[rows];
+                    read(rows * 8).asLongBuffer().get(longs);
+                    values[column] = longs;
+                } else if (types[column] == TYPE_DOUBLE) {
+                    double[] doubles = new double[rows];
+                    read(rows * 8).asDoubleBuffer().get(doubles);
+                    values[column] = doubles;
+                } else {
+                    String[] table = new String[in.readInt()];
+                    for (int i = 0; i < table.length; i++) {
+                        int length = in.readInt();
+                        table[i] = new String(read(length).array(), 0, length, StandardCharsets.UTF_8);
+                    }
+                    int[] indexes = new int[rows];
+                    read(rows * 4).asIntBuffer().get(indexes);
+                    values[column] = new Strings(table, indexes);
+                }
+            }
+            return new Chunk(rows, values);
+        }
+
+        private ByteBuffer read(int length) throws IOException {
+            if (bytes.length < length) {
+                bytes = new byte[length];
+            }
+            in.readFully(bytes, 0, length);
+            return ByteBuffer.wrap(bytes, 0, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /** Up to {@link #CHUNK_ROWS} items, one array per column in {@link Reader#getColumns} order. */
+    public static final class Chunk {
+
+        public final int rows;
+
+        private final Object[] values;
+
+        Chunk(int rows, Object[] values) {
+            this.rows = rows;
+            this.values = values;
+        }
+
+        public long[] getLongs(int column) {
+            return (long[]) values[column];
+        }
+
+        public double[] getDoubles(int column) {
+            return (double[]) values[column];
+        }
+
+        /** The distinct values of a text column in this chunk. */
+        public String[] getStringTable(int column) {
+            return ((Strings) values[column]).table;
+        }
+
+        /** Per row, the index of its value in {@link #getStringTable}, or -1 for null. */
+        public int[] getStringIndexes(int column) {
+            return ((Strings) values[column]).indexes;
+        }
+
+        @Nullable
+        public String getString(int column, int row) {
+            Strings strings = (Strings) values[column];
+            int index = strings.indexes[row];
+            return index < 0 ? null : strings.table[index];
+        }
+    }
+
+    private static final class Strings {
+
+        final String[] table;
+
+        final int[] indexes;
+
+        Strings(String[] table, int[] indexes) {
+            this.table = table;
+            this.indexes = indexes;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.inventoryapp.data;
+
+import android.database.AbstractWindowedCursor;
+import android.database.Cursor;
+import android.database.CursorWindow;
+import android.os.Bundle;
+import android.os.Trace;
+import android.util.SparseArray;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Latency histograms, row counts and cursor window sizes for each provider entry point, kept
+ * per operation and URI pattern (for example {@code query inventory/#}). Recording takes a
+ * few atomic increments and no allocation once a series exists; each call is also a
+ * {@link Trace} section of the same name, so it shows up in systrace. The series of a URI entry
+ * point is found by operation and {@link android.content.UriMatcher} code in an array, so the
+ * hot path never builds its name.
+ *
+ * <p>Latencies go into power-of-two buckets: bucket {@code i} counts calls that took less than
+ * 2<sup>i</sup> microseconds, and the last bucket everything slower.
+ */
+final class ProviderMetrics {
+
+    static final int BUCKETS = 24;
+
+    static final int QUERY = 0;
+
+    static final int OPEN_FILE = 1;
+
+    static final int INSERT = 2;
+
+    static final int BULK_INSERT = 3;
+
+    static final int DELETE = 4;
+
+    static final int UPDATE = 5;
+
+    private static final String[] OPERATIONS = { "query", "openFile", "insert", "bulkInsert", "delete", "update" };
+
+    static final class Series {
+
+        final String name;
+
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong errors = new AtomicLong();
+
+        private final AtomicLong totalNanos = new AtomicLong();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private final AtomicLong rows = new AtomicLong();
+
+        private final AtomicLong windowRows = new AtomicLong();
+
+        private final AtomicLong spilledWindows = new AtomicLong();
+
+        private Series(String name) {
+            // Trace section names are limited to 127 characters.
+            this.name = name.length() > 127 ? name.substring(0, 127) : name;
+        }
+
+        private void record(long nanos, long rowCount, boolean failed) {
+            count.incrementAndGet();
+            if (failed) {
+                errors.incrementAndGet();
+            }
+            totalNanos.addAndGet(nanos);
+            rows.addAndGet(rowCount);
+            long max;
+            do {
+                max = maxNanos.get();
+            } while (nanos > max && !maxNanos.compareAndSet(max, nanos));
+            histogram.incrementAndGet(bucketOf(nanos));
+        }
+
+        private void reset() {
+            for (int i = 0; i < BUCKETS; i++) {
+                histogram.set(i, 0);
+            }
+            count.set(0);
+            errors.set(0);
+            totalNanos.set(0);
+            maxNanos.set(0);
+            rows.set(0);
+            windowRows.set(0);
+            spilledWindows.set(0);
+        }
+
+        private Bundle toBundle() {
+            long[] buckets = new long[BUCKETS];
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = histogram.get(i);
+            }
+            Bundle bundle = new Bundle();
+            bundle.putLong(InventoryContract.Metrics.EXTRA_COUNT, count.get());
+            bundle.putLong(InventoryContract.Metrics.EXTRA_ERRORS, errors.get());
+            bundle.putLong(InventoryContract.Metrics.EXTRA_TOTAL_NANOS, totalNanos.get());
+            bundle.putLong(InventoryContract.Metrics.EXTRA_MAX_NANOS, maxNanos.get());
+            bundle.putLong(InventoryContract.Metrics.EXTRA_ROWS, rows.get());
+            bundle.putLong(InventoryContract.Metrics.EXTRA_WINDOW_ROWS, windowRows.get());
+            bundle.putLong(InventoryContract.Metrics.EXTRA_SPILLED_WINDOWS, spilledWindows.get());
+            bundle.putLongArray(InventoryContract.Metrics.EXTRA_HISTOGRAM, buckets);
+            bundle.putLong(InventoryContract.Metrics.EXTRA_P50_MICROS, percentileMicros(buckets, 0.50));
+            bundle.putLong(InventoryContract.Metrics.EXTRA_P90_MICROS, percentileMicros(buckets, 0.90));
+            bundle.putLong(InventoryContract.Metrics.EXTRA_P99_MICROS, percentileMicros(buckets, 0.99));
+            return bundle;
+        }
+    }
+
+    private final ConcurrentMap<String, Series> series = new ConcurrentHashMap<>();
+
+    private final SparseArray<String> patterns;
+
+    private final int firstMatch;
+
+    // Per operation, one slot per match code from firstMatch, then one for URIs that match none.
+    private final int slots;
+
+    private final AtomicReferenceArray<Series> byMatch;
+
+    /** {@code patterns} maps each UriMatcher code to the path pattern naming its series; it must not change. */
+    ProviderMetrics(SparseArray<String> patterns) {
+        this.patterns = patterns;
+        firstMatch = patterns.size() > 0 ? patterns.keyAt(0) : 0;
+        slots = patterns.size() > 0 ? patterns.keyAt(patterns.size() - 1) - firstMatch + 2 : 1;
+        byMatch = new AtomicReferenceArray<>(OPERATIONS.length * slots);
+    }
+
+    /** The series of {@code operation}, one of the operation constants, on URIs matching {@code match}. */
+    Series series(int operation, int match) {
+        int slot = match - firstMatch;
+        if (slot < 0 || slot >= slots - 1) {
+            slot = slots - 1;
+        }
+        int index = operation * slots + slot;
+        Series existing = byMatch.get(index);
+        if (existing != null) {
+            return existing;
+        }
+        String pattern = slot < slots - 1 ? patterns.get(match) : null;
+        // Racing callers get the same series from the map, so either may fill the slot.
+        Series created = series(OPERATIONS[operation], pattern != null ? pattern : "unknown");
+        byMatch.set(index, created);
+        return created;
+    }
+
+    Series series(String operation, String pattern) {
+        String name = operation + " " + pattern;
+        Series existing = series.get(name);
+        if (existing != null) {
+            return existing;
+        }
+        Series created = new Series(name);
+        existing = series.putIfAbsent(name, created);
+        return existing != null ? existing : created;
+    }
+
+    /** Opens the trace section for {@code series} and returns the start time for {@link #end}. */
+    static long begin(Series series) {
+        Trace.beginSection(series.name);
+        return System.nanoTime();
+    }
+
+    /** Closes the section opened by {@link #begin} and records the call. */
+    static void end(Series series, long start, long rows, boolean failed) {
+        long nanos = System.nanoTime() - start;
+        Trace.endSection();
+        series.record(nanos, rows, failed);
+    }
+
+    /**
+     * Records how much of {@code cursor}'s result its first window holds. A result that does not
+     * fit is refilled window by window as the reader moves through it.
+     */
+    static void recordWindow(Series series, Cursor cursor, int count) {
+        if (!(cursor instanceof AbstractWindowedCursor)) {
+            return;
+        }
+        CursorWindow window = ((AbstractWindowedCursor) cursor).getWindow();
+        if (window == null) {
+            return;
+        }
+        int windowRows = window.getNumRows();
+        series.windowRows.addAndGet(windowRows);
+        if (windowRows < count) {
+            series.spilledWindows.incrementAndGet();
+        }
+    }
+
+    /** One nested bundle per series, keyed by series name. */
+    Bundle snapshot(boolean reset) {
+        Bundle snapshot = new Bundle();
+        for (Series each : series.values()) {
+            snapshot.putBundle(each.name, each.toBundle());
+            if (reset) {
+                each.reset();
+            }
+        }
+        return snapshot;
+    }
+
+    static int bucketOf(long nanos) {
+        long micros = nanos / 1000;
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    /** Upper bound of the bucket holding the given fraction of calls, or 0 with no calls. */
+    static long percentileMicros(long[] buckets, double fraction) {
+        long total = 0;
+        for (long bucket : buckets) {
+            total += bucket;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            seen += buckets[i];
+            if (seen >= target) {
+                return 1L << i;
+            }
+        }
+        return 1L << (buckets.length - 1);
+    }
+}
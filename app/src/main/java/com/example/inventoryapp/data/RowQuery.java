@@ -0,0 +1,64 @@
+package com.example.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.CancellationSignal;
+
+import androidx.annotation.Nullable;
+
+/**
+ * {@link ObservableQuery} for a single row, such as one item or the stats summary. The row is
+ * copied out on the background thread, so observers get plain values and there is no cursor to
+ * close. The value is null when the row does not exist, for example after the item is deleted.
+ */
+public class RowQuery extends ObservableQuery<ContentValues> {
+
+    private final Uri uri;
+
+    @Nullable
+    private final String[] projection;
+
+    public RowQuery(ContentResolver resolver, Uri uri, @Nullable String[] projection) {
+        super(resolver, uri);
+        this.uri = uri;
+        this.projection = projection;
+    }
+
+    @Override
+    @Nullable
+    protected ContentValues query(ContentResolver resolver, CancellationSignal signal) {
+        try (Cursor cursor = resolver.query(uri, projection, null, null, null, signal)) {
+            if (cursor == null || !cursor.moveToFirst()) {
+                return null;
+            }
+            return toValues(cursor);
+        }
+    }
+
+    /** Copies the current row keeping each column's storage type, unlike {@link android.database.DatabaseUtils#cursorRowToContentValues}. */
+    static ContentValues toValues(Cursor cursor) {
+        ContentValues values = new ContentValues(cursor.getColumnCount());
+        for (int i = 0; i < cursor.getColumnCount(); i++) {
+            String column = cursor.getColumnName(i);
+            switch (cursor.getType(i)) {
+                case Cursor.FIELD_TYPE_NULL:
+                    values.putNull(column);
+                    break;
+                case Cursor.FIELD_TYPE_INTEGER:
+                    values.put(column, cursor.getLong(i));
+                    break;
+                case Cursor.FIELD_TYPE_FLOAT:
+                    values.put(column, cursor.getDouble(i));
+                    break;
+                case Cursor.FIELD_TYPE_BLOB:
+                    values.put(column, cursor.getBlob(i));
+                    break;
+                default:
+                    values.put(column, cursor.getString(i));
+            }
+        }
+        return values;
+    }
+}
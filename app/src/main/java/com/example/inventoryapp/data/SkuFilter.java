@@ -0,0 +1,129 @@
+package com.example.inventoryapp.data;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+/**
+ * Bloom filter over every SKU in the inventory table, so a scan of an unknown barcode is
+ * answered without a query. {@link #mightContain} never returns false for a SKU that exists;
+ * SKUs removed by updates and deletes stay in the filter as harmless false positives until the
+ * next rebuild.
+ *
+ * <p>The filter is built lazily on the first lookup and rebuilt once more SKUs have been added
+ * than it was sized for. Writers must call {@link #add} for every SKU they write.
+ */
+final class SkuFilter {
+
+    // About 1% false positives at the sized capacity.
+    private static final int BITS_PER_ENTRY = 10;
+
+    private static final int HASH_COUNT = 7;
+
+    private static final int MIN_CAPACITY = 1024;
+
+    private static final String SQL_SELECT_SKUS = "SELECT " + InventoryContract.InventoryEntry.COLUMN_ITEM_SKU
+            + " FROM " + InventoryContract.InventoryEntry.TABLE_NAME
+            + " WHERE " + InventoryContract.InventoryEntry.COLUMN_ITEM_SKU + " IS NOT NULL AND "
+            + InventoryContract.InventoryEntry.COLUMN_ITEM_DELETED_AT + " IS NULL";
+
+    private long[] bits;
+
+    private int capacity;
+
+    private int entries;
+
+    private long lookups;
+
+    private long rejections;
+
+    /**
+     * False only if no item has {@code sku}. Builds the filter on first use; only then is a
+     * database opened from {@code helper}, so a lookup answered by the filter touches none.
+     */
+    boolean mightContain(SQLiteOpenHelper helper, String sku) {
+        synchronized (this) {
+            if (bits != null && entries <= capacity) {
+                return test(sku);
+            }
+        }
+        rebuild(helper.getWritableDatabase());
+        synchronized (this) {
+            return test(sku);
+        }
+    }
+
+    synchronized void add(String sku) {
+        if (bits == null) {
+            return;
+        }
+        long hash = hash(sku);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long size = (long) bits.length << 6;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (int) (((h1 + i * h2) & 0xFFFFFFFFL) % size);
+            bits[bit >>> 6] |= 1L << bit;
+        }
+        entries++;
+    }
+
+    /** Lookups answered, and how many of them were rejected without a query. */
+    synchronized long lookupCount() {
+        return lookups;
+    }
+
+    synchronized long rejectionCount() {
+        return rejections;
+    }
+
+    /**
+     * Scans the SKU index inside a transaction on the writable database, which keeps writers
+     * out until the new filter is in place; SKUs they add afterwards go straight into it.
+     */
+    private void rebuild(SQLiteDatabase database) {
+        database.beginTransactionNonExclusive();
+        try {
+            try (Cursor cursor = database.rawQuery(SQL_SELECT_SKUS, null)) {
+                int newCapacity = Math.max(MIN_CAPACITY, cursor.getCount() * 2);
+                synchronized (this) {
+                    capacity = newCapacity;
+                    bits = new long[(int) (((long) newCapacity * BITS_PER_ENTRY + 63) >>> 6)];
+                    entries = 0;
+                    while (cursor.moveToNext()) {
+                        add(cursor.getString(0));
+                    }
+                }
+            }
+            database.setTransactionSuccessful();
+        } finally {
+            database.endTransaction();
+        }
+    }
+
+    private boolean test(String sku) {
+        lookups++;
+        long hash = hash(sku);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long size = (long) bits.length << 6;
+        for (int i = 0; i < HASH_COUNT; i++) {
+            int bit = (int) (((h1 + i * h2) & 0xFFFFFFFFL) % size);
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                rejections++;
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** 64-bit FNV-1a over the UTF-16 code units, split into two 32-bit hashes by the callers. */
+    private static long hash(String sku) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < sku.length(); i++) {
+            hash ^= sku.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
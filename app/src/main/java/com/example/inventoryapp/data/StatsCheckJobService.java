@@ -0,0 +1,69 @@
+package com.example.inventoryapp.data;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checks the trigger-maintained summary behind {@link InventoryContract.StatsEntry#CONTENT_URI}
+ * against the inventory table once a day while the device is idle, rebuilding it if it has
+ * drifted. The check scans the whole table, so it is kept off app start.
+ */
+public class StatsCheckJobService extends JobService {
+
+    private static final String LOG_TAG = StatsCheckJobService.class.getSimpleName();
+
+    private static final int JOB_ID = 1012;
+
+    private static final long CHECK_INTERVAL_MS = TimeUnit.DAYS.toMillis(1);
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    /** Schedules the daily check unless it is already scheduled. */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID) {
+                return;
+            }
+        }
+        scheduler.schedule(new JobInfo.Builder(JOB_ID, new ComponentName(context, StatsCheckJobService.class))
+                .setRequiresDeviceIdle(true)
+                .setPeriodic(CHECK_INTERVAL_MS)
+                .build());
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        executor.execute(() -> {
+            try {
+                getContentResolver().call(InventoryContract.StatsEntry.CONTENT_URI,
+                        InventoryContract.StatsEntry.METHOD_CHECK_STATS, null, null);
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Failed to check inventory stats", e);
+            }
+            jobFinished(params, false);
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The check is one read; if it is cut short the next run simply repeats it.
+        return false;
+    }
+
+    @Override
+    public void onDestroy() {
+        executor.shutdown();
+        super.onDestroy();
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.inventoryapp.data;
+
+/**
+ * Asked between batches by long-running background work, such as a job that the system may
+ * stop at any time; once it reports true the work ends after the batch in progress.
+ */
+interface StopCheck {
+
+    boolean stopRequested();
+}
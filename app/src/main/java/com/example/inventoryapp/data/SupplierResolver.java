@@ -0,0 +1,90 @@
+package com.example.inventoryapp.data;
+
+import android.content.ContentValues;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteDoneException;
+import android.database.sqlite.SQLiteStatement;
+
+import androidx.annotation.Nullable;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Turns the supplier and email of an item write into a {@code supplier_id}, creating the
+ * supplier row on first use. Ids are cached for the resolver's lifetime, so a bulk insert looks
+ * each distinct supplier up once. Must be used inside the caller's write transaction.
+ */
+final class SupplierResolver implements Closeable {
+
+    private static final String SQL_SELECT_SUPPLIER = "SELECT " + InventoryContract.SupplierEntry._ID
+            + " FROM " + InventoryContract.SupplierEntry.TABLE_NAME
+            + " WHERE " + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME + " = ? AND "
+            + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_EMAIL + " = ?";
+
+    private static final String SQL_INSERT_SUPPLIER = "INSERT INTO " + InventoryContract.SupplierEntry.TABLE_NAME
+            + " (" + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME + ", "
+            + InventoryContract.SupplierEntry.COLUMN_SUPPLIER_EMAIL + ") VALUES (?, ?)";
+
+    private final SQLiteDatabase database;
+
+    private SQLiteStatement select;
+
+    private SQLiteStatement insert;
+
+    private final Map<String, Long> ids = new HashMap<>();
+
+    SupplierResolver(SQLiteDatabase database) {
+        this.database = database;
+    }
+
+    long resolve(String name, @Nullable String email) {
+        name = name.trim();
+        email = email == null ? "" : email.trim();
+        String key = name + '\u0000' + email;
+        Long cached = ids.get(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        if (select == null) {
+            select = database.compileStatement(SQL_SELECT_SUPPLIER);
+            insert = database.compileStatement(SQL_INSERT_SUPPLIER);
+        }
+        long id;
+        select.bindString(1, name);
+        select.bindString(2, email);
+        try {
+            id = select.simpleQueryForLong();
+        } catch (SQLiteDoneException e) {
+            insert.bindString(1, name);
+            insert.bindString(2, email);
+            id = insert.executeInsert();
+        }
+        ids.put(key, id);
+        return id;
+    }
+
+    /**
+     * Replaces the supplier and email in {@code values} with the resolved supplier id. Returns
+     * a copy; the caller's values are left untouched.
+     */
+    ContentValues toRow(ContentValues values) {
+        ContentValues row = new ContentValues(values);
+        row.remove(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER);
+        row.remove(InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL);
+        row.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER_ID, resolve(
+                values.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER),
+                values.getAsString(InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL)));
+        return row;
+    }
+
+    @Override
+    public void close() {
+        if (select != null) {
+            select.close();
+            insert.close();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.inventoryapp;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class FirstScreenSnapshotTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void update_writesFirstScreenThatReadsBackThroughMmap() throws Exception {
+        File file = new File(folder.getRoot(), "snapshot");
+        AtomicInteger writes = new AtomicInteger();
+        FirstScreenSnapshot snapshot = new FirstScreenSnapshot(file, command -> {
+            writes.incrementAndGet();
+            command.run();
+        });
+
+        snapshot.update(rows(100));
+        snapshot.update(rows(100));
+        assertEquals("Unchanged rows should not be rewritten", 1, writes.get());
+
+        try (Cursor cursor = new FirstScreenSnapshot(file, Runnable::run).read()) {
+            assertEquals(FirstScreenSnapshot.ROWS, cursor.getCount());
+            cursor.moveToPosition(2);
+            assertEquals(3, cursor.getLong(0));
+            assertEquals("\u00c4rmel 2", cursor.getString(1));
+            assertEquals(4.5, cursor.getDouble(2), 0);
+            assertEquals(2, cursor.getInt(3));
+        }
+    }
+
+    @Test
+    public void read_ignoresMissingAndCorruptFiles() throws Exception {
+        File file = new File(folder.getRoot(), "snapshot");
+        assertNull(new FirstScreenSnapshot(file, Runnable::run).read());
+
+        byte[] valid = FirstScreenSnapshot.encode(rows(5));
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(valid, 0, valid.length - 3);
+        }
+        assertNull(new FirstScreenSnapshot(file, Runnable::run).read());
+    }
+
+    private static Cursor rows(int count) {
+        MatrixCursor cursor = new MatrixCursor(FirstScreenSnapshot.COLUMNS);
+        for (int i = 0; i < count; i++) {
+            cursor.addRow(new Object[] { i + 1, "\u00c4rmel " + i, 2.5 + i, i });
+        }
+        return cursor;
+    }
+}
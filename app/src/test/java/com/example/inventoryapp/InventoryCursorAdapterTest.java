@@ -0,0 +1,115 @@
+package com.example.inventoryapp;
+
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.os.Looper;
+
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.inventoryapp.data.InventoryContract;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class InventoryCursorAdapterTest {
+
+    private static final String[] COLUMNS = {
+            InventoryContract.InventoryEntry._ID,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO
+    };
+
+    @Test
+    public void sameContents_seesChangesThatCollideInAHash() {
+        // "Aa" and "BB" have the same String.hashCode().
+        InventoryCursorAdapter.RowSnapshot before = InventoryCursorAdapter.RowSnapshot.of(
+                cursor(new Object[] { 1, "Aa", 2.5, 3, null }));
+        InventoryCursorAdapter.RowSnapshot after = InventoryCursorAdapter.RowSnapshot.of(
+                cursor(new Object[] { 1, "BB", 2.5, 3, null }));
+
+        assertTrue(before.sameContents(0, before, 0));
+        assertFalse(before.sameContents(0, after, 0));
+    }
+
+    @Test
+    public void sameContents_comparesEveryDisplayedColumn() {
+        InventoryCursorAdapter.RowSnapshot snapshot = InventoryCursorAdapter.RowSnapshot.of(cursor(
+                new Object[] { 1, "Item", 2.5, 3, "a.jpg" },
+                new Object[] { 1, "Item", 2.75, 3, "a.jpg" },
+                new Object[] { 1, "Item", 2.5, 4, "a.jpg" },
+                new Object[] { 1, "Item", 2.5, 3, "b.jpg" },
+                new Object[] { 1, "Item", 2.5, 3, null }));
+
+        for (int i = 1; i < 5; i++) {
+            assertFalse("Row " + i, snapshot.sameContents(0, snapshot, i));
+        }
+    }
+
+    @Test
+    public void submitCursor_rebindsOnlyTheChangedRow() throws Exception {
+        InventoryCursorAdapter adapter = new InventoryCursorAdapter(id -> { });
+        submit(adapter, cursor(
+                new Object[] { 1, "Aa", 1.0, 1, null },
+                new Object[] { 2, "Bb", 1.0, 1, null },
+                new Object[] { 3, "Cc", 1.0, 1, null }));
+        List<String> events = new ArrayList<>();
+        adapter.registerAdapterDataObserver(new RecyclerView.AdapterDataObserver() {
+            @Override
+            public void onItemRangeChanged(int positionStart, int itemCount, Object payload) {
+                events.add("changed " + positionStart + "+" + itemCount);
+            }
+
+            @Override
+            public void onItemRangeInserted(int positionStart, int itemCount) {
+                events.add("inserted " + positionStart + "+" + itemCount);
+            }
+
+            @Override
+            public void onItemRangeRemoved(int positionStart, int itemCount) {
+                events.add("removed " + positionStart + "+" + itemCount);
+            }
+        });
+
+        submit(adapter, cursor(
+                new Object[] { 1, "BB", 1.0, 1, null },
+                new Object[] { 2, "Bb", 1.0, 1, null },
+                new Object[] { 4, "Dd", 1.0, 1, null }));
+
+        assertEquals(3, adapter.getItemCount());
+        assertEquals(4, adapter.getItemId(2));
+        assertTrue(events.toString(), events.contains("changed 0+1"));
+        assertFalse("Row 2 did not change", events.contains("changed 1+1"));
+    }
+
+    private static void submit(InventoryCursorAdapter adapter, Cursor cursor) throws InterruptedException {
+        CountDownLatch committed = new CountDownLatch(1);
+        adapter.submitCursor(cursor, committed::countDown);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!committed.await(1, TimeUnit.MILLISECONDS)) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Diff was never committed");
+            }
+            shadowOf(Looper.getMainLooper()).idle();
+        }
+    }
+
+    private static Cursor cursor(Object[]... rows) {
+        MatrixCursor cursor = new MatrixCursor(COLUMNS);
+        for (Object[] row : rows) {
+            cursor.addRow(row);
+        }
+        return cursor;
+    }
+}
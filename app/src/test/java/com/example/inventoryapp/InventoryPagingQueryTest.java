@@ -0,0 +1,195 @@
+package com.example.inventoryapp;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Looper;
+
+import androidx.lifecycle.Observer;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.inventoryapp.data.InventoryContract;
+import com.example.inventoryapp.data.InventoryProvider;
+import com.example.inventoryapp.data.ObservableQuery;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class InventoryPagingQueryTest {
+
+    private static final String[] PROJECTION = {
+            InventoryContract.InventoryEntry._ID,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY
+    };
+
+    private ContentResolver resolver;
+
+    private InventoryPagingQuery query;
+
+    private final List<Cursor> values = new ArrayList<>();
+
+    private final Observer<Cursor> observer = values::add;
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(InventoryProvider.class).create(InventoryContract.CONTENT_AUTHORITY);
+        resolver = ApplicationProvider.getApplicationContext().getContentResolver();
+    }
+
+    @After
+    public void tearDown() {
+        if (query != null) {
+            query.removeObserver(observer);
+            query.close();
+        }
+    }
+
+    @Test
+    public void loadNextPage_neitherRepeatsNorSkipsRowsThatShareASortKey() {
+        // Page one ends inside a run of prices SQLite cannot print exactly, page two inside a run of 2.5.
+        for (int i = 0; i < 120; i++) {
+            insert(String.format("Item %03d", i), i < 70 ? 2.5 : 0.1 + 0.2);
+        }
+        Uri listUri = listUri(InventoryContract.InventoryEntry.SORT_PRICE);
+        observe(listUri);
+        assertEquals(InventoryPagingQuery.PAGE_SIZE, latest().getCount());
+
+        loadNextPage();
+        assertEquals(2 * InventoryPagingQuery.PAGE_SIZE, latest().getCount());
+        loadNextPage();
+
+        List<Long> paged = ids(latest());
+        assertEquals(120, paged.size());
+        assertEquals(120, new HashSet<>(paged).size());
+        assertEquals(allIds(listUri), paged);
+    }
+
+    @Test
+    public void loadNextPage_stopsAfterTheLastPage() {
+        for (int i = 0; i < 2 * InventoryPagingQuery.PAGE_SIZE; i++) {
+            insert(String.format("Item %03d", i), 2.5);
+        }
+        observe(listUri(InventoryContract.InventoryEntry.SORT_PRICE));
+        loadNextPage();
+        assertEquals(2 * InventoryPagingQuery.PAGE_SIZE, latest().getCount());
+
+        // A full second page cannot tell it was the last; the empty third one can.
+        loadNextPage();
+        assertEquals(3, values.size());
+        assertEquals(2 * InventoryPagingQuery.PAGE_SIZE, latest().getCount());
+
+        loadNextPage();
+        assertEquals("Nothing is left to query", 3, values.size());
+    }
+
+    @Test
+    public void insertInTheMiddle_reloadsTheRowsOnScreenAndPagingContinues() {
+        for (int i = 0; i < 120; i++) {
+            insert(String.format("Item %03d", i), 2.5);
+        }
+        Uri listUri = listUri(InventoryContract.InventoryEntry.SORT_NAME);
+        observe(listUri);
+        loadNextPage();
+        Cursor shown = latest();
+        query.releaseStalePages(shown);
+
+        insert("Item 050a", 2.5);
+        idleFor(ObservableQuery.DEBOUNCE_MS * 2);
+
+        Cursor reloaded = latest();
+        assertNotSame(shown, reloaded);
+        assertEquals("As many rows as were on screen", 2 * InventoryPagingQuery.PAGE_SIZE, reloaded.getCount());
+        assertTrue(reloaded.moveToPosition(51));
+        assertEquals("Item 050a", reloaded.getString(reloaded.getColumnIndexOrThrow(
+                InventoryContract.InventoryEntry.COLUMN_ITEM_NAME)));
+
+        // Showing the reload releases the pages it replaced, and it stays readable.
+        query.releaseStalePages(reloaded);
+        assertEquals(ids(reloaded).size(), reloaded.getCount());
+
+        loadNextPage();
+        assertEquals(allIds(listUri), ids(latest()));
+    }
+
+    @Test
+    public void delivery_carriesASnapshotOfEveryLoadedRow() {
+        for (int i = 0; i < 120; i++) {
+            insert(String.format("Item %03d", i), 2.5);
+        }
+        observe(listUri(InventoryContract.InventoryEntry.SORT_NAME));
+        loadNextPage();
+
+        Cursor paged = latest();
+        InventoryCursorAdapter.RowSnapshot snapshot =
+                ((InventoryCursorAdapter.SnapshotCursor) paged).getRowSnapshot();
+        assertEquals(2 * InventoryPagingQuery.PAGE_SIZE, snapshot.ids.length);
+        InventoryCursorAdapter.RowSnapshot read = InventoryCursorAdapter.RowSnapshot.of(paged);
+        for (int i = 0; i < read.ids.length; i++) {
+            assertTrue("Row " + i, snapshot.sameContents(i, read, i));
+        }
+    }
+
+    private void observe(Uri listUri) {
+        query = new InventoryPagingQuery(resolver, listUri, PROJECTION, Runnable::run);
+        query.observeForever(observer);
+        idleFor(0);
+    }
+
+    private void loadNextPage() {
+        query.loadNextPage();
+        idleFor(0);
+    }
+
+    private Cursor latest() {
+        assertFalse(values.isEmpty());
+        return values.get(values.size() - 1);
+    }
+
+    private void insert(String name, double price) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, name);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 1);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, price);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER, "Supplier");
+        resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, values);
+    }
+
+    private List<Long> allIds(Uri listUri) {
+        try (Cursor cursor = resolver.query(listUri, PROJECTION, null, null, null)) {
+            return ids(cursor);
+        }
+    }
+
+    private static Uri listUri(String sort) {
+        return InventoryContract.InventoryEntry.buildListUri(sort, false, null, null);
+    }
+
+    private static List<Long> ids(Cursor cursor) {
+        List<Long> ids = new ArrayList<>();
+        int index = cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry._ID);
+        for (cursor.moveToPosition(-1); cursor.moveToNext(); ) {
+            ids.add(cursor.getLong(index));
+        }
+        return ids;
+    }
+
+    private static void idleFor(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis));
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.inventoryapp;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Looper;
+import android.widget.ImageView;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.inventoryapp.data.ItemPhotos;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class ThumbnailLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sampleSize_keepsTheShortSideAtLeastTheThumbnailSize() {
+        assertEquals(4, ThumbnailLoader.sampleSize(600, 100));
+        assertEquals(16, ThumbnailLoader.sampleSize(3000, 96));
+        assertEquals(2, ThumbnailLoader.sampleSize(200, 100));
+        assertEquals("Never upsampled", 1, ThumbnailLoader.sampleSize(50, 100));
+    }
+
+    @Test
+    public void decodeThumbnail_cropsToASquareOfTheRequestedSize() throws Exception {
+        File photo = photo(new File(folder.getRoot(), "wide.jpg"), 800, 600);
+
+        Bitmap thumbnail = ThumbnailLoader.decodeThumbnail(photo, 100);
+
+        assertNotNull(thumbnail);
+        assertEquals(100, thumbnail.getWidth());
+        assertEquals(100, thumbnail.getHeight());
+        assertNull("Not an image", ThumbnailLoader.decodeThumbnail(folder.newFile("empty.jpg"), 100));
+    }
+
+    @Test
+    public void load_servesARepeatedRequestFromMemory() throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        File directory = ItemPhotos.directory(context);
+        assertTrue(directory.mkdirs() || directory.isDirectory());
+        photo(new File(directory, "cached.jpg"), 400, 300);
+        ThumbnailLoader loader = ThumbnailLoader.getInstance(context);
+        ImageView view = new ImageView(context);
+
+        ThumbnailLoader.Request request = loader.load("cached.jpg", 64, view, R.drawable.photo_placeholder);
+        assertNotNull("Decoded in the background", request);
+        request.future.get(10, TimeUnit.SECONDS);
+        shadowOf(Looper.getMainLooper()).idle();
+        assertTrue(new File(context.getCacheDir(), "thumbnails/cached.jpg@64.jpg").isFile());
+
+        assertNull("Shown straight from memory", loader.load("cached.jpg", 64, view, R.drawable.photo_placeholder));
+        assertNull("No photo, nothing to wait for", loader.load(null, 64, view, R.drawable.photo_placeholder));
+    }
+
+    private static File photo(File file, int width, int height) throws IOException {
+        if (!ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "jpg", file)) {
+            throw new IOException("No JPEG writer");
+        }
+        return file;
+    }
+}
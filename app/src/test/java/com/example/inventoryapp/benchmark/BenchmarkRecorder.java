@@ -0,0 +1,131 @@
+package com.example.inventoryapp.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Minimal timing harness for the Robolectric benchmarks: warms up, times a fixed number of
+ * operations and writes one JSON file per suite to {@code build/benchmark-results/}, so results
+ * can be diffed between releases. Public for the benchmarks that sit next to the package-private
+ * code they time.
+ */
+public final class BenchmarkRecorder {
+
+    public interface Operation {
+        void run(int iteration) throws Exception;
+    }
+
+    private static final File RESULTS_DIR = new File("build/benchmark-results");
+
+    private final String suite;
+
+    private final List<String> results = new ArrayList<>();
+
+    public BenchmarkRecorder(String suite) {
+        this.suite = suite;
+    }
+
+    /** Comma separated table sizes from {@code -PbenchmarkSizes}, default 1k/100k/1M. */
+    static int[] sizes() {
+        String[] values = System.getProperty("benchmark.sizes", "1000,100000,1000000").split(",");
+        int[] sizes = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            sizes[i] = Integer.parseInt(values[i].trim());
+        }
+        return sizes;
+    }
+
+    public void measure(String name, int rows, int warmup, int iterations, Operation operation) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            operation.run(i);
+        }
+        long[] nanos = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            operation.run(warmup + i);
+            nanos[i] = System.nanoTime() - start;
+        }
+        record(name, rows, nanos);
+    }
+
+    /**
+     * Like {@link #measure}, but also records the bytes each operation allocates on all threads,
+     * so work the operation hands to a background thread counts too. Needs a HotSpot-based JVM.
+     */
+    void measureAllocations(String name, int rows, int warmup, int iterations, Operation operation) throws Exception {
+        for (int i = 0; i < warmup; i++) {
+            operation.run(i);
+        }
+        long[] nanos = new long[iterations];
+        long[] bytes = new long[iterations];
+        for (int i = 0; i < iterations; i++) {
+            long allocated = allocatedBytes();
+            long start = System.nanoTime();
+            operation.run(warmup + i);
+            nanos[i] = System.nanoTime() - start;
+            bytes[i] = allocatedBytes() - allocated;
+        }
+        add(String.format(Locale.US, "%s,\"bytesPerOp\":%s}", timing(name, rows, nanos), stats(bytes)));
+    }
+
+    /** Records samples timed by the caller, for operations that cannot run in a tight loop. */
+    void record(String name, int rows, long[] nanos) {
+        add(timing(name, rows, nanos) + "}");
+    }
+
+    private String timing(String name, int rows, long[] nanos) {
+        return String.format(Locale.US,
+                "{\"suite\":\"%s\",\"benchmark\":\"%s\",\"rows\":%d,\"iterations\":%d,\"nsPerOp\":%s",
+                suite, name, rows, nanos.length, stats(nanos));
+    }
+
+    private static String stats(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long value : sorted) {
+            total += value;
+        }
+        return String.format(Locale.US, "{\"min\":%d,\"median\":%d,\"mean\":%d,\"p90\":%d}",
+                sorted[0], sorted[sorted.length / 2], total / sorted.length, sorted[(int) (sorted.length * 0.9)]);
+    }
+
+    private void add(String json) {
+        results.add(json);
+        System.out.println(json);
+    }
+
+    // Threads that exit between two calls take their count with them; pooled threads stay alive.
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long bytes : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    public void write(String fileName) throws IOException {
+        if (!RESULTS_DIR.isDirectory() && !RESULTS_DIR.mkdirs()) {
+            throw new IOException("Cannot create " + RESULTS_DIR);
+        }
+        try (Writer writer = new FileWriter(new File(RESULTS_DIR, fileName))) {
+            writer.write("[\n");
+            for (int i = 0; i < results.size(); i++) {
+                writer.write("  ");
+                writer.write(results.get(i));
+                writer.write(i + 1 < results.size() ? ",\n" : "\n");
+            }
+            writer.write("]\n");
+        }
+    }
+}
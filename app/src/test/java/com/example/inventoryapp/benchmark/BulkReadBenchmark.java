@@ -0,0 +1,112 @@
+package com.example.inventoryapp.benchmark;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.inventoryapp.data.InventoryContract;
+import com.example.inventoryapp.data.InventoryProvider;
+import com.example.inventoryapp.data.PackedItems;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares reading every item through a cursor with reading the same columns from
+ * {@link InventoryContract.InventoryEntry#CONTENT_PACKED_URI}, in time and bytes allocated per
+ * full read of 500k rows. Runs with the other benchmarks under {@code -Pbenchmark}; results land
+ * in {@code app/build/benchmark-results/bulk-read.json}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BulkReadBenchmark {
+
+    private static final int ROWS = 500_000;
+
+    private static final int FILL_CHUNK = 10_000;
+
+    private static final String[] COLUMNS = {
+            InventoryContract.InventoryEntry._ID,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
+            InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER
+    };
+
+    private final BenchmarkRecorder recorder = new BenchmarkRecorder("bulk-read");
+
+    private ContentResolver resolver;
+
+    // Sinks for the values read, so neither path can skip decoding a column.
+    private long idSum;
+
+    private long quantitySum;
+
+    private double priceSum;
+
+    private int textLength;
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(InventoryProvider.class).create(InventoryContract.CONTENT_AUTHORITY);
+        resolver = ApplicationProvider.getApplicationContext().getContentResolver();
+
+        for (int filled = 0; filled < ROWS; filled += FILL_CHUNK) {
+            ContentValues[] chunk = new ContentValues[Math.min(FILL_CHUNK, ROWS - filled)];
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = InventoryBenchmark.item(filled + i);
+            }
+            resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, chunk);
+        }
+    }
+
+    @Test
+    public void run() throws Exception {
+        recorder.measureAllocations("cursor", ROWS, 1, 5, i -> assertEquals(ROWS, readCursor()));
+        recorder.measureAllocations("packed", ROWS, 1, 5, i -> assertEquals(ROWS, readPacked()));
+        recorder.write("bulk-read.json");
+    }
+
+    private int readCursor() {
+        int rows = 0;
+        try (Cursor cursor = resolver.query(InventoryContract.InventoryEntry.CONTENT_URI, COLUMNS, null, null,
+                InventoryContract.InventoryEntry._ID)) {
+            while (cursor.moveToNext()) {
+                idSum += cursor.getLong(0);
+                textLength += cursor.getString(1).length();
+                quantitySum += cursor.getLong(2);
+                priceSum += cursor.getDouble(3);
+                textLength += cursor.getString(4).length();
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    private int readPacked() throws Exception {
+        int rows = 0;
+        try (PackedItems.Reader reader = new PackedItems.Reader(resolver.openFileDescriptor(
+                InventoryContract.InventoryEntry.buildPackedUri(COLUMNS), "r"))) {
+            for (PackedItems.Chunk chunk = reader.next(); chunk != null; chunk = reader.next()) {
+                long[] ids = chunk.getLongs(0);
+                long[] quantities = chunk.getLongs(2);
+                double[] prices = chunk.getDoubles(3);
+                for (int row = 0; row < chunk.rows; row++) {
+                    idSum += ids[row];
+                    textLength += chunk.getString(1, row).length();
+                    quantitySum += quantities[row];
+                    priceSum += prices[row];
+                    textLength += chunk.getString(4, row).length();
+                }
+                rows += chunk.rows;
+            }
+        }
+        return rows;
+    }
+}
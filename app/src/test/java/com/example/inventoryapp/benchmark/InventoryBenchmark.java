@@ -0,0 +1,227 @@
+package com.example.inventoryapp.benchmark;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.content.Intent;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Looper;
+import android.widget.EditText;
+import android.widget.FrameLayout;
+
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.example.inventoryapp.EditorActivity;
+import com.example.inventoryapp.InventoryCursorAdapter;
+import com.example.inventoryapp.R;
+import com.example.inventoryapp.data.InventoryContract;
+import com.example.inventoryapp.data.InventoryProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.ParameterizedRobolectricTestRunner;
+import org.robolectric.Robolectric;
+import org.robolectric.android.controller.ActivityController;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Times the provider CRUD paths, list binding and the editor load path against tables of
+ * 1k, 100k and 1M rows. Excluded from the normal unit test run; use
+ * {@code ./gradlew testDebugUnitTest -Pbenchmark}. Results land in
+ * {@code app/build/benchmark-results/inventory-<rows>.json}.
+ */
+@RunWith(ParameterizedRobolectricTestRunner.class)
+public class InventoryBenchmark {
+
+    private static final int FILL_CHUNK = 10_000;
+
+    private static final int PAGE_SIZE = 50;
+
+    private static final int BULK_ROWS = 100;
+
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private static final Uri LIST_URI = InventoryContract.InventoryEntry.buildListUri(
+            InventoryContract.InventoryEntry.SORT_NAME, false, null, null);
+
+    @ParameterizedRobolectricTestRunner.Parameters(name = "rows={0}")
+    public static List<Object[]> sizes() {
+        List<Object[]> sizes = new ArrayList<>();
+        for (int size : BenchmarkRecorder.sizes()) {
+            sizes.add(new Object[] { size });
+        }
+        return sizes;
+    }
+
+    private final int rows;
+
+    private final BenchmarkRecorder recorder = new BenchmarkRecorder("inventory");
+
+    private final Random random = new Random(42);
+
+    private ContentResolver resolver;
+
+    public InventoryBenchmark(int rows) {
+        this.rows = rows;
+    }
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(InventoryProvider.class).create(InventoryContract.CONTENT_AUTHORITY);
+        resolver = ApplicationProvider.getApplicationContext().getContentResolver();
+
+        for (int filled = 0; filled < rows; filled += FILL_CHUNK) {
+            ContentValues[] chunk = new ContentValues[Math.min(FILL_CHUNK, rows - filled)];
+            for (int i = 0; i < chunk.length; i++) {
+                chunk[i] = item(filled + i);
+            }
+            resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, chunk);
+        }
+    }
+
+    @Test
+    public void run() throws Exception {
+        recorder.measure("provider.insert", rows, 50, 500,
+                i -> resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, item(rows + i)));
+
+        recorder.measure("provider.query.firstPage", rows, 20, 200,
+                i -> drain(resolver.query(InventoryContract.InventoryEntry.buildPageUri(LIST_URI, null, PAGE_SIZE),
+                        null, null, null, null)));
+
+        recorder.measure("provider.query.deepPage", rows, 20, 200, i -> {
+            int after = randomId() - 1;
+            String[] afterKey = { name(after), String.valueOf(after + 1) };
+            drain(resolver.query(InventoryContract.InventoryEntry.buildPageUri(LIST_URI, afterKey, PAGE_SIZE),
+                    null, null, null, null));
+        });
+
+        recorder.measure("provider.query.itemRandom", rows, 100, 1000,
+                i -> drain(resolver.query(itemUri(randomId()), null, null, null, null)));
+
+        Uri hotItem = itemUri(1);
+        recorder.measure("provider.query.itemRepeated", rows, 100, 1000,
+                i -> drain(resolver.query(hotItem, null, null, null, null)));
+
+        recorder.measure("provider.update", rows, 50, 500, i -> {
+            ContentValues values = new ContentValues();
+            values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, i);
+            resolver.update(itemUri(randomId()), values, null, null);
+        });
+
+        // Delete the rows appended by the insert benchmark so every iteration removes a real row.
+        recorder.measure("provider.delete", rows, 50, 500,
+                i -> resolver.delete(itemUri(rows + 1 + i), null, null));
+
+        // Divide by BULK_ROWS to compare with provider.insert, which commits a transaction per row.
+        ContentValues[] bulk = new ContentValues[BULK_ROWS];
+        recorder.measure("provider.bulkInsert" + BULK_ROWS, rows, 5, 50, i -> {
+            for (int row = 0; row < BULK_ROWS; row++) {
+                bulk[row] = item(2 * rows + i * BULK_ROWS + row);
+            }
+            resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, bulk);
+        });
+
+        measureAdapterBind();
+        measureEditorLoad();
+
+        recorder.write("inventory-" + rows + ".json");
+    }
+
+    /** Binds every row of the first page, as a fling through the list would. */
+    @SuppressWarnings({ "rawtypes", "unchecked" })
+    private void measureAdapterBind() throws Exception {
+        Cursor cursor = resolver.query(InventoryContract.InventoryEntry.buildPageUri(LIST_URI, null, PAGE_SIZE),
+                null, null, null, null);
+        InventoryCursorAdapter adapter = new InventoryCursorAdapter(id -> { });
+        CountDownLatch committed = new CountDownLatch(1);
+        adapter.submitCursor(cursor, committed::countDown);
+        awaitOnMainLooper(committed);
+
+        // The view holder type is private to the adapter, so bind through the raw base class.
+        RecyclerView.Adapter rawAdapter = adapter;
+        FrameLayout parent = new FrameLayout(ApplicationProvider.getApplicationContext());
+        RecyclerView.ViewHolder holder = rawAdapter.createViewHolder(parent, 0);
+        int count = adapter.getItemCount();
+        recorder.measure("adapter.bind", rows, 10 * count, 100 * count,
+                i -> rawAdapter.bindViewHolder(holder, i % count));
+        cursor.close();
+    }
+
+    /** Starts the editor on a random item and waits until its fields are filled by the loader. */
+    private void measureEditorLoad() {
+        int iterations = 30;
+        long[] nanos = new long[iterations];
+        for (int i = -5; i < iterations; i++) {
+            Intent intent = new Intent(ApplicationProvider.getApplicationContext(), EditorActivity.class)
+                    .setData(itemUri(randomId()));
+            long start = System.nanoTime();
+            ActivityController<EditorActivity> controller = Robolectric.buildActivity(EditorActivity.class, intent).setup();
+            EditText name = controller.get().findViewById(R.id.edit_product_name);
+            while (name.getText().length() == 0) {
+                if (System.nanoTime() - start > TIMEOUT_NANOS) {
+                    throw new AssertionError("Editor did not load its item");
+                }
+                shadowOf(Looper.getMainLooper()).idle();
+                Thread.yield();
+            }
+            if (i >= 0) {
+                nanos[i] = System.nanoTime() - start;
+            }
+            controller.pause().stop().destroy();
+        }
+        recorder.record("editor.load", rows, nanos);
+    }
+
+    private static void awaitOnMainLooper(CountDownLatch latch) throws InterruptedException {
+        long start = System.nanoTime();
+        while (!latch.await(1, TimeUnit.MILLISECONDS)) {
+            if (System.nanoTime() - start > TIMEOUT_NANOS) {
+                throw new AssertionError("Timed out waiting for the main looper");
+            }
+            shadowOf(Looper.getMainLooper()).idle();
+        }
+    }
+
+    private int randomId() {
+        return 1 + random.nextInt(rows);
+    }
+
+    private static Uri itemUri(long id) {
+        return ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, id);
+    }
+
+    private static void drain(Cursor cursor) {
+        try {
+            while (cursor.moveToNext()) {
+                cursor.getString(1);
+            }
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private static String name(int i) {
+        return String.format(Locale.US, "Item %07d", i);
+    }
+
+    static ContentValues item(int i) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, name(i));
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, i % 50);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, 1.5 + i % 100);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER, "Supplier " + i % 20);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL, "supplier" + i % 20 + "@example.com");
+        return values;
+    }
+}
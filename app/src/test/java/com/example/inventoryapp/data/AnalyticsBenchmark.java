@@ -0,0 +1,65 @@
+package com.example.inventoryapp.data;
+
+import com.example.inventoryapp.benchmark.BenchmarkRecorder;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Times {@link InventoryAnalytics#analyze} over 1M items on one thread and on up to four, to
+ * show how ranking scales across cores. Runs with the other benchmarks under
+ * {@code -Pbenchmark}; results land in {@code app/build/benchmark-results/analytics.json}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class AnalyticsBenchmark {
+
+    private static final int ROWS = 1_000_000;
+
+    private static final int CORES = Math.min(Runtime.getRuntime().availableProcessors(), 4);
+
+    private final BenchmarkRecorder recorder = new BenchmarkRecorder("analytics");
+
+    private final double[] prices = new double[ROWS];
+
+    private final int[] quantities = new int[ROWS];
+
+    private final double[] demand = new double[ROWS];
+
+    private final double[] values = new double[ROWS];
+
+    private final byte[] classes = new byte[ROWS];
+
+    private final int[] reorder = new int[ROWS];
+
+    public AnalyticsBenchmark() {
+        Random random = new Random(42);
+        for (int i = 0; i < ROWS; i++) {
+            prices[i] = random.nextInt(10000) / 100.0;
+            quantities[i] = random.nextInt(5) == 0 ? 0 : random.nextInt(200);
+            demand[i] = random.nextInt(50) / (double) InventoryAnalytics.DEMAND_DAYS;
+        }
+    }
+
+    @Test
+    public void run() throws Exception {
+        measure(1);
+        if (CORES > 1) {
+            measure(CORES);
+        }
+        recorder.write("analytics.json");
+    }
+
+    private void measure(int parallelism) throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            recorder.measure("analyze.threads" + parallelism, ROWS, 1, 5, i -> InventoryAnalytics.analyze(
+                    pool, ROWS, prices, quantities, demand, values, classes, reorder));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.database.ContentObserver;
+import android.net.Uri;
+import android.os.Looper;
+
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class ChangeNotifierTest {
+
+    private static final Uri ITEMS = InventoryContract.InventoryEntry.CONTENT_URI;
+
+    // A derived URI outside the collection, so the item observer does not see it too.
+    private static final Uri SUPPLIERS = InventoryContract.SupplierEntry.CONTENT_URI;
+
+    private final List<Uri> itemChanges = new ArrayList<>();
+
+    private final List<Uri> supplierChanges = new ArrayList<>();
+
+    private ChangeNotifier notifier;
+
+    @Before
+    public void setUp() {
+        ContentResolver resolver = ApplicationProvider.getApplicationContext().getContentResolver();
+        resolver.registerContentObserver(ITEMS, true, new Recorder(itemChanges));
+        resolver.registerContentObserver(SUPPLIERS, false, new Recorder(supplierChanges));
+        notifier = new ChangeNotifier(resolver, ITEMS, SUPPLIERS);
+    }
+
+    @Test
+    public void notifyChange_sendsOneNotificationPerUriPerWindow() {
+        for (int i = 0; i < 10; i++) {
+            notifier.notifyChange(item(1));
+            notifier.notifyChange(item(2));
+        }
+        assertTrue("Held for the window", itemChanges.isEmpty());
+
+        idleFor(Duration.ofSeconds(1));
+
+        assertEquals(2, itemChanges.size());
+        assertTrue(itemChanges.contains(item(1)));
+        assertTrue(itemChanges.contains(item(2)));
+        assertEquals("Derived URIs come along once", 1, supplierChanges.size());
+
+        notifier.notifyChange(item(1));
+        idleFor(Duration.ofSeconds(1));
+        assertEquals("The next window notifies again", 3, itemChanges.size());
+    }
+
+    @Test
+    public void endBatch_releasesNestedBatchesOnlyAtTheOutermostEnd() {
+        notifier.beginBatch();
+        notifier.notifyChange(item(1));
+        notifier.beginBatch();
+        notifier.notifyChange(item(2));
+        notifier.endBatch(true);
+        idleFor(Duration.ofSeconds(1));
+        assertTrue("Still inside the outer batch", itemChanges.isEmpty());
+
+        notifier.endBatch(true);
+        idleFor(Duration.ofSeconds(1));
+
+        assertEquals(2, itemChanges.size());
+        assertEquals(1, supplierChanges.size());
+    }
+
+    @Test
+    public void endBatch_dropsTheChangesOfARolledBackBatch() {
+        notifier.beginBatch();
+        notifier.notifyChange(item(1));
+        notifier.beginBatch();
+        notifier.notifyChange(item(2));
+        // An inner failure rolls back the whole transaction, even if the outer end says committed.
+        notifier.endBatch(false);
+        notifier.endBatch(true);
+        idleFor(Duration.ofSeconds(1));
+
+        assertTrue(itemChanges.isEmpty());
+        assertTrue(supplierChanges.isEmpty());
+    }
+
+    private static Uri item(long id) {
+        return ContentUris.withAppendedId(ITEMS, id);
+    }
+
+    private static void idleFor(Duration duration) {
+        shadowOf(Looper.getMainLooper()).idleFor(duration);
+    }
+
+    private static final class Recorder extends ContentObserver {
+
+        private final List<Uri> changes;
+
+        Recorder(List<Uri> changes) {
+            super(null);
+            this.changes = changes;
+        }
+
+        @Override
+        public void onChange(boolean selfChange, @Nullable Uri uri) {
+            changes.add(uri);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.Cursor;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class DeltaSyncEngineTest {
+
+    private static final String EMPTY_PULL = "{\"changes\": [], \"next\": \"t0\", \"more\": false}";
+
+    private final MockWebServer server = new MockWebServer();
+
+    private Context context;
+
+    private ContentResolver resolver;
+
+    private DeltaSyncEngine engine;
+
+    @Before
+    public void setUp() throws IOException {
+        Robolectric.buildContentProvider(InventoryProvider.class).create(InventoryContract.CONTENT_AUTHORITY);
+        context = ApplicationProvider.getApplicationContext();
+        resolver = context.getContentResolver();
+        server.start();
+        engine = new DeltaSyncEngine(context, server.url("/api").toString());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void push_sendsCompressedBatchesAndResumesAfterFailure() throws Exception {
+        resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI,
+                InventoryProviderTest.items(DeltaSyncEngine.BATCH_SIZE + 50));
+        server.enqueue(new MockResponse().setResponseCode(200));
+        server.enqueue(new MockResponse().setResponseCode(503));
+
+        try {
+            engine.sync();
+            fail("Expected the second batch to fail");
+        } catch (IOException expected) {
+            assertEquals(DeltaSyncEngine.BATCH_SIZE, preferences().getLong(DeltaSyncEngine.KEY_PUSHED_SEQ, 0));
+        }
+        RecordedRequest first = server.takeRequest();
+        assertEquals("POST", first.getMethod());
+        assertEquals("/api/changes", first.getPath());
+        assertEquals("gzip", first.getHeader("Content-Encoding"));
+        JSONArray changes = body(first).getJSONArray("changes");
+        assertEquals(DeltaSyncEngine.BATCH_SIZE, changes.length());
+        assertEquals("insert", changes.getJSONObject(0).getString("op"));
+        assertEquals("Item 0", changes.getJSONObject(0).getString("name"));
+        server.takeRequest();
+
+        server.enqueue(new MockResponse().setResponseCode(200));
+        server.enqueue(new MockResponse().setBody(EMPTY_PULL));
+        DeltaSyncEngine.Result result = engine.sync();
+
+        assertEquals(50, result.pushed);
+        assertEquals(50, body(server.takeRequest()).getJSONArray("changes").length());
+        try (Cursor cursor = resolver.query(InventoryContract.ChangeEntry.buildChangesUri(0, 10), null, null, null, null)) {
+            assertEquals("Pushed changes should be pruned from the log", 0, cursor.getCount());
+        }
+    }
+
+    @Test
+    public void pull_appliesRemoteChangesBySkuWithoutPushingThemBack() throws Exception {
+        ContentValues local = InventoryProviderTest.item(1);
+        local.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SKU, "S1");
+        resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, local);
+
+        server.enqueue(new MockResponse().setResponseCode(200));
+        server.enqueue(new MockResponse().setBody("{\"changes\": ["
+                + "{\"op\": \"update\", \"sku\": \"S1\", \"name\": \"Item 1\", \"quantity\": 9, \"price\": 2.5,"
+                + " \"supplier\": \"Acme\", \"email\": null},"
+                + "{\"op\": \"insert\", \"sku\": \"S2\", \"name\": \"Remote\", \"quantity\": 1, \"price\": 4.0,"
+                + " \"supplier\": \"Acme\", \"email\": null}"
+                + "], \"next\": \"a\", \"more\": true}"));
+        server.enqueue(new MockResponse().setBody(gzip("{\"changes\": [{\"op\": \"delete\", \"sku\": \"S2\"},"
+                + " {\"op\": \"insert\", \"name\": \"No SKU\"}], \"next\": \"b\", \"more\": false}"))
+                .setHeader("Content-Encoding", "gzip"));
+
+        DeltaSyncEngine.Result result = engine.sync();
+
+        assertEquals(1, result.pushed);
+        assertEquals(4, result.pulled);
+        server.takeRequest();
+        assertNull(server.takeRequest().getRequestUrl().queryParameter("since"));
+        assertEquals("a", server.takeRequest().getRequestUrl().queryParameter("since"));
+        assertEquals("b", preferences().getString(DeltaSyncEngine.KEY_PULL_TOKEN, null));
+
+        try (Cursor cursor = resolver.query(InventoryContract.InventoryEntry.CONTENT_URI, null, null, null, null)) {
+            assertEquals(1, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals(9, cursor.getInt(cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY)));
+            assertEquals("Acme", cursor.getString(cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER)));
+        }
+
+        // Only the pull goes out: the pulled writes were logged as sync changes and are skipped.
+        server.enqueue(new MockResponse().setBody(EMPTY_PULL));
+        assertEquals(0, engine.sync().pushed);
+        assertEquals("GET", server.takeRequest().getMethod());
+        assertEquals(4, server.getRequestCount());
+    }
+
+    @Test
+    public void sync_stopsAfterTheBatchInProgress() throws Exception {
+        resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI,
+                InventoryProviderTest.items(DeltaSyncEngine.BATCH_SIZE + 50));
+        server.enqueue(new MockResponse().setResponseCode(200));
+
+        DeltaSyncEngine.Result result = engine.sync(() -> server.getRequestCount() > 0);
+
+        assertEquals(DeltaSyncEngine.BATCH_SIZE, result.pushed);
+        assertEquals("Stopped before pulling", 0, result.pulled);
+        assertEquals(1, server.getRequestCount());
+        assertEquals(DeltaSyncEngine.BATCH_SIZE, preferences().getLong(DeltaSyncEngine.KEY_PUSHED_SEQ, 0));
+
+        server.enqueue(new MockResponse().setResponseCode(200));
+        server.enqueue(new MockResponse().setBody(EMPTY_PULL));
+        assertEquals(50, engine.sync().pushed);
+    }
+
+    private SharedPreferences preferences() {
+        return context.getSharedPreferences(DeltaSyncEngine.PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    private static JSONObject body(RecordedRequest request) throws Exception {
+        try (InputStream in = new GZIPInputStream(request.getBody().inputStream())) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new JSONObject(new String(out.toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Buffer gzip(String json) throws IOException {
+        Buffer compressed = new Buffer();
+        try (BufferedSink sink = Okio.buffer(new GzipSink(compressed))) {
+            sink.writeUtf8(json);
+        }
+        return compressed;
+    }
+}
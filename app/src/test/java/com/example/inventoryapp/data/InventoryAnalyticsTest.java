@@ -0,0 +1,77 @@
+package com.example.inventoryapp.data;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class InventoryAnalyticsTest {
+
+    private static final int ROWS = 1_000_000;
+
+    private static final int CORES = Math.min(Runtime.getRuntime().availableProcessors(), 4);
+
+    private final double[] prices = new double[ROWS];
+
+    private final int[] quantities = new int[ROWS];
+
+    private final double[] demand = new double[ROWS];
+
+    public InventoryAnalyticsTest() {
+        Random random = new Random(42);
+        for (int i = 0; i < ROWS; i++) {
+            prices[i] = random.nextInt(10000) / 100.0;
+            quantities[i] = random.nextInt(5) == 0 ? 0 : random.nextInt(200);
+            demand[i] = random.nextInt(50) / (double) InventoryAnalytics.DEMAND_DAYS;
+        }
+    }
+
+    @Test
+    public void analyze_givesSameResultsOnOneThreadAndMany() {
+        Run serial = new Run(1);
+        Run parallel = new Run(Math.max(CORES, 4));
+
+        assertArrayEquals(serial.values, parallel.values, 0);
+        assertArrayEquals(serial.classes, parallel.classes);
+        assertArrayEquals(serial.reorder, parallel.reorder);
+
+        double total = 0;
+        double classA = 0;
+        double classAOrB = 0;
+        for (int i = 0; i < ROWS; i++) {
+            total += serial.values[i];
+            if (serial.classes[i] == InventoryContract.AnalyticsEntry.CLASS_A) {
+                classA += serial.values[i];
+            }
+            if (serial.classes[i] != InventoryContract.AnalyticsEntry.CLASS_C) {
+                classAOrB += serial.values[i];
+            }
+        }
+        assertTrue(classA >= total * InventoryAnalytics.CLASS_A_SHARE);
+        assertTrue(classAOrB >= total * InventoryAnalytics.CLASS_B_SHARE);
+        assertTrue("C items should hold the rest", classAOrB < total);
+    }
+
+    private class Run {
+
+        final double[] values = new double[ROWS];
+
+        final byte[] classes = new byte[ROWS];
+
+        final int[] reorder = new int[ROWS];
+
+        Run(int parallelism) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                InventoryAnalytics.analyze(pool, ROWS, prices, quantities, demand, values, classes, reorder);
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+}
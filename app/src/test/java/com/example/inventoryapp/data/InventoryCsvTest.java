@@ -0,0 +1,121 @@
+package com.example.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class InventoryCsvTest {
+
+    private ContentResolver resolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(InventoryProvider.class).create(InventoryContract.CONTENT_AUTHORITY);
+        resolver = ApplicationProvider.getApplicationContext().getContentResolver();
+    }
+
+    @Test
+    public void importFrom_readsQuotedFieldsAfterAByteOrderMark() throws Exception {
+        InventoryCsv.Result result = importCsv("\uFEFFname,quantity,price,supplier\r\n"
+                + "\"Cable, 2 m\",3,4.5,Acme\r\n"
+                + "\"Two\nlines\",1,2,\"The \"\"Best\"\" Supplies\"\r\n");
+
+        assertEquals(2, result.rows);
+        assertEquals(0, result.rejectedRows);
+        try (Cursor cursor = items()) {
+            assertTrue(cursor.moveToNext());
+            assertEquals("Cable, 2 m", cursor.getString(0));
+            assertEquals(3, cursor.getInt(1));
+            assertEquals(4.5, cursor.getDouble(2), 0);
+            assertEquals("Acme", cursor.getString(3));
+            assertTrue(cursor.moveToNext());
+            assertEquals("Two\nlines", cursor.getString(0));
+            assertEquals("The \"Best\" Supplies", cursor.getString(3));
+        }
+    }
+
+    @Test
+    public void importFrom_skipsInvalidRowsAndKeepsTheRest() throws Exception {
+        InventoryCsv.Result result = importCsv("supplier,price,name,quantity\n"
+                + "Acme,1.5,Valid,2\n"
+                + "Acme,1.5,,2\n"
+                + "Acme,cheap,No price,2\n"
+                + "Acme,1.5,Negative,-1\n"
+                + "\n"
+                + "Acme,2.5,Also valid,0");
+
+        assertEquals("Columns are matched by header, in any order", 2, result.rows);
+        assertEquals(3, result.rejectedRows);
+        try (Cursor cursor = items()) {
+            assertEquals(2, cursor.getCount());
+            cursor.moveToLast();
+            assertEquals("Also valid", cursor.getString(0));
+        }
+    }
+
+    @Test
+    public void exportTo_roundTripsThroughImport() throws Exception {
+        String[] names = { "Plain", "Comma, inside", "Quote \" inside", "Line\r\nbreak", " Padded" };
+        for (int i = 0; i < names.length; i++) {
+            ContentValues values = InventoryProviderTest.item(i);
+            values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, names[i]);
+            resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, values);
+        }
+        String exported = exportCsv();
+        assertTrue(exported.startsWith("name,quantity,price,supplier,email,sku\r\n"));
+        assertTrue(exported.contains("\"Quote \"\" inside\""));
+
+        resolver.delete(InventoryContract.InventoryEntry.CONTENT_URI, null, null);
+        InventoryCsv.Result result = importCsv(exported);
+
+        assertEquals(names.length, result.rows);
+        // Leading spaces are trimmed on import, as for every unquoted field.
+        assertEquals(exported.replace(" Padded", "Padded"), exportCsv());
+    }
+
+    @Test
+    public void exportTo_reportsEncodedBytes() throws Exception {
+        ContentValues values = InventoryProviderTest.item(1);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, "Caf\u00e9 cr\u00e8me");
+        resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, values);
+        long[] reported = new long[1];
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InventoryCsv.exportTo(resolver, out, (rows, bytes, rowsPerSecond) -> reported[0] = bytes);
+
+        assertEquals(out.size(), reported[0]);
+    }
+
+    private InventoryCsv.Result importCsv(String csv) throws IOException {
+        return InventoryCsv.importFrom(resolver, Channels.newChannel(
+                new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8))), null);
+    }
+
+    private String exportCsv() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InventoryCsv.exportTo(resolver, out, null);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private Cursor items() {
+        return resolver.query(InventoryContract.InventoryEntry.CONTENT_URI, InventoryCsv.COLUMNS, null, null,
+                InventoryContract.InventoryEntry._ID);
+    }
+}
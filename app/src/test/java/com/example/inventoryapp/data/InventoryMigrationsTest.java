@@ -0,0 +1,248 @@
+package com.example.inventoryapp.data;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class InventoryMigrationsTest {
+
+    private SQLiteDatabase db;
+
+    @Before
+    public void setUp() {
+        db = SQLiteDatabase.create(null);
+        InventoryDbHelper.createVersion1Schema(db);
+        db.insert(InventoryContract.InventoryEntry.TABLE_NAME, null, item("Camera", "Acme"));
+        db.insert(InventoryContract.InventoryEntry.TABLE_NAME, null, item("Tripod", "Camera World"));
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    @Test
+    public void migration1To2_addsNameIndex() {
+        InventoryMigrations.MIGRATION_1_2.migrate(db);
+
+        assertTrue(hasSchemaObject("index", "inventory_name_idx"));
+        assertEquals(2, itemCount());
+    }
+
+    @Test
+    public void migration2To3_indexesExistingAndNewRows() {
+        InventoryMigrations.MIGRATION_1_2.migrate(db);
+        InventoryMigrations.MIGRATION_2_3.migrate(db);
+
+        assertEquals(2, searchCount("cam*"));
+
+        db.insert(InventoryContract.InventoryEntry.TABLE_NAME, null, item("Camera bag", "Acme"));
+        assertEquals(3, searchCount("cam*"));
+
+        ContentValues rename = new ContentValues();
+        rename.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, "Lens");
+        db.update(InventoryContract.InventoryEntry.TABLE_NAME, rename,
+                InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + " = ?", new String[] { "Camera" });
+        assertEquals(1, searchCount("lens"));
+
+        db.delete(InventoryContract.InventoryEntry.TABLE_NAME, null, null);
+        assertEquals(0, searchCount("acme"));
+    }
+
+    @Test
+    public void migration3To4_summarizesExistingRows() {
+        InventoryMigrations.migrate(db, 1, 3);
+        InventoryMigrations.MIGRATION_3_4.migrate(db);
+
+        assertEquals(2, DatabaseUtils.longForQuery(db, "SELECT " + InventoryContract.StatsEntry.COLUMN_ITEM_COUNT
+                + " FROM " + InventoryContract.StatsEntry.TABLE_NAME, null));
+        assertEquals(2, DatabaseUtils.longForQuery(db, "SELECT " + InventoryContract.StatsEntry.COLUMN_LOW_STOCK_COUNT
+                + " FROM " + InventoryContract.StatsEntry.TABLE_NAME, null));
+
+        db.delete(InventoryContract.InventoryEntry.TABLE_NAME, null, null);
+        assertEquals(0, DatabaseUtils.longForQuery(db, "SELECT " + InventoryContract.StatsEntry.COLUMN_ITEM_COUNT
+                + " FROM " + InventoryContract.StatsEntry.TABLE_NAME, null));
+    }
+
+    @Test
+    public void migration4To5_addsUniqueSkuKeepingExistingRows() {
+        InventoryMigrations.migrate(db, 1, 4);
+        InventoryMigrations.MIGRATION_4_5.migrate(db);
+
+        assertTrue(hasSchemaObject("index", "inventory_sku_idx"));
+        assertEquals(2, itemCount());
+
+        ContentValues first = item("Scanner", "Acme");
+        first.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SKU, "123");
+        assertNotEquals(-1, db.insert(InventoryContract.InventoryEntry.TABLE_NAME, null, first));
+        assertEquals(-1, db.insert(InventoryContract.InventoryEntry.TABLE_NAME, null, first));
+    }
+
+    @Test
+    public void migration5To6_deduplicatesSuppliersAndKeepsItemIds() {
+        db.insert(InventoryContract.InventoryEntry.TABLE_NAME, null, item("Lens", "Acme "));
+        InventoryMigrations.migrate(db, 1, 5);
+        InventoryMigrations.MIGRATION_5_6.migrate(db);
+
+        assertEquals(2, DatabaseUtils.queryNumEntries(db, InventoryContract.SupplierEntry.TABLE_NAME));
+        assertEquals(3, itemCount());
+        assertEquals("Camera World", DatabaseUtils.stringForQuery(db, "SELECT " + InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER
+                + " FROM " + InventoryContract.InventoryEntry.VIEW_NAME + " WHERE " + InventoryContract.InventoryEntry._ID + " = 2", null));
+        assertEquals(2, searchCount("acme"));
+
+        ContentValues item = new ContentValues();
+        item.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, "Bag");
+        item.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 1);
+        item.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, 5.0);
+        item.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER_ID, 1);
+        assertEquals(4, db.insert(InventoryContract.InventoryEntry.TABLE_NAME, null, item));
+        assertEquals(3, searchCount("acme"));
+    }
+
+    @Test
+    public void migration6To7_logsOnlyWritesAfterTheUpgrade() {
+        InventoryMigrations.migrate(db, 1, 6);
+        InventoryMigrations.MIGRATION_6_7.migrate(db);
+
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, InventoryContract.ChangeEntry.TABLE_NAME));
+        db.execSQL("UPDATE " + InventoryContract.InventoryEntry.TABLE_NAME + " SET "
+                + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " = 0 WHERE " + InventoryContract.InventoryEntry._ID + " = 1");
+        assertEquals(InventoryContract.ChangeEntry.OP_UPDATE, DatabaseUtils.longForQuery(db, "SELECT "
+                + InventoryContract.ChangeEntry.COLUMN_OP + " FROM " + InventoryContract.ChangeEntry.TABLE_NAME, null));
+    }
+
+    @Test
+    public void migration7To8_replacesListIndexesAndKeepsViewColumns() {
+        InventoryMigrations.migrate(db, 1, 7);
+        InventoryMigrations.MIGRATION_7_8.migrate(db);
+
+        assertFalse(hasSchemaObject("index", "inventory_name_idx"));
+        assertTrue(hasSchemaObject("index", "inventory_price_list_idx"));
+        assertTrue(hasSchemaObject("index", "suppliers_name_idx"));
+        assertEquals(2, DatabaseUtils.longForQuery(db, "SELECT count(" + InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER_ID
+                + ") FROM " + InventoryContract.InventoryEntry.VIEW_NAME, null));
+    }
+
+    @Test
+    public void migration8To9_startsExistingItemsAtVersionZero() {
+        InventoryMigrations.migrate(db, 1, 8);
+        InventoryMigrations.MIGRATION_8_9.migrate(db);
+
+        assertEquals(0, DatabaseUtils.longForQuery(db, "SELECT sum(" + InventoryContract.InventoryEntry.COLUMN_ITEM_VERSION
+                + ") FROM " + InventoryContract.InventoryEntry.VIEW_NAME, null));
+        assertEquals(2, DatabaseUtils.queryNumEntries(db, InventoryContract.InventoryEntry.VIEW_NAME));
+    }
+
+    @Test
+    public void migration9To10_logsQuantityChangesFromThenOn() {
+        InventoryMigrations.migrate(db, 1, 9);
+        InventoryMigrations.MIGRATION_9_10.migrate(db);
+
+        assertEquals("Existing stock has no history", 0, DatabaseUtils.queryNumEntries(db, InventoryContract.MovementEntry.TABLE_NAME));
+        db.execSQL("UPDATE " + InventoryContract.InventoryEntry.TABLE_NAME + " SET "
+                + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " = " + InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY + " + 1");
+        assertEquals(2, DatabaseUtils.queryNumEntries(db, InventoryContract.MovementEntry.TABLE_NAME));
+        assertEquals(2, DatabaseUtils.longForQuery(db, "SELECT sum(" + InventoryContract.MovementEntry.COLUMN_UNITS_IN
+                + ") FROM " + InventoryContract.MovementEntry.WEEKLY_TABLE_NAME, null));
+    }
+
+    @Test
+    public void migration10To11_marksItemsDirtyOnlyWhenPriceOrQuantityChanges() {
+        InventoryMigrations.migrate(db, 1, 10);
+        InventoryMigrations.MIGRATION_10_11.migrate(db);
+
+        db.execSQL("UPDATE " + InventoryContract.InventoryEntry.TABLE_NAME + " SET "
+                + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + " = 'Renamed'");
+        assertEquals(0, DatabaseUtils.queryNumEntries(db, InventoryMigrations.ANALYTICS_DIRTY_TABLE_NAME));
+        db.execSQL("UPDATE " + InventoryContract.InventoryEntry.TABLE_NAME + " SET "
+                + InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE + " = 1 WHERE " + InventoryContract.InventoryEntry._ID + " = 1");
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, InventoryMigrations.ANALYTICS_DIRTY_TABLE_NAME));
+    }
+
+    @Test
+    public void migration11To12_keepsItemsLiveAndHidesTombstonesEverywhere() {
+        InventoryMigrations.migrate(db, 1, 11);
+        InventoryMigrations.MIGRATION_11_12.migrate(db);
+
+        assertEquals(2, DatabaseUtils.queryNumEntries(db, InventoryContract.InventoryEntry.VIEW_NAME));
+        assertTrue(hasSchemaObject("index", "inventory_deleted_idx"));
+
+        db.execSQL("UPDATE " + InventoryContract.InventoryEntry.TABLE_NAME + " SET "
+                + InventoryContract.InventoryEntry.COLUMN_ITEM_DELETED_AT + " = 1 WHERE "
+                + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + " = 'Camera'");
+        assertEquals(1, DatabaseUtils.queryNumEntries(db, InventoryContract.InventoryEntry.VIEW_NAME));
+        assertEquals(0, searchCount("acme"));
+        assertEquals(1, DatabaseUtils.longForQuery(db, "SELECT " + InventoryContract.StatsEntry.COLUMN_ITEM_COUNT
+                + " FROM " + InventoryContract.StatsEntry.TABLE_NAME, null));
+
+        db.delete(InventoryContract.InventoryEntry.TABLE_NAME, InventoryContract.InventoryEntry.COLUMN_ITEM_DELETED_AT + " IS NOT NULL", null);
+        assertEquals("Purging a deleted item is not logged again", 1, DatabaseUtils.queryNumEntries(db,
+                InventoryContract.ChangeEntry.TABLE_NAME, InventoryContract.ChangeEntry.COLUMN_OP + " = " + InventoryContract.ChangeEntry.OP_DELETE));
+        assertEquals(1, DatabaseUtils.longForQuery(db, "SELECT " + InventoryContract.StatsEntry.COLUMN_ITEM_COUNT
+                + " FROM " + InventoryContract.StatsEntry.TABLE_NAME, null));
+    }
+
+    @Test
+    public void migration12To13_showsPhotosOfLiveItemsOnly() {
+        InventoryMigrations.migrate(db, 1, 12);
+        InventoryMigrations.MIGRATION_12_13.migrate(db);
+
+        assertEquals(0, DatabaseUtils.longForQuery(db, "SELECT count(" + InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO
+                + ") FROM " + InventoryContract.InventoryEntry.VIEW_NAME, null));
+        db.execSQL("UPDATE " + InventoryContract.InventoryEntry.TABLE_NAME + " SET "
+                + InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO + " = 'camera.jpg'");
+        db.execSQL("UPDATE " + InventoryContract.InventoryEntry.TABLE_NAME + " SET "
+                + InventoryContract.InventoryEntry.COLUMN_ITEM_DELETED_AT + " = 1 WHERE "
+                + InventoryContract.InventoryEntry.COLUMN_ITEM_NAME + " = 'Camera'");
+        assertEquals(1, DatabaseUtils.longForQuery(db, "SELECT count(" + InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO
+                + ") FROM " + InventoryContract.InventoryEntry.VIEW_NAME, null));
+    }
+
+    @Test
+    public void migrate_reachesCurrentVersionWithDataIntact() {
+        InventoryMigrations.migrate(db, 1, InventoryDbHelper.DATABASE_VERSION);
+
+        assertEquals(2, itemCount());
+        assertTrue(hasSchemaObject("table", InventoryContract.InventoryEntry.SEARCH_TABLE_NAME));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void migrate_failsWithoutStepForVersion() {
+        InventoryMigrations.migrate(db, 1, InventoryDbHelper.DATABASE_VERSION + 1);
+    }
+
+    private boolean hasSchemaObject(String type, String name) {
+        return DatabaseUtils.longForQuery(db, "SELECT count(*) FROM sqlite_master WHERE type = ? AND name = ?",
+                new String[] { type, name }) == 1;
+    }
+
+    private long itemCount() {
+        return DatabaseUtils.queryNumEntries(db, InventoryContract.InventoryEntry.TABLE_NAME);
+    }
+
+    private int searchCount(String match) {
+        try (Cursor cursor = db.rawQuery("SELECT docid FROM " + InventoryContract.InventoryEntry.SEARCH_TABLE_NAME
+                + " WHERE " + InventoryContract.InventoryEntry.SEARCH_TABLE_NAME + " MATCH ?", new String[] { match })) {
+            return cursor.getCount();
+        }
+    }
+
+    private static ContentValues item(String name, String supplier) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, name);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 3);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, 9.99);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER, supplier);
+        return values;
+    }
+}
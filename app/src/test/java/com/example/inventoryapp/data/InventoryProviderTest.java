@@ -0,0 +1,836 @@
+package com.example.inventoryapp.data;
+
+import android.content.ContentProviderOperation;
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.ContentObserver;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Looper;
+import android.util.SparseArray;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class InventoryProviderTest {
+
+    private static final int ROWS = 2000;
+
+    private ContentResolver resolver;
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(InventoryProvider.class).create(InventoryContract.CONTENT_AUTHORITY);
+        resolver = ApplicationProvider.getApplicationContext().getContentResolver();
+    }
+
+    @Test
+    public void bulkInsert_insertsAllRows() {
+        int inserted = resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, items(ROWS));
+
+        assertEquals(ROWS, inserted);
+        assertEquals(ROWS, count());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bulkInsert_rejectsWholeBatchOnInvalidRow() {
+        ContentValues[] values = items(10);
+        values[5].remove(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME);
+        try {
+            resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, values);
+        } finally {
+            assertEquals(0, count());
+        }
+    }
+
+    @Test
+    public void applyBatch_rollsBackOnFailure() throws Exception {
+        ArrayList<ContentProviderOperation> operations = new ArrayList<>();
+        operations.add(ContentProviderOperation.newInsert(InventoryContract.InventoryEntry.CONTENT_URI)
+                .withValues(item(0)).build());
+        operations.add(ContentProviderOperation.newInsert(InventoryContract.InventoryEntry.CONTENT_URI)
+                .withValues(new ContentValues()).build());
+
+        try {
+            resolver.applyBatch(InventoryContract.CONTENT_AUTHORITY, operations);
+            fail("Expected the invalid insert to abort the batch");
+        } catch (IllegalArgumentException expected) {
+            assertEquals(0, count());
+        }
+    }
+
+    @Test
+    public void bulkInsert_notifiesObserversOnce() {
+        int[] changes = new int[1];
+        resolver.registerContentObserver(InventoryContract.InventoryEntry.CONTENT_URI, false, new ContentObserver(null) {
+            @Override
+            public void onChange(boolean selfChange) {
+                changes[0]++;
+            }
+        });
+
+        resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, items(ROWS));
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(1));
+
+        assertEquals(ROWS, count());
+        assertEquals(1, changes[0]);
+    }
+
+    @Test
+    public void search_matchesWordPrefixesAndRanksNameMatchesFirst() {
+        resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, items(100));
+        ContentValues camera = item(1000);
+        camera.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, "Camera strap");
+        camera.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER, "Acme");
+        resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, camera);
+        ContentValues lens = item(1001);
+        lens.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, "Lens cap");
+        lens.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER, "Camera World");
+        resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, lens);
+
+        try (Cursor cursor = resolver.query(InventoryContract.InventoryEntry.buildSearchUri("cam"),
+                new String[] { InventoryContract.InventoryEntry.COLUMN_ITEM_NAME }, null, null, null)) {
+            assertEquals(2, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals("Camera strap", cursor.getString(0));
+            cursor.moveToNext();
+            assertEquals("Lens cap", cursor.getString(0));
+        }
+
+        try (Cursor cursor = resolver.query(InventoryContract.InventoryEntry.buildSearchUri("acme str"),
+                null, null, null, null)) {
+            assertEquals(1, cursor.getCount());
+        }
+    }
+
+    @Test
+    public void search_ranksEveryMatchNotJustTheFirstFound() {
+        ContentValues[] suppliers = items(600);
+        for (ContentValues values : suppliers) {
+            values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER, "Camera World");
+        }
+        resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, suppliers);
+        ContentValues camera = item(1000);
+        camera.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, "Camera strap");
+        resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, camera);
+
+        try (Cursor cursor = resolver.query(InventoryContract.InventoryEntry.buildSearchUri("ca"),
+                new String[] { InventoryContract.InventoryEntry.COLUMN_ITEM_NAME }, null, null, null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals("The newest item is the only name match", "Camera strap", cursor.getString(0));
+        }
+    }
+
+    @Test
+    public void adjustQuantities_appliesDeltasAndRejectsNegativeStock() {
+        long first = ContentUris.parseId(resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, item(3)));
+        long second = ContentUris.parseId(resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, item(4)));
+
+        Bundle extras = new Bundle();
+        extras.putLongArray(InventoryContract.InventoryEntry.EXTRA_ITEM_IDS, new long[] { first, second, first, 999 });
+        extras.putIntArray(InventoryContract.InventoryEntry.EXTRA_DELTAS, new int[] { -2, -5, 10, 1 });
+        Bundle result = resolver.call(InventoryContract.InventoryEntry.CONTENT_URI,
+                InventoryContract.InventoryEntry.METHOD_ADJUST_QUANTITIES, null, extras);
+
+        assertArrayEquals(new long[] { 1, -1, 11, -1 },
+                result.getLongArray(InventoryContract.InventoryEntry.EXTRA_QUANTITIES));
+    }
+
+    @Test
+    public void update_withExpectedVersionRejectsStaleWrites() {
+        Uri uri = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, item(1));
+        assertEquals(0, version(uri));
+
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 7);
+        assertEquals(1, resolver.update(InventoryContract.InventoryEntry.buildVersionedUri(uri, 0), values, null, null));
+        assertEquals(1, version(uri));
+
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 8);
+        assertEquals("A write based on version 0 should not apply", 0,
+                resolver.update(InventoryContract.InventoryEntry.buildVersionedUri(uri, 0), values, null, null));
+
+        Bundle extras = new Bundle();
+        extras.putLong(InventoryContract.InventoryEntry.EXTRA_ITEM_ID, ContentUris.parseId(uri));
+        extras.putInt(InventoryContract.InventoryEntry.EXTRA_DELTA, 1);
+        resolver.call(InventoryContract.InventoryEntry.CONTENT_URI, InventoryContract.InventoryEntry.METHOD_ADJUST_QUANTITY, null, extras);
+        assertEquals(2, version(uri));
+        try (Cursor cursor = resolver.query(uri, null, null, null, null)) {
+            cursor.moveToFirst();
+            assertEquals(8, cursor.getInt(cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY)));
+        }
+    }
+
+    @Test
+    public void stats_followInsertsUpdatesAndDeletes() {
+        resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, item(0));
+        Uri low = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, item(3));
+        Uri stocked = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, item(10));
+        assertStats(0 * 1.5 + 3 * 4.5 + 10 * 11.5, 3, 1, 1);
+
+        ContentValues restock = new ContentValues();
+        restock.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 20);
+        resolver.update(low, restock, null, null);
+        resolver.delete(stocked, null, null);
+        assertStats(20 * 4.5, 2, 1, 0);
+    }
+
+    @Test
+    public void checkStats_rebuildsDriftedSummary() {
+        resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, items(100));
+        Bundle result = resolver.call(InventoryContract.StatsEntry.CONTENT_URI,
+                InventoryContract.StatsEntry.METHOD_CHECK_STATS, null, null);
+        assertFalse(result.getBoolean(InventoryContract.StatsEntry.EXTRA_REBUILT));
+
+        InventoryDbHelper helper = new InventoryDbHelper(ApplicationProvider.getApplicationContext());
+        helper.getWritableDatabase().execSQL("UPDATE " + InventoryContract.StatsEntry.TABLE_NAME
+                + " SET " + InventoryContract.StatsEntry.COLUMN_ITEM_COUNT + " = 42");
+        helper.close();
+
+        result = resolver.call(InventoryContract.StatsEntry.CONTENT_URI,
+                InventoryContract.StatsEntry.METHOD_CHECK_STATS, null, null);
+        assertTrue(result.getBoolean(InventoryContract.StatsEntry.EXTRA_REBUILT));
+        try (Cursor cursor = resolver.query(InventoryContract.StatsEntry.CONTENT_URI, null, null, null, null)) {
+            cursor.moveToFirst();
+            assertEquals(100, cursor.getInt(cursor.getColumnIndexOrThrow(InventoryContract.StatsEntry.COLUMN_ITEM_COUNT)));
+        }
+    }
+
+    @Test
+    public void sku_findsItemByCodeAndRejectsUnknownAndDuplicateCodes() {
+        ContentValues scanned = item(7);
+        scanned.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SKU, "4006381333931");
+        Uri uri = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, scanned);
+
+        try (Cursor cursor = resolver.query(InventoryContract.InventoryEntry.buildSkuUri("4006381333931"),
+                new String[] { InventoryContract.InventoryEntry._ID }, null, null, null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(ContentUris.parseId(uri), cursor.getLong(0));
+        }
+        try (Cursor cursor = resolver.query(InventoryContract.InventoryEntry.buildSkuUri("0000000000000"),
+                null, null, null, null)) {
+            assertEquals(0, cursor.getCount());
+        }
+
+        // Written after the filter was built, so it must have been added on the write path.
+        ContentValues late = item(8);
+        late.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SKU, "5012345678900");
+        resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, late);
+        try (Cursor cursor = resolver.query(InventoryContract.InventoryEntry.buildSkuUri("5012345678900"),
+                null, null, null, null)) {
+            assertEquals(1, cursor.getCount());
+        }
+
+        assertNull(resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, scanned));
+    }
+
+    @Test
+    public void suppliers_areSharedBetweenItemsAndListTheirItems() {
+        resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, items(100));
+
+        long supplierId;
+        try (Cursor cursor = resolver.query(InventoryContract.SupplierEntry.CONTENT_URI, null, null, null, null)) {
+            assertEquals(20, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals("Supplier 0", cursor.getString(cursor.getColumnIndexOrThrow(InventoryContract.SupplierEntry.COLUMN_SUPPLIER_NAME)));
+            supplierId = cursor.getLong(cursor.getColumnIndexOrThrow(InventoryContract.SupplierEntry._ID));
+        }
+
+        try (Cursor cursor = resolver.query(InventoryContract.SupplierEntry.buildItemsUri(supplierId),
+                new String[] { InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL },
+                null, null, null)) {
+            assertEquals(5, cursor.getCount());
+            cursor.moveToFirst();
+            assertEquals("Item 0", cursor.getString(0));
+            assertEquals("supplier0@example.com", cursor.getString(1));
+        }
+    }
+
+    @Test
+    public void update_changingOnlySupplierNameKeepsEmail() {
+        Uri uri = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, item(1));
+
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER, "Acme");
+        assertEquals(1, resolver.update(uri, values, null, null));
+
+        try (Cursor cursor = resolver.query(uri, null, null, null, null)) {
+            cursor.moveToFirst();
+            assertEquals("Acme", cursor.getString(cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER)));
+            assertEquals("supplier1@example.com", cursor.getString(cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL)));
+        }
+        // Selections on supplier columns still work for writes, which go to the base table.
+        assertEquals(1, resolver.delete(InventoryContract.InventoryEntry.CONTENT_URI,
+                InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER + " = ?", new String[] { "Acme" }));
+    }
+
+    @Test
+    public void listModes_pageThroughTheSameRowsAsOneQuery() {
+        resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, items(300));
+
+        for (Uri listUri : listUris()) {
+            List<Long> expected;
+            try (Cursor cursor = resolver.query(listUri, null, null, null, null)) {
+                expected = ids(cursor);
+            }
+            String[] keyColumns = InventoryContract.InventoryEntry.sortKeyColumns(
+                    listUri.getQueryParameter(InventoryContract.InventoryEntry.QUERY_PARAMETER_SORT));
+
+            List<Long> paged = new ArrayList<>();
+            String[] afterKey = null;
+            while (true) {
+                try (Cursor page = resolver.query(InventoryContract.InventoryEntry.buildPageUri(listUri, afterKey, 7),
+                        keyColumns, null, null, null)) {
+                    if (!page.moveToLast()) {
+                        break;
+                    }
+                    afterKey = new String[keyColumns.length];
+                    for (int i = 0; i < keyColumns.length; i++) {
+                        afterKey[i] = page.getType(i) == Cursor.FIELD_TYPE_FLOAT
+                                ? String.valueOf(page.getDouble(i)) : page.getString(i);
+                    }
+                    paged.addAll(ids(page));
+                }
+            }
+            assertEquals(listUri.toString(), expected, paged);
+        }
+
+        try (Cursor cursor = resolver.query(InventoryContract.InventoryEntry.buildListUri(
+                InventoryContract.InventoryEntry.SORT_PRICE, true, 10.0, 20.0), null, null, null, null)) {
+            int priceColumnIndex = cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE);
+            int quantityColumnIndex = cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY);
+            double previous = 0;
+            assertTrue(cursor.getCount() > 0);
+            while (cursor.moveToNext()) {
+                double price = cursor.getDouble(priceColumnIndex);
+                assertTrue(price >= 10.0 && price <= 20.0 && price >= previous);
+                assertTrue(cursor.getInt(quantityColumnIndex) > 0);
+                previous = price;
+            }
+        }
+    }
+
+    @Test
+    public void listModes_readTheirIndexWithoutSorting() {
+        resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, items(300));
+        SQLiteDatabase db = new InventoryDbHelper(ApplicationProvider.getApplicationContext()).getReadableDatabase();
+        String[] projection = {
+                InventoryContract.InventoryEntry._ID,
+                InventoryContract.InventoryEntry.COLUMN_ITEM_NAME,
+                InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
+                InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY,
+                InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER,
+                InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER_ID
+        };
+
+        for (Uri listUri : listUris()) {
+            String[] keyColumns = InventoryContract.InventoryEntry.sortKeyColumns(
+                    listUri.getQueryParameter(InventoryContract.InventoryEntry.QUERY_PARAMETER_SORT));
+            String[] afterKey = new String[keyColumns.length];
+            Arrays.fill(afterKey, "1");
+            for (Uri uri : new Uri[] { listUri, InventoryContract.InventoryEntry.buildPageUri(listUri, null, 50),
+                    InventoryContract.InventoryEntry.buildPageUri(listUri, afterKey, 50) }) {
+                InventoryProvider.ListQuery query = InventoryProvider.buildListQuery(uri, projection, null, null, null);
+                try (Cursor plan = db.rawQuery("EXPLAIN QUERY PLAN " + query.sql, query.args)) {
+                    int detailColumnIndex = plan.getColumnIndexOrThrow("detail");
+                    while (plan.moveToNext()) {
+                        String detail = plan.getString(detailColumnIndex);
+                        assertFalse(uri + ": " + detail, detail.contains("TEMP B-TREE"));
+                        assertFalse(uri + ": " + detail, detail.startsWith("SCAN") && !detail.contains("INDEX"));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void changes_logEveryWriteInOrderAndFlagSyncWrites() {
+        ContentValues values = item(1);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SKU, "A-1");
+        Uri uri = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, values);
+
+        ContentValues rename = new ContentValues();
+        rename.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SKU, "A-2");
+        resolver.update(uri, rename, null, null);
+        Uri syncUri = uri.buildUpon().appendQueryParameter(InventoryContract.CALLER_IS_SYNC_ADAPTER, "true").build();
+        resolver.delete(syncUri, null, null);
+
+        try (Cursor cursor = resolver.query(InventoryContract.ChangeEntry.buildChangesUri(0, 10), null, null, null, null)) {
+            int op = cursor.getColumnIndexOrThrow(InventoryContract.ChangeEntry.COLUMN_OP);
+            int sku = cursor.getColumnIndexOrThrow(InventoryContract.ChangeEntry.COLUMN_SKU);
+            int source = cursor.getColumnIndexOrThrow(InventoryContract.ChangeEntry.COLUMN_SOURCE);
+            int[][] expected = {
+                    { InventoryContract.ChangeEntry.OP_INSERT, InventoryContract.ChangeEntry.SOURCE_LOCAL },
+                    { InventoryContract.ChangeEntry.OP_DELETE, InventoryContract.ChangeEntry.SOURCE_LOCAL },
+                    { InventoryContract.ChangeEntry.OP_UPDATE, InventoryContract.ChangeEntry.SOURCE_LOCAL },
+                    { InventoryContract.ChangeEntry.OP_DELETE, InventoryContract.ChangeEntry.SOURCE_SYNC },
+            };
+            String[] expectedSkus = { "A-1", "A-1", "A-2", "A-2" };
+            assertEquals(expected.length, cursor.getCount());
+            long lastSeq = 0;
+            for (int i = 0; i < expected.length; i++) {
+                cursor.moveToNext();
+                assertTrue(cursor.getLong(cursor.getColumnIndexOrThrow(InventoryContract.ChangeEntry.COLUMN_SEQ)) > lastSeq);
+                lastSeq = cursor.getLong(cursor.getColumnIndexOrThrow(InventoryContract.ChangeEntry.COLUMN_SEQ));
+                assertEquals(expected[i][0], cursor.getInt(op));
+                assertEquals(expected[i][1], cursor.getInt(source));
+                assertEquals(expectedSkus[i], cursor.getString(sku));
+            }
+
+            try (Cursor rest = resolver.query(InventoryContract.ChangeEntry.buildChangesUri(lastSeq - 1, 10),
+                    null, null, null, null)) {
+                assertEquals(1, rest.getCount());
+            }
+        }
+
+        // A later local write is logged as local again.
+        resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, item(2));
+        try (Cursor cursor = resolver.query(InventoryContract.ChangeEntry.buildChangesUri(4, 10), null, null, null, null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(InventoryContract.ChangeEntry.SOURCE_LOCAL,
+                    cursor.getInt(cursor.getColumnIndexOrThrow(InventoryContract.ChangeEntry.COLUMN_SOURCE)));
+            assertEquals("Item 2", cursor.getString(cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME)));
+        }
+    }
+
+    @Test
+    public void metrics_recordEachEntryPointByUriPattern() {
+        resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, items(10));
+        Uri uri = ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, 3);
+        for (int i = 0; i < 5; i++) {
+            resolver.query(uri, null, null, null, null).close();
+        }
+        resolver.query(InventoryContract.InventoryEntry.CONTENT_URI, null, null, null, null).close();
+        try {
+            resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, new ContentValues());
+            fail("Expected the empty item to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+
+        Bundle extras = new Bundle();
+        extras.putBoolean(InventoryContract.Metrics.EXTRA_RESET, true);
+        Bundle metrics = resolver.call(InventoryContract.InventoryEntry.CONTENT_URI,
+                InventoryContract.Metrics.METHOD_METRICS, null, extras);
+        Bundle series = metrics.getBundle(InventoryContract.Metrics.EXTRA_SERIES);
+
+        Bundle itemQueries = series.getBundle("query inventory/#");
+        assertEquals(5, itemQueries.getLong(InventoryContract.Metrics.EXTRA_COUNT));
+        assertEquals(5, itemQueries.getLong(InventoryContract.Metrics.EXTRA_ROWS));
+        long histogramTotal = 0;
+        for (long bucket : itemQueries.getLongArray(InventoryContract.Metrics.EXTRA_HISTOGRAM)) {
+            histogramTotal += bucket;
+        }
+        assertEquals(5, histogramTotal);
+        assertTrue(itemQueries.getLong(InventoryContract.Metrics.EXTRA_P99_MICROS)
+                >= itemQueries.getLong(InventoryContract.Metrics.EXTRA_P50_MICROS));
+
+        Bundle listQueries = series.getBundle("query inventory");
+        assertEquals(10, listQueries.getLong(InventoryContract.Metrics.EXTRA_WINDOW_ROWS));
+        assertEquals(10, series.getBundle("bulkInsert inventory").getLong(InventoryContract.Metrics.EXTRA_ROWS));
+        assertEquals(1, series.getBundle("insert inventory").getLong(InventoryContract.Metrics.EXTRA_ERRORS));
+        assertEquals(4, metrics.getLong(InventoryContract.Metrics.EXTRA_ITEM_CACHE_HITS));
+
+        Bundle afterReset = resolver.call(InventoryContract.InventoryEntry.CONTENT_URI,
+                InventoryContract.Metrics.METHOD_METRICS, null, null).getBundle(InventoryContract.Metrics.EXTRA_SERIES);
+        assertEquals(0, afterReset.getBundle("query inventory/#").getLong(InventoryContract.Metrics.EXTRA_COUNT));
+    }
+
+    @Test
+    public void metrics_findSeriesByMatchCodeAndShareThemWithTheirNames() {
+        SparseArray<String> patterns = new SparseArray<>();
+        patterns.put(100, "inventory");
+        patterns.put(102, "inventory/#");
+        ProviderMetrics metrics = new ProviderMetrics(patterns);
+
+        ProviderMetrics.Series items = metrics.series(ProviderMetrics.QUERY, 102);
+        assertEquals("query inventory/#", items.name);
+        assertSame(items, metrics.series(ProviderMetrics.QUERY, 102));
+        assertSame(items, metrics.series("query", "inventory/#"));
+        assertNotSame(items, metrics.series(ProviderMetrics.DELETE, 102));
+
+        assertEquals("query unknown", metrics.series(ProviderMetrics.QUERY, 101).name);
+        assertSame(metrics.series(ProviderMetrics.QUERY, 101), metrics.series(ProviderMetrics.QUERY, -1));
+        assertSame(metrics.series(ProviderMetrics.QUERY, 101), metrics.series(ProviderMetrics.QUERY, 103));
+    }
+
+    @Test
+    public void quantityChanges_logMovementsAndRollUpByPeriod() {
+        Uri uri = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, item(5));
+        Bundle extras = new Bundle();
+        extras.putLong(InventoryContract.InventoryEntry.EXTRA_ITEM_ID, ContentUris.parseId(uri));
+        extras.putInt(InventoryContract.InventoryEntry.EXTRA_DELTA, 3);
+        resolver.call(InventoryContract.InventoryEntry.CONTENT_URI, InventoryContract.InventoryEntry.METHOD_ADJUST_QUANTITY, null, extras);
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 2);
+        resolver.update(uri, values, null, null);
+        values.clear();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, 9.5);
+        resolver.update(uri, values, null, null);
+
+        try (Cursor cursor = resolver.query(InventoryContract.MovementEntry.CONTENT_URI, new String[] {
+                InventoryContract.MovementEntry.COLUMN_DELTA, InventoryContract.MovementEntry.COLUMN_QUANTITY }, null, null, null)) {
+            assertEquals("A price change is not a movement", 3, cursor.getCount());
+            int[][] expected = { { 5, 5 }, { 3, 8 }, { -6, 2 } };
+            for (int[] row : expected) {
+                assertTrue(cursor.moveToNext());
+                assertEquals(row[0], cursor.getInt(0));
+                assertEquals(row[1], cursor.getInt(1));
+            }
+        }
+
+        for (Uri rollupUri : new Uri[] { InventoryContract.MovementEntry.CONTENT_DAILY_URI,
+                InventoryContract.MovementEntry.CONTENT_WEEKLY_URI }) {
+            try (Cursor cursor = resolver.query(rollupUri, new String[] { InventoryContract.MovementEntry.COLUMN_UNITS_IN,
+                    InventoryContract.MovementEntry.COLUMN_UNITS_OUT, InventoryContract.MovementEntry.COLUMN_MOVEMENTS }, null, null, null)) {
+                assertEquals(1, cursor.getCount());
+                cursor.moveToFirst();
+                assertEquals(8, cursor.getInt(0));
+                assertEquals(6, cursor.getInt(1));
+                assertEquals(3, cursor.getInt(2));
+            }
+        }
+    }
+
+    @Test
+    public void pruneMovements_deletesOldestInBatchesAndKeepsRollups() {
+        resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, items(ROWS));
+        int movements = movementCount();
+        long before = System.currentTimeMillis() + InventoryContract.MovementEntry.DAY_MS;
+
+        Bundle extras = new Bundle();
+        extras.putLong(InventoryContract.MovementEntry.EXTRA_BEFORE, before);
+        extras.putInt(InventoryContract.MovementEntry.EXTRA_LIMIT, 100);
+        Bundle result = resolver.call(InventoryContract.MovementEntry.CONTENT_URI,
+                InventoryContract.MovementEntry.METHOD_PRUNE_MOVEMENTS, null, extras);
+        assertEquals(100, result.getInt(InventoryContract.MovementEntry.EXTRA_DELETED));
+
+        int[] batches = new int[1];
+        int deleted = MovementPruneJobService.prune(resolver, before, () -> ++batches[0] == 2);
+        assertEquals("Stopping ends the run after the current batch", 2 * MovementPruneJobService.BATCH_SIZE, deleted);
+        assertEquals(movements - 100 - deleted, movementCount());
+
+        MovementPruneJobService.prune(resolver, before, () -> false);
+        assertEquals(0, movementCount());
+        try (Cursor cursor = resolver.query(InventoryContract.MovementEntry.CONTENT_DAILY_URI, null, null, null, null)) {
+            assertEquals(movements, cursor.getCount());
+        }
+    }
+
+    @Test
+    public void deleteAll_canBeUndoneUntilPurgedInBatches() {
+        resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, items(ROWS));
+        long since = System.currentTimeMillis();
+        assertEquals(ROWS, resolver.delete(InventoryContract.InventoryEntry.CONTENT_URI, null, null));
+        assertEquals(0, count());
+        assertStats(0, 0, 0, 0);
+        try (Cursor cursor = resolver.query(InventoryContract.InventoryEntry.buildSearchUri("item"), null, null, null, null)) {
+            assertEquals(0, cursor.getCount());
+        }
+
+        assertEquals(ROWS, undoDelete(since));
+        assertEquals(ROWS, count());
+        Bundle result = resolver.call(InventoryContract.StatsEntry.CONTENT_URI,
+                InventoryContract.StatsEntry.METHOD_CHECK_STATS, null, null);
+        assertFalse("Restoring puts the items back into the summary", result.getBoolean(InventoryContract.StatsEntry.EXTRA_REBUILT));
+
+        resolver.delete(InventoryContract.InventoryEntry.CONTENT_URI, null, null);
+        long before = System.currentTimeMillis() + 1;
+        int[] batches = new int[1];
+        int purged = InventoryPurgeJobService.purge(resolver, before, () -> ++batches[0] == 2);
+        assertEquals("Stopping ends the run after the current batch", 2 * InventoryPurgeJobService.BATCH_SIZE, purged);
+        assertEquals(ROWS - purged, InventoryPurgeJobService.purge(resolver, before, () -> false));
+        assertEquals(0, undoDelete(since));
+
+        InventoryDbHelper helper = new InventoryDbHelper(ApplicationProvider.getApplicationContext());
+        assertEquals(0, DatabaseUtils.queryNumEntries(helper.getReadableDatabase(), InventoryContract.InventoryEntry.TABLE_NAME));
+        helper.close();
+    }
+
+    @Test
+    public void deletedSku_isFreeForNewItemAndStaysDeletedOnUndo() {
+        ContentValues scanned = item(1);
+        scanned.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SKU, "4006381333931");
+        Uri old = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, scanned);
+        Uri other = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, item(2));
+        long since = System.currentTimeMillis();
+        resolver.delete(old, null, null);
+        resolver.delete(other, null, null);
+
+        ContentValues rename = new ContentValues();
+        rename.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, "Renamed");
+        assertEquals("Deleted items cannot be edited", 0, resolver.update(other, rename, null, null));
+
+        Uri replacement = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, scanned);
+        assertNotNull(replacement);
+        assertEquals(1, undoDelete(since));
+        try (Cursor cursor = resolver.query(InventoryContract.InventoryEntry.buildSkuUri("4006381333931"),
+                new String[] { InventoryContract.InventoryEntry._ID }, null, null, null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(ContentUris.parseId(replacement), cursor.getLong(0));
+        }
+        assertEquals(2, count());
+    }
+
+    @Test
+    public void purge_deletesOnlyOldPhotosNoItemUses() throws Exception {
+        File directory = ItemPhotos.directory(ApplicationProvider.getApplicationContext());
+        assertTrue(directory.mkdirs() || directory.isDirectory());
+        long old = System.currentTimeMillis() - 2 * ItemPhotos.UNUSED_GRACE_MS;
+        File live = photo(directory, "live.jpg", old);
+        File deleted = photo(directory, "deleted.jpg", old);
+        File replaced = photo(directory, "replaced.jpg", old);
+        File picked = photo(directory, "picked.jpg", System.currentTimeMillis());
+
+        ContentValues values = item(1);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO, replaced.getName());
+        Uri liveUri = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, values);
+        ContentValues photo = new ContentValues();
+        photo.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO, live.getName());
+        assertEquals(1, resolver.update(liveUri, photo, null, null));
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO, deleted.getName());
+        resolver.delete(resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, values), null, null);
+
+        InventoryPurgeJobService.purge(resolver, System.currentTimeMillis() - InventoryPurgeJobService.UNDO_WINDOW_MS, () -> false);
+        assertTrue(live.exists());
+        assertTrue("Undo can still bring the item back", deleted.exists());
+        assertFalse(replaced.exists());
+        assertTrue("Not saved yet, but may still be", picked.exists());
+
+        InventoryPurgeJobService.purge(resolver, System.currentTimeMillis() + 1, () -> false);
+        assertFalse(deleted.exists());
+
+        photo.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PHOTO, "../databases/inventory.db");
+        try {
+            resolver.update(liveUri, photo, null, null);
+            fail("Expected a path outside the photos directory to be rejected");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(live.exists());
+        }
+    }
+
+    @Test
+    public void purge_skipsThePhotoSweepUntilAPhotoMayHaveBeenFreed() throws Exception {
+        File directory = ItemPhotos.directory(ApplicationProvider.getApplicationContext());
+        assertTrue(directory.mkdirs() || directory.isDirectory());
+        long old = System.currentTimeMillis() - 2 * ItemPhotos.UNUSED_GRACE_MS;
+        long before = System.currentTimeMillis() + 1;
+        InventoryPurgeJobService.purge(resolver, before, () -> false);
+
+        File orphan = photo(directory, "orphan.jpg", old);
+        InventoryPurgeJobService.purge(resolver, before, () -> false);
+        assertTrue("Nothing was purged or replaced since the last sweep", orphan.exists());
+
+        resolver.delete(resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, item(1)), null, null);
+        assertEquals(1, InventoryPurgeJobService.purge(resolver, System.currentTimeMillis() + 1, () -> false));
+        assertFalse(orphan.exists());
+    }
+
+    @Test
+    public void refreshAnalytics_classifiesByValueAndRewritesOnlyChangedRows() {
+        // Values 800, 100, 50, 30 and 20: the first holds 80% of the total, the next two 15%.
+        double[] prices = { 8, 1, 0.5, 0.5, 0.25 };
+        int[] quantities = { 100, 100, 100, 60, 80 };
+        long[] ids = new long[prices.length];
+        for (int i = 0; i < prices.length; i++) {
+            ContentValues values = item(i);
+            values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, prices[i]);
+            values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, quantities[i]);
+            ids[i] = ContentUris.parseId(resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, values));
+        }
+
+        assertEquals(5, refreshAnalytics().getInt(InventoryContract.AnalyticsEntry.EXTRA_WRITTEN));
+        assertClasses(ids, InventoryContract.AnalyticsEntry.CLASS_A, InventoryContract.AnalyticsEntry.CLASS_B,
+                InventoryContract.AnalyticsEntry.CLASS_B, InventoryContract.AnalyticsEntry.CLASS_C, InventoryContract.AnalyticsEntry.CLASS_C);
+        assertEquals(0, refreshAnalytics().getInt(InventoryContract.AnalyticsEntry.EXTRA_WRITTEN));
+
+        // A new process starts from the stored results rather than rewriting them.
+        Robolectric.buildContentProvider(InventoryProvider.class).create(InventoryContract.CONTENT_AUTHORITY);
+        assertEquals(0, refreshAnalytics().getInt(InventoryContract.AnalyticsEntry.EXTRA_WRITTEN));
+
+        // 56 units out over the demand window is 2 a day; covering 14 days from 4 left needs 24.
+        Bundle extras = new Bundle();
+        extras.putLong(InventoryContract.InventoryEntry.EXTRA_ITEM_ID, ids[3]);
+        extras.putInt(InventoryContract.InventoryEntry.EXTRA_DELTA, -56);
+        resolver.call(InventoryContract.InventoryEntry.CONTENT_URI, InventoryContract.InventoryEntry.METHOD_ADJUST_QUANTITY, null, extras);
+        resolver.delete(ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, ids[4]), null, null);
+
+        Bundle result = refreshAnalytics();
+        assertEquals(4, result.getInt(InventoryContract.AnalyticsEntry.EXTRA_ITEMS));
+        assertEquals(2, result.getInt(InventoryContract.AnalyticsEntry.EXTRA_WRITTEN));
+        try (Cursor cursor = resolver.query(InventoryContract.AnalyticsEntry.CONTENT_URI, null, null, null, null)) {
+            assertEquals(4, cursor.getCount());
+            assertTrue(cursor.moveToLast());
+            assertEquals(ids[3], cursor.getLong(cursor.getColumnIndexOrThrow(InventoryContract.AnalyticsEntry.COLUMN_ITEM_ID)));
+            assertEquals(2.0, cursor.getDouble(cursor.getColumnIndexOrThrow(InventoryContract.AnalyticsEntry.COLUMN_DAILY_DEMAND)), 1e-9);
+            assertEquals(24, cursor.getInt(cursor.getColumnIndexOrThrow(InventoryContract.AnalyticsEntry.COLUMN_REORDER_QUANTITY)));
+        }
+    }
+
+    @Test
+    public void packedRead_matchesCursorAcrossChunksAndSkipsDeletedItems() throws Exception {
+        ContentValues[] values = items(PackedItems.CHUNK_ROWS + 100);
+        for (int i = 0; i < values.length; i += 7) {
+            values[i].put(InventoryContract.InventoryEntry.COLUMN_ITEM_SKU, "SKU-" + i);
+        }
+        resolver.bulkInsert(InventoryContract.InventoryEntry.CONTENT_URI, values);
+        resolver.delete(ContentUris.withAppendedId(InventoryContract.InventoryEntry.CONTENT_URI, 3), null, null);
+        String[] columns = {
+                InventoryContract.InventoryEntry._ID,
+                InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
+                InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER,
+                InventoryContract.InventoryEntry.COLUMN_ITEM_SKU
+        };
+
+        List<Integer> chunkSizes = new ArrayList<>();
+        try (Cursor cursor = resolver.query(InventoryContract.InventoryEntry.CONTENT_URI, columns, null, null,
+                InventoryContract.InventoryEntry._ID);
+             PackedItems.Reader reader = new PackedItems.Reader(resolver.openFileDescriptor(
+                     InventoryContract.InventoryEntry.buildPackedUri(columns), "r"))) {
+            assertArrayEquals(columns, reader.getColumns());
+            for (PackedItems.Chunk chunk = reader.next(); chunk != null; chunk = reader.next()) {
+                chunkSizes.add(chunk.rows);
+                for (int row = 0; row < chunk.rows; row++) {
+                    assertTrue(cursor.moveToNext());
+                    assertEquals(cursor.getLong(0), chunk.getLongs(0)[row]);
+                    assertEquals(cursor.getDouble(1), chunk.getDoubles(1)[row], 0);
+                    assertEquals(cursor.getString(2), chunk.getString(2, row));
+                    assertEquals(cursor.getString(3), chunk.getString(3, row));
+                }
+                assertEquals("Suppliers repeat within a chunk", 20, chunk.getStringTable(2).length);
+            }
+            assertFalse(cursor.moveToNext());
+        }
+        assertEquals(Arrays.asList(PackedItems.CHUNK_ROWS, 99), chunkSizes);
+
+        try {
+            resolver.openFileDescriptor(InventoryContract.InventoryEntry.buildPackedUri("version; DROP TABLE inventory"), "r");
+            fail("Expected an unknown column to be rejected");
+        } catch (IllegalArgumentException expected) {
+            assertEquals(values.length - 1, count());
+        }
+    }
+
+    private static File photo(File directory, String name, long modified) throws IOException {
+        File file = new File(directory, name);
+        assertTrue(file.createNewFile());
+        assertTrue(file.setLastModified(modified));
+        return file;
+    }
+
+    private int undoDelete(long since) {
+        Bundle extras = new Bundle();
+        extras.putLong(InventoryContract.InventoryEntry.EXTRA_SINCE, since);
+        return resolver.call(InventoryContract.InventoryEntry.CONTENT_URI,
+                InventoryContract.InventoryEntry.METHOD_UNDO_DELETE, null, extras)
+                .getInt(InventoryContract.InventoryEntry.EXTRA_RESTORED);
+    }
+
+    private Bundle refreshAnalytics() {
+        return resolver.call(InventoryContract.AnalyticsEntry.CONTENT_URI,
+                InventoryContract.AnalyticsEntry.METHOD_REFRESH_ANALYTICS, null, null);
+    }
+
+    private void assertClasses(long[] ids, int... classes) {
+        for (int i = 0; i < ids.length; i++) {
+            try (Cursor cursor = resolver.query(InventoryContract.AnalyticsEntry.CONTENT_URI,
+                    new String[] { InventoryContract.AnalyticsEntry.COLUMN_ABC_CLASS },
+                    InventoryContract.AnalyticsEntry.COLUMN_ITEM_ID + "=?", new String[] { String.valueOf(ids[i]) }, null)) {
+                assertTrue(cursor.moveToFirst());
+                assertEquals("Class of item " + i, classes[i], cursor.getInt(0));
+            }
+        }
+    }
+
+    private int movementCount() {
+        try (Cursor cursor = resolver.query(InventoryContract.MovementEntry.CONTENT_URI,
+                new String[] { InventoryContract.MovementEntry._ID }, null, null, null)) {
+            return cursor.getCount();
+        }
+    }
+
+    private void assertStats(double totalValue, int items, int outOfStock, int lowStock) {
+        try (Cursor cursor = resolver.query(InventoryContract.StatsEntry.CONTENT_URI, null, null, null, null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(totalValue, cursor.getDouble(cursor.getColumnIndexOrThrow(InventoryContract.StatsEntry.COLUMN_TOTAL_VALUE)), 1e-9);
+            assertEquals(items, cursor.getInt(cursor.getColumnIndexOrThrow(InventoryContract.StatsEntry.COLUMN_ITEM_COUNT)));
+            assertEquals(outOfStock, cursor.getInt(cursor.getColumnIndexOrThrow(InventoryContract.StatsEntry.COLUMN_OUT_OF_STOCK_COUNT)));
+            assertEquals(lowStock, cursor.getInt(cursor.getColumnIndexOrThrow(InventoryContract.StatsEntry.COLUMN_LOW_STOCK_COUNT)));
+        }
+    }
+
+    private int count() {
+        try (Cursor cursor = resolver.query(InventoryContract.InventoryEntry.CONTENT_URI,
+                new String[] { InventoryContract.InventoryEntry._ID }, null, null, null)) {
+            return cursor.getCount();
+        }
+    }
+
+    private long version(Uri uri) {
+        try (Cursor cursor = resolver.query(uri, new String[] { InventoryContract.InventoryEntry.COLUMN_ITEM_VERSION },
+                null, null, null)) {
+            cursor.moveToFirst();
+            return cursor.getLong(0);
+        }
+    }
+
+    /** Every sort with no filter, each filter alone, and all filters together. */
+    private static List<Uri> listUris() {
+        List<Uri> uris = new ArrayList<>();
+        for (String sort : new String[] { InventoryContract.InventoryEntry.SORT_NAME, InventoryContract.InventoryEntry.SORT_PRICE,
+                InventoryContract.InventoryEntry.SORT_QUANTITY, InventoryContract.InventoryEntry.SORT_SUPPLIER }) {
+            uris.add(InventoryContract.InventoryEntry.buildListUri(sort, false, null, null));
+            uris.add(InventoryContract.InventoryEntry.buildListUri(sort, true, null, null));
+            uris.add(InventoryContract.InventoryEntry.buildListUri(sort, false, 10.0, null));
+            uris.add(InventoryContract.InventoryEntry.buildListUri(sort, false, null, 50.0));
+            uris.add(InventoryContract.InventoryEntry.buildListUri(sort, true, 10.0, 50.0));
+        }
+        return uris;
+    }
+
+    private static List<Long> ids(Cursor cursor) {
+        List<Long> ids = new ArrayList<>();
+        int idColumnIndex = cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry._ID);
+        for (cursor.moveToPosition(-1); cursor.moveToNext(); ) {
+            ids.add(cursor.getLong(idColumnIndex));
+        }
+        return ids;
+    }
+
+    static ContentValues[] items(int count) {
+        ContentValues[] values = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = item(i);
+        }
+        return values;
+    }
+
+    static ContentValues item(int i) {
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_NAME, "Item " + i);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, i % 50);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, 1.5 + i % 100);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_SUPPLIER, "Supplier " + i % 20);
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_EMAIL, "supplier" + i % 20 + "@example.com");
+        return values;
+    }
+}
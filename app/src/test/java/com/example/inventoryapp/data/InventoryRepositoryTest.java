@@ -0,0 +1,141 @@
+package com.example.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class InventoryRepositoryTest {
+
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private ContentResolver resolver;
+
+    private InventoryRepository repository;
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(InventoryProvider.class).create(InventoryContract.CONTENT_AUTHORITY);
+        resolver = ApplicationProvider.getApplicationContext().getContentResolver();
+        repository = new InventoryRepository(ApplicationProvider.getApplicationContext());
+    }
+
+    @Test
+    public void update_mergesUpdatesToTheSameItemIntoOneWrite() throws Exception {
+        Uri uri = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, InventoryProviderTest.item(1));
+        CountDownLatch done = new CountDownLatch(2);
+        int[] rows = new int[2];
+
+        repository.update(uri, values(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 5), (ignored, count) -> {
+            rows[0] = count;
+            done.countDown();
+        });
+        repository.update(uri, values(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE, 9.0), (ignored, count) -> {
+            rows[1] = count;
+            done.countDown();
+        });
+        await(done);
+
+        assertArrayEquals("Both callers hear about the merged write", new int[] { 1, 1 }, rows);
+        InventoryRepository.WriteStats.Snapshot stats = repository.getStats();
+        assertEquals(1, stats.writes);
+        assertEquals(1, stats.coalescedWrites);
+        try (Cursor cursor = resolver.query(uri, null, null, null, null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(5, cursor.getInt(cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY)));
+            assertEquals(9.0, cursor.getDouble(cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE)), 0);
+        }
+    }
+
+    @Test
+    public void delete_closesTheItemToLaterMerges() throws Exception {
+        Uri uri = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, InventoryProviderTest.item(1));
+        CountDownLatch done = new CountDownLatch(3);
+        int[] rows = new int[3];
+
+        repository.update(uri, values(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 5), (ignored, count) -> {
+            rows[0] = count;
+            done.countDown();
+        });
+        repository.delete(uri, (ignored, count) -> {
+            rows[1] = count;
+            done.countDown();
+        });
+        // Merged into the first update, this would run before the delete instead of after it.
+        repository.update(uri, values(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 7), (ignored, count) -> {
+            rows[2] = count;
+            done.countDown();
+        });
+        await(done);
+
+        assertArrayEquals(new int[] { 1, 1, 0 }, rows);
+        assertEquals(0, repository.getStats().coalescedWrites);
+        assertEquals(3, repository.getStats().writes);
+    }
+
+    @Test
+    public void flush_appliesWritesOneByOneWhenTheBatchFails() throws Exception {
+        Uri uri = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, InventoryProviderTest.item(1));
+        CountDownLatch done = new CountDownLatch(3);
+        Uri[] inserted = new Uri[2];
+        int[] updated = new int[1];
+
+        repository.insert(InventoryProviderTest.item(2), (newUri, count) -> {
+            inserted[0] = newUri;
+            done.countDown();
+        });
+        repository.insert(new ContentValues(), (newUri, count) -> {
+            inserted[1] = newUri;
+            done.countDown();
+        });
+        repository.update(uri, values(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 5), (ignored, count) -> {
+            updated[0] = count;
+            done.countDown();
+        });
+        await(done);
+
+        assertNotNull(inserted[0]);
+        assertNull("Invalid insert", inserted[1]);
+        assertEquals(1, updated[0]);
+        try (Cursor cursor = resolver.query(InventoryContract.InventoryEntry.CONTENT_URI, null, null, null, null)) {
+            assertEquals(2, cursor.getCount());
+        }
+    }
+
+    private static ContentValues values(String column, Number value) {
+        ContentValues values = new ContentValues();
+        if (value instanceof Double) {
+            values.put(column, value.doubleValue());
+        } else {
+            values.put(column, value.intValue());
+        }
+        return values;
+    }
+
+    /** Callbacks arrive on the main looper, which Robolectric only runs when asked to. */
+    private static void await(CountDownLatch latch) throws InterruptedException {
+        long start = System.nanoTime();
+        while (!latch.await(1, TimeUnit.MILLISECONDS)) {
+            if (System.nanoTime() - start > TIMEOUT_NANOS) {
+                throw new AssertionError("Timed out waiting for repository callbacks");
+            }
+            shadowOf(Looper.getMainLooper()).idle();
+        }
+    }
+}
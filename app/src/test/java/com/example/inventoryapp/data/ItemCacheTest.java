@@ -0,0 +1,140 @@
+package com.example.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.content.ContentUris;
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class ItemCacheTest {
+
+    @Test
+    public void get_hitsAfterPut() {
+        ItemCache cache = new ItemCache(4);
+        assertNull(cache.get(1));
+
+        cache.put(item(1, "Item 1"), cache.generation());
+
+        ItemCache.Item cached = cache.get(1);
+        assertNotNull(cached);
+        assertEquals("Item 1", cached.values[1]);
+        assertEquals(1, cache.hitCount());
+        assertEquals(1, cache.missCount());
+    }
+
+    @Test
+    public void invalidate_dropsOnlyThatItem() {
+        ItemCache cache = new ItemCache(4);
+        cache.put(item(1, "Item 1"), cache.generation());
+        cache.put(item(2, "Item 2"), cache.generation());
+
+        cache.invalidate(1);
+
+        assertNull(cache.get(1));
+        assertNotNull(cache.get(2));
+    }
+
+    @Test
+    public void put_evictsTheLeastRecentlyUsedItem() {
+        ItemCache cache = new ItemCache(2);
+        cache.put(item(1, "Item 1"), cache.generation());
+        cache.put(item(2, "Item 2"), cache.generation());
+        assertNotNull(cache.get(1));
+
+        cache.put(item(3, "Item 3"), cache.generation());
+
+        assertNull("Least recently used", cache.get(2));
+        assertNotNull(cache.get(1));
+        assertNotNull(cache.get(3));
+        assertEquals(1, cache.evictionCount());
+    }
+
+    @Test
+    public void put_dropsARowReadBeforeAnInvalidation() {
+        ItemCache cache = new ItemCache(4);
+        long readGeneration = cache.generation();
+        // A write lands between the reader's query and its put.
+        cache.invalidate(1);
+
+        cache.put(item(1, "Stale"), readGeneration);
+
+        assertNull(cache.get(1));
+        cache.put(item(1, "Fresh"), cache.generation());
+        assertEquals("Fresh", cache.get(1).values[1]);
+    }
+
+    @Test
+    public void toCursor_servesAProjectionInItsOwnOrder() {
+        ItemCache.Item item = item(1, "Item 1");
+        String[] projection = {
+                InventoryContract.InventoryEntry.COLUMN_ITEM_PRICE,
+                InventoryContract.InventoryEntry.COLUMN_ITEM_NAME
+        };
+
+        try (Cursor cursor = ItemCache.toCursor(item, projection)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(2.5, cursor.getDouble(0), 0);
+            assertEquals("Item 1", cursor.getString(1));
+        }
+        try (Cursor cursor = ItemCache.toCursor(item, null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(ItemCache.COLUMNS.length, cursor.getColumnCount());
+            assertEquals("Item 1", cursor.getString(1));
+        }
+    }
+
+    @Test
+    public void provider_servesNoCachedRowAfterUpdateOrDelete() {
+        Robolectric.buildContentProvider(InventoryProvider.class).create(InventoryContract.CONTENT_AUTHORITY);
+        ContentResolver resolver = ApplicationProvider.getApplicationContext().getContentResolver();
+        Uri uri = resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, InventoryProviderTest.item(1));
+        assertEquals(1, quantity(resolver, uri));
+        assertEquals("Second read comes from the cache", 1, quantity(resolver, uri));
+
+        ContentValues values = new ContentValues();
+        values.put(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY, 7);
+        assertEquals(1, resolver.update(uri, values, null, null));
+        assertEquals(7, quantity(resolver, uri));
+
+        assertEquals(1, resolver.delete(uri, null, null));
+        try (Cursor cursor = resolver.query(uri, null, null, null, null)) {
+            assertEquals(0, cursor.getCount());
+        }
+    }
+
+    private static int quantity(ContentResolver resolver, Uri uri) {
+        try (Cursor cursor = resolver.query(uri, null, null, null, null)) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(ContentUris.parseId(uri), cursor.getLong(0));
+            return cursor.getInt(cursor.getColumnIndexOrThrow(InventoryContract.InventoryEntry.COLUMN_ITEM_QUANTITY));
+        }
+    }
+
+    private static ItemCache.Item item(long id, String name) {
+        MatrixCursor cursor = new MatrixCursor(ItemCache.COLUMNS);
+        cursor.newRow()
+                .add(id)
+                .add(name)
+                .add(1)
+                .add(2.5)
+                .add("Supplier")
+                .add(null)
+                .add(null)
+                .add(1)
+                .add(1)
+                .add(null);
+        cursor.moveToFirst();
+        return ItemCache.Item.from(cursor);
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.inventoryapp.data;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class ItemPhotosTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void isValidName_acceptsOnlyBarePhotoNames() {
+        assertTrue(ItemPhotos.isValidName(null));
+        assertTrue(ItemPhotos.isValidName("3f2c9a.jpg"));
+        assertFalse(ItemPhotos.isValidName("../databases/inventory.db"));
+        assertFalse(ItemPhotos.isValidName("../photo.jpg"));
+        assertFalse(ItemPhotos.isValidName("nested/photo.jpg"));
+        assertFalse(ItemPhotos.isValidName(".jpg"));
+        assertFalse(ItemPhotos.isValidName("photo.png"));
+    }
+
+    @Test
+    public void deleteUnused_keepsUsedAndRecentFiles() throws Exception {
+        long now = System.currentTimeMillis();
+        long old = now - 2 * ItemPhotos.UNUSED_GRACE_MS;
+        File used = photo("used.jpg", old);
+        File unused = photo("unused.jpg", old);
+        File recent = photo("recent.jpg", now);
+
+        int deleted = ItemPhotos.deleteUnused(folder.getRoot(), Collections.singleton("used.jpg"),
+                now - ItemPhotos.UNUSED_GRACE_MS);
+
+        assertEquals(1, deleted);
+        assertTrue(used.exists());
+        assertFalse(unused.exists());
+        assertTrue(recent.exists());
+        assertEquals("Missing directory", 0, ItemPhotos.deleteUnused(new File(folder.getRoot(), "missing"),
+                Collections.emptySet(), now));
+    }
+
+    private File photo(String name, long modified) throws IOException {
+        File file = folder.newFile(name);
+        assertTrue(file.setLastModified(modified));
+        return file;
+    }
+}
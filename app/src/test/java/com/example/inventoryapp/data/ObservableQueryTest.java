@@ -0,0 +1,124 @@
+package com.example.inventoryapp.data;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.os.CancellationSignal;
+import android.os.Looper;
+
+import androidx.lifecycle.Observer;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class ObservableQueryTest {
+
+    private ContentResolver resolver;
+
+    private final List<Integer> values = new ArrayList<>();
+
+    private final Observer<Integer> observer = values::add;
+
+    @Before
+    public void setUp() {
+        Robolectric.buildContentProvider(InventoryProvider.class).create(InventoryContract.CONTENT_AUTHORITY);
+        resolver = ApplicationProvider.getApplicationContext().getContentResolver();
+    }
+
+    @Test
+    public void burstOfChanges_requeriesOnceAfterItSettles() {
+        CountQuery query = new CountQuery(Runnable::run);
+        query.observeForever(observer);
+        idleFor(0);
+        assertEquals(Collections.singletonList(0), values);
+
+        for (int i = 0; i < 5; i++) {
+            resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, InventoryProviderTest.item(i));
+            idleFor(ObservableQuery.DEBOUNCE_MS / 2);
+        }
+        assertEquals("Still inside the burst", 1, query.runs);
+
+        idleFor(ObservableQuery.DEBOUNCE_MS);
+        assertEquals(2, query.runs);
+        assertEquals(Arrays.asList(0, 5), values);
+    }
+
+    @Test
+    public void steadyChanges_stillRefreshWithinMaxDebounce() {
+        CountQuery query = new CountQuery(Runnable::run);
+        query.observeForever(observer);
+        idleFor(0);
+
+        for (long elapsed = 0; elapsed <= ObservableQuery.MAX_DEBOUNCE_MS + 100; elapsed += ObservableQuery.DEBOUNCE_MS / 2) {
+            resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, InventoryProviderTest.item((int) elapsed));
+            idleFor(ObservableQuery.DEBOUNCE_MS / 2);
+        }
+        assertTrue(query.runs >= 2);
+    }
+
+    @Test
+    public void newerQuery_cancelsAndReplacesOneInFlight() {
+        List<Runnable> tasks = new ArrayList<>();
+        CountQuery query = new CountQuery(tasks::add);
+        query.observeForever(observer);
+
+        resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, InventoryProviderTest.item(1));
+        idleFor(ObservableQuery.DEBOUNCE_MS * 2);
+        assertEquals(2, tasks.size());
+
+        tasks.get(0).run();
+        tasks.get(1).run();
+        idleFor(0);
+        assertEquals("The superseded query should not run", 1, query.runs);
+        assertEquals(Collections.singletonList(1), values);
+
+        // Losing the last observer cancels the query in flight; it runs again on the next one.
+        resolver.insert(InventoryContract.InventoryEntry.CONTENT_URI, InventoryProviderTest.item(2));
+        idleFor(ObservableQuery.DEBOUNCE_MS * 2);
+        query.removeObserver(observer);
+        tasks.get(2).run();
+        assertEquals(1, query.runs);
+
+        query.observeForever(observer);
+        tasks.get(3).run();
+        idleFor(0);
+        assertEquals(2, query.runs);
+        assertEquals(Integer.valueOf(2), query.getValue());
+    }
+
+    private static void idleFor(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis));
+    }
+
+    private class CountQuery extends ObservableQuery<Integer> {
+
+        int runs;
+
+        CountQuery(Executor executor) {
+            super(resolver, InventoryContract.InventoryEntry.CONTENT_URI, executor);
+        }
+
+        @Override
+        protected Integer query(ContentResolver resolver, CancellationSignal signal) {
+            runs++;
+            try (Cursor cursor = resolver.query(InventoryContract.InventoryEntry.CONTENT_URI,
+                    new String[] { InventoryContract.InventoryEntry._ID }, null, null, null, signal)) {
+                return cursor.getCount();
+            }
+        }
+    }
+}